@@ -20,11 +20,13 @@ import android.util.TypedValue;
 import android.view.View;
 import android.widget.TextView;
 
+import com.vinsol.expensetracker.models.Amount;
+
 public class BarGraph extends View {
 
 	private Paint paint;
 	private Double max;
-	private ArrayList<String> values;
+	private ArrayList<Amount> values;
 	private int height;
 	private int width;
 	private int verDiff;
@@ -34,7 +36,7 @@ public class BarGraph extends View {
 	private String[] suffixList = {"B","M","K"};  // B -> Billion; M -> Million; K -> Thousand
 	private float floatPx;
 	
-	public BarGraph(Activity activity,ArrayList<String> valueList,ArrayList<String> horLabels) {
+	public BarGraph(Activity activity,ArrayList<Amount> valueList,ArrayList<String> horLabels) {
 		super(activity);
 		DisplayMetrics outMetrics = new DisplayMetrics();
 		activity.getWindowManager().getDefaultDisplay().getMetrics(outMetrics);
@@ -146,7 +148,7 @@ public class BarGraph extends View {
 			canvas.drawRect(mRectF,paint);
 			paint.setColor(Color.parseColor("#000000"));
 			canvas.drawText(horLabels.get(i), originX+value, topY+mTextViewTemp.getTextSize(), textPaint);
-			if(values.get(i) != null && values.get(i).contains("?")) {
+			if(values.get(i) != null && values.get(i).isUnknown) {
 				textPaint.setTextAlign(Align.LEFT);
 				canvas.drawText("?", originX+value-(barWidth/2), topY-(int)((tempDouble/max)*verDiff)-5, textPaint);
 				textPaint.setTextAlign(Align.RIGHT);
@@ -209,28 +211,12 @@ public class BarGraph extends View {
 			return 100.0;
 	}
 	
+	// bar height, a day or week without entries or with unknown amounts only stands at 0
 	private Double getDouble(int i) { 
-		Double tempDouble = null;
-		if(values.get(i) != null) {
-			if(values.get(i).equals("?")) {
-				return 0.0;
-			}
-			if(values.get(i).contains("?")) {
-				try {
-					if(values.get(i).length() > 1) {
-						String tempString = (String) values.get(i).subSequence(0, values.get(i).length()-1);
-					return Double.parseDouble(tempString);
-					}
-				} catch (Exception e) {
-					return 0.00;
-				}
-			} else {
-				return Double.parseDouble(values.get(i));
-			}
-			return tempDouble;
-		} else {
+		if(values.get(i) == null) {
 			return 0.0;
 		}
+		return values.get(i).doubleValue();
 	}
 
 }
@@ -22,6 +22,8 @@ public class ExpenseTrackerExclusionStrategy implements ExclusionStrategy {
 //		if(Strings.equal(f.getName(), "fileToDownload")) {return true;}
 		if(Strings.equal(f.getName(), "syncBit")) {return true;}
 		if(Strings.equal(f.getName(), "id")) {return true;}
+		if(Strings.equal(f.getName(), "dirtyFields")) {return true;}
+		if(Strings.equal(f.getName(), "amountValue")) {return true;}
 		return false;
 	}
 
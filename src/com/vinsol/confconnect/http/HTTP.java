@@ -2,17 +2,22 @@ package com.vinsol.confconnect.http;
 
 import static org.apache.http.protocol.HTTP.UTF_8;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLEncoder;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
@@ -20,12 +25,21 @@ import org.apache.http.NameValuePair;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.entity.mime.MultipartEntity;
 import org.apache.http.entity.mime.content.ContentBody;
 import org.apache.http.entity.mime.content.FileBody;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.util.ByteArrayBuffer;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
 import org.apache.http.util.EntityUtils;
 
 import android.content.Context;
@@ -47,6 +61,8 @@ public class HTTP {
 	private String sync = "sync";
 	private String verification = "?token=";
 	private String timestamp = "&&timestamp=";
+	private String perPage = "&&per_page=";
+	private String cursor = "&&cursor=";
 	private String expenses = "expenses";
 	private String favorites = "favorites";
 	private String upload = "upload";
@@ -60,6 +76,29 @@ public class HTTP {
 	private FileHelper fileHelper;
 	private int responseCode;
 	
+	// records asked for per page of the sync pull
+	public static final int SYNC_PAGE_SIZE = 500;
+	// connections kept open to the server for parallel file transfers
+	public static final int MAX_CONNECTIONS_PER_HOST = 3;
+	
+	private static HttpClient sharedHttpClient;
+	
+	// request bodies smaller than this gain nothing from gzip
+	private static final int GZIP_MIN_BYTES = 256;
+	private boolean isGzipRequest = false;
+	
+	private static final String PART_SUFFIX = ".part";
+	// ETag or Last-Modified of the file a .part was started from, sent as If-Range when resuming it
+	private static final String VALIDATOR_SUFFIX = ".validator";
+	private static final int DOWNLOAD_BUFFER_SIZE = 32 * 1024;
+	// one buffer per transfer thread, reused for every file it downloads
+	private static final ThreadLocal<byte[]> downloadBuffer = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[DOWNLOAD_BUFFER_SIZE];
+		}
+	};
+	
 	public HTTP(Context context) {
 		fileHelper = new FileHelper();
 		mContext = context;
@@ -67,8 +106,39 @@ public class HTTP {
 		userId = SharedPreferencesHelper.getSharedPreferences().getString(context.getString(R.string.pref_key_sync_user_id), "");
 	}
 	
+	// talks to baseUrl instead of the default server, e.g. a local stub server
+	public HTTP(Context context, String baseUrl) {
+		this(context);
+		this.baseUrl = baseUrl;
+	}
+	
+	// Sends request bodies gzip encoded, only for servers that accept Content-Encoding: gzip requests.
+	// Gzip responses are always accepted
+	public void setGzipRequest(boolean isGzipRequest) {
+		this.isGzipRequest = isGzipRequest;
+	}
+	
 	public String getSyncData() throws IOException{
-		return get(baseUrl+userId+"/"+sync+json+verification+timestamp+SharedPreferencesHelper.getSharedPreferences().getString(mContext.getString(R.string.pref_key_sync_timestamp), ""));
+		return get(getSyncUrl());
+	}
+	
+	// Hands the body of the sync response to handler while it is still downloading, false if nothing was handled
+	public boolean getSyncData(ResponseStreamHandler handler) throws IOException {
+		return executeStream(getSyncUrl(), handler);
+	}
+	
+	// resumes from the saved page cursor when the last pull was interrupted
+	private String getSyncUrl() {
+		String url = baseUrl+userId+"/"+sync+json+verification+timestamp+SharedPreferencesHelper.getSharedPreferences().getString(mContext.getString(R.string.pref_key_sync_timestamp), "")+perPage+SYNC_PAGE_SIZE;
+		String savedCursor = SharedPreferencesHelper.getSharedPreferences().getString(mContext.getString(R.string.pref_key_sync_cursor), "");
+		if(Strings.notEmpty(savedCursor)) {
+			try {
+				url = url+cursor+URLEncoder.encode(savedCursor, UTF_8);
+			} catch (UnsupportedEncodingException e) {
+				e.printStackTrace();
+			}
+		}
+		return url;
 	}
 	
 	public String get(String url) throws IOException{
@@ -141,6 +211,7 @@ public class HTTP {
 	public boolean downloadExpenseFile(String id,String idFromServer, boolean isAudio) throws IOException {
 		String extension;
 		File file;
+		fileHelper.detachAllEntryFiles(id);
 		if(isAudio) { 
 			extension = ".amr";
 			file = fileHelper.getAudioFileEntry(id);
@@ -155,6 +226,7 @@ public class HTTP {
 	public boolean downloadFavoriteFile(String id,String idFromServer, boolean isAudio) throws IOException {
 		String extension;
 		File file;
+		fileHelper.detachAllFavoriteFiles(id);
 		if(isAudio) { 
 			extension = ".amr";
 			file = fileHelper.getAudioFileFavorite(id);
@@ -173,24 +245,21 @@ public class HTTP {
     	HttpURLConnection connection = null;
 
     	try {
-    		connection = (HttpURLConnection) new URL(url).openConnection();
-    		connection.setConnectTimeout(90 * 1000);
-    		connection.setReadTimeout(90 * 1000);
-    		connection.setRequestProperty("User-Agent", String.format("ExpenseTracker"+mContext.getString(R.string.version)+" Android(%s/%s)", Build.VERSION.RELEASE, Build.VERSION.INCREMENTAL));
-			connection.setRequestMethod(requestMethod);
-			
-			// print request in log
-			StringBuilder requestBuilder = new StringBuilder(connection.getURL().toString() + "\n");
-    		for (Entry<String, List<String>> header : connection.getRequestProperties().entrySet()) { requestBuilder.append(header.getKey() + " = " + header.getValue()); } 
-    		Log.d(requestBuilder);
+    		connection = openConnection(url, requestMethod);
     		
     		// post request
 			if (postData != null) {
 	    		String postParams = Strings.InputStreamToString(postData.getContent());
 	    		Log.d(requestMethod+" Data: " + postParams);
+	    		byte[] body = postParams.getBytes("UTF-8");
+	    		if(isGzipRequest && body.length >= GZIP_MIN_BYTES) {
+	    			body = gzip(body);
+	    			connection.setRequestProperty("Content-Encoding", "gzip");
+	    			Log.d(requestMethod+" Data gzipped to " + body.length + " bytes");
+	    		}
 	    		connection.setDoOutput(true);
 	    		OutputStream outputStream = connection.getOutputStream();
-	    		outputStream.write(postParams.getBytes("UTF-8"));
+	    		outputStream.write(body);
 				outputStream.flush();
 				outputStream.close();
 			}
@@ -200,7 +269,7 @@ public class HTTP {
 			responseCode = connection.getResponseCode();
     		
         	if(connection.getURL().toString().equals(url) && responseCode == 200) {
-        		String response = Strings.InputStreamToString(connection.getInputStream()); 
+        		String response = Strings.InputStreamToString(getInputStream(connection, connection.getInputStream())); 
         		// print response
         		Log.d("response "+response);	
 	        	// return response
@@ -208,7 +277,7 @@ public class HTTP {
         	}
 
         	if(connection.getURL().toString().equals(url) && responseCode == 422) {
-        		String response = Strings.InputStreamToString(connection.getErrorStream()); 
+        		String response = Strings.InputStreamToString(getInputStream(connection, connection.getErrorStream())); 
         		// print response
         		Log.d("response error "+response);	
 	        	// return response
@@ -224,42 +293,202 @@ public class HTTP {
 		return null;
 	}
 	
+	private boolean executeStream(String url, ResponseStreamHandler handler) throws IOException {
+		if(!Utils.isOnline(mContext)) {return false;}
+		
+		Log.d("***************************** Sending HTTP request *****************************" +url);
+		HttpURLConnection connection = null;
+		
+		try {
+			connection = openConnection(url, "GET");
+			responseCode = connection.getResponseCode();
+			Log.d("getting response with status " +responseCode);
+			if(connection.getURL().toString().equals(url) && responseCode == 200) {
+				InputStream inputStream = getInputStream(connection, connection.getInputStream());
+				try {
+					handler.onResponse(inputStream);
+				} finally {
+					inputStream.close();
+				}
+				return true;
+			}
+		} catch (MalformedURLException e) {
+			e.printStackTrace();
+		} finally {
+			if(connection != null) {
+				connection.disconnect();
+			}
+		}
+		return false;
+	}
+	
+	private HttpURLConnection openConnection(String url, String requestMethod) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setConnectTimeout(90 * 1000);
+		connection.setReadTimeout(90 * 1000);
+		connection.setRequestProperty("User-Agent", String.format("ExpenseTracker"+mContext.getString(R.string.version)+" Android(%s/%s)", Build.VERSION.RELEASE, Build.VERSION.INCREMENTAL));
+		connection.setRequestMethod(requestMethod);
+		// asked for explicitly so older releases without transparent gzip get it too, see getInputStream()
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		
+		// print request in log
+		StringBuilder requestBuilder = new StringBuilder(connection.getURL().toString() + "\n");
+		for (Entry<String, List<String>> header : connection.getRequestProperties().entrySet()) { requestBuilder.append(header.getKey() + " = " + header.getValue()); } 
+		Log.d(requestBuilder);
+		return connection;
+	}
+	
+	// unzips the body when the server sent it gzip encoded
+	private InputStream getInputStream(HttpURLConnection connection, InputStream inputStream) throws IOException {
+		if("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+			return new GZIPInputStream(inputStream);
+		}
+		return inputStream;
+	}
+	
+	private byte[] gzip(byte[] body) throws IOException {
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(body.length / 4);
+		GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream);
+		gzipOutputStream.write(body);
+		gzipOutputStream.close();
+		return byteArrayOutputStream.toByteArray();
+	}
+	
+	// Streams the body into file.part and renames it over file once complete. A left over .part is resumed with a Range
+	// request only if the server can tell it still has the same file (If-Range), otherwise the download starts over
 	public boolean downloadFile(String urlString, File file) throws IOException {
 		Log.d("******************** Downloading File *********************"+file.toString());
+		File partFile = new File(file.getPath() + PART_SUFFIX);
+		File validatorFile = new File(file.getPath() + PART_SUFFIX + VALIDATOR_SUFFIX);
+		String validator = readValidator(validatorFile);
+		if(validator == null) {
+			// a part of an unknown version of the file cannot be resumed safely
+			partFile.delete();
+		}
+		long resumeFrom = partFile.length();
 		HttpURLConnection connection = null;
-        try {
-            URL url = new URL(urlString);
-
-            Log.d("download begining");
-            Log.d("download url:" + url);
-            Log.d("downloaded file name:" + file.toString());
-            
-            connection = (HttpURLConnection) url.openConnection();
-
-            InputStream is = connection.getInputStream();
-            BufferedInputStream bis = new BufferedInputStream(is);
-
-            ByteArrayBuffer baf = new ByteArrayBuffer(50);
-            int current = 0;
-            while ((current = bis.read()) != -1) {
-                baf.append((byte) current);
-            }
-            responseCode = connection.getResponseCode();
-
-            if(responseCode == 200) {
-            	FileOutputStream fos = new FileOutputStream(file);
-            	fos.write(baf.toByteArray());
-            	fos.close();
-            	return true;
-            }
-            
-        } catch (MalformedURLException e) {
-        	Log.d("Error: ");
-        	e.printStackTrace();
-        } finally {
-        	connection.disconnect();
-        }
-        return false;
+		try {
+			Log.d("download url:" + urlString);
+			connection = openConnection(urlString, "GET");
+			// byte offsets of a Range request refer to the unencoded file
+			connection.setRequestProperty("Accept-Encoding", "identity");
+			if(resumeFrom > 0) {
+				connection.setRequestProperty("Range", "bytes=" + resumeFrom + "-");
+				// a file replaced on the server since comes back whole with 200 instead of a 206 to append
+				connection.setRequestProperty("If-Range", validator);
+			}
+			
+			// local copy, several transfers can share this HTTP
+			int downloadResponseCode = connection.getResponseCode();
+			responseCode = downloadResponseCode;
+			Log.d("getting response with status " + downloadResponseCode);
+			
+			boolean isAppend;
+			if(downloadResponseCode == 206 && resumeFrom > 0) {
+				isAppend = true;
+				Log.d("resuming download from byte " + resumeFrom);
+			} else if(downloadResponseCode == 200) {
+				isAppend = false;
+			} else {
+				if(downloadResponseCode == 416) {
+					// the part file does not match the file on the server anymore
+					partFile.delete();
+					validatorFile.delete();
+				}
+				return false;
+			}
+			if(!isAppend) {
+				// written before the body so a part file never lacks the version it belongs to
+				writeValidator(validatorFile, getValidator(connection));
+			}
+			
+			long expectedLength = connection.getContentLength();
+			long written = 0;
+			InputStream inputStream = connection.getInputStream();
+			FileOutputStream outputStream = new FileOutputStream(partFile, isAppend);
+			try {
+				byte[] buffer = downloadBuffer.get();
+				int read;
+				while((read = inputStream.read(buffer)) != -1) {
+					outputStream.write(buffer, 0, read);
+					written += read;
+				}
+				outputStream.getFD().sync();
+			} finally {
+				outputStream.close();
+				inputStream.close();
+			}
+			
+			if(expectedLength >= 0 && written != expectedLength) {
+				// keep the part file, the retry resumes from it
+				throw new IOException("Download of " + file.getName() + " ended after " + written + " of " + expectedLength + " bytes");
+			}
+			if(!partFile.renameTo(file)) {
+				file.delete();
+				if(!partFile.renameTo(file)) {
+					throw new IOException("Could not move " + partFile + " to " + file);
+				}
+			}
+			validatorFile.delete();
+			Log.d("downloaded " + ((isAppend ? resumeFrom : 0) + written) + " bytes to " + file.toString());
+			return true;
+		} catch (MalformedURLException e) {
+			Log.d("Error: ");
+			e.printStackTrace();
+		} finally {
+			if(connection != null) {
+				connection.disconnect();
+			}
+		}
+		return false;
+	}
+	
+	// strong ETag, else Last-Modified, null if the response has neither. A weak ETag cannot be used with If-Range
+	private String getValidator(HttpURLConnection connection) {
+		String eTag = connection.getHeaderField("ETag");
+		if(eTag != null && !eTag.startsWith("W/")) {
+			return eTag;
+		}
+		return connection.getHeaderField("Last-Modified");
+	}
+	
+	private String readValidator(File validatorFile) {
+		if(!validatorFile.exists()) {
+			return null;
+		}
+		try {
+			FileInputStream inputStream = new FileInputStream(validatorFile);
+			try {
+				byte[] bytes = new byte[(int) validatorFile.length()];
+				int length = 0;
+				int read;
+				while(length < bytes.length && (read = inputStream.read(bytes, length, bytes.length - length)) != -1) {
+					length += read;
+				}
+				String validator = new String(bytes, 0, length, UTF_8).trim();
+				return validator.length() > 0 ? validator : null;
+			} finally {
+				inputStream.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	// no validator deletes the file, the part written next is then not resumed
+	private void writeValidator(File validatorFile, String validator) throws IOException {
+		if(validator == null) {
+			validatorFile.delete();
+			return;
+		}
+		FileOutputStream outputStream = new FileOutputStream(validatorFile);
+		try {
+			outputStream.write(validator.getBytes(UTF_8));
+			outputStream.getFD().sync();
+		} finally {
+			outputStream.close();
+		}
 	}
 	
 	private String uploadFile(String url, File file, boolean isAudio) throws IOException {
@@ -267,10 +496,10 @@ public class HTTP {
 		Log.d("********************** Starting File Upload ******************");
 		
 		Log.d("***************************** Sending HTTP request *****************************");
-		HttpClient httpclient = new DefaultHttpClient();
+		HttpClient httpclient = getHttpClient();
+		HttpPost httppost = new HttpPost(url);
 		try {
-	
-		    HttpPost httppost = new HttpPost(url);
+
 	
 		    MultipartEntity mpEntity = new MultipartEntity();
 		    ContentBody cbFile;
@@ -284,8 +513,10 @@ public class HTTP {
 		    HttpResponse response = httpclient.execute(httppost);
 		    HttpEntity resEntity = response.getEntity();
 		    
-		    Log.d("getting response with status " +response.getStatusLine().getStatusCode() );
-			responseCode = response.getStatusLine().getStatusCode();
+		    // local copy, several uploads can share this HTTP
+		    int uploadResponseCode = response.getStatusLine().getStatusCode();
+		    Log.d("getting response with status " +uploadResponseCode );
+			responseCode = uploadResponseCode;
 //			String location = response.getLastHeader("Location").getValue();
 //			if (resEntity != null) {
 //				Log.d(EntityUtils.toString(resEntity));
@@ -294,8 +525,9 @@ public class HTTP {
 //				resEntity.consumeContent();
 //			}
 			
+			// reading the entity fully hands the connection back to the pool
 			String responseString = EntityUtils.toString(resEntity);
-			if(responseCode == 200) {
+			if(uploadResponseCode == 200) {
         		// print response
         		Log.d("response "+ responseString);	
 	        	// return response
@@ -321,15 +553,37 @@ public class HTTP {
 //		    }
 		} catch(MalformedURLException e) {
 			e.printStackTrace();
-		} finally {
-			httpclient.getConnectionManager().shutdown();
+		} catch(IOException e) {
+			// releases the pooled connection of a failed request
+			httppost.abort();
+			throw e;
 		}
 	    Log.d("********************** File Uploaded ******************");
 	    return null;
 	}
 	
+	// One client for all uploads so connections to the server are pooled and reused instead of opened per file
+	private static synchronized HttpClient getHttpClient() {
+		if(sharedHttpClient == null) {
+			HttpParams params = new BasicHttpParams();
+			ConnManagerParams.setMaxTotalConnections(params, MAX_CONNECTIONS_PER_HOST);
+			ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(MAX_CONNECTIONS_PER_HOST));
+			HttpConnectionParams.setConnectionTimeout(params, 90 * 1000);
+			HttpConnectionParams.setSoTimeout(params, 90 * 1000);
+			SchemeRegistry schemeRegistry = new SchemeRegistry();
+			schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+			schemeRegistry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+			sharedHttpClient = new DefaultHttpClient(new ThreadSafeClientConnManager(params, schemeRegistry), params);
+		}
+		return sharedHttpClient;
+	}
+	
 	public int getResponseCode() {
 		return responseCode;
 	}
+	
+	public interface ResponseStreamHandler {
+		void onResponse(InputStream inputStream) throws IOException;
+	}
 
 }
\ No newline at end of file
@@ -16,6 +16,8 @@ public class Constants {
 	public static String DIRECTORY = ExpenseTrackerApplication.FILES_DIR + ET_FOLDER;
 	public static final String DIRECTORY_AUDIO = "Audio/";
 	public static final String DIRECTORY_FAVORITE = "Favorite/";
+	// attachments shared by entries and favorites, named by their content hash
+	public static final String DIRECTORY_BLOBS = "Blobs/";
 	
 	//Intent Extras
 	public static final String KEY_HIGHLIGHT = "toHighLight";
@@ -31,6 +33,8 @@ public class Constants {
 	public static final String KEY_TIME_IN_MILLIS_TO_SET_TAB = "timeInMillisToSetTab";
 	public static final String KEY_FULL_SIZE_IMAGE_PATH = "FullSizeImagePath";
 	public static final String KEY_TIME_IN_MILLIS = "timeInMillis";
+	public static final String KEY_FROM_TIME_IN_MILLIS = "fromTimeInMillis";
+	public static final String KEY_TO_TIME_IN_MILLIS = "toTimeInMillis";
 	public static final String KEY_MANAGE_FAVORITE = "manageFavorite";
 	public static final String KEY_IS_SIGNUP = "isSignUp";
 	
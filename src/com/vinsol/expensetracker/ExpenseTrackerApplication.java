@@ -13,13 +13,18 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 import android.app.Application;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.os.Environment;
 import android.preference.PreferenceManager;
 import android.widget.Toast;
 
+import com.vinsol.expensetracker.helpers.DatabaseMigration;
 import com.vinsol.expensetracker.helpers.SharedPreferencesHelper;
+import com.vinsol.expensetracker.helpers.ThumbnailCache;
 import com.vinsol.expensetracker.utils.Log;
 import com.vinsol.expensetracker.utils.Strings;
 
@@ -37,6 +42,20 @@ public class ExpenseTrackerApplication extends Application {
     	PreferenceManager.setDefaultValues(applicationContext, R.xml.preferences, false);
     	setSyncPrefs();
         Initialize();
+        new DatabaseMigration(applicationContext).execute();
+        // SQLite buckets days in the new zone from now on, DatabaseMigration rebuilds the totals for it
+        registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                new DatabaseMigration(applicationContext).execute();
+            }
+        }, new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED));
+    }
+    
+    @Override
+    public void onLowMemory() {
+    	ThumbnailCache.getInstance().clear();
+    	super.onLowMemory();
     }
     
     public static void setSyncPrefs() {
@@ -61,6 +80,8 @@ public class ExpenseTrackerApplication extends Application {
         		mFile.mkdirs();
         		mFile = new File(Constants.DIRECTORY + Constants.DIRECTORY_FAVORITE + Constants.DIRECTORY_AUDIO);
         		mFile.mkdirs();
+        		mFile = new File(Constants.DIRECTORY + Constants.DIRECTORY_BLOBS);
+        		mFile.mkdirs();
         		if(!SharedPreferencesHelper.getSharedPreferences().contains(applicationContext.getString(R.string.pref_key_run_first_time))) {
         			File prevVerDir = new File(Environment.getExternalStorageDirectory()+"/ExpenseTracker");
         			if(prevVerDir.exists()) {
@@ -52,11 +52,11 @@ import com.itextpdf.text.pdf.PdfPCell;
 import com.itextpdf.text.pdf.PdfPTable;
 import com.itextpdf.text.pdf.PdfPageEventHelper;
 import com.itextpdf.text.pdf.PdfWriter;
-import com.vinsol.expensetracker.helpers.ConvertCursorToListString;
 import com.vinsol.expensetracker.helpers.CustomDatePickerDialog;
+import com.vinsol.expensetracker.helpers.DateBucketer;
 import com.vinsol.expensetracker.helpers.DisplayDate;
-import com.vinsol.expensetracker.helpers.StringProcessing;
-import com.vinsol.expensetracker.models.Entry;
+import com.vinsol.expensetracker.helpers.EntrySnapshot;
+import com.vinsol.expensetracker.models.Amount;
 import com.vinsol.expensetracker.utils.Log;
 
 public class GenerateReport extends BaseActivity implements OnClickListener {
@@ -84,7 +84,7 @@ public class GenerateReport extends BaseActivity implements OnClickListener {
     private File fileLocation;
     
     private String dateRange;
-	private List<Entry> mEntryList;
+	private EntrySnapshot mEntrySnapshot;
 	
 	private final int REQUEST_CODE = 1055;
 	
@@ -121,8 +121,8 @@ public class GenerateReport extends BaseActivity implements OnClickListener {
 		mEndYear = calendar.get(Calendar.YEAR);
 		mEndMonth = calendar.get(Calendar.MONTH);
 		mEndDay = calendar.get(Calendar.DAY_OF_MONTH);
-		mEntryList = new ConvertCursorToListString(GenerateReport.this).getEntryList(true, "");
-		if(mEntryList.size() == 0) {
+		mEntrySnapshot = EntrySnapshot.get(GenerateReport.this);
+		if(mEntrySnapshot.size == 0) {
 			new AlertDialog.Builder(this)
 			.setTitle("Error")
 			.setCancelable(false)
@@ -143,7 +143,7 @@ public class GenerateReport extends BaseActivity implements OnClickListener {
 		switch (v.getId()) {
 		case R.id.export_button:
 			if(Environment.getExternalStorageState().equals(Environment.MEDIA_MOUNTED)) {
-				if(mEntryList.size() <= 5000) {
+				if(mEntrySnapshot.size <= 5000) {
 					if(setStartEndDate()) {
 						Log.d("**************Exporting Range****************");
 						Log.d("Start Date "+mStartDay+" "+(mStartMonth+1)+" "+mStartYear);
@@ -203,8 +203,8 @@ public class GenerateReport extends BaseActivity implements OnClickListener {
 	private abstract class Export extends AsyncTask<Void, Void, Void> {
 
 		protected ProgressDialog progressDialog;
-		protected Double totalAmount = 0.0;
-		protected boolean isAmountNotEntered = false;
+		// summed in minor units, unknown once an entry without amount is added
+		protected Amount totalAmount = Amount.ZERO;
 		protected boolean isRecordAdded = false;
 		protected int totalNumberOfRecordsAdded;
 		
@@ -277,35 +277,27 @@ public class GenerateReport extends BaseActivity implements OnClickListener {
 			return (dateRange+"("+Calendar.getInstance().getTimeInMillis()+")").replaceAll(" ", "");
 		}
 		
-		protected boolean isDateValid(Long timeInMillis) {
-			Calendar mCalendar = Calendar.getInstance();
-	 		mCalendar.setTimeInMillis(timeInMillis);
-	 		mCalendar.set(mCalendar.get(Calendar.YEAR), mCalendar.get(Calendar.MONTH), mCalendar.get(Calendar.DAY_OF_MONTH), 0, 0, 0);
-	 		mCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-			Calendar startCalendar = Calendar.getInstance();
-			startCalendar.set(mStartYear, mStartMonth, mStartDay, 0, 0, 0);
-			startCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-			Calendar endCalendar = Calendar.getInstance();
-			endCalendar.set(mEndYear, mEndMonth, mEndDay, 0, 0, 0);
-			endCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-			if(mStartDay == mCalendar.get(Calendar.DAY_OF_MONTH) && mStartMonth == mCalendar.get(Calendar.MONTH) && mStartYear == mCalendar.get(Calendar.YEAR)) {return true;}
-			if(mEndDay == mCalendar.get(Calendar.DAY_OF_MONTH) && mEndMonth == mCalendar.get(Calendar.MONTH) && mEndYear == mCalendar.get(Calendar.YEAR)) {return true;}
-			if(mCalendar.after(startCalendar) && mCalendar.before(endCalendar)) {return true;}
-			return false;
+		// first entry on the start day
+		protected int getFromIndex() {
+			return mEntrySnapshot.indexOf(DateBucketer.getInstance().getStartInMillis(DateBucketer.getDay(mStartYear, mStartMonth, mStartDay)));
 		}
 		
-		protected String getDescriptionIfNotPresent(String type) {
-			if(type.equals(getString(R.string.unknown))) {
-				return getString(R.string.unknown_entry);
-			} else if(type.equals(getString(R.string.text))) {
+		// first entry after the end day
+		protected int getToIndex() {
+			return mEntrySnapshot.indexOf(DateBucketer.getInstance().getStartInMillis(DateBucketer.getDay(mEndYear, mEndMonth, mEndDay) + 1));
+		}
+		
+		protected String getDescriptionIfNotPresent(byte type) {
+			switch (type) {
+			case EntrySnapshot.TYPE_TEXT:
 				return getString(R.string.finished_textentry);
-			} else if(type.equals(getString(R.string.voice))) {
+			case EntrySnapshot.TYPE_VOICE:
 				return getString(R.string.finished_voiceentry);
-			} else if(type.equals(getString(R.string.camera))) {
+			case EntrySnapshot.TYPE_CAMERA:
 				return getString(R.string.finished_cameraentry);
+			default:
+				return getString(R.string.unknown_entry);
 			}
-			
-			return "";
 		}
 	} 
 	
@@ -344,38 +336,33 @@ public class GenerateReport extends BaseActivity implements OnClickListener {
 
 		private void addDataToTable() throws IOException{
 			int srNo = 0;
-			for(int i=0 ; i < mEntryList.size() ; i++) {
-				Entry entry = mEntryList.get(i);
-				if(!isDateValid(entry.timeInMillis)) {continue;}
-				
+			for(int i = getFromIndex(), toIndex = getToIndex(); i < toIndex; i++) {
 				// Adding Serial Number
 				srNo++;
 				writer.write((srNo)+",");
 				// Adding date
-				writer.write(new DisplayDate().getDisplayDateReport(entry.timeInMillis).replaceAll(",", " ")+",");
+				writer.write(new DisplayDate().getDisplayDateReport(mEntrySnapshot.getTimeInMillis(i)).replaceAll(",", " ")+",");
 				
 				// Adding location
-				if(entry.location != null && !entry.location.equals("")) {
-					writer.write(entry.location.replaceAll(",", " ")+",");
+				String location = mEntrySnapshot.getLocation(i);
+				if(location != null) {
+					writer.write(location.replaceAll(",", " ")+",");
 				} else {
 					writer.write(getString(R.string.unknown_location).replaceAll(",", " ")+",");
 				}
 				
 				// Adding description
-				if(entry.description != null && !entry.description.equals("")) {
-					writer.write(entry.description.replaceAll(",", " ")+",");
+				String description = mEntrySnapshot.getDescription(i);
+				if(description != null) {
+					writer.write(description.replaceAll(",", " ")+",");
 				} else {
-					writer.write(getDescriptionIfNotPresent(entry.type).replaceAll(",", " ")+",");
+					writer.write(getDescriptionIfNotPresent(mEntrySnapshot.getType(i)).replaceAll(",", " ")+",");
 				}
 				
 				// Adding Amount
-				if(entry.amount != null && !entry.amount.equals("") && !entry.amount.contains("?")) {
-					totalAmount = totalAmount + Double.parseDouble(entry.amount);
-					writer.write(new StringProcessing().getStringDoubleDecimal(entry.amount).replaceAll(",", " ")+"\n");
-				} else {
-					isAmountNotEntered = true;
-					writer.write("?"+"\n");
-				}
+				Amount amount = mEntrySnapshot.getAmount(i);
+				totalAmount = totalAmount.plus(amount);
+				writer.write(amount.toString().replaceAll(",", " ")+"\n");
 				
 				isRecordAdded = true;
 			}
@@ -397,11 +384,7 @@ public class GenerateReport extends BaseActivity implements OnClickListener {
 			writer.write("Total Amount,");
 			
 			// Adding Amount
-			if(isAmountNotEntered) {
-				writer.write(new StringProcessing().getStringDoubleDecimal(totalAmount+"").replaceAll(",", " ")+" ?\n");
-			} else {
-				writer.write(new StringProcessing().getStringDoubleDecimal(totalAmount+"").replaceAll(",", " ")+"\n");
-			}
+			writer.write(totalAmount.toString().replaceAll(",", " ")+"\n");
 		}
 
 		@Override
@@ -524,9 +507,7 @@ public class GenerateReport extends BaseActivity implements OnClickListener {
 
 		private void addDataToTable(PdfPTable table, Document document) throws DocumentException{
 			int srNo = 0;
-			for(int i=0 ; i < mEntryList.size() ; i++) {
-				Entry entry = mEntryList.get(i);
-				if(!isDateValid(entry.timeInMillis)) {continue;}
+			for(int i = getFromIndex(), toIndex = getToIndex(); i < toIndex; i++) {
 				table.getDefaultCell().setHorizontalAlignment(Element.ALIGN_CENTER);
 				
 				// Adding Serial Number
@@ -535,36 +516,34 @@ public class GenerateReport extends BaseActivity implements OnClickListener {
 				table.getDefaultCell().setHorizontalAlignment(Element.ALIGN_LEFT);
 				
 				// Adding date
-				table.addCell(new DisplayDate().getDisplayDateReport(entry.timeInMillis));
+				table.addCell(new DisplayDate().getDisplayDateReport(mEntrySnapshot.getTimeInMillis(i)));
 				
 				// Adding location
-				if(entry.location != null && !entry.location.equals("")) {
-					table.addCell(entry.location);
+				String location = mEntrySnapshot.getLocation(i);
+				if(location != null) {
+					table.addCell(location);
 				} else {
 					table.addCell(getString(R.string.unknown_location));
 				}
 				
 				// Adding description
-				if(entry.description != null && !entry.description.equals("")) {
-					table.addCell(entry.description);
+				String description = mEntrySnapshot.getDescription(i);
+				if(description != null) {
+					table.addCell(description);
 				} else {
-					table.addCell(getDescriptionIfNotPresent(entry.type));
+					table.addCell(getDescriptionIfNotPresent(mEntrySnapshot.getType(i)));
 				}
 				
 				// Adding Amount
 				table.getDefaultCell().setHorizontalAlignment(Element.ALIGN_RIGHT);
-				if(entry.amount != null && !entry.amount.equals("") && !entry.amount.contains("?")) {
-					totalAmount = totalAmount + Double.parseDouble(entry.amount);
-					table.addCell(new StringProcessing().getStringDoubleDecimal(entry.amount));
-				} else {
-					isAmountNotEntered = true;
-					table.addCell("?");
-				}
+				Amount amount = mEntrySnapshot.getAmount(i);
+				totalAmount = totalAmount.plus(amount);
+				table.addCell(amount.toString());
 				table.getDefaultCell().setHorizontalAlignment(Element.ALIGN_LEFT);
 				
 				isRecordAdded = true;
 				
-				if((i+1) % 500 == 0) {
+				if(srNo % 500 == 0) {
 					document.add(table);
 					table.flushContent();
 				} 
@@ -589,11 +568,7 @@ public class GenerateReport extends BaseActivity implements OnClickListener {
 			table.addCell("Total Amount");
 			
 			// Adding Amount
-			if(isAmountNotEntered) {
-				table.addCell(new StringProcessing().getStringDoubleDecimal(totalAmount+"")+" ?");
-			} else {
-				table.addCell(new StringProcessing().getStringDoubleDecimal(totalAmount+"")+"");
-			}
+			table.addCell(totalAmount.toString());
 		}
 		
 		private void addEmptyLine(Paragraph paragraph, int number) {
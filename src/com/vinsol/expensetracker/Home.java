@@ -28,13 +28,14 @@ import com.vinsol.expensetracker.entry.Voice;
 import com.vinsol.expensetracker.expenselisting.ExpenseListing;
 import com.vinsol.expensetracker.helpers.ConvertCursorToListString;
 import com.vinsol.expensetracker.helpers.DatabaseAdapter;
+import com.vinsol.expensetracker.helpers.DatabaseMigration;
 import com.vinsol.expensetracker.helpers.GraphHelper;
 import com.vinsol.expensetracker.helpers.LocationHelper;
 import com.vinsol.expensetracker.helpers.UnfinishedEntryCount;
 import com.vinsol.expensetracker.models.Entry;
-import com.vinsol.expensetracker.sync.SyncHelper;
+import com.vinsol.expensetracker.sync.SyncScheduler;
 
-public class Home extends BaseActivity implements OnClickListener {
+public class Home extends BaseActivity implements OnClickListener, DatabaseMigration.OnTotalsRebuiltListener {
 	
 	private Bundle bundle;
 	private GraphHelper mHandleGraph;
@@ -82,10 +83,7 @@ public class Home extends BaseActivity implements OnClickListener {
 		graphProgressBar = (ProgressBar) findViewById(R.id.graph_progress_bar);
 		graphProgressBar.setVisibility(View.VISIBLE);
 		
-		if(ExpenseTrackerApplication.toSync) {
-			SyncHelper.syncHelper = new SyncHelper(this);
-        	SyncHelper.syncHelper.execute();
-		}
+		SyncScheduler.syncNow();
 	}
 
 	@Override
@@ -97,12 +95,25 @@ public class Home extends BaseActivity implements OnClickListener {
 		if(location == null) {
 			mLocationHelper.requestLocationUpdate();
 		}
+		DatabaseMigration.addOnTotalsRebuiltListener(this);
+		loadTotals();
+	}
+	
+	// graph and unfinished count are read from the day totals
+	private void loadTotals() {
+		cancelHandleGraphTask();
+		cancelUnfinishedEntryTask();
 		mHandleGraph = new GraphHelper(this,graphProgressBar);
-		unfinishedEntryCount = new UnfinishedEntryCount(mConvertCursorToListString.getEntryList(false,""),null,null,null,((TextView)findViewById(R.id.home_unfinished_entry_count)));
+		unfinishedEntryCount = new UnfinishedEntryCount(null,null,null,((TextView)findViewById(R.id.home_unfinished_entry_count)));
 		unfinishedEntryCount.execute();
 		mHandleGraph.execute();
 	}
 	
+	@Override
+	public void onTotalsRebuilt() {
+		loadTotals();
+	}
+	
 	@Override
 	public void onClick(View clickedView) {
 		boolean isMediaMounted = android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED);
@@ -150,7 +161,7 @@ public class Home extends BaseActivity implements OnClickListener {
 				insertToDatabase(R.string.unknown);
 				Intent intentListView = new Intent(this, ExpenseListing.class);
 				startActivity(intentListView);
-				SyncHelper.startSync();
+				SyncScheduler.requestSync();
 				break;
 			
 			case R.id.home_listview:
@@ -196,6 +207,7 @@ public class Home extends BaseActivity implements OnClickListener {
 	@Override
 	protected void onPause() {
 		super.onPause();
+		DatabaseMigration.removeOnTotalsRebuiltListener(this);
 		cancelHandleGraphTask();
 		cancelUnfinishedEntryTask();
 	}
@@ -19,6 +19,7 @@ import android.text.Html;
 import android.view.Window;
 
 import com.flurry.android.FlurryAgent;
+import com.vinsol.expensetracker.helpers.DatabaseMigration;
 import com.vinsol.expensetracker.helpers.SharedPreferencesHelper;
 import com.vinsol.expensetracker.sync.LoginType;
 import com.vinsol.expensetracker.utils.Strings;
@@ -56,6 +57,14 @@ public class Preferences extends PreferenceActivity {
 			}
 		});
 		
+		findPreference(getString(R.string.pref_key_rebuild_totals)).setOnPreferenceClickListener(new OnPreferenceClickListener() {
+			@Override
+			public boolean onPreferenceClick(Preference preference) {
+				new DatabaseMigration(getApplicationContext(), true).execute();
+				return true;
+			}
+		});
+		
 		final Preference syncSetUpPref = findPreference(getString(R.string.pref_key_set_up_sync));
 		String token = SharedPreferencesHelper.getSharedPreferences().getString(getString(R.string.pref_key_token), null);
 		if(Strings.isEmpty(token)) {
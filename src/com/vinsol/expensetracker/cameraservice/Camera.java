@@ -5,11 +5,7 @@
 
 package com.vinsol.expensetracker.cameraservice;
 
-import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
 import java.util.Collections;
 import java.util.List;
 
@@ -23,13 +19,9 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.res.Resources;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Matrix;
 import android.hardware.Camera.Parameters;
 import android.hardware.Camera.PictureCallback;
 import android.hardware.Camera.Size;
-import android.media.ExifInterface;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -106,6 +98,9 @@ public class Camera extends Activity implements View.OnClickListener, ShutterBut
     private static final int CANNOT_STAT_ERROR = -2;
     
     private Uri mSaveUri;
+    // entry or favorite the picture is taken for, CaptureWriter saves its small image and thumbnail
+    private String mId;
+    private boolean mIsFromFavorite;
 
     private ImageCapture mImageCapture = null;
 
@@ -555,25 +550,6 @@ public class Camera extends Activity implements View.OnClickListener, ShutterBut
         }
     }
 
-    private Bitmap makeBitmap(byte[] jpegData) {
-        try {
-        	if(jpegData != null && jpegData.length > 0) {
-            BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inJustDecodeBounds = true;
-            BitmapFactory.decodeByteArray(jpegData, 0, jpegData.length, options);
-            if (options.mCancel || options.outWidth == -1 || options.outHeight == -1) {return null;}
-            options.inJustDecodeBounds = false;
-            options.inDither = false;
-            options.inPurgeable = true;
-            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
-            return BitmapFactory.decodeByteArray(jpegData, 0, jpegData.length, options);
-        	}
-        } catch (OutOfMemoryError ex) {
-        	ex.printStackTrace();
-        }
-        return null;
-    }
-    
     private void doAttach() {
     	if (mPausing) {
             return;
@@ -581,46 +557,24 @@ public class Camera extends Activity implements View.OnClickListener, ShutterBut
 
         byte[] data = mImageCapture.getLastCaptureData();
         if(mSaveUri != null && data != null) {
-        	Bitmap bitmap = createCaptureBitmap(data);
-		    OutputStream outputStream = null;
-		    try {
-		        outputStream = mContentResolver.openOutputStream(mSaveUri);
-		        if(bitmap != null) {
-			        bitmap.compress(Bitmap.CompressFormat.JPEG, 70, outputStream);
-			        outputStream.close();
-			        bitmap.recycle();
-			        setResult(RESULT_OK);
-		        }
-		    } catch (IOException ex) {
-		    	ex.printStackTrace();
-		    } finally {
-		        closeSilently(outputStream);
-		    }
+        	// decoding, turning upright and writing the picture happen on CaptureWriter's thread
+        	CaptureWriter.Capture capture = new CaptureWriter.Capture();
+        	capture.jpegData = data;
+        	capture.file = new File(mSaveUri.getPath());
+        	capture.displayRotation = getDisplayRotation();
+        	capture.id = mId;
+        	capture.isFromFavorite = mIsFromFavorite;
+        	capture.captureStartTime = mCaptureStartTime;
+        	capture.shutterCallbackTime = mShutterCallbackTime;
+        	capture.jpegCallbackTime = mJpegPictureCallbackTime;
+        	CaptureWriter.instance().submit(capture);
+        	mImageCapture.clearLastData();
+	        setResult(RESULT_OK);
         } else {
         	setResult(RESULT_CANCELED);
         }
     }
         
-    private Bitmap rotate(Bitmap b, int degrees) {
-        if (degrees != 0 && b != null) {
-            Matrix m = new Matrix();
-            if (degrees != 0) {
-                m.postRotate(degrees, (float) b.getWidth() / 2, (float) b.getHeight() / 2);
-            }
-
-            try {
-                Bitmap b2 = Bitmap.createBitmap( b, 0, 0, b.getWidth(), b.getHeight(), m, true);
-                if (b != b2) {
-                    b.recycle();
-                    b = b2;
-                }
-            } catch (OutOfMemoryError ex) {
-                // We have no memory to rotate. Return the original bitmap.
-            }
-        }
-        return b;
-    }
-    
     private int getDisplayRotation() {
         int rotation = getWindowManager().getDefaultDisplay().getRotation();
         switch (rotation) {
@@ -632,69 +586,6 @@ public class Camera extends Activity implements View.OnClickListener, ShutterBut
         return 0;
     }
     
-    private boolean saveDataToFile(String filePath, byte[] data) {
-        FileOutputStream f = null;
-        try {
-            f = new FileOutputStream(filePath);
-            f.write(data);
-        } catch (IOException e) {
-            return false;
-        } finally {
-        	closeSilently(f);
-        }
-        return true;
-    }
-    
-    private int getExifOrientation(String filepath) {
-        int degree = 0;
-        ExifInterface exif = null;
-        try {
-            exif = new ExifInterface(filepath);
-        } catch (IOException ex) {
-        	ex.printStackTrace();
-        }
-        if (exif != null) {
-            int orientation = exif.getAttributeInt(
-                ExifInterface.TAG_ORIENTATION, -1);
-            if (orientation != -1) {
-                // We only recognize a subset of orientation tag values.
-                switch(orientation) {
-                    case ExifInterface.ORIENTATION_ROTATE_90:
-                        degree = 90;
-                        break;
-                    case ExifInterface.ORIENTATION_ROTATE_180:
-                        degree = 180;
-                        break;
-                    case ExifInterface.ORIENTATION_ROTATE_270:
-                        degree = 270;
-                        break;
-                }
-            }
-        }
-        return degree;
-    }
-    
-    private Bitmap createCaptureBitmap(byte[] data) {
-        String filepath = mSaveUri.getPath();
-        int degree = 0;
-        if (saveDataToFile(filepath, data)) {
-            degree = getExifOrientation(filepath);
-            new File(filepath).delete();
-        }
-        Bitmap bitmap = makeBitmap(data);
-        bitmap = rotate(bitmap, degree + getDisplayRotation());
-        return bitmap;
-    }
-    
-    private void closeSilently(Closeable c) {
-        if (c == null) return;
-        try {
-            c.close();
-        } catch (Throwable t) {
-            // do nothing
-        }
-    }
-    
     private void doCancel() {
         setResult(RESULT_CANCELED, new Intent());
         finish();
@@ -1235,6 +1126,8 @@ public class Camera extends Activity implements View.OnClickListener, ShutterBut
     	Bundle extras = getIntent().getExtras();
     	if(extras.containsKey(Constants.KEY_FULL_SIZE_IMAGE_PATH)) {
     		mSaveUri = Uri.fromFile(new File(extras.getString(Constants.KEY_FULL_SIZE_IMAGE_PATH)));
+    		mId = extras.getString(Constants.KEY_ID);
+    		mIsFromFavorite = extras.getBoolean(Constants.KEY_IS_COMING_FROM_FAVORITE);
     	} else {
     		Toast.makeText(getApplicationContext(), getString(R.string.camera_error_title), Toast.LENGTH_LONG).show();
     		finish();
@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+package com.vinsol.expensetracker.cameraservice;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+
+import com.vinsol.expensetracker.ExpenseTrackerApplication;
+import com.vinsol.expensetracker.helpers.CameraFileSave;
+import com.vinsol.expensetracker.utils.Log;
+
+/**
+ * Saves pictures taken by Camera on one background thread, so Camera shows its buttons, retakes or
+ * closes as soon as the JPEG arrives instead of after decoding, rotating and encoding it. A job writes
+ * the picture turned upright and then the small image and thumbnail of the entry or favorite. Jobs run
+ * in the order they were taken, a retake to the same file lands after the picture it replaces.
+ * CameraEntry waits for the file with await() before showing it.
+ */
+public class CaptureWriter {
+
+    private static final int JPEG_QUALITY = 70;
+
+    // Use a singleton.
+    private static CaptureWriter sWriter;
+    public static synchronized CaptureWriter instance() {
+        if (sWriter == null) {
+            sWriter = new CaptureWriter();
+        }
+        return sWriter;
+    }
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    // last job of every file path, until await() takes it
+    private final Map<String, Future<Boolean>> mJobs = new HashMap<String, Future<Boolean>>();
+    // used on the writer thread only, keeps its buffers from one picture to the next
+    private CameraFileSave mCameraFileSave;
+
+    // One picture and the times, System.currentTimeMillis(), it went through in Camera
+    static class Capture {
+        byte[] jpegData;
+        File file;
+        // of the display when the picture was taken, added to the EXIF orientation
+        int displayRotation;
+        // entry or favorite the picture belongs to, null to skip the small image and thumbnail
+        String id;
+        boolean isFromFavorite;
+        long captureStartTime;
+        long shutterCallbackTime;
+        long jpegCallbackTime;
+        long submitTime;
+    }
+
+    private CaptureWriter() {}
+
+    void submit(final Capture capture) {
+        capture.submitTime = System.currentTimeMillis();
+        Future<Boolean> job = mExecutor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return save(capture);
+            }
+        });
+        synchronized (this) {
+            mJobs.put(capture.file.getPath(), job);
+        }
+    }
+
+    /**
+     * Blocks until the last picture taken to file is saved, true if its small image and thumbnail were
+     * saved too. False when no picture was taken to file since the last call
+     */
+    public boolean await(File file) {
+        Future<Boolean> job;
+        synchronized (this) {
+            job = mJobs.remove(file.getPath());
+        }
+        if (job == null) {
+            return false;
+        }
+        try {
+            return job.get();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    private boolean save(Capture capture) {
+        long startTime = System.currentTimeMillis();
+        boolean isSaved = write(capture);
+        // the picture is on disk, do not hold on to it while the thumbnails are made
+        capture.jpegData = null;
+        long writtenTime = System.currentTimeMillis();
+        boolean isThumbnailSaved = false;
+        if (isSaved && capture.id != null) {
+            if (mCameraFileSave == null) {
+                mCameraFileSave = new CameraFileSave(ExpenseTrackerApplication.getContext());
+            }
+            mCameraFileSave.resizeImageAndSaveThumbnails(capture.id, capture.isFromFavorite);
+            isThumbnailSaved = true;
+        }
+        long doneTime = System.currentTimeMillis();
+        Log.d("****** Saved " + capture.file.getName() + ": shutter lag " + (capture.shutterCallbackTime - capture.captureStartTime)
+                + " ms, shutter to jpeg " + (capture.jpegCallbackTime - capture.shutterCallbackTime)
+                + " ms, jpeg to queue " + (capture.submitTime - capture.jpegCallbackTime)
+                + " ms, queued " + (startTime - capture.submitTime)
+                + " ms, write " + (writtenTime - startTime)
+                + " ms, thumbnails " + (doneTime - writtenTime)
+                + " ms, shutter to saved " + (doneTime - capture.captureStartTime) + " ms ******");
+        return isThumbnailSaved;
+    }
+
+    // The JPEG as taken is written first, ExifInterface only reads files, then replaced by the picture turned upright
+    private boolean write(Capture capture) {
+        String filepath = capture.file.getPath();
+        if (!saveDataToFile(filepath, capture.jpegData)) {
+            return false;
+        }
+        int degree = getExifOrientation(filepath) + capture.displayRotation;
+        Bitmap bitmap = rotate(makeBitmap(capture.jpegData), degree);
+        if (bitmap == null) {
+            // keep the picture as taken
+            return true;
+        }
+        FileOutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(filepath);
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, outputStream);
+            return true;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return false;
+        } finally {
+            closeSilently(outputStream);
+            bitmap.recycle();
+        }
+    }
+
+    private Bitmap makeBitmap(byte[] jpegData) {
+        try {
+            if (jpegData != null && jpegData.length > 0) {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                BitmapFactory.decodeByteArray(jpegData, 0, jpegData.length, options);
+                if (options.mCancel || options.outWidth == -1 || options.outHeight == -1) {return null;}
+                options.inJustDecodeBounds = false;
+                options.inDither = false;
+                options.inPurgeable = true;
+                options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+                return BitmapFactory.decodeByteArray(jpegData, 0, jpegData.length, options);
+            }
+        } catch (OutOfMemoryError ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    private Bitmap rotate(Bitmap b, int degrees) {
+        if (degrees % 360 != 0 && b != null) {
+            Matrix m = new Matrix();
+            m.postRotate(degrees, (float) b.getWidth() / 2, (float) b.getHeight() / 2);
+            try {
+                Bitmap b2 = Bitmap.createBitmap( b, 0, 0, b.getWidth(), b.getHeight(), m, true);
+                if (b != b2) {
+                    b.recycle();
+                    b = b2;
+                }
+            } catch (OutOfMemoryError ex) {
+                // We have no memory to rotate. Return the original bitmap.
+            }
+        }
+        return b;
+    }
+
+    private boolean saveDataToFile(String filePath, byte[] data) {
+        FileOutputStream f = null;
+        try {
+            f = new FileOutputStream(filePath);
+            f.write(data);
+        } catch (IOException e) {
+            return false;
+        } finally {
+            closeSilently(f);
+        }
+        return true;
+    }
+
+    private int getExifOrientation(String filepath) {
+        int degree = 0;
+        ExifInterface exif = null;
+        try {
+            exif = new ExifInterface(filepath);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        if (exif != null) {
+            int orientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, -1);
+            if (orientation != -1) {
+                // We only recognize a subset of orientation tag values.
+                switch(orientation) {
+                    case ExifInterface.ORIENTATION_ROTATE_90:
+                        degree = 90;
+                        break;
+                    case ExifInterface.ORIENTATION_ROTATE_180:
+                        degree = 180;
+                        break;
+                    case ExifInterface.ORIENTATION_ROTATE_270:
+                        degree = 270;
+                        break;
+                }
+            }
+        }
+        return degree;
+    }
+
+    private void closeSilently(Closeable c) {
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (Throwable t) {
+            // do nothing
+        }
+    }
+
+}
@@ -26,7 +26,9 @@ import android.widget.Toast;
 import com.vinsol.expensetracker.Constants;
 import com.vinsol.expensetracker.R;
 import com.vinsol.expensetracker.cameraservice.Camera;
+import com.vinsol.expensetracker.cameraservice.CaptureWriter;
 import com.vinsol.expensetracker.helpers.CameraFileSave;
+import com.vinsol.expensetracker.helpers.CheckEntryComplete;
 import com.vinsol.expensetracker.helpers.DatabaseAdapter;
 import com.vinsol.expensetracker.utils.ImagePreview;
 import com.vinsol.expensetracker.utils.Log;
@@ -109,13 +111,19 @@ public class CameraEntry extends EditAbstract {
 		if (android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED)) {
 			Intent camera = new Intent(this, Camera.class);
 			File file;
+			// the picture and its thumbnails are written to the own files, never to ones shared
 			if(isFromFavorite) {
+				fileHelper.detachAllFavoriteFiles(mFavoriteList.id);
 				file = fileHelper.getCameraFileLargeFavorite(mFavoriteList.id);
+				camera.putExtra(Constants.KEY_ID, mFavoriteList.id);
 			} else {
+				fileHelper.detachAllEntryFiles(entry.id);
 				file = fileHelper.getCameraFileLargeEntry(entry.id);
+				camera.putExtra(Constants.KEY_ID, entry.id);
 			}
 			Log.d("camera file path +++++++++++++++++ "+file.toString() );
 			camera.putExtra(Constants.KEY_FULL_SIZE_IMAGE_PATH, file.toString());
+			camera.putExtra(Constants.KEY_IS_COMING_FROM_FAVORITE, isFromFavorite);
 			startActivityForResult(camera, PICTURE_RESULT);
 		} else {
 			Toast.makeText(this, "sdcard not available", Toast.LENGTH_LONG).show();
@@ -178,12 +186,21 @@ public class CameraEntry extends EditAbstract {
 		@Override
 		protected Void doInBackground(Void... params) {
 			String id;
+			File largeFile;
 			if(isFromFavorite) {
 				id = mFavoriteList.id;
+				largeFile = fileHelper.getCameraFileLargeFavorite(id);
 			} else {
 				id = entry.id;
+				largeFile = fileHelper.getCameraFileLargeEntry(id);
+			}
+			// Camera hands the picture to CaptureWriter, which saves the small image and thumbnail as well
+			if(!CaptureWriter.instance().await(largeFile)) {
+				new CameraFileSave(CameraEntry.this).resizeImageAndSaveThumbnails(id + "",isFromFavorite);
+			}
+			if(!isFromFavorite) {
+				new CheckEntryComplete().updateFilesPresent(CameraEntry.this, id);
 			}
-			new CameraFileSave(CameraEntry.this).resizeImageAndSaveThumbnails(id + "",isFromFavorite);
 			return null;
 		}
 
@@ -198,7 +215,11 @@ public class CameraEntry extends EditAbstract {
 				mFile = fileHelper.getCameraFileSmallEntry(entry.id);
 			}
 			bitmap = BitmapFactory.decodeFile(mFile.getPath());
-			setImageResource();
+			if(bitmap != null) {
+				setImageResource();
+			} else {
+				editImageDisplay.setImageResource(R.drawable.no_image_small);
+			}
 			editDelete.setEnabled(true);
 			editSaveEntry.setEnabled(true);
 			super.onPostExecute(result);
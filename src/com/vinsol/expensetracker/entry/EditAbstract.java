@@ -45,7 +45,7 @@ import com.vinsol.expensetracker.helpers.SharedPreferencesHelper;
 import com.vinsol.expensetracker.helpers.StringProcessing;
 import com.vinsol.expensetracker.models.Entry;
 import com.vinsol.expensetracker.models.Favorite;
-import com.vinsol.expensetracker.sync.SyncHelper;
+import com.vinsol.expensetracker.sync.SyncScheduler;
 import com.vinsol.expensetracker.utils.Strings;
 
 abstract class EditAbstract extends BaseActivity implements OnClickListener {
@@ -424,7 +424,7 @@ abstract class EditAbstract extends BaseActivity implements OnClickListener {
 			mToHighLight.putString(Constants.KEY_HIGHLIGHT, toSave.id);
 			if(toSave.timeInMillis != null) {mToHighLight.putLong(Constants.KEY_TIME_IN_MILLIS_TO_SET_TAB, toSave.timeInMillis); }
 			intentExpenseListing.putExtras(mToHighLight);
-			SyncHelper.startSync();
+			SyncScheduler.requestSync();
 			if(!intentExtras.containsKey(Constants.KEY_POSITION)) {
 				startActivity(intentExpenseListing);
 			} else {
@@ -444,7 +444,7 @@ abstract class EditAbstract extends BaseActivity implements OnClickListener {
 			Intent mIntent = new Intent();
 			mIntent.putExtras(tempBundle);
 			setResult(Activity.RESULT_OK, mIntent);
-			SyncHelper.startSync();
+			SyncScheduler.requestSync();
 		}
 		
 		finish();
@@ -458,7 +458,7 @@ abstract class EditAbstract extends BaseActivity implements OnClickListener {
 			mDatabaseAdapter.open();
 			mDatabaseAdapter.editFavoriteEntryById(toSaveFav);
 			mDatabaseAdapter.close();
-			SyncHelper.startSync();
+			SyncScheduler.requestSync();
 			Bundle bundle = new Bundle();
 			bundle.putParcelable(Constants.KEY_ENTRY_LIST_EXTRA, getFavoriteListOnResult(toSaveFav));
 			setActivityResult(bundle);
@@ -608,7 +608,7 @@ abstract class EditAbstract extends BaseActivity implements OnClickListener {
 			intent.putExtras(tempBundle);
 			setResult(Activity.RESULT_CANCELED, intent);
 		}
-		SyncHelper.startSync();
+		SyncScheduler.requestSync();
 
 		finish();
 	}
@@ -636,7 +636,7 @@ abstract class EditAbstract extends BaseActivity implements OnClickListener {
 		}
 		intent.putExtras(bundle);
 		setResult(Activity.RESULT_CANCELED,intent);
-		SyncHelper.startSync();
+		SyncScheduler.requestSync();
 		finish();
 	}
 
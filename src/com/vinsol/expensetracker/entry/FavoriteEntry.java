@@ -15,8 +15,6 @@ import java.util.regex.Pattern;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import android.text.Editable;
 import android.text.TextWatcher;
@@ -54,10 +52,10 @@ import com.vinsol.expensetracker.helpers.DateHandler;
 import com.vinsol.expensetracker.helpers.DateHelper;
 import com.vinsol.expensetracker.helpers.FileHelper;
 import com.vinsol.expensetracker.helpers.LocationHelper;
-import com.vinsol.expensetracker.helpers.StringProcessing;
+import com.vinsol.expensetracker.helpers.ThumbnailCache;
 import com.vinsol.expensetracker.models.Entry;
 import com.vinsol.expensetracker.models.Favorite;
-import com.vinsol.expensetracker.sync.SyncHelper;
+import com.vinsol.expensetracker.sync.SyncScheduler;
 import com.vinsol.expensetracker.utils.ImagePreview;
 
 public class FavoriteEntry extends BaseActivity implements OnItemClickListener {
@@ -217,7 +215,7 @@ public class FavoriteEntry extends BaseActivity implements OnItemClickListener {
   	    case 1:
   	    	FlurryAgent.onEvent("Favorite "+getString(R.string.deleting_using_context_menu));
   	    	removeItem(info.position);
-  	    	SyncHelper.startSync();
+  	    	SyncScheduler.requestSync();
   	    	break;
   	    	
 		default:
@@ -349,11 +347,13 @@ public class FavoriteEntry extends BaseActivity implements OnItemClickListener {
 		
 		private LayoutInflater mInflater;
 		private List<Favorite> mList;
+		private ThumbnailCache mThumbnailCache;
 		
 		private MyAdapter(Context context, int resource,List<Favorite> list) {
 			super(context, resource,list);
 			mInflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
 			mList = list;
+			mThumbnailCache = ThumbnailCache.getInstance();
 		}
 		
 		@Override
@@ -372,19 +372,15 @@ public class FavoriteEntry extends BaseActivity implements OnItemClickListener {
 				viewHolder = (ViewHolder) convertView.getTag();
 			}
 			
-			if(viewHolder.rowImageViewBitmap != null) {viewHolder.rowImageViewBitmap.recycle();}
-			
+			// a decode still running for the favorite this row showed before must not land on it
+			mThumbnailCache.cancel(viewHolder.rowImageview);
 			viewHolder.rowImageview.setScaleType(ScaleType.CENTER_INSIDE);
 			Favorite tempFavorite= mList.get(position);
 			viewHolder.rowImageview.setFocusable(false);
 			viewHolder.rowImageview.setOnClickListener(new MyClickListener(tempFavorite));
 			viewHolder.rowFavoriteIcon.setVisibility(View.INVISIBLE);
 			
-			if(tempFavorite.amount != null && !tempFavorite.amount.equals("")) {
-				viewHolder.rowAmount.setText(new StringProcessing().getStringDoubleDecimal(tempFavorite.amount));
-			} else {
-				viewHolder.rowAmount.setText("?");
-			}
+			viewHolder.rowAmount.setText(tempFavorite.getAmount().toString());
 			if(tempFavorite.location != null && !tempFavorite.location.equals("")) {
 				viewHolder.rowLocationTime.setText(tempFavorite.location);
 			} else {
@@ -424,9 +420,7 @@ public class FavoriteEntry extends BaseActivity implements OnItemClickListener {
 						File mFileSmall = fileHelper.getCameraFileSmallFavorite(tempFavorite.id);
 						File mFile = fileHelper.getCameraFileLargeFavorite(tempFavorite.id);
 						if (mFile.canRead() && mFileSmall.canRead() && mFileThumbnail.canRead()) {
-							viewHolder.rowImageViewBitmap = BitmapFactory.decodeFile(mFileThumbnail.getPath());
-							viewHolder.rowImageview.setScaleType(ScaleType.FIT_CENTER);
-							viewHolder.rowImageview.setImageBitmap(viewHolder.rowImageViewBitmap);
+							mThumbnailCache.load(viewHolder.rowImageview, mFileThumbnail, R.drawable.no_image_thumbnail);
 						} else {
 							viewHolder.rowImageview.setScaleType(ScaleType.CENTER_INSIDE);
 							viewHolder.rowImageview.setImageResource(R.drawable.no_image_thumbnail);
@@ -466,7 +460,6 @@ public class FavoriteEntry extends BaseActivity implements OnItemClickListener {
 		ImageView rowImageview;
 		ImageView rowFavoriteIcon;
 		TextView rowLocationTime;
-		Bitmap rowImageViewBitmap;
 	}
 	
 	private void handleUI() {
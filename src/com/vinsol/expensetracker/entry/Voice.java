@@ -25,6 +25,7 @@ import com.flurry.android.FlurryAgent;
 import com.vinsol.expensetracker.Constants;
 import com.vinsol.expensetracker.R;
 import com.vinsol.expensetracker.helpers.AudioPlay;
+import com.vinsol.expensetracker.helpers.CheckEntryComplete;
 import com.vinsol.expensetracker.helpers.RecordingHelper;
 import com.vinsol.expensetracker.utils.DisplayTimeForChronometer;
 import com.vinsol.expensetracker.utils.MyCountDownTimer;
@@ -190,9 +191,11 @@ public class Voice extends EditAbstract {
 			File mPath;
 			mDatabaseAdapter.open();
 			if(isFromFavorite) {
+				fileHelper.detachAllFavoriteFiles(mFavoriteList.id);
 				mPath = fileHelper.getAudioFileFavorite(mFavoriteList.id);
 				mDatabaseAdapter.updateFileUploadedFavoriteTable(mFavoriteList.id);
 			} else {
+				fileHelper.detachAllEntryFiles(entry.id);
 				mPath = fileHelper.getAudioFileEntry(entry.id);
 				mDatabaseAdapter.updateFileUploadedEntryTable(entry.id);
 			}
@@ -256,6 +259,7 @@ public class Voice extends EditAbstract {
 		if(mRecordingHelper != null && mRecordingHelper.isRecording()) {
 			if(editTimeDetailsChronometer != null) {editTimeDetailsChronometer.stop();}
 			mRecordingHelper.stopRecording();
+			onRecordingStopped();
 		}
 		if(mAudioPlay != null && mAudioPlay.isAudioPlaying()) {
 			if(editTimeDetailsChronometer != null) {editTimeDetailsChronometer.stop();}
@@ -269,6 +273,12 @@ public class Voice extends EditAbstract {
 		}
 	}
 	
+	private void onRecordingStopped() {
+		if(!isFromFavorite) {
+			new CheckEntryComplete().updateFilesPresent(this, entry.id);
+		}
+	}
+	
 	private void stopRecording(boolean isComingFromViewClick) {
 		if(countDownTimer != null){countDownTimer.cancel();}
 
@@ -278,7 +288,10 @@ public class Voice extends EditAbstract {
 		editRerecordButton.setVisibility(View.VISIBLE);
 
 		// //// ******* Stop Recording Audio and stop chronometer ******** ////////
-		if(mRecordingHelper != null && mRecordingHelper.isRecording()) {mRecordingHelper.stopRecording();}
+		if(mRecordingHelper != null && mRecordingHelper.isRecording()) {
+			mRecordingHelper.stopRecording();
+			onRecordingStopped();
+		}
 		editTimeDetailsChronometer.stop();
 		
 		if(mAudioPlay != null && mAudioPlay.isAudioPlaying()) {mAudioPlay.stopPlayBack();}
@@ -20,6 +20,11 @@ public class All extends TabLayoutListingAbstract {
 		type = R.string.sublist_all;
 	}
 
+	@Override
+	protected Long getStartTimeInMillis() {
+		return null;
+	}
+
 	@Override
 	protected void setModifiedValues() {
 		isModifiedThisYear = false;
@@ -32,7 +37,7 @@ public class All extends TabLayoutListingAbstract {
 	protected void onResume() {
 		super.onResume();
 		if(!isModifiedAll) {
-			initListView();
+			refreshSections();
 		}
 	}
 	
@@ -70,7 +70,7 @@ public class ExpenseListing extends TabActivity implements OnClickListener{
 	public static void resetUnfinishedEntryCount() {
 		if(unfinishedEntryCountAll != null && unfinishedEntryCountThisMonth != null && unfinishedEntryCountThisMonth != null && unfinishedEntryCountThisYear != null) {
 			cancelUnfinishedEntryTask();
-			unfinishedEntryCount = new UnfinishedEntryCount(mConvertCursorToListString.getEntryList(false,""), unfinishedEntryCountThisWeek, unfinishedEntryCountThisMonth, unfinishedEntryCountThisYear, unfinishedEntryCountAll);
+			unfinishedEntryCount = new UnfinishedEntryCount(unfinishedEntryCountThisWeek, unfinishedEntryCountThisMonth, unfinishedEntryCountThisYear, unfinishedEntryCountAll);
 			unfinishedEntryCount.execute();
 		}
 	}
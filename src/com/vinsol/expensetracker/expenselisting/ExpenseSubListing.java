@@ -7,6 +7,7 @@
 package com.vinsol.expensetracker.expenselisting;
 
 import java.util.Calendar;
+import java.util.List;
 
 import android.app.Activity;
 import android.content.Intent;
@@ -20,7 +21,7 @@ import android.widget.TextView;
 import com.vinsol.expensetracker.Constants;
 import com.vinsol.expensetracker.R;
 import com.vinsol.expensetracker.helpers.DisplayDate;
-import com.vinsol.expensetracker.models.Entry;
+import com.vinsol.expensetracker.models.ListDatetimeAmount;
 import com.vinsol.expensetracker.utils.Log;
 
 public class ExpenseSubListing extends ListingAbstract {
@@ -33,10 +34,8 @@ public class ExpenseSubListing extends ListingAbstract {
 	
 	@Override
 	protected void initListView() {
-		mSeparatedListAdapter = new SeparatedListAdapter(this,highlightID);
 		intentExtras = getIntent().getExtras();
 		ImageView listButton = (ImageView) findViewById(R.id.home_listview);
-		TextView listingHeader = (TextView) findViewById(R.id.home_header_title);
 		listButton.setOnClickListener(new OnClickListener() {
 			@Override
 			public void onClick(View v) {
@@ -45,12 +44,18 @@ public class ExpenseSubListing extends ListingAbstract {
 				startActivity(intent);
 			}
 		});
-		Entry entry = intentExtras.getParcelable(Constants.KEY_ENTRY_LIST_EXTRA);
-		mDataDateList = mConvertCursorToListString.getDateListString(false, false, entry.id, type);
-		mSubList = mConvertCursorToListString.getEntryList(false, entry.id);
-		if(mSubList.size() > 0) {
+		Long fromTimeInMillis = intentExtras.getLong(Constants.KEY_FROM_TIME_IN_MILLIS);
+		Long toTimeInMillis = intentExtras.getLong(Constants.KEY_TO_TIME_IN_MILLIS);
+		loadSections(fromTimeInMillis, toTimeInMillis);
+	}
+	
+	@Override
+	protected void onSectionsLoaded() {
+		List<ListDatetimeAmount> dataDateList = mSeparatedListAdapter.getDataDateList();
+		if(dataDateList.size() > 0) {
+			TextView listingHeader = (TextView) findViewById(R.id.home_header_title);
 			Calendar mTempCalendar = Calendar.getInstance();
-			mTempCalendar.setTimeInMillis(mSubList.get(0).timeInMillis);
+			mTempCalendar.setTimeInMillis(dataDateList.get(0).timeInMillis);
 			mTempCalendar.set(mTempCalendar.get(Calendar.YEAR),mTempCalendar.get(Calendar.MONTH),mTempCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
 			mTempCalendar.setFirstDayOfWeek(Calendar.MONDAY);
 			
@@ -58,10 +63,8 @@ public class ExpenseSubListing extends ListingAbstract {
 			Log.d("getSubListHeaderType "+getSubListHeaderType());
 			Log.d("mTempCalendar "+mTempCalendar);
 			listingHeader.setText(new DisplayDate(mTempCalendar).getHeaderFooterListDisplayDate(getSubListHeaderType()));
-			addSections();
-		} else {
-			finish();
 		}
+		super.onSectionsLoaded();
 	}
 	
 	private int getSubListHeaderType() {
@@ -79,7 +82,7 @@ public class ExpenseSubListing extends ListingAbstract {
 	
 	@Override
 	protected void unknownDialogAction(String id) {
-		initListView();
+		refreshSections();
 	}
 	
 	@Override
@@ -7,11 +7,13 @@
 package com.vinsol.expensetracker.expenselisting;
 
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import android.app.Activity;
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.ContextMenu;
 import android.view.ContextMenu.ContextMenuInfo;
@@ -22,7 +24,6 @@ import android.view.View.OnClickListener;
 import android.widget.AdapterView;
 import android.widget.AdapterView.AdapterContextMenuInfo;
 import android.widget.AdapterView.OnItemClickListener;
-import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.ListView;
 import android.widget.Toast;
@@ -38,28 +39,34 @@ import com.vinsol.expensetracker.expenselisting.dialog.UnknownEntryDialog;
 import com.vinsol.expensetracker.helpers.CheckEntryComplete;
 import com.vinsol.expensetracker.helpers.ConvertCursorToListString;
 import com.vinsol.expensetracker.helpers.DatabaseAdapter;
-import com.vinsol.expensetracker.helpers.DateHelper;
+import com.vinsol.expensetracker.helpers.DatabaseMigration;
+import com.vinsol.expensetracker.helpers.DateBucketer;
 import com.vinsol.expensetracker.helpers.DisplayDate;
-import com.vinsol.expensetracker.helpers.StringProcessing;
+import com.vinsol.expensetracker.helpers.EntryPager;
+import com.vinsol.expensetracker.helpers.ThumbnailCache;
 import com.vinsol.expensetracker.models.Entry;
 import com.vinsol.expensetracker.models.ListDatetimeAmount;
 import com.vinsol.expensetracker.show.ShowCamera;
 import com.vinsol.expensetracker.show.ShowText;
 import com.vinsol.expensetracker.show.ShowVoice;
-import com.vinsol.expensetracker.sync.SyncHelper;
-import com.vinsol.expensetracker.utils.GetArrayListFromString;
+import com.vinsol.expensetracker.sync.SyncScheduler;
 import com.vinsol.expensetracker.utils.Log;
 import com.vinsol.expensetracker.utils.Strings;
 
-abstract class ListingAbstract extends BaseActivity implements OnItemClickListener {
+abstract class ListingAbstract extends BaseActivity implements OnItemClickListener, DatabaseMigration.OnTotalsRebuiltListener {
 
-	protected List<ListDatetimeAmount> mDataDateList;
 	protected SeparatedListAdapter mSeparatedListAdapter;
-	protected List<Entry> mSubList;
 	protected ConvertCursorToListString mConvertCursorToListString;
-	protected StringProcessing mStringProcessing;
+	private EntryPager mEntryPager;
+	private SectionLoader mSectionLoader;
+	private Long mFromTimeInMillis;
+	private Long mToTimeInMillis;
+	// DateBucketer keys of headers holding entries changed since the sections shown were read, null when not known
+	private Set<Integer> mChangedKeys = new HashSet<Integer>();
 	protected ListView mListView;
 	protected String highlightID = null;
+	// DATE_TIME of the highlighted entry, read once to find the subtotal row holding it
+	private Long highlightTimeInMillis = null;
 	protected UnknownEntryDialog unknownDialog;
 	private static final int RESULT = 35;
 	protected Bundle intentExtras;
@@ -89,7 +96,6 @@ abstract class ListingAbstract extends BaseActivity implements OnItemClickListen
 		setContentView();
 		intentExtras = new Bundle();
 		mConvertCursorToListString = new ConvertCursorToListString(this);
-		mStringProcessing = new StringProcessing();
 		mDatabaseAdapter = new DatabaseAdapter(this);
 		Bundle intentExtras = getIntent().getExtras();
 		if(intentExtras != null && intentExtras.containsKey(Constants.KEY_HIGHLIGHT)) {
@@ -102,91 +108,89 @@ abstract class ListingAbstract extends BaseActivity implements OnItemClickListen
 		return 0;
 	}
 
-	protected Entry getListCurrentWeek(int j) {
+	protected Entry getListCurrentWeek(Entry entry) {
 		Entry templist = new Entry();
-		templist.id = mSubList.get(j).id;
-		templist.deleted = mSubList.get(j).deleted;
-		templist.myHash = mSubList.get(j).myHash;
-		templist.fileToDownload = mSubList.get(j).fileToDownload;
-		templist.fileUploaded = mSubList.get(j).fileUploaded;
-		templist.timeInMillis = mSubList.get(j).timeInMillis;
+		templist.id = entry.id;
+		templist.deleted = entry.deleted;
+		templist.myHash = entry.myHash;
+		templist.fileToDownload = entry.fileToDownload;
+		templist.fileUploaded = entry.fileUploaded;
+		templist.timeInMillis = entry.timeInMillis;
 		
 		
-		if (mSubList.get(j).description != null && !mSubList.get(j).description.equals("")) {
-			templist.description = mSubList.get(j).description;
+		if (entry.description != null && !entry.description.equals("")) {
+			templist.description = entry.description;
 		} else {
 			CheckEntryComplete mCheckEntryComplete = new CheckEntryComplete();
-			if (mSubList.get(j).type.equals(getString(R.string.camera))) { 
-				if(mCheckEntryComplete.isEntryComplete(mSubList.get(j),this)) {
+			if (entry.type.equals(getString(R.string.camera))) { 
+				if(mCheckEntryComplete.isEntryComplete(entry,this)) {
 					templist.description = getString(R.string.finished_cameraentry);
 				} else {
 					templist.description = getString(R.string.unfinished_cameraentry);
 				}
-			} else if (mSubList.get(j).type.equals(getString(R.string.voice))) {
-				if(mCheckEntryComplete.isEntryComplete(mSubList.get(j),this)) {
+			} else if (entry.type.equals(getString(R.string.voice))) {
+				if(mCheckEntryComplete.isEntryComplete(entry,this)) {
 					templist.description = getString(R.string.finished_voiceentry);
 				} else {
 					templist.description = getString(R.string.unfinished_voiceentry);
 				}
-			} else if (mSubList.get(j).type.equals(getString(R.string.text))) {
-				if(mCheckEntryComplete.isEntryComplete(mSubList.get(j),this)) {
+			} else if (entry.type.equals(getString(R.string.text))) {
+				if(mCheckEntryComplete.isEntryComplete(entry,this)) {
 					templist.description = getString(R.string.finished_textentry);
 				} else {
 					templist.description = getString(R.string.unfinished_textentry);
 				}
-			} else if (mSubList.get(j).type.equals(getString(R.string.favorite_entry))) {
+			} else if (entry.type.equals(getString(R.string.favorite_entry))) {
 				templist.description = "Unfinished Favorite Entry";
-			} else if (mSubList.get(j).type.equals(getString(R.string.unknown))) {
+			} else if (entry.type.equals(getString(R.string.unknown))) {
 				templist.description = getString(R.string.unknown_entry);
 			}
 		}
 
-		if (mSubList.get(j).amount != null&& !mSubList.get(j).amount.equals("")) {
-			templist.amount = mStringProcessing.getStringDoubleDecimal(mSubList.get(j).amount);
-		} else {
-			templist.amount = "?";
-		}
+		// formatted from minor units read with the row, no parse
+		templist.amountValue = entry.getAmount();
+		templist.amount = templist.amountValue.toString();
 
-		if (mSubList.get(j).favorite != null && !mSubList.get(j).favorite.equals("")) {
-			templist.favorite = mSubList.get(j).favorite;
+		if (entry.favorite != null && !entry.favorite.equals("")) {
+			templist.favorite = entry.favorite;
 		} else {
 			templist.favorite = "";
 		}
 
-		if (mSubList.get(j).type != null && !mSubList.get(j).type.equals("")) {
-			templist.type = mSubList.get(j).type;
+		if (entry.type != null && !entry.type.equals("")) {
+			templist.type = entry.type;
 		} else {
 			templist.type = "";
 		}
 		
-		if(Strings.isEmpty(mSubList.get(j).idFromServer)) {
+		if(Strings.isEmpty(entry.idFromServer)) {
 			templist.idFromServer = ""; 
 		} else {
-			templist.idFromServer = mSubList.get(j).idFromServer;
+			templist.idFromServer = entry.idFromServer;
 		}
 		
-		if(Strings.isEmpty(mSubList.get(j).syncBit)) {
+		if(Strings.isEmpty(entry.syncBit)) {
 			templist.syncBit = ""; 
 		} else {
-			templist.syncBit = mSubList.get(j).syncBit;
+			templist.syncBit = entry.syncBit;
 		}
 		
-		if(Strings.isEmpty(mSubList.get(j).updatedAt)) {
+		if(Strings.isEmpty(entry.updatedAt)) {
 			templist.updatedAt = ""; 
 		} else {
-			templist.updatedAt = mSubList.get(j).updatedAt;
+			templist.updatedAt = entry.updatedAt;
 		}
 		
-		if(Strings.isEmpty(mSubList.get(j).fileUpdatedAt)) {
+		if(Strings.isEmpty(entry.fileUpdatedAt)) {
 			templist.fileUpdatedAt = ""; 
 		} else {
-			templist.fileUpdatedAt = mSubList.get(j).fileUpdatedAt;
+			templist.fileUpdatedAt = entry.fileUpdatedAt;
 		}
 		
-		if(Strings.isEmpty(mSubList.get(j).location)) {
+		if(Strings.isEmpty(entry.location)) {
 			templist.location = ""; 
 		} else {
-			templist.location = mSubList.get(j).location;
+			templist.location = entry.location;
 		}
 		
 		return templist;
@@ -195,8 +199,11 @@ abstract class ListingAbstract extends BaseActivity implements OnItemClickListen
 	@Override
 	public void onItemClick(final AdapterView<?> adapter, View v,final int position, long arg3) {
 		final Entry mTempClickedList = (Entry) adapter.getItemAtPosition(position);
-		String id = mTempClickedList.id;
-		if (!id.contains(",")) {
+		if (mTempClickedList == null) {
+			// placeholder of a row past the rows read, the section is being reloaded
+			return;
+		}
+		if (!isSubTotal(mTempClickedList)) {
 			Bundle bundle = new Bundle();
 			bundle.putParcelable(Constants.KEY_ENTRY_LIST_EXTRA, mTempClickedList);
 			bundle.putInt(Constants.KEY_POSITION, position);
@@ -258,14 +265,13 @@ abstract class ListingAbstract extends BaseActivity implements OnItemClickListen
 		mListView = (ListView) findViewById(R.id.expense_listing_listview);
 		mListView.setOnItemClickListener(this);
 		mListView.setAdapter(mSeparatedListAdapter);
-		noItemLayout();
 		registerForContextMenu(mListView);
 	}
 	
 	@Override
 	public void onCreateContextMenu(ContextMenu menu, View v, ContextMenuInfo menuInfo) {
 		AdapterView.AdapterContextMenuInfo info = (AdapterContextMenuInfo) menuInfo;
-		if(new DateHelper(mDataDateList.get(Integer.parseInt(mSeparatedListAdapter.getSectionNumber(info.position))).dateTime).isCurrentWeek()) {
+		if(mSeparatedListAdapter.getDataDateList().get(Integer.parseInt(mSeparatedListAdapter.getSectionNumber(info.position))).bucket == DatabaseAdapter.BUCKET_DAY) {
 		super.onCreateContextMenu(menu, v, menuInfo);
 		switch (v.getId()) {
 		
@@ -299,7 +305,7 @@ abstract class ListingAbstract extends BaseActivity implements OnItemClickListen
   	    	Toast.makeText(this, "Deleted", Toast.LENGTH_SHORT).show();
   	    	removeItem(info.position);
   	    	ExpenseListing.resetUnfinishedEntryCount();
-  	    	SyncHelper.startSync();
+  	    	SyncScheduler.requestSync();
   	    	break;
   	    	
 		default:
@@ -310,6 +316,10 @@ abstract class ListingAbstract extends BaseActivity implements OnItemClickListen
 	
 	private void removeItem(int position) {
 		Entry tempEntry = ((Entry)mSeparatedListAdapter.getItem(position));
+		if(tempEntry == null) {
+			refreshSections();
+			return;
+		}
 		mDatabaseAdapter.open();
 //		if(Strings.isEmpty(tempEntry.updatedAt)) {
 //			mDatabaseAdapter.permanentDeleteEntryTableEntryID(tempEntry.id);
@@ -317,17 +327,15 @@ abstract class ListingAbstract extends BaseActivity implements OnItemClickListen
 			mDatabaseAdapter.deleteExpenseEntryByID(tempEntry.id);
 //		}
     	mDatabaseAdapter.close();
-    	//XXX
-    	if(!mSeparatedListAdapter.remove(position)) {
-    		initListView();
-    		return;
-    	}
+    	refreshSections(tempEntry.timeInMillis);
     	setModifiedValues();
-    	noItemLayout();
 	}
 	
 	private void startEditPage(int position) {
 		Entry mTempClickedList = (Entry) mSeparatedListAdapter.getItem(position);
+		if(mTempClickedList == null) {
+			return;
+		}
 		Intent intent = null;
 		Bundle bundle = new Bundle();
 		bundle.putParcelable(Constants.KEY_ENTRY_LIST_EXTRA, mTempClickedList);
@@ -364,7 +372,7 @@ abstract class ListingAbstract extends BaseActivity implements OnItemClickListen
 					updateListView(intentExtras);
 					intentExtras.remove(Constants.KEY_DATA_CHANGED);
 				} else {
-					initListView();
+					refreshSections();
 				}
 			} else if(Activity.RESULT_CANCELED == resultCode) {
 				int position = -1;
@@ -374,12 +382,13 @@ abstract class ListingAbstract extends BaseActivity implements OnItemClickListen
 				if(position != -1) {
 					removeItem(position);
 				} else {
-					initListView();
+					refreshSections();
 				}
 			}
 		}
 	}
 
+	// the entry was saved by the edit screen, its old and new day are read again
 	protected void updateListView(Bundle bundle) {
 		Entry updatedEntry = bundle.getParcelable(Constants.KEY_ENTRY_LIST_EXTRA);
 		int position = -1;
@@ -387,183 +396,241 @@ abstract class ListingAbstract extends BaseActivity implements OnItemClickListen
 		Log.d("************************");
 		Log.d("updating "+position);
 		Log.d("************************");
-		if(position != -1) {
-			String sectionNumber = mSeparatedListAdapter.getSectionNumber(position);
-			Object prevEntry = mSeparatedListAdapter.getItem(position);
-			if(sectionNumber != null && !sectionNumber.equals("") && prevEntry != null && !prevEntry.equals("")) {
-				try{
-					mSeparatedListAdapter.update(updatedEntry, position, sectionNumber, (Entry) prevEntry);
-				} catch (Exception e) {
-					//XXX dont want to do this but sometimes it throwing error
-					//
-					initListView();
+		Object prevEntry = position == -1 ? null : mSeparatedListAdapter.getItem(position);
+		if(prevEntry instanceof Entry && updatedEntry != null) {
+			refreshSections(((Entry) prevEntry).timeInMillis, updatedEntry.timeInMillis);
+		} else {
+			refreshSections();
+		}
+	}
+	
+	// Shows the sections within [fromTimeInMillis, toTimeInMillis) in a new adapter once SectionLoader has read them, either bound may be null
+	protected void loadSections(Long fromTimeInMillis, Long toTimeInMillis) {
+		mFromTimeInMillis = fromTimeInMillis;
+		mToTimeInMillis = toTimeInMillis;
+		mEntryPager = new EntryPager(this) {
+			@Override
+			protected Entry getDisplayEntry(Entry entry) {
+				return getListCurrentWeek(entry);
+			}
+			
+			@Override
+			protected void onSectionShort(Long fromTimeInMillis, Long toTimeInMillis) {
+				refreshSections(fromTimeInMillis);
+			}
+		};
+		mSeparatedListAdapter = new SeparatedListAdapter(this, highlightID, mEntryPager);
+		doOperationsOnListview();
+		mChangedKeys = null;
+		startSectionLoader(true);
+	}
+	
+	// Reads the sections again and applies only what changed to the adapter, sections kept as they were keep
+	// their loaded pages. timeInMillis are of entries changed since, none if that is not known
+	protected void refreshSections(Long... timeInMillis) {
+		if(mSeparatedListAdapter == null) {
+			return;
+		}
+		if(timeInMillis.length == 0) {
+			mChangedKeys = null;
+		} else if(mChangedKeys != null) {
+			DateBucketer mDateBucketer = DateBucketer.getInstance();
+			int headerBucket = ConvertCursorToListString.getHeaderBucket(type);
+			for(Long time : timeInMillis) {
+				if(time != null) {
+					mChangedKeys.add(mDateBucketer.getKey(headerBucket, time));
 				}
-			} else {
-				initListView();
 			}
-			noItemLayout();
 		}
+		startSectionLoader(false);
 	}
 	
-	@SuppressWarnings("unchecked")
-	protected void addSections() {
-		int j = 0;
-		List<ListDatetimeAmount> dateListToSend = new ArrayList<ListDatetimeAmount>();
-		int sectionNum = 0;
-		@SuppressWarnings("rawtypes")
-		List listString = new ArrayList<List<Entry>>();
-		for (int i = 0; i < mDataDateList.size(); i++) {
-			List<Entry> mList = new ArrayList<Entry>();
-			
-			String date = mDataDateList.get(i).dateTime;
-			if(j < mSubList.size()) {
-				Calendar toCHeckCal = Calendar.getInstance();
-				toCHeckCal.setTimeInMillis(mSubList.get(j).timeInMillis);
-				toCHeckCal.setFirstDayOfWeek(Calendar.MONDAY);
-				while (j < mSubList.size() && date.equals(new DisplayDate(toCHeckCal).getHeaderFooterListDisplayDate(type))) {
-					Entry templist = new Entry();
-					Calendar mCalendar = Calendar.getInstance();
-					mCalendar.setTimeInMillis(mSubList.get(j).timeInMillis);
-					mCalendar.set(mCalendar.get(Calendar.YEAR), mCalendar.get(Calendar.MONTH), mCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
-					mCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-					DisplayDate mDisplayDate = new DisplayDate(mCalendar);
+	// a running load is dropped, the new one covers its changes too
+	private void startSectionLoader(boolean isFirstLoad) {
+		if(mSectionLoader != null) {
+			isFirstLoad = isFirstLoad || mSectionLoader.isFirstLoad;
+			mSectionLoader.cancel(false);
+		}
+		mSectionLoader = new SectionLoader(isFirstLoad);
+		mSectionLoader.execute();
+	}
+	
+	// the sections were shown, called on the UI thread
+	protected void onSectionsLoaded() {
+		noItemLayout();
+	}
+	
+	@Override
+	protected void onResume() {
+		super.onResume();
+		DatabaseMigration.addOnTotalsRebuiltListener(this);
+	}
+	
+	@Override
+	protected void onPause() {
+		DatabaseMigration.removeOnTotalsRebuiltListener(this);
+		super.onPause();
+	}
+	
+	// headers were read from totals being rebuilt, e.g. right after an upgrade or a time zone change
+	@Override
+	public void onTotalsRebuilt() {
+		refreshSections();
+		ExpenseListing.resetUnfinishedEntryCount();
+	}
+	
+	@Override
+	protected void onDestroy() {
+		if(mSectionLoader != null) {
+			mSectionLoader.cancel(false);
+		}
+		Log.d("****** " + ThumbnailCache.getInstance() + " ******");
+		super.onDestroy();
+	}
+	
+	// subtotal rows for month, year and all listings, week rows are paged in by EntryPager
+	private List<Entry> getSubList(ConvertCursorToListString convertCursorToListString, Long fromTimeInMillis, Long toTimeInMillis) {
+		if (type == R.string.sublist_thisweek) {
+			return new ArrayList<Entry>();
+		}
+		return convertCursorToListString.getSubTotalList(type, fromTimeInMillis, toTimeInMillis);
+	}
+	
+	protected boolean isSubTotal(Entry entry) {
+		return entry.type.equals(getString(R.string.sublist_thismonth)) || entry.type.equals(getString(R.string.sublist_thisyear)) || entry.type.equals(getString(R.string.sublist_all));
+	}
+	
+	/**
+	 * Reads headers and subtotal rows off the UI thread into ListingSections and diffs them against the
+	 * sections shown, the adapter is only touched in onPostExecute(). Nothing is read again only when the
+	 * changed keys are known, none are, and nothing was written to the database since the sections shown were
+	 * read. Changes not known (null keys) always read again.
+	 */
+	private class SectionLoader extends AsyncTask<Void, Void, SectionDiff> {
+
+		private final boolean isFirstLoad;
+		private final List<ListingSection> mPrevious;
+		private final long mPreviousChangeCount;
+		private final Set<Integer> mLoaderChangedKeys;
+		// subtotal row holding the highlighted entry, opened once loaded
+		private Entry mHighlightedRow;
+
+		SectionLoader(boolean isFirstLoad) {
+			this.isFirstLoad = isFirstLoad;
+			mPrevious = mSeparatedListAdapter.getSections();
+			mPreviousChangeCount = mSeparatedListAdapter.getChangeCount();
+			mLoaderChangedKeys = mChangedKeys == null ? null : new HashSet<Integer>(mChangedKeys);
+		}
+
+		@Override
+		protected SectionDiff doInBackground(Void... params) {
+			DatabaseAdapter adapter = new DatabaseAdapter(ListingAbstract.this);
+			adapter.open();
+			long changeCount = adapter.getChangeCount();
+			adapter.close();
+			if(!isFirstLoad && changeCount == mPreviousChangeCount && mLoaderChangedKeys != null && mLoaderChangedKeys.isEmpty()) {
+				return null;
+			}
+			List<ListingSection> sections = getSections();
+			if(isCancelled()) {
+				return null;
+			}
+			return new SectionDiff(mPrevious, sections, mLoaderChangedKeys, changeCount);
+		}
+
+		private List<ListingSection> getSections() {
+			ConvertCursorToListString convertCursorToListString = new ConvertCursorToListString(ListingAbstract.this);
+			List<ListDatetimeAmount> dataDateList = convertCursorToListString.getDateListString(false, false, type, mFromTimeInMillis, mToTimeInMillis);
+			List<Entry> subList = getSubList(convertCursorToListString, mFromTimeInMillis, mToTimeInMillis);
+			List<ListingSection> sections = new ArrayList<ListingSection>();
+			// subtotal rows go under the header of the same bucket, compared by key instead of formatted dates
+			DateBucketer mDateBucketer = DateBucketer.getInstance();
+			int headerBucket = ConvertCursorToListString.getHeaderBucket(type);
+			int j = 0;
+			for (int i = 0; i < dataDateList.size(); i++) {
+				ListDatetimeAmount header = dataDateList.get(i);
+				int headerKey = mDateBucketer.getKey(headerBucket, header.timeInMillis);
+				ListingSection section;
+				if (type == R.string.sublist_thisweek) {
+					DisplayDate mDisplayDate = new DisplayDate(header.timeInMillis);
 					if(!condition(mDisplayDate)) {
-						j = mSubList.size() + 1;
 						break;
 					}
-					if (type == R.string.sublist_thisweek) {
-						templist = getListCurrentWeek(j);
-						mList.add(templist);
-						j++;
-						if (j < mSubList.size()) {
-							toCHeckCal.setTimeInMillis(mSubList.get(j).timeInMillis);
-							toCHeckCal.setFirstDayOfWeek(Calendar.MONDAY);
-						} else {
+					section = ListingSection.getPaged(header, headerKey, mDisplayDate.getStartOfDayInMillis(), mDisplayDate.getStartOfNextDayInMillis());
+				} else {
+					List<Entry> mList = new ArrayList<Entry>();
+					while (j < subList.size() && headerKey == mDateBucketer.getKey(headerBucket, subList.get(j).timeInMillis)) {
+						if(!condition(new DisplayDate(subList.get(j).timeInMillis))) {
+							j = subList.size();
 							break;
 						}
-					} else if (type == R.string.sublist_thismonth || type == R.string.sublist_thisyear || type == R.string.sublist_all) {
-						toCHeckCal.setTimeInMillis(mSubList.get(j).timeInMillis);
-						toCHeckCal.setFirstDayOfWeek(Calendar.MONDAY);
-						while (mDataDateList.get(i).dateTime.equals(new DisplayDate(toCHeckCal).getHeaderFooterListDisplayDate(type))) {
-							////// Adding i+" "+j as id
-							Entry mTempSubList = new Entry();
-							mTempSubList.id = mSubList.get(j).id +",";
-							
-							///// Adding tag
-							Calendar tempCalendar = Calendar.getInstance();
-							tempCalendar.setTimeInMillis(mSubList.get(j).timeInMillis);
-							tempCalendar.set(tempCalendar.get(Calendar.YEAR), tempCalendar.get(Calendar.MONTH), tempCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
-							tempCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-							mDisplayDate = new DisplayDate(tempCalendar);
-							DisplayDate tempDisplayDate = new DisplayDate(tempCalendar);
-							int isWeekOfMonth = tempCalendar.get(Calendar.WEEK_OF_MONTH);
-							int isCurrentMonth = tempCalendar.get(Calendar.MONTH);
-							int isCurrentYear = tempCalendar.get(Calendar.YEAR);
-							
-							mTempSubList.description = tempDisplayDate.getSubListTag(type);
-							
-							///// Adding Amount
-							double temptotalAmount = 0;
-							String totalAmountString = null;
-							boolean isTempAmountNull = false;
-							do {
-								String tempAmount = mSubList.get(j).amount;
-								if (tempAmount != null && !tempAmount.equals("")) {
-									try {
-										temptotalAmount += Double.parseDouble(tempAmount);
-									} catch (NumberFormatException e) {
-										e.printStackTrace();
-									}
-								} else {
-									isTempAmountNull = true;
-								}
-								j++;
-								if (j < mSubList.size()) {
-									toCHeckCal.setTimeInMillis(mSubList.get(j).timeInMillis);
-									toCHeckCal.setFirstDayOfWeek(Calendar.MONDAY);
-									tempCalendar.setTimeInMillis(mSubList.get(j).timeInMillis);
-									tempCalendar.set(tempCalendar.get(Calendar.YEAR), tempCalendar.get(Calendar.MONTH), tempCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
-									tempCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-									tempDisplayDate = new DisplayDate(tempCalendar);
-									if(getLoopCondition(tempCalendar,isWeekOfMonth,isCurrentMonth,isCurrentYear)) {
-										
-										mTempSubList.id = mTempSubList.id + mSubList.get(j).id+",";
-									}
-								} else {
-									break;
-								}
-							} while (getLoopCondition(tempCalendar,isWeekOfMonth,isCurrentMonth,isCurrentYear));
-							
-							if (isTempAmountNull) {
-								if (temptotalAmount != 0) {
-									totalAmountString = temptotalAmount + " ?";
-								} else {
-									totalAmountString = "?";
-								}
-							} else {
-								totalAmountString = temptotalAmount + "";
-							}
-							mTempSubList.amount = mStringProcessing.getStringDoubleDecimal(totalAmountString);
-							mTempSubList.type = getString(type);
-							mTempSubList.timeInMillis = 0L;
-							mTempSubList.deleted = false;
-							mTempSubList.fileToDownload = false;
-							mTempSubList.fileUpdatedAt = "";
-							mTempSubList.fileUploaded = false;
-							mTempSubList.idFromServer = "";
-							mTempSubList.myHash = "";
-							mTempSubList.syncBit = "";
-							mTempSubList.updatedAt = "";
-							if(highlightID != null) {
-								if (j <= mSubList.size()) {
-									if(mTempSubList.id.contains(highlightID)) {
-										startSubListing(mTempSubList);
-									}
-								}
-							}
-							mList.add(mTempSubList);
-							if (j == mSubList.size()) {
-								break;
-							}
-							
+						Entry mTempSubList = subList.get(j);
+						if(isFirstLoad && mHighlightedRow == null && isHighlighted(convertCursorToListString.getSubTotalRange(type, mTempSubList.timeInMillis))) {
+							mHighlightedRow = mTempSubList;
 						}
+						mList.add(mTempSubList);
+						j++;
 					}
-				} 
-				
-			} else {
-				break;
+					section = ListingSection.getSubTotal(header, headerKey, mList);
+				}
+				if(section.getCount() > 0) {
+					sections.add(section);
+				}
 			}
-			listString.add(mList);
-			@SuppressWarnings("rawtypes")
-			List tt = (List) listString.get(i);
-			if(tt.size() > 0) {
-				int temp = i;
-				if(i == 0 && !new DisplayDate(mSubList.get(0).timeInMillis).isCurrentWeek()) {temp++;}
-				dateListToSend.add(mDataDateList.get(temp));
-				Log.d("************ Amount ***************** "+temp);
-				Log.d("mDataDateList "+mDataDateList.get(temp).amount);
-				mSeparatedListAdapter.addSection(sectionNum + "", new ArrayAdapter<Entry>(this, R.layout.expense_listing_tab, tt), dateListToSend);
-				sectionNum++;
+			return sections;
+		}
+
+		@Override
+		protected void onPostExecute(SectionDiff diff) {
+			mSectionLoader = null;
+			mChangedKeys = new HashSet<Integer>();
+			if(diff != null) {
+				mSeparatedListAdapter.apply(diff);
+			}
+			onSectionsLoaded();
+			if(mHighlightedRow != null) {
+				startSubListing(mHighlightedRow);
 			}
 		}
-		doOperationsOnListview();
+
 	}
 
-	protected void startSubListing(Entry entry) {
-		ArrayList<String> mArrayList = new GetArrayListFromString().getListFromTextArea(entry.id);
-		for(int checkI=0; checkI<mArrayList.size(); checkI++) {
-			if(mArrayList.get(checkI).equals(highlightID)) {
-				Intent expenseSubListing = new Intent(this, ExpenseSubListing.class);
-				Bundle extras = new Bundle();
-				extras.putParcelable(Constants.KEY_ENTRY_LIST_EXTRA, entry);
-				extras.putInt(Constants.KEY_TYPE, getSubListType());
-				if(highlightID != null)
-					extras.putString(Constants.KEY_HIGHLIGHT, highlightID);
-				expenseSubListing.putExtras(extras);
-				startActivityForResult(expenseSubListing, RESULT);
- 				finish();
+	private boolean isHighlighted(long[] range) {
+		if(highlightID == null) {
+			return false;
+		}
+		if(highlightTimeInMillis == null) {
+			// read by SectionLoader, mDatabaseAdapter belongs to the UI thread
+			DatabaseAdapter adapter = new DatabaseAdapter(this);
+			adapter.open();
+			String dateTime = adapter.getEntryDateTimeById(highlightID);
+			adapter.close();
+			if(Strings.isEmpty(dateTime)) {
+				return false;
 			}
-		}	
+			highlightTimeInMillis = Long.parseLong(dateTime);
+		}
+		return highlightTimeInMillis >= range[0] && highlightTimeInMillis < range[1];
+	}
+	
+	protected void startSubListing(Entry entry) {
+		Intent expenseSubListing = new Intent(this, ExpenseSubListing.class);
+		Bundle extras = new Bundle();
+		extras.putParcelable(Constants.KEY_ENTRY_LIST_EXTRA, entry);
+		putSubListRange(extras, entry);
+		extras.putInt(Constants.KEY_TYPE, getSubListType());
+		if(highlightID != null)
+			extras.putString(Constants.KEY_HIGHLIGHT, highlightID);
+		expenseSubListing.putExtras(extras);
+		startActivityForResult(expenseSubListing, RESULT);
+		finish();
+	}
+	
+	// the sub listing queries the date range of the bucket the row stands for
+	private void putSubListRange(Bundle extras, Entry entry) {
+		long[] range = mConvertCursorToListString.getSubTotalRange(type, entry.timeInMillis);
+		extras.putLong(Constants.KEY_FROM_TIME_IN_MILLIS, range[0]);
+		extras.putLong(Constants.KEY_TO_TIME_IN_MILLIS, range[1]);
 	}
 	
 	protected int getSubListType() {
@@ -579,28 +646,11 @@ abstract class ListingAbstract extends BaseActivity implements OnItemClickListen
 		}
 	}
 
-	protected boolean getLoopCondition(Calendar tempCalendar, int isWeekOfMonth, int isCurrentMonth, int isCurrentYear) {
-		switch (type) {
-		case R.string.sublist_all:
-			return tempCalendar.get(Calendar.YEAR) == isCurrentYear;
-			
-		case R.string.sublist_thismonth:
-		case R.string.sublist_thisweek:
-			return tempCalendar.get(Calendar.WEEK_OF_MONTH) == isWeekOfMonth
-				&& tempCalendar.get(Calendar.MONTH) == isCurrentMonth
-				&& tempCalendar.get(Calendar.YEAR) == isCurrentYear;
-		case R.string.sublist_thisyear:
-			return tempCalendar.get(Calendar.MONTH) == isCurrentMonth
-				&& tempCalendar.get(Calendar.YEAR) == isCurrentYear;
-		default:
-			return false;
-		}
-	}
-	
 	protected void onClickElse(Entry entry,int position) {
 		Intent mSubListIntent = new Intent(this, ExpenseSubListing.class);
 		Bundle extras = new Bundle();
 		extras.putParcelable(Constants.KEY_ENTRY_LIST_EXTRA, entry);
+		putSubListRange(extras, entry);
 		extras.putInt(Constants.KEY_POSITION, position);
 		extras.putInt(Constants.KEY_TYPE, getSubListType());
 		mSubListIntent.putExtras(extras);
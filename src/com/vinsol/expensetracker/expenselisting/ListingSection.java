@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.expenselisting;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.vinsol.expensetracker.models.Entry;
+import com.vinsol.expensetracker.models.ListDatetimeAmount;
+
+// One header of a listing with what goes under it, built off the UI thread by ListingAbstract.SectionLoader
+// and never changed afterwards. Day sections are paged in from the database, the others hold their subtotal rows
+class ListingSection {
+
+	final ListDatetimeAmount header;
+	// DateBucketer key of the header, sections are matched by it across loads
+	final int key;
+	// subtotal rows, null for a paged section
+	final List<Entry> rows;
+	// entries of a paged section lie within [fromTimeInMillis, toTimeInMillis)
+	final long fromTimeInMillis;
+	final long toTimeInMillis;
+
+	static ListingSection getPaged(ListDatetimeAmount header, int key, long fromTimeInMillis, long toTimeInMillis) {
+		return new ListingSection(header, key, null, fromTimeInMillis, toTimeInMillis);
+	}
+
+	static ListingSection getSubTotal(ListDatetimeAmount header, int key, List<Entry> rows) {
+		return new ListingSection(header, key, Collections.unmodifiableList(rows), 0, 0);
+	}
+
+	private ListingSection(ListDatetimeAmount header, int key, List<Entry> rows, long fromTimeInMillis, long toTimeInMillis) {
+		this.header = header;
+		this.key = key;
+		this.rows = rows;
+		this.fromTimeInMillis = fromTimeInMillis;
+		this.toTimeInMillis = toTimeInMillis;
+	}
+
+	boolean isPaged() {
+		return rows == null;
+	}
+
+	int getCount() {
+		return isPaged() ? header.count : rows.size();
+	}
+
+	// same header total and count and, for subtotal sections, the same rows
+	boolean isSameAs(ListingSection other) {
+		if(key != other.key || isPaged() != other.isPaged() || header.count != other.header.count || !header.amount.equals(other.header.amount)) {
+			return false;
+		}
+		if(isPaged()) {
+			return fromTimeInMillis == other.fromTimeInMillis && toTimeInMillis == other.toTimeInMillis;
+		}
+		if(rows.size() != other.rows.size()) {
+			return false;
+		}
+		for(int i = 0; i < rows.size(); i++) {
+			Entry row = rows.get(i);
+			Entry otherRow = other.rows.get(i);
+			if(!row.timeInMillis.equals(otherRow.timeInMillis) || !row.getAmount().equals(otherRow.getAmount()) || !row.description.equals(otherRow.description)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
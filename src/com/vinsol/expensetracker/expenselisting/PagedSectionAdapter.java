@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.expenselisting;
+
+import android.content.Context;
+import android.widget.ArrayAdapter;
+
+import com.vinsol.expensetracker.helpers.EntryPager;
+import com.vinsol.expensetracker.models.Entry;
+
+// Section of SeparatedListAdapter backed by an EntryPager.Section instead of a materialized list
+class PagedSectionAdapter extends ArrayAdapter<Entry> {
+
+	private EntryPager.Section mSection;
+
+	public PagedSectionAdapter(Context context, int textViewResourceId, EntryPager.Section section) {
+		super(context, textViewResourceId);
+		mSection = section;
+	}
+
+	@Override
+	public int getCount() {
+		return mSection.getCount();
+	}
+
+	@Override
+	public Entry getItem(int position) {
+		return mSection.get(position);
+	}
+
+	@Override
+	public int getPosition(Entry item) {
+		for (int i = 0; i < getCount(); i++) {
+			Entry entry = getItem(i);
+			if (entry != null && entry.id.equals(item.id)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// rows of the section changed in the database, count as reloaded from there
+	public void setCount(int count) {
+		mSection.setCount(count);
+		mSection.invalidate();
+	}
+
+	// the row was already changed in the database, pages are read again from there
+	@Override
+	public void remove(Entry object) {
+		mSection.setCount(mSection.getCount() - 1);
+		mSection.invalidate();
+	}
+
+	@Override
+	public void insert(Entry object, int index) {
+		mSection.setCount(mSection.getCount() + 1);
+		mSection.invalidate();
+	}
+
+	@Override
+	public void add(Entry object) {
+		insert(object, getCount());
+	}
+
+	@Override
+	public void clear() {
+		mSection.setCount(0);
+		mSection.invalidate();
+	}
+
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.expenselisting;
+
+import java.util.List;
+import java.util.Set;
+
+// Steps turning the sections shown into a newly loaded list of them, both newest first so keys only go down.
+// SeparatedListAdapter.apply() walks the steps keeping the section adapters, and their loaded pages, of what was kept
+class SectionDiff {
+
+	static final byte KEEP = 0;
+	static final byte CHANGE = 1;
+	static final byte INSERT = 2;
+	static final byte REMOVE = 3;
+
+	final List<ListingSection> sections;
+	final byte[] steps;
+	final int stepCount;
+	// DatabaseAdapter.getChangeCount() when sections were read
+	final long changeCount;
+
+	// rows of subtotal sections are compared, paged sections are changed when their totals differ or their key
+	// is in changedKeys, null for all of them
+	SectionDiff(List<ListingSection> previous, List<ListingSection> sections, Set<Integer> changedKeys, long changeCount) {
+		this.sections = sections;
+		this.changeCount = changeCount;
+		steps = new byte[previous.size() + sections.size()];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while(i < previous.size() || j < sections.size()) {
+			if(j == sections.size()) {
+				steps[count++] = REMOVE;
+				i++;
+			} else if(i == previous.size()) {
+				steps[count++] = INSERT;
+				j++;
+			} else {
+				ListingSection oldSection = previous.get(i);
+				ListingSection newSection = sections.get(j);
+				if(oldSection.key == newSection.key && oldSection.isPaged() == newSection.isPaged()) {
+					boolean isChanged = !oldSection.isSameAs(newSection) || (newSection.isPaged() && (changedKeys == null || changedKeys.contains(newSection.key)));
+					steps[count++] = isChanged ? CHANGE : KEEP;
+					i++;
+					j++;
+				} else if(oldSection.key >= newSection.key) {
+					steps[count++] = REMOVE;
+					i++;
+				} else {
+					steps[count++] = INSERT;
+					j++;
+				}
+			}
+		}
+		stepCount = count;
+	}
+
+	boolean isEmpty() {
+		for(int i = 0; i < stepCount; i++) {
+			if(steps[i] != KEEP) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
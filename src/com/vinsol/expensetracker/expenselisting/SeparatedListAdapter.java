@@ -7,20 +7,16 @@
 package com.vinsol.expensetracker.expenselisting;
 
 import java.io.File;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
-import android.widget.Adapter;
 import android.widget.ArrayAdapter;
 import android.widget.BaseAdapter;
 import android.widget.Button;
@@ -37,115 +33,186 @@ import com.vinsol.expensetracker.expenselisting.dialog.DescriptionDialog;
 import com.vinsol.expensetracker.expenselisting.dialog.GroupedIconDialogClickListener;
 import com.vinsol.expensetracker.expenselisting.dialog.UnknownEntryDialog;
 import com.vinsol.expensetracker.helpers.CheckEntryComplete;
-import com.vinsol.expensetracker.helpers.DateHelper;
+import com.vinsol.expensetracker.helpers.DatabaseAdapter;
 import com.vinsol.expensetracker.helpers.DisplayDate;
+import com.vinsol.expensetracker.helpers.EntryPager;
 import com.vinsol.expensetracker.helpers.FileHelper;
-import com.vinsol.expensetracker.helpers.StringProcessing;
+import com.vinsol.expensetracker.helpers.ThumbnailCache;
 import com.vinsol.expensetracker.models.Entry;
 import com.vinsol.expensetracker.models.ListDatetimeAmount;
 import com.vinsol.expensetracker.utils.ImagePreview;
-import com.vinsol.expensetracker.utils.Log;
 
 class SeparatedListAdapter extends BaseAdapter {
 
-	public final Map<String, ArrayAdapter<Entry>> sections = new LinkedHashMap<String, ArrayAdapter<Entry>>();
-	public final ArrayAdapter<String> headers;
-	public final ArrayAdapter<String> footers;
 	public final static int TYPE_SECTION_HEADER = 0;
 	public final static int TYPE_SECTION_FOOTER = 0;
+	public final static int TYPE_SECTION_ROW = 1;
 	private Context mContext;
-	private List<ListDatetimeAmount> mDataDateList;
+	// what is shown, replaced as a whole by apply(), mSectionAdapters and mDataDateList follow it index by index
+	private List<ListingSection> mSections = new ArrayList<ListingSection>();
+	private List<ArrayAdapter<Entry>> mSectionAdapters = new ArrayList<ArrayAdapter<Entry>>();
+	private List<ListDatetimeAmount> mDataDateList = new ArrayList<ListDatetimeAmount>();
+	// DatabaseAdapter.getChangeCount() when the sections shown were read, -1 before the first load
+	private long mChangeCount = -1;
+	// position of the header of every section, one more entry holds getCount(). Positions are mapped to
+	// sections by binary search over it instead of walking the sections for every row bound
+	private int[] mSectionStarts = {0};
+	private EntryPager mEntryPager;
 	private LayoutInflater mInflater;
 	private UnknownEntryDialog unknownEntryDialog;
 	private View viewHeader = null;
 	private View viewFooter = null;
 	private String highlightID;
 	private FileHelper fileHelper;
+	private ThumbnailCache mThumbnailCache;
 	
-	public SeparatedListAdapter(Context context,String highlightID) {
+	public SeparatedListAdapter(Context context, String highlightID, EntryPager entryPager) {
 		mContext = context;
+		mEntryPager = entryPager;
 		this.highlightID = highlightID;
 		if(this.highlightID == null) {
 			highlightID = "";
 		}
-		headers = new ArrayAdapter<String>(context,R.layout.mainlist_header_view);
-		footers = new ArrayAdapter<String>(context,R.layout.main_list_footerview);
 		mInflater = (LayoutInflater) mContext.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
 		fileHelper = new FileHelper();
+		mThumbnailCache = ThumbnailCache.getInstance();
 	}
 
-	public void addSection(String section, ArrayAdapter<Entry> adapter,List<ListDatetimeAmount> mDataDateList) {
-		this.mDataDateList = mDataDateList;
-		Log.d("*********** Amount *************");
-		Log.d(" amon "+mDataDateList.get(0).amount);
-		this.headers.add(section);
-		this.footers.add(section);
-		this.sections.put(section, adapter);
-	}
-
-	@Override
-	public Object getItem(int position) {
-		for (Object section : sections.keySet()) {
-			Adapter adapter = sections.get(section);
-			int size = adapter.getCount() + 2;
-			// check if position inside this section
-			
-			if (position == 0) {
-				return section;
+	// Walks the steps of diff, kept sections keep their adapter, changed paged sections only drop their loaded pages
+	public void apply(SectionDiff diff) {
+		List<ArrayAdapter<Entry>> sectionAdapters = new ArrayList<ArrayAdapter<Entry>>(diff.sections.size());
+		List<ListDatetimeAmount> dataDateList = new ArrayList<ListDatetimeAmount>(diff.sections.size());
+		int previous = 0;
+		// sections before the first step that is not KEEP keep their positions
+		int firstMoved = -1;
+		for(int i = 0; i < diff.stepCount; i++) {
+			if(firstMoved == -1 && diff.steps[i] != SectionDiff.KEEP) {
+				firstMoved = sectionAdapters.size();
 			}
-			
-			if (position < size - 1) {
-				return adapter.getItem(position - 1);
+			switch (diff.steps[i]) {
+			case SectionDiff.KEEP:
+				sectionAdapters.add(mSectionAdapters.get(previous++));
+				break;
+			case SectionDiff.CHANGE:
+				ListingSection changed = diff.sections.get(sectionAdapters.size());
+				ArrayAdapter<Entry> adapter = mSectionAdapters.get(previous++);
+				if(changed.isPaged()) {
+					((PagedSectionAdapter) adapter).setCount(changed.getCount());
+					sectionAdapters.add(adapter);
+				} else {
+					sectionAdapters.add(getSectionAdapter(changed));
+				}
+				break;
+			case SectionDiff.INSERT:
+				sectionAdapters.add(getSectionAdapter(diff.sections.get(sectionAdapters.size())));
+				break;
+			case SectionDiff.REMOVE:
+				ArrayAdapter<Entry> removed = mSectionAdapters.get(previous++);
+				if(removed instanceof PagedSectionAdapter) {
+					removed.clear();
+				}
+				break;
 			}
-			
-			if (position < size) {
-				return section;
+		}
+		for(ListingSection section : diff.sections) {
+			dataDateList.add(section.header);
+		}
+		mSections = diff.sections;
+		mSectionAdapters = sectionAdapters;
+		mDataDateList = dataDateList;
+		mChangeCount = diff.changeCount;
+		if(firstMoved != -1) {
+			updateSectionStarts(firstMoved);
+		}
+		notifyDataSetChanged();
+	}
+
+	// prefix sums of section sizes (rows plus header and footer) from section fromSection on
+	private void updateSectionStarts(int fromSection) {
+		int sectionCount = mSectionAdapters.size();
+		if(mSectionStarts.length != sectionCount + 1) {
+			int[] sectionStarts = new int[sectionCount + 1];
+			System.arraycopy(mSectionStarts, 0, sectionStarts, 0, Math.min(fromSection + 1, mSectionStarts.length));
+			mSectionStarts = sectionStarts;
+		}
+		for(int i = fromSection; i < sectionCount; i++) {
+			mSectionStarts[i + 1] = mSectionStarts[i] + mSectionAdapters.get(i).getCount() + 2;
+		}
+	}
+
+	// Index of the section holding position, -1 outside the list
+	int getSectionIndex(int position) {
+		int sectionCount = mSectionAdapters.size();
+		if(position < 0 || position >= mSectionStarts[sectionCount]) {
+			return -1;
+		}
+		int low = 0;
+		int high = sectionCount - 1;
+		while(low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if(mSectionStarts[middle] <= position) {
+				low = middle;
+			} else {
+				high = middle - 1;
 			}
+		}
+		return low;
+	}
+
+	public List<ListingSection> getSections() {
+		return mSections;
+	}
 
-			// otherwise jump into next section
-			position -= size;
+	public long getChangeCount() {
+		return mChangeCount;
+	}
+
+	private ArrayAdapter<Entry> getSectionAdapter(ListingSection section) {
+		if(section.isPaged()) {
+			return new PagedSectionAdapter(mContext, R.layout.expense_listing_tab, mEntryPager.getSection(section.fromTimeInMillis, section.toTimeInMillis, section.getCount()));
 		}
-		return null;
+		return new ArrayAdapter<Entry>(mContext, R.layout.expense_listing_tab, section.rows);
+	}
+
+	@Override
+	public Object getItem(int position) {
+		int section = getSectionIndex(position);
+		if(section == -1) {
+			return null;
+		}
+		int offset = position - mSectionStarts[section];
+		ArrayAdapter<Entry> adapter = mSectionAdapters.get(section);
+		if (offset == 0 || offset == adapter.getCount() + 1) {
+			return section + "";
+		}
+		return adapter.getItem(offset - 1);
 	}
 
 	@Override
 	public int getCount() {
-		// total together all sections, plus one for each section header
-		int total = 0;
-		for (Adapter adapter : this.sections.values())
-			total += adapter.getCount() + 2;
-		return total;
+		// total together all sections, plus one for each section header and footer
+		return mSectionStarts[mSectionAdapters.size()];
 	}
 
 	@Override
 	public int getViewTypeCount() {
-		// assume that headers count as one, then total all sections
-		int total = 2;
-		for (Adapter adapter : this.sections.values())
-			total += adapter.getViewTypeCount();
-		return total;
+		// headers and footers count as one, rows of every section share the other. ListView reads this
+		// once in setAdapter(), it must not follow sections that apply() inserts later
+		return 2;
 	}
 
 	@Override
 	public int getItemViewType(int position) {
-		int type = 1;
-		for (Object section : this.sections.keySet()) {
-			Adapter adapter = sections.get(section);
-			int size = adapter.getCount() + 2;
-
-			// check if position inside this section
-			if (position == 0)
-				return TYPE_SECTION_HEADER;
-			if (position < size - 1) {
-				return type + adapter.getItemViewType(position - 1);
-			}
-			if (position < size)
-				return TYPE_SECTION_FOOTER;
-			// otherwise jump into next section
-			position -= size;
-			type += adapter.getViewTypeCount();
+		int section = getSectionIndex(position);
+		if(section == -1) {
+			return -1;
 		}
-		return -1;
+		int offset = position - mSectionStarts[section];
+		if (offset == 0)
+			return TYPE_SECTION_HEADER;
+		if (offset == mSectionAdapters.get(section).getCount() + 1)
+			return TYPE_SECTION_FOOTER;
+		return TYPE_SECTION_ROW;
 	}
 
 	@Override
@@ -155,200 +222,168 @@ class SeparatedListAdapter extends BaseAdapter {
 
 	@Override
 	public View getView(int position, View convertView, ViewGroup parent) {
-		int sectionnum = 0;
+		int sectionnum = getSectionIndex(position);
 		ViewHolderHeader holderHeader;
 		ViewHolderBody holderBody;
 		ViewHolderFooter holderFooter;
 		
-		for (Object section : this.sections.keySet()) {
-			ArrayAdapter<Entry> adapter = sections.get(section);
-			int size = adapter.getCount() + 2;
-			// check if position inside this section
-			if (position == 0) {
-				holderHeader = new ViewHolderHeader();
-				viewHeader = mInflater.inflate(R.layout.mainlist_header_view,null);
-				holderHeader.listDateView = (TextView) viewHeader.findViewById(R.id.expenses_listing_list_date_view);
-				holderHeader.listAmountView = (TextView) viewHeader.findViewById(R.id.expenses_listing_list_amount_view);
-				holderHeader.listDateView.setText(mDataDateList.get(sectionnum).dateTime);
-				holderHeader.listAmountView.setText(new StringProcessing().getStringDoubleDecimal(mDataDateList.get(sectionnum).amount));
-				return viewHeader;
-			}
+		if (sectionnum == -1) {
+			return null;
+		}
+		ArrayAdapter<Entry> adapter = mSectionAdapters.get(sectionnum);
+		int size = adapter.getCount() + 2;
+		position -= mSectionStarts[sectionnum];
+		// check if position inside this section
+		if (position == 0) {
+			holderHeader = new ViewHolderHeader();
+			viewHeader = mInflater.inflate(R.layout.mainlist_header_view,null);
+			holderHeader.listDateView = (TextView) viewHeader.findViewById(R.id.expenses_listing_list_date_view);
+			holderHeader.listAmountView = (TextView) viewHeader.findViewById(R.id.expenses_listing_list_amount_view);
+			holderHeader.listDateView.setText(mDataDateList.get(sectionnum).dateTime);
+			holderHeader.listAmountView.setText(mDataDateList.get(sectionnum).amount.toString());
+			return viewHeader;
+		}
 
-			if (position == size-1) {
-				holderFooter = new ViewHolderFooter();
-				viewFooter = mInflater.inflate(R.layout.main_list_footerview, null);
-				holderFooter.addExpensesButton = (Button) viewFooter.findViewById(R.id.expenses_listing_add_expenses_button);
-				holderFooter.addExpenses = (LinearLayout) viewFooter.findViewById(R.id.expense_listing_list_add_expenses);
-				if (!isCurrentWeek(mDataDateList.get(sectionnum).dateTime)) {
-					holderFooter.addExpenses.setBackgroundResource(0);
-					holderFooter.addExpenses.setVisibility(View.GONE);
-					holderFooter.addExpensesButton.setVisibility(View.GONE);
-				} else {
-					holderFooter.addExpensesButton.setText("Add expenses to "+ mDataDateList.get(sectionnum).dateTime);
-					holderFooter.addExpensesButton.setFocusable(false);
-					DateHelper mDateHelper = new DateHelper(mDataDateList.get(sectionnum).dateTime);
-					holderFooter.addExpensesButton.setOnClickListener(new GroupedIconDialogClickListener(unknownEntryDialog, (Activity)mContext, null, mDateHelper.getTimeMillis()));
-				}
-				return viewFooter;
+		if (position == size-1) {
+			holderFooter = new ViewHolderFooter();
+			viewFooter = mInflater.inflate(R.layout.main_list_footerview, null);
+			holderFooter.addExpensesButton = (Button) viewFooter.findViewById(R.id.expenses_listing_add_expenses_button);
+			holderFooter.addExpenses = (LinearLayout) viewFooter.findViewById(R.id.expense_listing_list_add_expenses);
+			if (!isDayHeader(mDataDateList.get(sectionnum))) {
+				holderFooter.addExpenses.setBackgroundResource(0);
+				holderFooter.addExpenses.setVisibility(View.GONE);
+				holderFooter.addExpensesButton.setVisibility(View.GONE);
+			} else {
+				holderFooter.addExpensesButton.setText("Add expenses to "+ mDataDateList.get(sectionnum).dateTime);
+				holderFooter.addExpensesButton.setFocusable(false);
+				long timeInMillis = new DisplayDate(mDataDateList.get(sectionnum).timeInMillis).getNowOnThisDayInMillis();
+				holderFooter.addExpensesButton.setOnClickListener(new GroupedIconDialogClickListener(unknownEntryDialog, (Activity)mContext, null, timeInMillis));
+			}
+			return viewFooter;
+		}
+		
+		if (position > 0 && position < size - 1) {
+			if (convertView == null) {
+				holderBody = new ViewHolderBody();
+				convertView = mInflater.inflate(R.layout.expense_listing_inflated_row, null);
+				holderBody.rowLocationTime = (TextView) convertView.findViewById(R.id.row_location_time);
+				holderBody.rowTag = (TextView) convertView.findViewById(R.id.row_tag);
+				holderBody.rowAmount = (TextView) convertView.findViewById(R.id.row_amount);
+				holderBody.rowImageview = (ImageView) convertView.findViewById(R.id.row_imageview);
+				holderBody.dividerImageView = (ImageView) convertView.findViewById(R.id.row_imageview_divider);
+				holderBody.rowFavoriteIcon = (ImageView) convertView.findViewById(R.id.row_favorite_icon);
+				holderBody.rowListview = (RelativeLayout) convertView.findViewById(R.id.row_listview);
+				convertView.setTag(holderBody);
+			} else {
+				holderBody = (ViewHolderBody) convertView.getTag();
 			}
 			
-			if (position > 0 && position < size - 1) {
-				if (convertView == null) {
-					holderBody = new ViewHolderBody();
-					convertView = mInflater.inflate(R.layout.expense_listing_inflated_row, null);
-					holderBody.rowLocationTime = (TextView) convertView.findViewById(R.id.row_location_time);
-					holderBody.rowTag = (TextView) convertView.findViewById(R.id.row_tag);
-					holderBody.rowAmount = (TextView) convertView.findViewById(R.id.row_amount);
-					holderBody.rowImageview = (ImageView) convertView.findViewById(R.id.row_imageview);
-					holderBody.dividerImageView = (ImageView) convertView.findViewById(R.id.row_imageview_divider);
-					holderBody.rowFavoriteIcon = (ImageView) convertView.findViewById(R.id.row_favorite_icon);
-					holderBody.rowListview = (RelativeLayout) convertView.findViewById(R.id.row_listview);
-					convertView.setTag(holderBody);
+			// a decode still running for the entry this row showed before must not land on it
+			mThumbnailCache.cancel(holderBody.rowImageview);
+			holderBody.rowImageview.setScaleType(ScaleType.CENTER_INSIDE);
+			Entry mlist = (Entry) adapter.getItem(position - 1);
+			if (mlist == null) {
+				// past the rows a paged section could read, EntryPager asked for the section to be reloaded
+				bindPlaceholder(holderBody);
+				return convertView;
+			}
+			holderBody.rowImageview.setVisibility(View.VISIBLE);
+			CheckEntryComplete mCheckEntryComplete = new CheckEntryComplete();
+			if (mlist.type.equals(mContext.getString(R.string.camera))) {
+				setBackGround(holderBody,mCheckEntryComplete,mlist);
+				if (android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED)) {
+					mThumbnailCache.load(holderBody.rowImageview, fileHelper.getCameraFileThumbnailEntry(mlist.id), R.drawable.no_image_small);
 				} else {
-					holderBody = (ViewHolderBody) convertView.getTag();
+					holderBody.rowImageview.setImageResource(R.drawable.no_image_small);
 				}
+			} else if (mlist.type.equals(mContext.getString(R.string.text))) {
+				setBackGround(holderBody, mCheckEntryComplete, mlist);
 				
-				if(holderBody.bitmap != null) {holderBody.bitmap.recycle();}
+				if (!mlist.description.equals(mContext.getString(R.string.unfinished_textentry)) && !mlist.description.equals(mContext.getString(R.string.finished_textentry))) {
+					holderBody.rowImageview.setImageResource(R.drawable.listing_text_entry_icon);
+				} else {
+					holderBody.rowImageview.setImageResource(R.drawable.text_list_icon_no_tag);
+				}
 				
-				holderBody.rowImageview.setScaleType(ScaleType.CENTER_INSIDE);
-				Entry mlist = (Entry) adapter.getItem(position - 1);
-				CheckEntryComplete mCheckEntryComplete = new CheckEntryComplete();
-				if (mlist.type.equals(mContext.getString(R.string.camera))) {
-					setBackGround(holderBody,mCheckEntryComplete,mlist);
-					if (android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED)) {
-						try {
-							File mFile = fileHelper.getCameraFileThumbnailEntry(mlist.id);
-							if (mFile.canRead()) {
-								holderBody.bitmap = BitmapFactory.decodeFile(mFile.getPath());
-								holderBody.rowImageview.setImageBitmap(holderBody.bitmap);
-								holderBody.rowImageview.setScaleType(ScaleType.FIT_CENTER);
-							} else {
-								holderBody.rowImageview.setScaleType(ScaleType.CENTER_INSIDE);
-								holderBody.rowImageview.setImageResource(R.drawable.no_image_small);
-							}
-						} catch (Exception e) {
-							holderBody.rowImageview.setImageResource(R.drawable.no_image_small);
-						}
-					} else {
-						holderBody.rowImageview.setImageResource(R.drawable.no_image_small);
-					}
-				} else if (mlist.type.equals(mContext.getString(R.string.text))) {
-					setBackGround(holderBody, mCheckEntryComplete, mlist);
-					
-					if (!mlist.description.equals(mContext.getString(R.string.unfinished_textentry)) && !mlist.description.equals(mContext.getString(R.string.finished_textentry))) {
-						holderBody.rowImageview.setImageResource(R.drawable.listing_text_entry_icon);
-					} else {
-						holderBody.rowImageview.setImageResource(R.drawable.text_list_icon_no_tag);
-					}
-					
-				} else if (mlist.type.equals(mContext.getString(R.string.unknown))) {
-					holderBody.rowImageview.setImageResource(R.drawable.listing_reminder_icon);
-					holderBody.rowListview.setBackgroundResource(R.drawable.listing_row_unknown_states);
-				} else if (mlist.type.equals(mContext.getString(R.string.voice))) {
-					setBackGround(holderBody, mCheckEntryComplete, mlist);
-					File mFile = fileHelper.getAudioFileEntry(mlist.id);
-					if (mFile.canRead()) {
-						holderBody.rowImageview.setImageResource(R.drawable.listing_voice_entry_icon);
-					} else {
-						holderBody.rowImageview.setImageResource(R.drawable.no_voice_file_small);
-					}
-				} 
-				if (mlist.favorite != null) {
-					if(!mlist.favorite.equals("")) {
-						try{
-							if(isCurrentWeek(mDataDateList.get(sectionnum).dateTime)) {
-								holderBody.rowFavoriteIcon.setVisibility(View.VISIBLE);
-							} else {
-								holderBody.rowFavoriteIcon.setVisibility(View.INVISIBLE);
-							}
-						}catch(Exception e) { 
-							
+			} else if (mlist.type.equals(mContext.getString(R.string.unknown))) {
+				holderBody.rowImageview.setImageResource(R.drawable.listing_reminder_icon);
+				holderBody.rowListview.setBackgroundResource(R.drawable.listing_row_unknown_states);
+			} else if (mlist.type.equals(mContext.getString(R.string.voice))) {
+				setBackGround(holderBody, mCheckEntryComplete, mlist);
+				File mFile = fileHelper.getAudioFileEntry(mlist.id);
+				if (mFile.canRead()) {
+					holderBody.rowImageview.setImageResource(R.drawable.listing_voice_entry_icon);
+				} else {
+					holderBody.rowImageview.setImageResource(R.drawable.no_voice_file_small);
+				}
+			} 
+			if (mlist.favorite != null) {
+				if(!mlist.favorite.equals("")) {
+					try{
+						if(isDayHeader(mDataDateList.get(sectionnum))) {
+							holderBody.rowFavoriteIcon.setVisibility(View.VISIBLE);
+						} else {
+							holderBody.rowFavoriteIcon.setVisibility(View.INVISIBLE);
 						}
-					}else {
-						holderBody.rowFavoriteIcon.setVisibility(View.INVISIBLE);
+					}catch(Exception e) { 
+						
 					}
 				}else {
 					holderBody.rowFavoriteIcon.setVisibility(View.INVISIBLE);
 				}
-				
-				holderBody.rowImageview.setFocusable(false);
-				holderBody.rowImageview.setOnClickListener(new MyClickListener(mlist));
-				if (mlist.timeInMillis != null  && !mlist.timeInMillis.equals("")) {
-					holderBody.rowLocationTime.setText(new DisplayDate().getLocationDate(mlist.timeInMillis, mlist.location));
-				} else if ((mlist.timeInMillis == null || mlist.timeInMillis.equals(""))&& mlist.location != null&& !mlist.location.equals("")) {
-					holderBody.rowLocationTime.setText("Unknown time at "+ mlist.location);
-				} else {
-					holderBody.rowLocationTime.setText("Unknown time at Unknown Location");
-				}
-				holderBody.rowTag.setText(mlist.description);
-				holderBody.rowAmount.setText(new StringProcessing().getStringDoubleDecimal(mlist.amount));
-				if (mlist.type.equals(mContext.getString(R.string.sublist_thisyear)) || mlist.type.equals(mContext.getString(R.string.sublist_all))|| mlist.type.equals(mContext.getString(R.string.sublist_thismonth))) {
-					holderBody.rowImageview.setVisibility(View.GONE);
-					holderBody.rowLocationTime.setVisibility(View.GONE);
-					holderBody.dividerImageView.setVisibility(View.GONE);
-				}
-				return convertView;
+			}else {
+				holderBody.rowFavoriteIcon.setVisibility(View.INVISIBLE);
+			}
+			
+			holderBody.rowImageview.setFocusable(false);
+			holderBody.rowImageview.setOnClickListener(new MyClickListener(mlist));
+			if (mlist.timeInMillis != null  && !mlist.timeInMillis.equals("")) {
+				holderBody.rowLocationTime.setText(new DisplayDate().getLocationDate(mlist.timeInMillis, mlist.location));
+			} else if ((mlist.timeInMillis == null || mlist.timeInMillis.equals(""))&& mlist.location != null&& !mlist.location.equals("")) {
+				holderBody.rowLocationTime.setText("Unknown time at "+ mlist.location);
+			} else {
+				holderBody.rowLocationTime.setText("Unknown time at Unknown Location");
+			}
+			holderBody.rowTag.setText(mlist.description);
+			holderBody.rowAmount.setText(mlist.getAmount().toString());
+			if (mlist.type.equals(mContext.getString(R.string.sublist_thisyear)) || mlist.type.equals(mContext.getString(R.string.sublist_all))|| mlist.type.equals(mContext.getString(R.string.sublist_thismonth))) {
+				holderBody.rowImageview.setVisibility(View.GONE);
+				holderBody.rowLocationTime.setVisibility(View.GONE);
+				holderBody.dividerImageView.setVisibility(View.GONE);
 			}
-			position -= size;
-			sectionnum++;
+			return convertView;
 		}
 		return null;
 	}
 	
+	private void bindPlaceholder(ViewHolderBody holderBody) {
+		holderBody.rowImageview.setImageDrawable(null);
+		holderBody.rowImageview.setOnClickListener(null);
+		holderBody.rowImageview.setVisibility(View.INVISIBLE);
+		holderBody.rowFavoriteIcon.setVisibility(View.INVISIBLE);
+		holderBody.rowListview.setBackgroundResource(0);
+		holderBody.rowLocationTime.setText("");
+		holderBody.rowTag.setText("");
+		holderBody.rowAmount.setText("");
+	}
+	
 	@Override
 	public long getItemId(int position) {
 		return position;
 	}
 	
+	// rows of the sections before the one holding position, -1 outside the list
 	public int getListPosition(int position) {
-		int listPosition = 0;
-		for (Object section : sections.keySet()) {
-			Adapter adapter = sections.get(section);
-			int size = adapter.getCount() + 2;
-			if(position <= size) {
-				return listPosition;
-			}
-			listPosition+=adapter.getCount();
-			position-=size;
+		int section = getSectionIndex(position);
+		if(section == -1) {
+			return -1;
 		}
-		return -1;
+		return mSectionStarts[section] - 2 * section;
 	}
 
-	public boolean remove(int toRemove) {
-		String sectionNumber = getSectionNumber(toRemove);
-		Entry prevEntry = (Entry) getItem(toRemove);
-		if(sections.containsKey(sectionNumber)) {
-			sections.get(sectionNumber).remove((Entry)getItem(toRemove));
-			if(sections.get(sectionNumber).getCount() == 0) {
-				removeSection(sectionNumber);
-			} else {
-				updateAmount(sectionNumber, prevEntry, null);
-			}
-			notifyDataSetChanged();
-			return true;
-		}
-		return false;
-	}
-	
-	public void update(Entry updatedEntry,int toUpdate, String sectionNumber, Entry prevEntry) {
-		sections.get(sectionNumber).insert(updatedEntry, toUpdate);
-		sections.get(sectionNumber).remove(prevEntry);
-		updateAmount(sectionNumber, prevEntry, updatedEntry);
-		notifyDataSetChanged();
-	}
-	
 	public String  getSectionNumber(int position) {
-		int sectionNumber = 0;
-		for (Object section : sections.keySet()) {
-			Adapter adapter = sections.get(section);
-			int size = adapter.getCount() + 2;
-			if(position <= size) {
-				return sectionNumber+"";
-			}
-			sectionNumber++;
-			position-=size;
-		}
-		return "";
+		int section = getSectionIndex(position);
+		return section == -1 ? "" : section + "";
 	}
 	
 	public List<ListDatetimeAmount> getDataDateList() {
@@ -396,11 +431,6 @@ class SeparatedListAdapter extends BaseAdapter {
 		}
 	}
 
-	private void removeSection(String sectionKey) {
-		sections.remove(sectionKey);
-		mDataDateList.remove(Integer.parseInt(sectionKey));
-	}
-
 	private static class ViewHolderBody {
 		TextView rowLocationTime;
 		TextView rowTag;
@@ -409,7 +439,6 @@ class SeparatedListAdapter extends BaseAdapter {
 		ImageView rowFavoriteIcon;
 		RelativeLayout rowListview;
 		ImageView dividerImageView;
-		Bitmap bitmap;
 	}
 
 	private class ViewHolderHeader {
@@ -436,30 +465,9 @@ class SeparatedListAdapter extends BaseAdapter {
 		}
 	}
 
-	private boolean isCurrentWeek(String dateViewString) {
-		if(dateViewString != null) {
-			if(!dateViewString.equals("")) {
-				return new DateHelper(dateViewString).isCurrentWeek();
-			}
-		}
-		return false;
+	// entries can be added and favorited under day headers only
+	private boolean isDayHeader(ListDatetimeAmount header) {
+		return header != null && header.bucket == DatabaseAdapter.BUCKET_DAY;
 	}
 
-	private void updateAmount(String sectionNumber, Entry prevEntry, Entry updatedEntry) {
-		StringProcessing mStringProcessing = new StringProcessing();
-		Double amountDouble = mStringProcessing.getAmount(mDataDateList.get(Integer.parseInt(sectionNumber)).amount);
-		amountDouble -= mStringProcessing.getAmount(prevEntry.amount);
-		if(updatedEntry != null && !updatedEntry.amount.contains("?")) { 
-			updatedEntry.amount = mStringProcessing.getStringDoubleDecimal(updatedEntry.amount);
-			amountDouble += mStringProcessing.getAmount(updatedEntry.amount);
-		}
-		if(amountDouble != 0.0 && mDataDateList.get(Integer.parseInt(sectionNumber)).amount.contains("?")) {
-			mDataDateList.get(Integer.parseInt(sectionNumber)).amount = mStringProcessing.getStringDoubleDecimal(amountDouble+"?");
-		} else if(amountDouble == 0.0 && mDataDateList.get(Integer.parseInt(sectionNumber)).amount.contains("?")) {
-			mDataDateList.get(Integer.parseInt(sectionNumber)).amount = mStringProcessing.getStringDoubleDecimal("?");
-		} else {
-			mDataDateList.get(Integer.parseInt(sectionNumber)).amount = mStringProcessing.getStringDoubleDecimal(amountDouble+"");
-		}
-	}
-	
 }
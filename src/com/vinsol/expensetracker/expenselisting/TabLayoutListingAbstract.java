@@ -40,16 +40,13 @@ abstract class TabLayoutListingAbstract extends ListingAbstract {
 
 	@Override
 	protected void initListView() {
-		mSeparatedListAdapter = new SeparatedListAdapter(this,highlightID);
 		mConvertCursorToListString = new ConvertCursorToListString(this);
-		mDataDateList = mConvertCursorToListString.getDateListString(false,false,"",type);
-		mSubList = mConvertCursorToListString.getEntryList(false,"");
-		addSections();
+		loadSections(getStartTimeInMillis(), null);
 	}
 
 	@Override
 	protected void unknownDialogAction(String id) {
-		initListView();
+		refreshSections();
 		Toast.makeText(this, "Deleted", Toast.LENGTH_SHORT).show();
 	}
 
@@ -71,6 +68,9 @@ abstract class TabLayoutListingAbstract extends ListingAbstract {
 			mRelativeLayout.setVisibility(View.VISIBLE);
 			Button noItemButton = (Button) findViewById(R.id.expense_listing_listview_no_item_button);
 			noItemButtonAction(noItemButton);
+		} else {
+			mListView.setVisibility(View.VISIBLE);
+			findViewById(R.id.expense_listing_listview_no_item).setVisibility(View.GONE);
 		}
 	}
 	
@@ -81,4 +81,7 @@ abstract class TabLayoutListingAbstract extends ListingAbstract {
 	}
 	
 	protected abstract void setType();
+	
+	// oldest DATE_TIME shown by the tab, null for no lower bound
+	protected abstract Long getStartTimeInMillis();
 }
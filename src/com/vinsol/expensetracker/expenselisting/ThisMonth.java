@@ -5,6 +5,8 @@
 
 package com.vinsol.expensetracker.expenselisting;
 
+import java.util.Calendar;
+
 import com.vinsol.expensetracker.R;
 import com.vinsol.expensetracker.helpers.DisplayDate;
 
@@ -20,6 +22,11 @@ public class ThisMonth extends TabLayoutListingAbstract {
 		type = R.string.sublist_thismonth;
 	}
 
+	@Override
+	protected Long getStartTimeInMillis() {
+		return new DisplayDate(Calendar.getInstance()).getStartOfMonthInMillis();
+	}
+
 	@Override
 	protected void setModifiedValues() {
 		isModifiedThisYear = false;
@@ -32,7 +39,7 @@ public class ThisMonth extends TabLayoutListingAbstract {
 	protected void onResume() {
 		super.onResume();
 		if(!isModifiedThisMonth) {
-			initListView();
+			refreshSections();
 		}
 	}
 	
@@ -5,6 +5,8 @@
 
 package com.vinsol.expensetracker.expenselisting;
 
+import java.util.Calendar;
+
 import com.vinsol.expensetracker.R;
 import com.vinsol.expensetracker.helpers.DisplayDate;
 
@@ -20,6 +22,11 @@ public class ThisWeek extends TabLayoutListingAbstract {
 		type = R.string.sublist_thisweek;
 	}
 
+	@Override
+	protected Long getStartTimeInMillis() {
+		return new DisplayDate(Calendar.getInstance()).getStartOfWeekInMillis();
+	}
+
 	@Override
 	protected void setModifiedValues() {
 		isModifiedThisYear = false;
@@ -32,8 +39,8 @@ public class ThisWeek extends TabLayoutListingAbstract {
 	protected void onResume() {
 		super.onResume();
 		if(!isModifiedThisWeek) {
-			initListView();
+			refreshSections();
 		}
 	}
 	
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -5,6 +5,8 @@
 
 package com.vinsol.expensetracker.expenselisting;
 
+import java.util.Calendar;
+
 import com.vinsol.expensetracker.R;
 import com.vinsol.expensetracker.helpers.DisplayDate;
 
@@ -20,6 +22,11 @@ public class ThisYear extends TabLayoutListingAbstract {
 		type = R.string.sublist_thisyear;
 	}
 
+	@Override
+	protected Long getStartTimeInMillis() {
+		return new DisplayDate(Calendar.getInstance()).getStartOfYearInMillis();
+	}
+
 	@Override
 	protected void setModifiedValues() {
 		isModifiedThisYear = true;
@@ -32,7 +39,7 @@ public class ThisYear extends TabLayoutListingAbstract {
 	protected void onResume() {
 		super.onResume();
 		if(!isModifiedThisYear) {
-			initListView();
+			refreshSections();
 		}
 	}
 	
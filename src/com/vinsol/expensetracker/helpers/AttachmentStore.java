@@ -0,0 +1,394 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.helpers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import android.database.Cursor;
+
+import com.vinsol.expensetracker.Constants;
+import com.vinsol.expensetracker.ExpenseTrackerApplication;
+import com.vinsol.expensetracker.utils.Log;
+
+/**
+ * Attachment files shared between entries and favorites, kept once in Constants.DIRECTORY_BLOBS under the
+ * SHA-1 of their content. AttachmentTable maps an entry or favorite and a variant (the file suffix) to the
+ * hash, so creating an entry from a favorite, or a favorite from an entry, only adds rows instead of copying
+ * the files. A file is moved into the store the first time it is shared, files never shared stay at their
+ * own path. A blob is deleted with the last row pointing at it, collectGarbage() sweeps what is left over.
+ * Blobs are never written to, detach() gives an entry or favorite its own file back before it is replaced.
+ * getFile() is called while binding list rows and takes no lock. Changes to the rows are made one at a
+ * time under the store's monitor, hashing, copying and sweeping the blobs are done outside of it.
+ */
+public class AttachmentStore {
+
+	public static final String[] VARIANTS = {Constants.IMAGE_LARGE_SUFFIX, Constants.IMAGE_SMALL_SUFFIX, Constants.IMAGE_THUMBNAIL_SUFFIX, Constants.AUDIO_FILE_SUFFIX};
+
+	private static final int BUFFER_SIZE = 8 * 1024;
+	// hex SHA-1 the blob names start with
+	private static final int HASH_LENGTH = 40;
+
+	private static AttachmentStore instance;
+
+	// "owner/ownerId/variant" -> content hash, a copy of AttachmentTable written through under the monitor,
+	// read without it. Loaded, or replaced by collectGarbage(), under mLoadLock
+	private volatile Map<String, String> mHashes;
+	private final Object mLoadLock = new Object();
+
+	private int mSharedCount = 0;
+	private int mDedupCount = 0;
+	private int mDeletedCount = 0;
+
+	public static synchronized AttachmentStore getInstance() {
+		if(instance == null) {
+			instance = new AttachmentStore();
+		}
+		return instance;
+	}
+
+	private AttachmentStore() {}
+
+	// File the attachment is read from, its blob if it is in the store and its own path otherwise
+	public File getFile(int owner, String ownerId, String variant) {
+		String hash = getHashes().get(getKey(owner, ownerId, variant));
+		return hash != null ? getBlobFile(hash, variant) : getOwnFile(owner, ownerId, variant);
+	}
+
+	// path the attachment is written to, and read from while it is not in the store
+	public static File getOwnFile(int owner, String ownerId, String variant) {
+		String directory = Constants.DIRECTORY + (owner == DatabaseAdapter.OWNER_FAVORITE ? Constants.DIRECTORY_FAVORITE : "");
+		if(Constants.AUDIO_FILE_SUFFIX.equals(variant)) {
+			directory += Constants.DIRECTORY_AUDIO;
+		}
+		return new File(directory + ownerId + variant);
+	}
+
+	/**
+	 * Points the target at the content of the source, moving the source file into the store first if it
+	 * is not there yet. Nothing changes if the source has no such file
+	 */
+	public void share(int owner, String ownerId, int targetOwner, String targetId, String variant) {
+		String hash = getHashes().get(getKey(owner, ownerId, variant));
+		if(hash == null) {
+			hash = adopt(owner, ownerId, variant);
+			if(hash == null) {
+				return;
+			}
+		}
+		synchronized (this) {
+			hash = getHashes().get(getKey(owner, ownerId, variant));
+			if(hash == null) {
+				// released meanwhile
+				return;
+			}
+			release(targetOwner, targetId, variant);
+			delete(getOwnFile(targetOwner, targetId, variant));
+			if(putAttachment(targetOwner, targetId, variant, hash)) {
+				mSharedCount++;
+			}
+		}
+	}
+
+	// Drops the attachment of the entry or favorite, its blob goes too once nothing points at it
+	public synchronized void release(int owner, String ownerId, String variant) {
+		String hash = getHashes().remove(getKey(owner, ownerId, variant));
+		if(hash == null) {
+			return;
+		}
+		DatabaseAdapter adapter = new DatabaseAdapter(ExpenseTrackerApplication.getContext());
+		adapter.open();
+		adapter.deleteAttachment(owner, ownerId, variant);
+		long refCount = adapter.getAttachmentRefCount(hash, variant);
+		adapter.close();
+		if(refCount == 0) {
+			delete(getBlobFile(hash, variant));
+			mDeletedCount++;
+		}
+	}
+
+	/**
+	 * Takes the attachment out of the store back to its own path, moved if nothing else points at the blob
+	 * and copied otherwise. Call it before the own file is written, e.g. on a retake or a download
+	 */
+	public void detach(int owner, String ownerId, String variant) {
+		String key = getKey(owner, ownerId, variant);
+		String hash;
+		File own = getOwnFile(owner, ownerId, variant);
+		synchronized (this) {
+			hash = getHashes().get(key);
+			if(hash == null) {
+				return;
+			}
+			if(getRefCount(hash, variant) <= 1 && moveOut(getBlobFile(hash, variant), own)) {
+				removeAttachment(owner, ownerId, variant);
+				return;
+			}
+		}
+		// shared, the row keeps the blob from being deleted while it is copied
+		File blob = getBlobFile(hash, variant);
+		delete(own);
+		if(!copy(blob, own)) {
+			// keep pointing at the blob rather than lose the attachment
+			return;
+		}
+		synchronized (this) {
+			if(!hash.equals(getHashes().get(key))) {
+				// released or detached meanwhile, the copy is not wanted
+				delete(own);
+				return;
+			}
+			removeAttachment(owner, ownerId, variant);
+			if(getRefCount(hash, variant) == 0) {
+				delete(blob);
+			}
+		}
+	}
+
+	/**
+	 * Drops the rows of entries and favorites deleted without releasing them and deletes the blobs nothing
+	 * points at any more, left by a crash between a row and its file. Runs with DatabaseMigration
+	 */
+	public int collectGarbage(DatabaseAdapter adapter) {
+		Set<String> referenced = new HashSet<String>();
+		synchronized (this) {
+			adapter.deleteOrphanAttachments();
+			synchronized (mLoadLock) {
+				mHashes = loadHashes(adapter);
+			}
+			for(Map.Entry<String, String> entry : mHashes.entrySet()) {
+				String key = entry.getKey();
+				referenced.add(entry.getValue() + key.substring(key.lastIndexOf('/') + 1));
+			}
+		}
+		File[] blobs = new File(Constants.DIRECTORY + Constants.DIRECTORY_BLOBS).listFiles();
+		int deleted = 0;
+		if(blobs != null) {
+			for(File blob : blobs) {
+				if(!referenced.contains(blob.getName()) && deleteIfUnreferenced(adapter, blob)) {
+					deleted++;
+				}
+			}
+		}
+		Log.d("****** " + this + ", " + deleted + " unreferenced blobs deleted ******");
+		return deleted;
+	}
+
+	@Override
+	public synchronized String toString() {
+		Map<String, String> hashes = mHashes;
+		return "AttachmentStore " + (hashes == null ? 0 : hashes.size()) + " attachments, shared " + mSharedCount + ", deduplicated " + mDedupCount + ", blobs deleted " + mDeletedCount;
+	}
+
+	// Moves the own file into the store, or deletes it if the store already has that content. Null if it cannot be read
+	private String adopt(int owner, String ownerId, String variant) {
+		File own = getOwnFile(owner, ownerId, variant);
+		if(!own.canRead()) {
+			return null;
+		}
+		String hash = getContentHash(own);
+		if(hash == null) {
+			return null;
+		}
+		File blob = getBlobFile(hash, variant);
+		synchronized (this) {
+			String current = getHashes().get(getKey(owner, ownerId, variant));
+			if(current != null) {
+				// adopted meanwhile
+				return current;
+			}
+			if(blob.exists()) {
+				mDedupCount++;
+			} else if(!moveOut(own, blob)) {
+				return null;
+			}
+			if(!putAttachment(owner, ownerId, variant, hash)) {
+				if(!own.exists()) {
+					blob.renameTo(own);
+				}
+				return null;
+			}
+			delete(own);
+			return hash;
+		}
+	}
+
+	// rename, the files are all on one storage. Falls back to a copy, which is then done under the monitor
+	private boolean moveOut(File source, File target) {
+		delete(target);
+		if(source.renameTo(target)) {
+			return true;
+		}
+		if(copy(source, target)) {
+			delete(source);
+			return true;
+		}
+		return false;
+	}
+
+	// Deletes the blob if no row points at it, called for each blob found unreferenced by the sweep
+	private synchronized boolean deleteIfUnreferenced(DatabaseAdapter adapter, File blob) {
+		String name = blob.getName();
+		if(name.length() > HASH_LENGTH && adapter.getAttachmentRefCount(name.substring(0, HASH_LENGTH), name.substring(HASH_LENGTH)) > 0) {
+			// shared since the sweep began
+			return false;
+		}
+		delete(blob);
+		mDeletedCount++;
+		return true;
+	}
+
+	// call under the monitor
+	private long getRefCount(String hash, String variant) {
+		DatabaseAdapter adapter = new DatabaseAdapter(ExpenseTrackerApplication.getContext());
+		adapter.open();
+		long refCount = adapter.getAttachmentRefCount(hash, variant);
+		adapter.close();
+		return refCount;
+	}
+
+	// call under the monitor
+	private boolean putAttachment(int owner, String ownerId, String variant, String hash) {
+		DatabaseAdapter adapter = new DatabaseAdapter(ExpenseTrackerApplication.getContext());
+		adapter.open();
+		boolean isPut = adapter.putAttachment(owner, ownerId, variant, hash);
+		adapter.close();
+		if(isPut) {
+			getHashes().put(getKey(owner, ownerId, variant), hash);
+		}
+		return isPut;
+	}
+
+	// call under the monitor
+	private void removeAttachment(int owner, String ownerId, String variant) {
+		DatabaseAdapter adapter = new DatabaseAdapter(ExpenseTrackerApplication.getContext());
+		adapter.open();
+		adapter.deleteAttachment(owner, ownerId, variant);
+		adapter.close();
+		getHashes().remove(getKey(owner, ownerId, variant));
+	}
+
+	/**
+	 * Reads AttachmentTable into the map unless it is loaded already. DatabaseMigration calls it first thing,
+	 * so that getFile() from a listing's getView() does not read the table on the UI thread
+	 */
+	public void load(DatabaseAdapter adapter) {
+		if(mHashes == null) {
+			synchronized (mLoadLock) {
+				if(mHashes == null) {
+					mHashes = loadHashes(adapter);
+				}
+			}
+		}
+	}
+
+	private Map<String, String> getHashes() {
+		Map<String, String> hashes = mHashes;
+		if(hashes == null) {
+			DatabaseAdapter adapter = new DatabaseAdapter(ExpenseTrackerApplication.getContext());
+			adapter.open();
+			load(adapter);
+			adapter.close();
+			hashes = mHashes;
+		}
+		return hashes;
+	}
+
+	private Map<String, String> loadHashes(DatabaseAdapter adapter) {
+		Map<String, String> hashes = new ConcurrentHashMap<String, String>();
+		Cursor cursor = adapter.getAttachments();
+		if(cursor.moveToFirst()) {
+			do {
+				hashes.put(getKey(cursor.getInt(0), cursor.getString(1), cursor.getString(2)), cursor.getString(3));
+			} while (cursor.moveToNext());
+		}
+		cursor.close();
+		return hashes;
+	}
+
+	private static String getKey(int owner, String ownerId, String variant) {
+		return owner + "/" + ownerId + "/" + variant;
+	}
+
+	private static File getBlobFile(String hash, String variant) {
+		return new File(Constants.DIRECTORY + Constants.DIRECTORY_BLOBS + hash + variant);
+	}
+
+	private static String getContentHash(File file) {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		InputStream in = null;
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			in = new FileInputStream(file);
+			int len;
+			while ((len = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, len);
+			}
+			return String.format("%040x", new BigInteger(1, digest.digest()));
+		} catch (NoSuchAlgorithmException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			closeSilently(in);
+		}
+		return null;
+	}
+
+	private static boolean copy(File source, File target) {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		InputStream in = null;
+		OutputStream out = null;
+		try {
+			in = new FileInputStream(source);
+			out = new FileOutputStream(target);
+			int len;
+			while ((len = in.read(buffer)) > 0) {
+				out.write(buffer, 0, len);
+			}
+			out.flush();
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			delete(target);
+			return false;
+		} finally {
+			closeSilently(in);
+			closeSilently(out);
+		}
+	}
+
+	// forgets the bitmap of file too, the same path may hold other content next
+	private static void delete(File file) {
+		ThumbnailCache.getInstance().remove(file);
+		file.delete();
+	}
+
+	private static void closeSilently(Closeable c) {
+		if(c == null) {
+			return;
+		}
+		try {
+			c.close();
+		} catch (IOException e) {
+			// do nothing
+		}
+	}
+
+}
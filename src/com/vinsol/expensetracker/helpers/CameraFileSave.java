@@ -6,8 +6,8 @@
 
 package com.vinsol.expensetracker.helpers;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 
@@ -15,20 +15,28 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 
+// One instance keeps its decode and encode buffers between calls, a batch of files saved on one thread
+// (SyncHelper.pullFiles) shares an instance instead of making one per file
 public class CameraFileSave {
 	
-	private String filename;
 	private FileHelper fileHelper;
 
 	// ///// ******* Declaring Constants ******** ///////////
-	private int FULL_SIZE_IMAGE_WIDTH;
-	private int FULL_SIZE_IMAGE_HEIGHT;
+	private static final int SMALL_MAX_WIDTH = 160;
+	private static final int SMALL_MAX_HEIGHT = 120;
 	
-	private int SMALL_MAX_WIDTH = 160;
-	private int SMALL_MAX_HEIGHT = 120;
+	private static final int THUMBNAIL_MAX_HEIGHT = 60;
+	private static final int THUMBNAIL_MAX_WIDTH = 60;
 	
-	private int THUMBNAIL_MAX_HEIGHT = 60;
-	private int THUMBNAIL_MAX_WIDTH = 60;
+	private static final int JPEG_QUALITY = 60;
+	private static final int BUFFER_SIZE = 16 * 1024;
+	
+	// ///// ******* Buffers reused across calls ******** ///////////
+	private byte[] mDecodeBuffer = new byte[BUFFER_SIZE];
+	private ByteArrayOutputStream mEncodeBuffer = new ByteArrayOutputStream(BUFFER_SIZE);
+	
+	private int mSavedCount = 0;
+	private long mTimeTakenInMillis = 0;
 
 	// /////// ********* Constructors ******** /////////////
 	public CameraFileSave(Context _context) {
@@ -36,78 +44,98 @@ public class CameraFileSave {
 	}
 	
 	// /////// ********* Resize original Image and save thumbnails ******** /////////////
-	public void resizeImageAndSaveThumbnails(String _filename, boolean isFromFavorite) {
+	// The large image is decoded once, sampled down as far as the small image allows, and both the small
+	// image and the thumbnail are scaled from that bitmap
+	public void resizeImageAndSaveThumbnails(String filename, boolean isFromFavorite) {
 		if (android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED)) {
-			filename = _filename;
+			long startTimeInMillis = System.currentTimeMillis();
 			File fullSizeImage;
+			File smallImage;
+			File thumbnail;
 			if(isFromFavorite) {
 				fullSizeImage = fileHelper.getCameraFileLargeFavorite(filename);
+				smallImage = fileHelper.getCameraFileSmallFavorite(filename);
+				thumbnail = fileHelper.getCameraFileThumbnailFavorite(filename);
 			} else {
 				fullSizeImage = fileHelper.getCameraFileLargeEntry(filename);
+				smallImage = fileHelper.getCameraFileSmallEntry(filename);
+				thumbnail = fileHelper.getCameraFileThumbnailEntry(filename);
 			}
 			BitmapFactory.Options options = new BitmapFactory.Options();
-			options.inPurgeable = true;
+			options.inTempStorage = mDecodeBuffer;
 			options.inJustDecodeBounds = true;
-			Bitmap fullSizeBitmap = BitmapFactory.decodeFile(fullSizeImage.toString(), options);
-			if(options.outWidth > 0 && options.outHeight > 0) {
-				FULL_SIZE_IMAGE_WIDTH = options.outWidth;
-				FULL_SIZE_IMAGE_HEIGHT = options.outHeight;
-				if(fullSizeBitmap != null)
-					fullSizeBitmap.recycle();
-					//Save small image
-				Bitmap bitmap = getBitmap(fullSizeImage, SMALL_MAX_WIDTH, SMALL_MAX_HEIGHT);
-				File smallImage;
-				if(isFromFavorite) {
-					smallImage = fileHelper.getCameraFileSmallFavorite(filename);
-				} else {
-					smallImage = fileHelper.getCameraFileSmallEntry(filename);
-				}
-				saveImage(smallImage, bitmap);
-				bitmap.recycle();
-				//save Small thumbnail
-				bitmap = getBitmap(fullSizeImage, THUMBNAIL_MAX_WIDTH, THUMBNAIL_MAX_HEIGHT);
-				File thumbnail;
-				if(isFromFavorite) {
-					thumbnail = fileHelper.getCameraFileThumbnailFavorite(filename);
-				} else {
-					thumbnail = fileHelper.getCameraFileThumbnailEntry(filename);
-				}
-				saveImage(thumbnail, bitmap);
-				bitmap.recycle();
+			BitmapFactory.decodeFile(fullSizeImage.toString(), options);
+			if(options.outWidth <= 0 || options.outHeight <= 0) {
+				return;
 			}
+			options.inJustDecodeBounds = false;
+			options.inPurgeable = true;
+			options.inSampleSize = getScale(options.outWidth, options.outHeight, SMALL_MAX_WIDTH, SMALL_MAX_HEIGHT);
+			Bitmap decoded = BitmapFactory.decodeFile(fullSizeImage.toString(), options);
+			if(decoded == null) {
+				return;
+			}
+			//Save small image
+			Bitmap smallBitmap = getScaledBitmap(decoded, SMALL_MAX_WIDTH, SMALL_MAX_HEIGHT);
+			if(smallBitmap != decoded) {
+				decoded.recycle();
+			}
+			saveImage(smallImage, smallBitmap);
+			//save Small thumbnail
+			Bitmap thumbnailBitmap = getScaledBitmap(smallBitmap, THUMBNAIL_MAX_WIDTH, THUMBNAIL_MAX_HEIGHT);
+			saveImage(thumbnail, thumbnailBitmap);
+			if(thumbnailBitmap != smallBitmap) {
+				thumbnailBitmap.recycle();
+			}
+			smallBitmap.recycle();
+			mSavedCount++;
+			mTimeTakenInMillis += System.currentTimeMillis() - startTimeInMillis;
 		}
 	}
+	
+	// files resized by this instance and the time it took, for batches to log
+	public int getSavedCount() {
+		return mSavedCount;
+	}
+	
+	public long getTimeTakenInMillis() {
+		return mTimeTakenInMillis;
+	}
 
 	// //////// ********* Function to save File ********* /////////
+	// encodes into the reused buffer and writes the file with one call
 	private void saveImage(File file, Bitmap bitmapToSave) {
 		if (android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED)) {
+			ThumbnailCache.getInstance().remove(file);
+			mEncodeBuffer.reset();
+			bitmapToSave.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, mEncodeBuffer);
 			FileOutputStream out = null;
 			try {
 				out = new FileOutputStream(file);
-			} catch (FileNotFoundException e1) {
-				e1.printStackTrace();
-			}
-			bitmapToSave.compress(Bitmap.CompressFormat.JPEG, 60, out);
-			try {
-				out.flush();
-				out.close();
+				mEncodeBuffer.writeTo(out);
 			} catch (IOException e) {
 				e.printStackTrace();
+			} finally {
+				if(out != null) {
+					try {
+						out.close();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
 			}
-			/////////// ********* Clear Bitmap to save VM space ********* /////////
 		}
 	}
 
-	//////////// ******** To get Bitmap Image of the picture clicked through camera ********* ///////
-	private Bitmap getBitmap(File file, int width, int height) {
-		if (android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED)) {
-			int scale = getScale(FULL_SIZE_IMAGE_WIDTH, FULL_SIZE_IMAGE_HEIGHT, width, height);
-			BitmapFactory.Options o2 = new BitmapFactory.Options();
-			o2.inPurgeable = true;
-			o2.inSampleSize = scale;
-			return BitmapFactory.decodeFile(file.toString(), o2);
+	//////////// ******** Scales bitmap down to the smallest size still covering width x height ********* ///////
+	private Bitmap getScaledBitmap(Bitmap bitmap, int width, int height) {
+		float factor = Math.max((float) width / bitmap.getWidth(), (float) height / bitmap.getHeight());
+		if(factor >= 1) {
+			return bitmap;
 		}
-		return null;
+		int scaledWidth = Math.max(1, Math.round(bitmap.getWidth() * factor));
+		int scaledHeight = Math.max(1, Math.round(bitmap.getHeight() * factor));
+		return Bitmap.createScaledBitmap(bitmap, scaledWidth, scaledHeight, true);
 	}
 
 
@@ -115,15 +143,13 @@ public class CameraFileSave {
 
 	private int getScale(int originalImageWidth, int originalImageHeight, int requiredWidth, int requiredHeight) {
 		int scale = 1;
-		if (android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED)) {
-			// Find the correct scale value. It should be the power of 2.
-			while (true) {
-				if (originalImageWidth / 2 < requiredWidth || originalImageHeight / 2 < requiredHeight)
-					break;
-				originalImageWidth /= 2;
-				originalImageHeight /= 2;
-				scale *= 2;
-			}
+		// Find the correct scale value. It should be the power of 2.
+		while (true) {
+			if (originalImageWidth / 2 < requiredWidth || originalImageHeight / 2 < requiredHeight)
+				break;
+			originalImageWidth /= 2;
+			originalImageHeight /= 2;
+			scale *= 2;
 		}
 		return scale;
 	}
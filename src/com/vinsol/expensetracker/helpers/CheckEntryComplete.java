@@ -7,13 +7,20 @@
 package com.vinsol.expensetracker.helpers;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
 
 import android.content.Context;
+import android.database.Cursor;
 
 import com.vinsol.expensetracker.R;
 import com.vinsol.expensetracker.models.Entry;
 
 public class CheckEntryComplete {
+	
+	// entries checked per transaction by updateFilesPresentUnchecked()
+	public static final int FILES_CHECK_BATCH_SIZE = 200;
+	
 	private FileHelper fileHelper;
 	
 	public boolean isEntryComplete(Entry entryList, Context mContext) {
@@ -30,6 +37,49 @@ public class CheckEntryComplete {
 		return false;
 	}
 	
+	// Stores in FILES_PRESENT whether the attachments of entry id are readable, so that unfinished counts
+	// come from the database without touching the files. Call after the files of an entry are written or deleted
+	public void updateFilesPresent(Context mContext, String id) {
+		fileHelper = new FileHelper();
+		DatabaseAdapter adapter = new DatabaseAdapter(mContext);
+		adapter.open();
+		adapter.setEntryFilesPresent(id, isFilesPresent(adapter.getEntryTypeById(id), id, mContext));
+		adapter.close();
+	}
+	
+	// Checks the files of camera and voice entries not checked yet (written before FILES_PRESENT existed), returns how many
+	public int updateFilesPresentUnchecked(Context mContext) {
+		fileHelper = new FileHelper();
+		DatabaseAdapter adapter = new DatabaseAdapter(mContext);
+		adapter.open();
+		int checked = 0;
+		while(true) {
+			Map<String, Boolean> filesPresent = new HashMap<String, Boolean>();
+			Cursor cursor = adapter.getEntryFilesUnchecked(FILES_CHECK_BATCH_SIZE);
+			while(cursor.moveToNext()) {
+				String id = cursor.getString(0);
+				filesPresent.put(id, isFilesPresent(cursor.getString(1), id, mContext));
+			}
+			cursor.close();
+			if(filesPresent.isEmpty()) {
+				break;
+			}
+			adapter.setEntryFilesPresent(filesPresent);
+			checked += filesPresent.size();
+		}
+		adapter.close();
+		return checked;
+	}
+	
+	private boolean isFilesPresent(String type, String id, Context mContext) {
+		if (mContext.getString(R.string.camera).equals(type)) {
+			return isCameraFileReadable(id);
+		} else if (mContext.getString(R.string.voice).equals(type)) {
+			return isAudioFileReadable(id);
+		}
+		return false;
+	}
+	
 	private boolean isAmountValid(String amount) {
 		if( amount!= null) {
 			if (amount.contains("?")) {
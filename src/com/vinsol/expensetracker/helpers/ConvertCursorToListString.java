@@ -13,8 +13,10 @@ import android.content.Context;
 import android.database.Cursor;
 
 import com.vinsol.expensetracker.R;
+import com.vinsol.expensetracker.models.Amount;
 import com.vinsol.expensetracker.models.Entry;
 import com.vinsol.expensetracker.models.Favorite;
+import com.vinsol.expensetracker.models.GraphDataList;
 import com.vinsol.expensetracker.models.ListDatetimeAmount;
 import com.vinsol.expensetracker.utils.Log;
 
@@ -41,6 +43,7 @@ public class ConvertCursorToListString {
 			do {
 				listFavorite = new Favorite();
 				listFavorite.amount = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_AMOUNT));
+				listFavorite.amountValue = getAmount(cursor);
 				listFavorite.id = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_ID));
 				listFavorite.description = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_TAG));
 				listFavorite.type = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_TYPE));
@@ -53,6 +56,7 @@ public class ConvertCursorToListString {
 				listFavorite.fileToDownload = cursor.getInt(cursor.getColumnIndex(DatabaseAdapter.KEY_FILE_TO_DOWNLOAD))>0;
 				listFavorite.syncBit = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_SYNC_BIT));
 				listFavorite.fileUpdatedAt = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_FILE_UPDATED_AT));
+				listFavorite.dirtyFields = getDirtyFields(cursor);
 				
 				if (listFavorite.description == null
 						|| listFavorite.description.equals("")) {
@@ -74,8 +78,7 @@ public class ConvertCursorToListString {
 		return mainlist;
 	}
 
-	private String getValue(DisplayDate mDisplayDate, boolean isGraph,
-			String id, int type) {
+	private String getValue(DisplayDate mDisplayDate, boolean isGraph, int type) {
 		if (isGraph == true) {
 			return mDisplayDate.getDisplayDateHeaderGraph();
 		} else {
@@ -84,99 +87,155 @@ public class ConvertCursorToListString {
 	}
 
 	public List<ListDatetimeAmount> getDateListString(boolean isAscending,
-			boolean isGraph, String id, int type) {
-		ListDatetimeAmount listDatetimeAmount = new ListDatetimeAmount();
+			boolean isGraph, int type) {
+		return getDateListString(isAscending, isGraph, type, null, null);
+	}
+	
+	// Headers within [fromTimeInMillis, toTimeInMillis), either bound may be null
+	public List<ListDatetimeAmount> getDateListString(boolean isAscending,
+			boolean isGraph, int type, Long fromTimeInMillis, Long toTimeInMillis) {
+		List<ListDatetimeAmount> mainlist = new ArrayList<ListDatetimeAmount>();
 		adapter.open();
-		Cursor cursor;
-		if (!isAscending) {
-			cursor = getCursor(id, false);
+		if (isGraph) {
+			// weeks of the current month followed by the months before it
+			DisplayDate currentDisplayDate = new DisplayDate(Calendar.getInstance());
+			Long startOfMonth = currentDisplayDate.getStartOfMonthInMillis();
+			Cursor weekCursor = adapter.getEntryBucketTotals(DatabaseAdapter.BUCKET_WEEK, startOfMonth, currentDisplayDate.getStartOfNextMonthInMillis(), isAscending);
+			Cursor monthCursor = adapter.getEntryBucketTotals(DatabaseAdapter.BUCKET_MONTH, fromTimeInMillis, startOfMonth, isAscending);
+			addDateList(mainlist, isAscending ? monthCursor : weekCursor, isAscending ? DatabaseAdapter.BUCKET_MONTH : DatabaseAdapter.BUCKET_WEEK, isGraph, type);
+			addDateList(mainlist, isAscending ? weekCursor : monthCursor, isAscending ? DatabaseAdapter.BUCKET_WEEK : DatabaseAdapter.BUCKET_MONTH, isGraph, type);
+			if (!mainlist.isEmpty() && !new DisplayDate(mainlist.get(0).timeInMillis).isCurrentWeek()) {
+				ListDatetimeAmount listDatetimeAmount = new ListDatetimeAmount();
+				listDatetimeAmount.dateTime = getValue(new DisplayDate(Calendar.getInstance()), isGraph, type);
+				listDatetimeAmount.amount = Amount.UNKNOWN;
+				listDatetimeAmount.timeInMillis = Calendar.getInstance().getTimeInMillis();
+				listDatetimeAmount.bucket = DatabaseAdapter.BUCKET_WEEK;
+				mainlist.add(0, listDatetimeAmount);
+			}
 		} else {
-			cursor = getCursor(id, true);
+			int bucket = getHeaderBucket(type);
+			addDateList(mainlist, adapter.getEntryBucketTotals(bucket, fromTimeInMillis, toTimeInMillis, isAscending), bucket, isGraph, type);
 		}
-		StringProcessing mStringProcessing = new StringProcessing();
-		List<ListDatetimeAmount> mainlist = new ArrayList<ListDatetimeAmount>();
-		double temptotalAmount = 0;
-		String totalAmountString = null;
-		boolean isTempAmountNull = false;
-		if (cursor.getCount() >= 1) {
-			cursor.moveToFirst();
-			Calendar mTempCalendar = Calendar.getInstance();
-			mTempCalendar.setTimeInMillis(cursor.getLong(cursor.getColumnIndex(DatabaseAdapter.KEY_DATE_TIME)));
-			mTempCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-			DisplayDate mDisplayDate = new DisplayDate(mTempCalendar);
-			if (!mDisplayDate.isCurrentWeek()) {
-				DisplayDate currentWeekDisplayDate = new DisplayDate(Calendar.getInstance());
-				listDatetimeAmount.dateTime = getValue(currentWeekDisplayDate,isGraph, id, type);
-				listDatetimeAmount.amount = "";
+		adapter.close();
+		return mainlist;
+	}
+	
+	private void addDateList(List<ListDatetimeAmount> mainlist, Cursor cursor, int bucket, boolean isGraph, int type) {
+		if (cursor.moveToFirst()) {
+			do {
+				ListDatetimeAmount listDatetimeAmount = new ListDatetimeAmount();
+				listDatetimeAmount.timeInMillis = cursor.getLong(cursor.getColumnIndex(DatabaseAdapter.KEY_BUCKET_START));
+				listDatetimeAmount.dateTime = getValue(new DisplayDate(listDatetimeAmount.timeInMillis), isGraph, type);
+				listDatetimeAmount.amount = getBucketAmount(cursor);
+				listDatetimeAmount.count = cursor.getInt(cursor.getColumnIndex(DatabaseAdapter.KEY_BUCKET_COUNT));
+				listDatetimeAmount.bucket = bucket;
 				mainlist.add(listDatetimeAmount);
-				listDatetimeAmount = new ListDatetimeAmount();
-			}
+			} while (cursor.moveToNext());
+		}
+		cursor.close();
+	}
+	
+	// Grouped rows shown under the headers of month, year and all listings, getSubTotalRange() gives the entries behind a row
+	public List<Entry> getSubTotalList(int type, Long fromTimeInMillis, Long toTimeInMillis) {
+		List<Entry> mainlist = new ArrayList<Entry>();
+		adapter.open();
+		Cursor cursor = adapter.getEntryBucketTotals(getSubTotalBucket(type), fromTimeInMillis, toTimeInMillis, false);
+		if (cursor.moveToFirst()) {
 			do {
-				mTempCalendar.setTimeInMillis(cursor.getLong(cursor.getColumnIndex(DatabaseAdapter.KEY_DATE_TIME)));
-				mTempCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-				mDisplayDate = new DisplayDate(mTempCalendar);
-				if (!mDisplayDate.isCurrentWeek()) {
-					DisplayDate currentWeekDisplayDate = new DisplayDate(Calendar.getInstance());
-					listDatetimeAmount.dateTime = getValue(currentWeekDisplayDate, isGraph, id, type);
-				}
-				listDatetimeAmount.dateTime = getValue(mDisplayDate, isGraph,id, type);
-				String tempAmount = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_AMOUNT));
-				if (tempAmount != null && !tempAmount.equals("")) {
-					try {
-						temptotalAmount += Double.parseDouble(tempAmount);
-					} catch (NumberFormatException e) {
-						e.printStackTrace();
-					}
-				} else {
-					isTempAmountNull = true;
-				}
-				cursor.moveToNext();
-
-				if (!cursor.isAfterLast()) {
-					Calendar mTempSubCalendar = Calendar.getInstance();
-					mTempSubCalendar.setTimeInMillis(cursor.getLong(cursor.getColumnIndex(DatabaseAdapter.KEY_DATE_TIME)));
-					mTempSubCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-					DisplayDate mTempDisplayDate = new DisplayDate(mTempSubCalendar);
-					if (!listDatetimeAmount.dateTime.equals(getValue(mTempDisplayDate, isGraph, id, type))) {
-						totalAmountString = getTotalAmount(isTempAmountNull,temptotalAmount, totalAmountString);
-						isTempAmountNull = false;
-						totalAmountString = mStringProcessing.getStringDoubleDecimal(totalAmountString);
-						listDatetimeAmount.amount = totalAmountString;
-						temptotalAmount = 0;
-					}
-				} else {
-					cursor.moveToLast();
-					totalAmountString = getTotalAmount(isTempAmountNull,temptotalAmount, totalAmountString);
-					isTempAmountNull = false;
-					totalAmountString = mStringProcessing.getStringDoubleDecimal(totalAmountString);
-					listDatetimeAmount.amount = totalAmountString;
-					cursor.moveToNext();
-				}
-
-				if (totalAmountString != null) {
-					mainlist.add(listDatetimeAmount);
-					listDatetimeAmount = new ListDatetimeAmount();
-					totalAmountString = null;
-				}
-			} while (!cursor.isAfterLast());
+				Entry mEntry = new Entry();
+				mEntry.id = "";
+				mEntry.timeInMillis = cursor.getLong(cursor.getColumnIndex(DatabaseAdapter.KEY_BUCKET_START));
+				mEntry.description = new DisplayDate(mEntry.timeInMillis).getSubListTag(type);
+				mEntry.amountValue = getBucketAmount(cursor);
+				mEntry.amount = mEntry.amountValue.toString();
+				mEntry.type = context.getString(type);
+				mEntry.deleted = false;
+				mEntry.fileToDownload = false;
+				mEntry.fileUpdatedAt = "";
+				mEntry.fileUploaded = false;
+				mEntry.idFromServer = "";
+				mEntry.myHash = "";
+				mEntry.syncBit = "";
+				mEntry.updatedAt = "";
+				mainlist.add(mEntry);
+			} while (cursor.moveToNext());
 		}
 		cursor.close();
 		adapter.close();
 		return mainlist;
 	}
-
-	private String getTotalAmount(Boolean isTempAmountNull,
-			double temptotalAmount, String totalAmountString) {
-		if (isTempAmountNull) {
-			if (temptotalAmount != 0) {
-				totalAmountString = temptotalAmount + " ?";
-			} else {
-				totalAmountString = "?";
-			}
-		} else {
-			totalAmountString = temptotalAmount + "";
+	
+	// {from, to} of the bucket a subtotal row of a listing of type stands for
+	public long[] getSubTotalRange(int type, long timeInMillis) {
+		DisplayDate mDisplayDate = new DisplayDate(timeInMillis);
+		int bucket = getSubTotalBucket(type);
+		return new long[] {mDisplayDate.getStartOfBucketInMillis(bucket), mDisplayDate.getStartOfNextBucketInMillis(bucket)};
+	}
+	
+	// Bars of the graph, days of the current month followed by weeks before it
+	public List<GraphDataList> getGraphDataList() {
+		List<GraphDataList> mainlist = new ArrayList<GraphDataList>();
+		DisplayDate currentDisplayDate = new DisplayDate(Calendar.getInstance());
+		Long startOfMonth = currentDisplayDate.getStartOfMonthInMillis();
+		adapter.open();
+		addGraphDataList(mainlist, adapter.getEntryBucketTotals(DatabaseAdapter.BUCKET_DAY, startOfMonth, currentDisplayDate.getStartOfNextMonthInMillis(), false));
+		addGraphDataList(mainlist, adapter.getEntryBucketTotals(DatabaseAdapter.BUCKET_WEEK, null, startOfMonth, false));
+		adapter.close();
+		return mainlist;
+	}
+	
+	private void addGraphDataList(List<GraphDataList> mainlist, Cursor cursor) {
+		if (cursor.moveToFirst()) {
+			do {
+				GraphDataList graphDataList = new GraphDataList();
+				graphDataList.timeInMillis = cursor.getLong(cursor.getColumnIndex(DatabaseAdapter.KEY_BUCKET_START));
+				graphDataList.dateTime = new DisplayDate(graphDataList.timeInMillis).getDisplayDateGraph();
+				graphDataList.amount = getBucketAmount(cursor);
+				graphDataList.count = cursor.getInt(cursor.getColumnIndex(DatabaseAdapter.KEY_BUCKET_COUNT));
+				mainlist.add(graphDataList);
+			} while (cursor.moveToNext());
+		}
+		cursor.close();
+	}
+	
+	private Amount getBucketAmount(Cursor cursor) {
+		return new Amount(cursor.getLong(cursor.getColumnIndex(DatabaseAdapter.KEY_BUCKET_TOTAL)), cursor.getInt(cursor.getColumnIndex(DatabaseAdapter.KEY_BUCKET_UNKNOWN_COUNT)) > 0);
+	}
+	
+	// null when the cursor doesn't carry AMOUNT_MINOR (rows not migrated yet), getAmount() then parses amount
+	private Amount getAmount(Cursor cursor) {
+		int minorIndex = cursor.getColumnIndex(DatabaseAdapter.KEY_AMOUNT_MINOR);
+		int unknownIndex = cursor.getColumnIndex(DatabaseAdapter.KEY_AMOUNT_UNKNOWN);
+		if(minorIndex == -1 || unknownIndex == -1 || cursor.isNull(minorIndex)) {
+			return null;
+		}
+		return new Amount(cursor.getLong(minorIndex), cursor.getInt(unknownIndex) > 0);
+	}
+	
+	// DatabaseAdapter.BUCKET_* of the headers of a listing of type
+	public static int getHeaderBucket(int type) {
+		switch (type) {
+		case R.string.sublist_thisweek:
+			return DatabaseAdapter.BUCKET_DAY;
+		case R.string.sublist_thismonth:
+			return DatabaseAdapter.BUCKET_MONTH;
+		case R.string.sublist_thisyear:
+		case R.string.sublist_all:
+			return DatabaseAdapter.BUCKET_YEAR;
+		default:
+			return DatabaseAdapter.BUCKET_WEEK;
+		}
+	}
+	
+	private int getSubTotalBucket(int type) {
+		switch (type) {
+		case R.string.sublist_thismonth:
+			return DatabaseAdapter.BUCKET_WEEK;
+		case R.string.sublist_thisyear:
+			return DatabaseAdapter.BUCKET_MONTH;
+		default:
+			return DatabaseAdapter.BUCKET_YEAR;
 		}
-		return totalAmountString;
 	}
 	
 	public List<Entry> getEntryListFileNotUploaded() {
@@ -219,9 +278,19 @@ public class ConvertCursorToListString {
 		return getFavoriteList(adapter.getFavoriteDataNotSyncedAndCreated());
 	}
 	
-	public List<Entry> getEntryList(Boolean isAscending, String id) {
+	public List<Entry> getEntryList(Boolean isAscending) {
+		adapter.open();
+		return getEntryList(isAscending ? adapter.getEntryTableDateDatabaseAscending() : adapter.getEntryTableDateDatabaseDescending());
+	}
+	
+	public List<Entry> getEntryList(Boolean isAscending, Long fromTimeInMillis) {
+		adapter.open();
+		return getEntryList(adapter.getEntryTableDateDatabase(fromTimeInMillis, isAscending));
+	}
+	
+	public List<Entry> getEntryPage(Long fromTimeInMillis, Long toTimeInMillis, Long afterTimeInMillis, Long afterId, int limit) {
 		adapter.open();
-		return getEntryList(getCursor(id, isAscending));
+		return getEntryList(adapter.getEntryPage(null, fromTimeInMillis, toTimeInMillis, afterTimeInMillis, afterId, 0, limit));
 	}
 	
 	public List<Entry> getEntryListFilesToDownload() {
@@ -260,6 +329,7 @@ public class ConvertCursorToListString {
 				Entry mEntry = new Entry();
 				mEntry.id = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_ID));
 				mEntry.amount = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_AMOUNT));
+				mEntry.amountValue = getAmount(cursor);
 				mEntry.favorite = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_FAVORITE));
 				mEntry.location = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_LOCATION));
 				mEntry.description = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_TAG));
@@ -273,6 +343,7 @@ public class ConvertCursorToListString {
 				mEntry.fileToDownload = cursor.getInt(cursor.getColumnIndex(DatabaseAdapter.KEY_FILE_TO_DOWNLOAD))>0;
 				mEntry.syncBit = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_SYNC_BIT));
 				mEntry.fileUpdatedAt = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_FILE_UPDATED_AT));
+				mEntry.dirtyFields = getDirtyFields(cursor);
 				mainlist.add(mEntry);
 				Log.d("***  "+mEntry.deleted);
 				cursor.moveToNext();
@@ -283,19 +354,13 @@ public class ConvertCursorToListString {
 		return mainlist;
 	}
 
-	private Cursor getCursor(String id, boolean isAscending) {
-		if (isAscending) {
-			if (id == null || id.equals("")) {
-				return adapter.getEntryTableDateDatabaseAscending();
-			} else {
-				return adapter.getEntryTableDateDatabaseAscending(id);
-			}
-		}
-		if (id == null || id.equals("")) {
-			return adapter.getEntryTableDateDatabaseDescending();
-		} else {
-			return adapter.getEntryTableDateDatabaseDescending(id);
+	// null when the cursor doesn't carry the column
+	private Integer getDirtyFields(Cursor cursor) {
+		int index = cursor.getColumnIndex(DatabaseAdapter.KEY_DIRTY_FIELDS);
+		if(index == -1 || cursor.isNull(index)) {
+			return null;
 		}
+		return cursor.getInt(index);
 	}
 
 }
\ No newline at end of file
@@ -5,15 +5,23 @@
 
 package com.vinsol.expensetracker.helpers;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import com.vinsol.expensetracker.R;
+import com.vinsol.expensetracker.models.Amount;
 import com.vinsol.expensetracker.models.Entry;
 import com.vinsol.expensetracker.models.Favorite;
 import com.vinsol.expensetracker.utils.Strings;
@@ -22,10 +30,16 @@ import com.vinsol.expensetracker.utils.Utils;
 public class DatabaseAdapter {
 
 	// database and table name
-	private static int DB_VERSION = 3;
+	private static int DB_VERSION = 9;
 	private final String DATABASE_NAME = "ExpenseTrackerDB";
 	private final String ENTRY_TABLE = "EntryTable";
 	private final String FAVORITE_TABLE = "FavoriteTable";
+	// per day totals of EntryTable, kept current by triggers on EntryTable
+	private final String ENTRY_DAY_TOTAL_TABLE = "EntryDayTotalTable";
+	// content hash of every attachment file kept in the shared store, see AttachmentStore
+	private final String ATTACHMENT_TABLE = "AttachmentTable";
+	// one row counting the writes to EntryTable, kept by triggers on EntryTable, see getChangeCount()
+	private final String ENTRY_CHANGE_TABLE = "EntryChangeTable";
 	
 	private final String PREVIOUS_VERSION_ENTRY_TABLE = "ExpenseTrackerTable";
 	private Context context;
@@ -34,6 +48,8 @@ public class DatabaseAdapter {
 	public static final String KEY_ID = "_id";
 	public static final String KEY_TAG = "TAG";
 	public static final String KEY_AMOUNT = "AMOUNT";
+	public static final String KEY_AMOUNT_MINOR = "AMOUNT_MINOR";
+	public static final String KEY_AMOUNT_UNKNOWN = "AMOUNT_UNKNOWN";
 	public static final String KEY_DATE_TIME = "DATE_TIME";
 	public static final String KEY_LOCATION = "LOCATION";
 	public static final String KEY_FAVORITE = "FAVORITE";
@@ -46,6 +62,58 @@ public class DatabaseAdapter {
 	public static final String KEY_FILE_UPLOADED = "FILE_UPLOADED";
 	public static final String KEY_FILE_TO_DOWNLOAD = "FILE_TO_DOWNLOAD";
 	public static final String KEY_FILE_UPDATED_AT = "FILE_UPLOADED_AT";
+	public static final String KEY_DIRTY_FIELDS = "DIRTY_FIELDS";
+	// attachment files of a camera or voice entry were readable when last checked, NULL until checked
+	public static final String KEY_FILES_PRESENT = "FILES_PRESENT";
+	
+	// columns of EntryDayTotalTable, DAY is the local date "yyyy-MM-dd" of DATE_TIME
+	private static final String KEY_DAY = "DAY";
+	private static final String KEY_DAY_START = "DAY_START";
+	private static final String KEY_DAY_TOTAL = "TOTAL";
+	private static final String KEY_DAY_COUNT = "ENTRY_COUNT";
+	private static final String KEY_DAY_UNKNOWN_COUNT = "UNKNOWN_COUNT";
+	private static final String KEY_DAY_UNFINISHED_COUNT = "UNFINISHED_COUNT";
+	
+	// column of EntryChangeTable
+	private static final String KEY_CHANGE_COUNT = "CHANGE_COUNT";
+	
+	// columns of AttachmentTable, VARIANT is the file suffix, e.g. Constants.IMAGE_SMALL_SUFFIX
+	public static final String KEY_ATTACHMENT_OWNER = "OWNER";
+	public static final String KEY_ATTACHMENT_OWNER_ID = "OWNER_ID";
+	public static final String KEY_ATTACHMENT_VARIANT = "VARIANT";
+	public static final String KEY_ATTACHMENT_CONTENT_HASH = "CONTENT_HASH";
+	
+	// OWNER of AttachmentTable, whose table OWNER_ID is the _id of
+	public static final int OWNER_ENTRY = 0;
+	public static final int OWNER_FAVORITE = 1;
+	
+	// bits of DIRTY_FIELDS, fields edited locally since the row was last synced
+	public static final int DIRTY_DESCRIPTION = 1;
+	public static final int DIRTY_AMOUNT = 2;
+	public static final int DIRTY_TYPE = 4;
+	public static final int DIRTY_LOCATION = 8;
+	public static final int DIRTY_DATE_TIME = 16;
+	public static final int DIRTY_FAVORITE = 32;
+	public static final int DIRTY_FILE = 64;
+	
+	// columns of getEntryBucketTotals()
+	public static final String KEY_BUCKET_START = "BUCKET_START";
+	public static final String KEY_BUCKET_TOTAL = "BUCKET_TOTAL";
+	public static final String KEY_BUCKET_UNKNOWN_COUNT = "BUCKET_UNKNOWN_COUNT";
+	public static final String KEY_BUCKET_COUNT = "BUCKET_COUNT";
+	
+	// bound where clauses of the lookups by id and by hash
+	private static final String WHERE_ID = KEY_ID + " = ?";
+	private static final String WHERE_HASH = KEY_MY_HASH + " = ?";
+	
+	// buckets of getEntryBucketTotals(), weeks start on monday and never cross a month
+	public static final int BUCKET_DAY = 0;
+	public static final int BUCKET_WEEK = 1;
+	public static final int BUCKET_MONTH = 2;
+	public static final int BUCKET_YEAR = 3;
+	
+	// rows backfilled per transaction by migrateAmounts()
+	public static final int AMOUNT_MIGRATION_BATCH_SIZE = 500;
 	
 	// sql open or create database
 	private final String ENTRY_TABLE_CREATE = "create table if not exists "
@@ -53,6 +121,8 @@ public class DatabaseAdapter {
 			+ KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT ,"
 			+ KEY_TAG + " TEXT,"
 			+ KEY_AMOUNT + " TEXT, " 
+			+ KEY_AMOUNT_MINOR + " INTEGER, "
+			+ KEY_AMOUNT_UNKNOWN + " BOOLEAN, "
 			+ KEY_DATE_TIME + " TEXT NOT NULL,"
 			+ KEY_LOCATION + " TEXT, " 
 			+ KEY_FAVORITE + " INTEGER, "
@@ -64,7 +134,9 @@ public class DatabaseAdapter {
 			+ KEY_SYNC_BIT +" INTEGER, "
 			+ KEY_FILE_UPLOADED +" BOOLEAN DEFAULT 'FALSE', "
 			+ KEY_FILE_TO_DOWNLOAD +" BOOLEAN DEFAULT 'FALSE', "
-			+ KEY_FILE_UPDATED_AT +" STRING "
+			+ KEY_FILE_UPDATED_AT +" STRING, "
+			+ KEY_DIRTY_FIELDS +" INTEGER DEFAULT 0, "
+			+ KEY_FILES_PRESENT +" BOOLEAN "
 			+ ")";
 
 	private final String FAVORITE_TABLE_CREATE = "create table if not exists "
@@ -72,6 +144,8 @@ public class DatabaseAdapter {
 			+ KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT ," 
 			+ KEY_TAG + " TEXT,"
 			+ KEY_AMOUNT + " TEXT, " 
+			+ KEY_AMOUNT_MINOR + " INTEGER, "
+			+ KEY_AMOUNT_UNKNOWN + " BOOLEAN, "
 			+ KEY_TYPE + " VARCHAR(1) NOT NULL, " 
 			+ KEY_LOCATION + " TEXT, "
 			+ KEY_ID_FROM_SERVER + " INTEGER UNIQUE, "
@@ -81,25 +155,105 @@ public class DatabaseAdapter {
 			+ KEY_SYNC_BIT +" INTEGER, "
 			+ KEY_FILE_UPLOADED +" BOOLEAN DEFAULT 'FALSE', "
 			+ KEY_FILE_TO_DOWNLOAD +" BOOLEAN DEFAULT 'FALSE', "
-			+ KEY_FILE_UPDATED_AT +" STRING "
+			+ KEY_FILE_UPDATED_AT +" STRING, "
+			+ KEY_DIRTY_FIELDS +" INTEGER DEFAULT 0 "
 			+ ")";
 	
+	private final String ENTRY_DAY_TOTAL_TABLE_CREATE = "create table if not exists "
+			+ ENTRY_DAY_TOTAL_TABLE + "("
+			+ KEY_DAY + " TEXT PRIMARY KEY, "
+			+ KEY_DAY_START + " INTEGER NOT NULL, "
+			+ KEY_DAY_TOTAL + " INTEGER NOT NULL DEFAULT 0, "
+			+ KEY_DAY_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+			+ KEY_DAY_UNKNOWN_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+			+ KEY_DAY_UNFINISHED_COUNT + " INTEGER NOT NULL DEFAULT 0"
+			+ ")";
+	
+	private final String ATTACHMENT_TABLE_CREATE = "create table if not exists "
+			+ ATTACHMENT_TABLE + "("
+			+ KEY_ATTACHMENT_OWNER + " INTEGER NOT NULL, "
+			+ KEY_ATTACHMENT_OWNER_ID + " INTEGER NOT NULL, "
+			+ KEY_ATTACHMENT_VARIANT + " TEXT NOT NULL, "
+			+ KEY_ATTACHMENT_CONTENT_HASH + " TEXT NOT NULL, "
+			+ "PRIMARY KEY(" + KEY_ATTACHMENT_OWNER + ", " + KEY_ATTACHMENT_OWNER_ID + ", " + KEY_ATTACHMENT_VARIANT + ")"
+			+ ")";
+	
+	private final String ENTRY_CHANGE_TABLE_CREATE = "create table if not exists "
+			+ ENTRY_CHANGE_TABLE + "("
+			+ KEY_ID + " INTEGER PRIMARY KEY, "
+			+ KEY_CHANGE_COUNT + " INTEGER NOT NULL"
+			+ ")";
+	
+	private final String ENTRY_CHANGE_ROW_CREATE = "insert or ignore into " + ENTRY_CHANGE_TABLE + " (" + KEY_ID + ", " + KEY_CHANGE_COUNT + ") values (1, 0)";
+	
+	private final String ENTRY_CHANGE_COUNT_INCREMENT = "update " + ENTRY_CHANGE_TABLE + " set " + KEY_CHANGE_COUNT + " = " + KEY_CHANGE_COUNT + " + 1";
+	
+	// covering index for date ordered listings and totals
+	private final String ENTRY_DATE_INDEX_CREATE = "create index if not exists EntryDateIndex on "
+			+ ENTRY_TABLE + "(" + KEY_DATE_TIME + ", " + KEY_DELETE_BIT + ", " + KEY_AMOUNT_MINOR + ", " + KEY_AMOUNT_UNKNOWN + ")";
+	
+	private final String ENTRY_HASH_INDEX_CREATE = "create index if not exists EntryHashIndex on "
+			+ ENTRY_TABLE + "(" + KEY_MY_HASH + ")";
+	
+	private final String ENTRY_SYNC_INDEX_CREATE = "create index if not exists EntrySyncIndex on "
+			+ ENTRY_TABLE + "(" + KEY_SYNC_BIT + ", " + KEY_DELETE_BIT + ")";
+	
+	private final String FAVORITE_HASH_INDEX_CREATE = "create index if not exists FavoriteHashIndex on "
+			+ FAVORITE_TABLE + "(" + KEY_MY_HASH + ")";
+	
+	private final String FAVORITE_SYNC_INDEX_CREATE = "create index if not exists FavoriteSyncIndex on "
+			+ FAVORITE_TABLE + "(" + KEY_SYNC_BIT + ", " + KEY_DELETE_BIT + ")";
+	
+	// reference counts of a blob
+	private final String ATTACHMENT_HASH_INDEX_CREATE = "create index if not exists AttachmentHashIndex on "
+			+ ATTACHMENT_TABLE + "(" + KEY_ATTACHMENT_CONTENT_HASH + ", " + KEY_ATTACHMENT_VARIANT + ")";
 	
 	private SQLiteDatabase db;
-	private MyCreateOpenHelper createOpenHelper;
+	private DatabaseManager manager;
+	private String callSite;
+	private long openedAt;
 
 	public DatabaseAdapter(Context context) {
 		this.context = context;
-		createOpenHelper = new MyCreateOpenHelper(context);
+	}
+
+	// the connection is shared by the whole process, see DatabaseManager
+	static SQLiteOpenHelper getOpenHelper(Context context, SQLiteDatabase.CursorFactory cursorFactory) {
+		return new DatabaseAdapter(context).new MyCreateOpenHelper(context, cursorFactory);
 	}
 
 	public DatabaseAdapter open() throws SQLException {
-		db = createOpenHelper.getWritableDatabase();
+		if(db != null) {
+			return this;
+		}
+		manager = DatabaseManager.getInstance(context);
+		if(manager.isInstrumented()) {
+			callSite = getCallSite();
+			openedAt = System.currentTimeMillis();
+		}
+		db = manager.open(callSite);
 		return this;
 	}
 
 	public void close() {
-		db.close();
+		if(db == null) {
+			return;
+		}
+		db = null;
+		manager.close(callSite, openedAt == 0 ? 0 : System.currentTimeMillis() - openedAt);
+		callSite = null;
+		openedAt = 0;
+	}
+	
+	// first frame outside the database classes, e.g. "FavoriteHelper.onClick:165"
+	private String getCallSite() {
+		for(StackTraceElement element : new Throwable().getStackTrace()) {
+			String className = element.getClassName();
+			if(!className.equals(DatabaseAdapter.class.getName()) && !className.equals(DatabaseManager.class.getName())) {
+				return className.substring(className.lastIndexOf('.') + 1) + "." + element.getMethodName() + ":" + element.getLineNumber();
+			}
+		}
+		return null;
 	}
 
 	protected void dropEntryTable() {
@@ -130,8 +284,12 @@ public class DatabaseAdapter {
 		ContentValues contentValues = new ContentValues();
 		if(Strings.notEmpty(object.description))
 			contentValues.put(KEY_TAG, object.description);
-		if(Strings.notEmpty(object.amount))
-			contentValues.put(KEY_AMOUNT, object.amount);
+		if(Strings.notEmpty(object.amount)) {
+			putAmount(contentValues, object.amount);
+		} else {
+			contentValues.put(KEY_AMOUNT_MINOR, 0);
+			contentValues.put(KEY_AMOUNT_UNKNOWN, true);
+		}
 		if(Strings.notEmpty(object.location))
 			contentValues.put(KEY_LOCATION, object.location);
 		
@@ -160,22 +318,66 @@ public class DatabaseAdapter {
 		return contentValues;
 	}
 	
+	// For a local edit (sync bit not synced) adds the bits of the columns whose value changes to DIRTY_FIELDS,
+	// so the next push sends only those fields. Edits coming from the server leave DIRTY_FIELDS alone
+	private void putDirtyFields(String table, String where, String[] whereArgs, ContentValues contentValues) {
+		if(!context.getString(R.string.syncbit_not_synced).equals(contentValues.getAsString(KEY_SYNC_BIT))) {
+			return;
+		}
+		String[] columns = {KEY_TAG, KEY_AMOUNT, KEY_TYPE, KEY_LOCATION, KEY_DATE_TIME, KEY_FAVORITE};
+		int[] bits = {DIRTY_DESCRIPTION, DIRTY_AMOUNT, DIRTY_TYPE, DIRTY_LOCATION, DIRTY_DATE_TIME, DIRTY_FAVORITE};
+		List<String> queryColumns = new ArrayList<String>();
+		queryColumns.add(KEY_DIRTY_FIELDS);
+		for(String column : columns) {
+			if(contentValues.containsKey(column)) {
+				queryColumns.add(column);
+			}
+		}
+		Cursor cursor = db.query(table, queryColumns.toArray(new String[queryColumns.size()]), where, whereArgs, null, null, null);
+		if(cursor.moveToFirst()) {
+			int dirtyFields = cursor.getInt(0);
+			for(int i = 0; i < columns.length; i++) {
+				int index = queryColumns.indexOf(columns[i]);
+				if(index != -1 && !Strings.equal(cursor.getString(index), contentValues.getAsString(columns[i]))) {
+					dirtyFields |= bits[i];
+				}
+			}
+			contentValues.put(KEY_DIRTY_FIELDS, dirtyFields);
+		}
+		cursor.close();
+	}
+	
+	private void markDirtyFields(String table, String column, String value, int dirtyFields) {
+		manager.execute("update " + table + " set " + KEY_DIRTY_FIELDS + " = COALESCE(" + KEY_DIRTY_FIELDS + ", 0) | ? where " + column + " = ?", dirtyFields, value);
+	}
+	
+	private void putAmount(ContentValues contentValues, String amount) {
+		Long amountMinor = getAmountMinor(amount);
+		contentValues.put(KEY_AMOUNT, amount);
+		contentValues.put(KEY_AMOUNT_MINOR, amountMinor == null ? 0 : amountMinor);
+		contentValues.put(KEY_AMOUNT_UNKNOWN, amountMinor == null);
+	}
+	
+	// amount in minor units (paise/cents), null if amount is unknown
+	public static Long getAmountMinor(String amount) {
+		Amount value = Amount.parse(amount);
+		return value.isUnknown ? null : value.minor;
+	}
+	
 	public boolean deleteFavoriteEntryByHash(String hash) {
-		String where = KEY_MY_HASH + "=\"" + hash+"\"";
-		return deleteFavoriteEntry(where);
+		return setDeleted(FAVORITE_TABLE, KEY_MY_HASH, hash);
 	}
 	
 	public boolean deleteFavoriteEntryByID(String favID) {
-		String where = KEY_ID + "=" + favID;
-		return deleteFavoriteEntry(where);
+		return setDeleted(FAVORITE_TABLE, KEY_ID, favID);
 	}
 	
-	private boolean deleteFavoriteEntry(String where) {
-		ContentValues contentValues = new ContentValues();
-		contentValues.put(KEY_DELETE_BIT, true);
+	// soft delete, the row stays until the delete is synced
+	private boolean setDeleted(String table, String column, String value) {
 		try {
-			db.update(FAVORITE_TABLE, contentValues, where, null);
+			manager.execute("update " + table + " set " + KEY_DELETE_BIT + " = 1 where " + column + " = ?", value);
 		} catch (SQLiteException e) {
+			e.printStackTrace();
 			return false;
 		}
 		return true;
@@ -190,12 +392,9 @@ public class DatabaseAdapter {
 	}
 	
 	private boolean updateFileUploaded(String id, String TABLE) {
-		String where = KEY_ID + "=" + id;
-		ContentValues contentValues = new ContentValues();
-		contentValues.put(KEY_FILE_UPLOADED, false);
-		contentValues.put(KEY_SYNC_BIT, context.getString(R.string.syncbit_not_synced));
 		try {
-			db.update(TABLE, contentValues, where, null);
+			markDirtyFields(TABLE, KEY_ID, id, DIRTY_FILE);
+			manager.execute("update " + TABLE + " set " + KEY_FILE_UPLOADED + " = 0, " + KEY_SYNC_BIT + " = ? where " + WHERE_ID, context.getString(R.string.syncbit_not_synced), id);
 		} catch (SQLiteException e) {
 			return false;
 		}
@@ -203,83 +402,68 @@ public class DatabaseAdapter {
 	}
 	
 	public boolean deleteExpenseEntryByHash(String hash) {
-		String where = KEY_MY_HASH + "=\"" + hash+"\"";
-		ContentValues contentValues = new ContentValues();
-		contentValues.put(KEY_DELETE_BIT, true);
-		try {
-			db.update(ENTRY_TABLE, contentValues, where, null);
-		} catch (SQLiteException e) {
-			e.printStackTrace();
-			return false;
-		}
-		return true;
+		return setDeleted(ENTRY_TABLE, KEY_MY_HASH, hash);
 	}
 	
 	public String getEntryIdByHash(String hash) {
-		String where = KEY_MY_HASH + "=\"" + hash+"\"";
-		try {
-			Cursor cursor = db.query(ENTRY_TABLE, null, where, null, null, null, null);
-			if(cursor.moveToFirst()) {
-				String id = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_ID));
-				cursor.close();
-				return id;
-			}
-			
-		} catch (SQLiteException e) {
-			e.printStackTrace();
-		}
-		return "";
+		return getStringOrEmpty(ENTRY_TABLE, KEY_ID, WHERE_HASH, hash);
 	}
 	
 	public String getFavIdByHash(String hash) {
-		String where = KEY_MY_HASH + "=\"" + hash+"\"";
-		try {
-			Cursor cursor = db.query(FAVORITE_TABLE, null, where, null, null, null, null);
-			if(cursor.moveToFirst()) {
-				String id = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_ID));
-				cursor.close();
-				return id;
-			}
-		} catch (SQLiteException e) {
-			e.printStackTrace();
-		}
-		return "";
+		return getStringOrEmpty(FAVORITE_TABLE, KEY_ID, WHERE_HASH, hash);
 	}
 	
 	public String getFavHashById(String id) {
-		String where = KEY_ID + "=" + id;
+		return getStringOrEmpty(FAVORITE_TABLE, KEY_MY_HASH, WHERE_ID, id);
+	}
+	
+	public String getEntryHashById(String id) {
+		return getStringOrEmpty(ENTRY_TABLE, KEY_MY_HASH, WHERE_ID, id);
+	}
+	
+	public String getEntryDateTimeById(String id) {
+		return getStringOrEmpty(ENTRY_TABLE, KEY_DATE_TIME, WHERE_ID, id);
+	}
+	
+	public String getEntryTypeById(String id) {
+		return getStringOrEmpty(ENTRY_TABLE, KEY_TYPE, WHERE_ID, id);
+	}
+	
+	public void setEntryFilesPresent(String id, boolean isPresent) {
 		try {
-			Cursor cursor = db.query(FAVORITE_TABLE, null, where, null, null, null, null);
-			if(cursor.moveToFirst()) {
-				String hash = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_MY_HASH));
-				cursor.close();
-				return hash;
-			}
+			manager.execute("update " + ENTRY_TABLE + " set " + KEY_FILES_PRESENT + " = ? where " + WHERE_ID, isPresent, id);
 		} catch (SQLiteException e) {
 			e.printStackTrace();
 		}
-		return "";
 	}
 	
-	public String getEntryHashById(String id) {
-		String where = KEY_ID + "=" + id;
+	// id -> files present, written in one transaction
+	public void setEntryFilesPresent(Map<String, Boolean> filesPresent) {
+		db.beginTransaction();
 		try {
-			Cursor cursor = db.query(ENTRY_TABLE, null, where, null, null, null, null);
-			if(cursor.moveToFirst()) {
-				String hash = cursor.getString(cursor.getColumnIndex(DatabaseAdapter.KEY_MY_HASH));
-				cursor.close();
-				return hash;
+			for(Map.Entry<String, Boolean> entry : filesPresent.entrySet()) {
+				setEntryFilesPresent(entry.getKey(), entry.getValue());
 			}
-		} catch (SQLiteException e) {
-			e.printStackTrace();
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
 		}
-		return "";
 	}
 	
-	public boolean permanentDeleteExpenseEntryByHash(String hash) {
-		String where = KEY_MY_HASH + "=\"" + hash+"\"";
+	// camera and voice entries whose files were never checked, at most limit of them
+	public Cursor getEntryFilesUnchecked(int limit) {
+		String where = KEY_FILES_PRESENT + " IS NULL AND " + KEY_TYPE + " IN (?, ?)";
+		return db.query(ENTRY_TABLE, new String[] {KEY_ID, KEY_TYPE}, where, new String[] {context.getString(R.string.camera), context.getString(R.string.voice)}, null, null, null, limit + "");
+	}
+	
+	// OWNER, OWNER_ID, VARIANT and CONTENT_HASH of every attachment in the store
+	public Cursor getAttachments() {
+		return db.query(ATTACHMENT_TABLE, new String[] {KEY_ATTACHMENT_OWNER, KEY_ATTACHMENT_OWNER_ID, KEY_ATTACHMENT_VARIANT, KEY_ATTACHMENT_CONTENT_HASH}, null, null, null, null, null);
+	}
+	
+	public boolean putAttachment(int owner, String ownerId, String variant, String contentHash) {
 		try {
-			db.delete(ENTRY_TABLE, where, null);
+			manager.execute("insert or replace into " + ATTACHMENT_TABLE + " (" + KEY_ATTACHMENT_OWNER + ", " + KEY_ATTACHMENT_OWNER_ID + ", " + KEY_ATTACHMENT_VARIANT + ", " + KEY_ATTACHMENT_CONTENT_HASH + ") values (?, ?, ?, ?)", owner, ownerId, variant, contentHash);
 		} catch (SQLiteException e) {
 			e.printStackTrace();
 			return false;
@@ -287,45 +471,55 @@ public class DatabaseAdapter {
 		return true;
 	}
 	
-	public boolean permanentDeleteFavoriteEntryByHash(String hash) {
-		String where = KEY_MY_HASH + "=\"" + hash+"\"";
+	public void deleteAttachment(int owner, String ownerId, String variant) {
 		try {
-			db.delete(FAVORITE_TABLE, where, null);
+			manager.execute("delete from " + ATTACHMENT_TABLE + " where " + KEY_ATTACHMENT_OWNER + " = ? AND " + KEY_ATTACHMENT_OWNER_ID + " = ? AND " + KEY_ATTACHMENT_VARIANT + " = ?", owner, ownerId, variant);
 		} catch (SQLiteException e) {
-			return false;
+			e.printStackTrace();
 		}
-		return true;
 	}
 	
-	public boolean deleteExpenseEntryByID(String id) {
-		String where = KEY_ID + "=" + id;
-		ContentValues contentValues = new ContentValues();
-		contentValues.put(KEY_DELETE_BIT, true);
+	// entries and favorites still pointing at the blob of contentHash and variant
+	public long getAttachmentRefCount(String contentHash, String variant) {
+		return manager.simpleQueryForLong("select COUNT(*) from " + ATTACHMENT_TABLE + " where " + KEY_ATTACHMENT_CONTENT_HASH + " = ? AND " + KEY_ATTACHMENT_VARIANT + " = ?", contentHash, variant);
+	}
+	
+	// Rows of entries and favorites permanently deleted without their files being released
+	public void deleteOrphanAttachments() {
 		try {
-			db.update(ENTRY_TABLE, contentValues, where, null);
+			manager.execute("delete from " + ATTACHMENT_TABLE + " where " + KEY_ATTACHMENT_OWNER + " = ? AND " + KEY_ATTACHMENT_OWNER_ID + " NOT IN (select " + KEY_ID + " from " + ENTRY_TABLE + ")", OWNER_ENTRY);
+			manager.execute("delete from " + ATTACHMENT_TABLE + " where " + KEY_ATTACHMENT_OWNER + " = ? AND " + KEY_ATTACHMENT_OWNER_ID + " NOT IN (select " + KEY_ID + " from " + FAVORITE_TABLE + ")", OWNER_FAVORITE);
 		} catch (SQLiteException e) {
 			e.printStackTrace();
-			return false;
 		}
-		return true;
 	}
 	
-	public boolean permanentDeleteFavoriteEntryByMyHash(String hash) {
-		String where = KEY_MY_HASH + "=\"" + hash+"\"";
+	// column of the first row matching where, "" if there is none
+	private String getStringOrEmpty(String table, String column, String where, String value) {
 		try {
-			db.delete(FAVORITE_TABLE, where, null);
+			String result = manager.simpleQueryForString("select " + column + " from " + table + " where " + where + " limit 1", value);
+			return result == null ? "" : result;
 		} catch (SQLiteException e) {
-			return false;
+			e.printStackTrace();
 		}
-		return true;
+		return "";
 	}
 	
-	public boolean deleteExpenseEntryByMyHash(String hash) {
-		String where = KEY_MY_HASH + "=\"" + hash+"\"";
-		ContentValues contentValues = new ContentValues();
-		contentValues.put(KEY_DELETE_BIT, true);
+	private boolean isPresent(String table, String where, String value) {
+		return manager.simpleQueryForString("select 1 from " + table + " where " + where + " limit 1", value) != null;
+	}
+	
+	public boolean permanentDeleteExpenseEntryByHash(String hash) {
+		return permanentDelete(ENTRY_TABLE, WHERE_HASH, hash);
+	}
+	
+	public boolean permanentDeleteFavoriteEntryByHash(String hash) {
+		return permanentDelete(FAVORITE_TABLE, WHERE_HASH, hash);
+	}
+	
+	private boolean permanentDelete(String table, String where, String value) {
 		try {
-			db.update(ENTRY_TABLE, contentValues, where, null);
+			manager.execute("delete from " + table + " where " + where, value);
 		} catch (SQLiteException e) {
 			e.printStackTrace();
 			return false;
@@ -333,75 +527,52 @@ public class DatabaseAdapter {
 		return true;
 	}
 	
+	public boolean deleteExpenseEntryByID(String id) {
+		return setDeleted(ENTRY_TABLE, KEY_ID, id);
+	}
+	
+	public boolean permanentDeleteFavoriteEntryByMyHash(String hash) {
+		return permanentDelete(FAVORITE_TABLE, WHERE_HASH, hash);
+	}
+	
+	public boolean deleteExpenseEntryByMyHash(String hash) {
+		return setDeleted(ENTRY_TABLE, KEY_MY_HASH, hash);
+	}
+	
 	public boolean permanentDeleteFavoriteEntryByID(String favID) {
-		String where = KEY_ID + "=" + favID;
-		try {
-			db.delete(FAVORITE_TABLE, where, null);
-		} catch (SQLiteException e) {
-			return false;
-		}
-		return true;
+		return permanentDelete(FAVORITE_TABLE, WHERE_ID, favID);
 	}
 	
 	public boolean findEntryById(String id) {
-		String where = KEY_ID + "=" + id;
-		Cursor cursor = db.query(ENTRY_TABLE, null, where, null, null, null, null);
-		boolean isPresent = false;
-		if(cursor.moveToFirst()) {
-			isPresent = true;
-			cursor.close();
-		}
-		return isPresent;
+		return isPresent(ENTRY_TABLE, WHERE_ID, id);
 	}
 	
 	public boolean findEntryByMyHash(String hash) {
-		String where = KEY_MY_HASH + "=\"" + hash+"\"";
-		Cursor cursor = db.query(ENTRY_TABLE, null, where, null, null, null, null);
-		boolean isPresent = false;
-		if(cursor.moveToFirst()) {
-			isPresent = true;
-			cursor.close();
-		}
-		return isPresent;
+		return isPresent(ENTRY_TABLE, WHERE_HASH, hash);
 	}
 	
 	public boolean findFavoriteByMyHash(String hash) {
-		String where = KEY_MY_HASH + "=\"" + hash+"\"";
-		Cursor cursor = db.query(FAVORITE_TABLE, null, where, null, null, null, null);
-		boolean isPresent = false;
-		if(cursor.moveToFirst()) {
-			isPresent = true;
-			cursor.close();
-		}
-		return isPresent;
+		return isPresent(FAVORITE_TABLE, WHERE_HASH, hash);
 	}
 	
 	public Cursor getFavoriteByHash(String hash) {
-		String where = KEY_MY_HASH + "=\"" + hash+"\"";
-		return db.query(FAVORITE_TABLE, null, where, null, null, null, null);
+		return db.query(FAVORITE_TABLE, null, WHERE_HASH, new String[] {hash}, null, null, null);
 	}
 	
 	public Cursor getEntryByHash(String hash) {
-		String where = KEY_MY_HASH + "=\"" + hash+"\"";
-		return db.query(ENTRY_TABLE, null, where, null, null, null, null);
+		return db.query(ENTRY_TABLE, null, WHERE_HASH, new String[] {hash}, null, null, null);
 	}
 	
 	public boolean permanentDeleteExpenseEntryID(String id) {
-		String where = KEY_ID + "=" + id;
-		try {
-			db.delete(ENTRY_TABLE, where, null);
-		} catch (SQLiteException e) {
-			e.printStackTrace();
-			return false;
-		}
-		return true;
+		return permanentDelete(ENTRY_TABLE, WHERE_ID, id);
 	}
 	
 	public boolean editFavoriteEntryById(Favorite favorite) {
 		ContentValues contentValues = getEditContentValues(favorite);
-		String where = KEY_ID + "=" + favorite.id;
+		String[] whereArgs = {favorite.id};
+		putDirtyFields(FAVORITE_TABLE, WHERE_ID, whereArgs, contentValues);
 		try {
-			db.update(FAVORITE_TABLE, contentValues, where, null);
+			db.update(FAVORITE_TABLE, contentValues, WHERE_ID, whereArgs);
 			return true;
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -411,9 +582,10 @@ public class DatabaseAdapter {
 	
 	public boolean editFavoriteEntryByHash(Favorite favorite) {
 		ContentValues contentValues = getEditContentValues(favorite);
-		String where = KEY_MY_HASH + "=\"" + favorite.myHash+"\"";
+		String[] whereArgs = {favorite.myHash};
+		putDirtyFields(FAVORITE_TABLE, WHERE_HASH, whereArgs, contentValues);
 		try {
-			db.update(FAVORITE_TABLE, contentValues, where, null);
+			db.update(FAVORITE_TABLE, contentValues, WHERE_HASH, whereArgs);
 			return true;
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -429,9 +601,10 @@ public class DatabaseAdapter {
 		
 		if (Strings.notEmpty(entry.favorite))
 			contentValues.put(KEY_FAVORITE, entry.favorite);
-		String where = KEY_MY_HASH + "=\"" + entry.myHash+"\"";
+		String[] whereArgs = {entry.myHash};
+		putDirtyFields(ENTRY_TABLE, WHERE_HASH, whereArgs, contentValues);
 		try {
-			db.update(ENTRY_TABLE, contentValues, where, null);
+			db.update(ENTRY_TABLE, contentValues, WHERE_HASH, whereArgs);
 			return true;
 		} catch (SQLiteException e) {
 			e.printStackTrace();
@@ -440,15 +613,16 @@ public class DatabaseAdapter {
 	}
 
 	public boolean editExpenseEntryById(Entry entry) {
-		String where = KEY_ID + "=" + entry.id;
+		String[] whereArgs = {entry.id};
 		ContentValues contentValues = getEditContentValues(entry);
 		if(entry.timeInMillis != null)
 			contentValues.put(KEY_DATE_TIME, entry.timeInMillis);
 		
 		if (Strings.notEmpty(entry.favorite))
 			contentValues.put(KEY_FAVORITE, entry.favorite);
+		putDirtyFields(ENTRY_TABLE, WHERE_ID, whereArgs, contentValues);
 		try {
-			db.update(ENTRY_TABLE, contentValues, where, null);
+			db.update(ENTRY_TABLE, contentValues, WHERE_ID, whereArgs);
 			return true;
 		} catch (SQLiteException e) {
 			e.printStackTrace();
@@ -461,7 +635,7 @@ public class DatabaseAdapter {
 		if (Strings.notEmpty(object.description))
 			contentValues.put(KEY_TAG, object.description);
 		if (Strings.notEmpty(object.amount))
-			contentValues.put(KEY_AMOUNT, object.amount);
+			putAmount(contentValues, object.amount);
 		if (Strings.notEmpty(object.type))
 			contentValues.put(KEY_TYPE, object.type);
 		if (Strings.notEmpty(object.location))
@@ -513,13 +687,16 @@ public class DatabaseAdapter {
 	}
 	
 	public Cursor getEntryDataNotSyncedAndUpdated() {
-		String where = KEY_UPDATED_AT+" IS NOT NULL AND "+KEY_UPDATED_AT+" != \"\" AND "+KEY_SYNC_BIT+" = "+context.getString(R.string.syncbit_not_synced)+" AND "+getNotDeletedString();
-		return db.query(ENTRY_TABLE, null, where, null, null, null, null);
+		return db.query(ENTRY_TABLE, null, getNotSyncedAndUpdatedString(), new String[] {context.getString(R.string.syncbit_not_synced)}, null, null, null);
 	}
 	
 	public Cursor getFavoriteDataNotSyncedAndUpdated() {
-		String where = KEY_UPDATED_AT+" IS NOT NULL AND "+KEY_UPDATED_AT+" != \"\" AND "+KEY_SYNC_BIT+" = "+context.getString(R.string.syncbit_not_synced)+" AND "+getNotDeletedString();
-		return db.query(FAVORITE_TABLE, null, where, null, null, null, null);
+		return db.query(FAVORITE_TABLE, null, getNotSyncedAndUpdatedString(), new String[] {context.getString(R.string.syncbit_not_synced)}, null, null, null);
+	}
+	
+	// sync bit bound as the only argument
+	private String getNotSyncedAndUpdatedString() {
+		return KEY_UPDATED_AT+" IS NOT NULL AND "+KEY_UPDATED_AT+" != '' AND "+KEY_SYNC_BIT+" = ? AND "+getNotDeletedString();
 	}
 	
 	public Cursor getEntryDataNotSyncedAndDeleted() {
@@ -536,67 +713,578 @@ public class DatabaseAdapter {
 		return db.query(ENTRY_TABLE, null, getNotDeletedString(), null, null, null, KEY_DATE_TIME+" desc");
 	}
 	
-	public Cursor getEntryTableDateDatabaseDescending(String id) {
-		if(id != null && id.length() > 1){
-			id = id.substring(0, id.length()-1);
+	public Cursor getEntryTableDateDatabaseAscending() {
+		return db.query(ENTRY_TABLE, null, getNotDeletedString(), null, null, null, KEY_DATE_TIME+" asc");
+	}
+	
+	public Cursor getEntryTableDateDatabase(Long fromTimeInMillis, boolean isAscending) {
+		List<String> whereArgs = new ArrayList<String>();
+		String where = getNotDeletedString() + getDateRangeString(fromTimeInMillis, null, whereArgs);
+		return db.query(ENTRY_TABLE, null, where, toArray(whereArgs), null, null, KEY_DATE_TIME + (isAscending ? " asc" : " desc"));
+	}
+	
+	// Window of entries in (DATE_TIME, _id) descending order strictly after the given key, walked through EntryDateIndex
+	public Cursor getEntryPage(String[] columns, Long fromTimeInMillis, Long toTimeInMillis, Long afterTimeInMillis, Long afterId, int offset, int limit) {
+		List<String> whereArgs = new ArrayList<String>();
+		String where = getNotDeletedString() + getDateRangeString(fromTimeInMillis, toTimeInMillis, whereArgs);
+		if(afterTimeInMillis != null) {
+			where = where + " AND (" + KEY_DATE_TIME + " < ? OR (" + KEY_DATE_TIME + " = ? AND " + KEY_ID + " < ?))";
+			whereArgs.add(afterTimeInMillis + "");
+			whereArgs.add(afterTimeInMillis + "");
+			whereArgs.add(afterId + "");
 		}
-		String where = KEY_ID+" in ("+id +") AND "+getNotDeletedString();
-		return db.query(ENTRY_TABLE, null, where, null, null, null, KEY_DATE_TIME+" desc");
+		return db.query(ENTRY_TABLE, columns, where, toArray(whereArgs), null, null, KEY_DATE_TIME + " desc, " + KEY_ID + " desc", offset + "," + limit);
+	}
+
+	// Only the columns EntrySnapshot keeps, DATE_TIME ascending: time, amount in minor units, amount unknown,
+	// type, location, description, favorite and unfinished
+	public Cursor getEntrySnapshot() {
+		String[] columns = {KEY_DATE_TIME, getAmountMinorString(""), getAmountUnknownString(""), KEY_TYPE, KEY_LOCATION, KEY_TAG, KEY_FAVORITE, getUnfinishedString("")};
+		return db.query(ENTRY_TABLE, columns, getNotDeletedString(), null, null, null, KEY_DATE_TIME + " asc");
+	}
+
+	// Writes to EntryTable and rebuilds of its totals ever committed, unchanged as long as nothing was written.
+	// Kept in the database rather than taken from total_changes(), which counts per connection and with write
+	// ahead logging stays put on the connection readers are given
+	public long getChangeCount() {
+		return manager.simpleQueryForLong("select " + KEY_CHANGE_COUNT + " from " + ENTRY_CHANGE_TABLE);
+	}
+
+	// One row per bucket with the start of its first day, total in minor units and count of unknown amounts,
+	// summed from EntryDayTotalTable so the cost follows the number of days, not of entries. The bounds are
+	// starts of days. Drill down into a bucket by querying its date range again, see DisplayDate.getStartOfBucketInMillis()
+	public Cursor getEntryBucketTotals(int bucket, Long fromTimeInMillis, Long toTimeInMillis, boolean isAscending) {
+		List<String> whereArgs = new ArrayList<String>();
+		String where = KEY_DAY_COUNT + " > 0" + getDateRangeString(KEY_DAY_START, fromTimeInMillis, toTimeInMillis, whereArgs);
+		String[] columns = {
+				"MIN(" + KEY_DAY_START + ") AS " + KEY_BUCKET_START,
+				"SUM(" + KEY_DAY_TOTAL + ") AS " + KEY_BUCKET_TOTAL,
+				"SUM(" + KEY_DAY_UNKNOWN_COUNT + ") AS " + KEY_BUCKET_UNKNOWN_COUNT,
+				"SUM(" + KEY_DAY_COUNT + ") AS " + KEY_BUCKET_COUNT
+		};
+		return db.query(ENTRY_DAY_TOTAL_TABLE, columns, where, toArray(whereArgs), getBucketString(bucket, KEY_DAY_START), null, KEY_BUCKET_START + (isAscending ? " asc" : " desc"));
 	}
 	
-	public Cursor getEntryTableDateDatabaseAscending() {
-		return db.query(ENTRY_TABLE, null, getNotDeletedString(), null, null, null, KEY_DATE_TIME+" asc");
+	// Unfinished entries within [fromTimeInMillis, toTimeInMillis), either bound may be null, summed from EntryDayTotalTable
+	public int getEntryUnfinishedCount(Long fromTimeInMillis, Long toTimeInMillis) {
+		List<String> whereArgs = new ArrayList<String>();
+		String where = KEY_DAY_COUNT + " > 0" + getDateRangeString(KEY_DAY_START, fromTimeInMillis, toTimeInMillis, whereArgs);
+		try {
+			return (int) manager.simpleQueryForLong("select COALESCE(SUM(" + KEY_DAY_UNFINISHED_COUNT + "), 0) from " + ENTRY_DAY_TOTAL_TABLE + " where " + where, whereArgs.toArray());
+		} catch (SQLiteException e) {
+			e.printStackTrace();
+		}
+		return 0;
+	}
+	
+	// Sums EntryDayTotalTable up again from EntryTable, needed only when days are bucketed in another time zone.
+	// Scans EntryTable, run it off the UI thread
+	public void rebuildEntryTotals() {
+		rebuildEntryTotals(db);
+	}
+	
+	private void rebuildEntryTotals(SQLiteDatabase database) {
+		database.beginTransaction();
+		try {
+			database.execSQL("delete from " + ENTRY_DAY_TOTAL_TABLE);
+			database.execSQL("insert into " + ENTRY_DAY_TOTAL_TABLE + " (" + KEY_DAY + ", " + KEY_DAY_START + ", " + KEY_DAY_TOTAL + ", " + KEY_DAY_COUNT + ", " + KEY_DAY_UNKNOWN_COUNT + ", " + KEY_DAY_UNFINISHED_COUNT + ") "
+					+ "select " + getDayString("") + ", " + getDayStartString(getDayString("")) + ", SUM(" + getAmountMinorString("") + "), COUNT(*), SUM(" + getAmountUnknownString("") + "), SUM(" + getUnfinishedString("") + ") "
+					+ "from " + ENTRY_TABLE + " where " + getNotDeletedString() + " group by 1");
+			// the totals shown are read again
+			database.execSQL(ENTRY_CHANGE_COUNT_INCREMENT);
+			database.setTransactionSuccessful();
+		} finally {
+			database.endTransaction();
+		}
+	}
+	
+	// Triggers applying every insert, delete and change of date, amount, delete bit or completeness of an entry
+	// to the totals of its day, whichever code path writes EntryTable (edits, soft and permanent deletes, SyncBatch)
+	private void createEntryTotalTriggers(SQLiteDatabase database) {
+		database.execSQL("create trigger if not exists EntryTotalInsert after insert on " + ENTRY_TABLE
+				+ " begin " + getAddToDayString("NEW.") + " end");
+		database.execSQL("create trigger if not exists EntryTotalDelete after delete on " + ENTRY_TABLE
+				+ " begin " + getRemoveFromDayString("OLD.") + " end");
+		database.execSQL("create trigger if not exists EntryTotalUpdate after update of " + KEY_DATE_TIME + ", " + KEY_AMOUNT + ", " + KEY_AMOUNT_MINOR + ", " + KEY_AMOUNT_UNKNOWN + ", " + KEY_DELETE_BIT + ", " + KEY_TAG + ", " + KEY_TYPE + ", " + KEY_FILES_PRESENT + " on " + ENTRY_TABLE
+				+ " begin " + getRemoveFromDayString("OLD.") + " " + getAddToDayString("NEW.") + " end");
+	}
+	
+	// Triggers counting every write to EntryTable into EntryChangeTable, whichever code path writes it
+	private void createEntryChangeTriggers(SQLiteDatabase database) {
+		database.execSQL(ENTRY_CHANGE_TABLE_CREATE);
+		database.execSQL(ENTRY_CHANGE_ROW_CREATE);
+		database.execSQL("create trigger if not exists EntryChangeInsert after insert on " + ENTRY_TABLE + " begin " + ENTRY_CHANGE_COUNT_INCREMENT + "; end");
+		database.execSQL("create trigger if not exists EntryChangeDelete after delete on " + ENTRY_TABLE + " begin " + ENTRY_CHANGE_COUNT_INCREMENT + "; end");
+		database.execSQL("create trigger if not exists EntryChangeUpdate after update on " + ENTRY_TABLE + " begin " + ENTRY_CHANGE_COUNT_INCREMENT + "; end");
+	}
+	
+	private void dropEntryTotalTriggers(SQLiteDatabase database) {
+		database.execSQL("drop trigger if exists EntryTotalInsert");
+		database.execSQL("drop trigger if exists EntryTotalDelete");
+		database.execSQL("drop trigger if exists EntryTotalUpdate");
+	}
+	
+	private String getAddToDayString(String row) {
+		String day = getDayString(row);
+		return "insert or ignore into " + ENTRY_DAY_TOTAL_TABLE + " (" + KEY_DAY + ", " + KEY_DAY_START + ") select " + day + ", " + getDayStartString(day) + " where " + getNotDeletedString(row) + "; "
+				+ "update " + ENTRY_DAY_TOTAL_TABLE + " set " + KEY_DAY_TOTAL + " = " + KEY_DAY_TOTAL + " + " + getAmountMinorString(row) + ", "
+				+ KEY_DAY_COUNT + " = " + KEY_DAY_COUNT + " + 1, "
+				+ KEY_DAY_UNKNOWN_COUNT + " = " + KEY_DAY_UNKNOWN_COUNT + " + (" + getAmountUnknownString(row) + "), "
+				+ KEY_DAY_UNFINISHED_COUNT + " = " + KEY_DAY_UNFINISHED_COUNT + " + " + getUnfinishedString(row) + " "
+				+ "where " + KEY_DAY + " = " + day + " AND " + getNotDeletedString(row) + ";";
+	}
+	
+	private String getRemoveFromDayString(String row) {
+		String day = getDayString(row);
+		return "update " + ENTRY_DAY_TOTAL_TABLE + " set " + KEY_DAY_TOTAL + " = " + KEY_DAY_TOTAL + " - " + getAmountMinorString(row) + ", "
+				+ KEY_DAY_COUNT + " = " + KEY_DAY_COUNT + " - 1, "
+				+ KEY_DAY_UNKNOWN_COUNT + " = " + KEY_DAY_UNKNOWN_COUNT + " - (" + getAmountUnknownString(row) + "), "
+				+ KEY_DAY_UNFINISHED_COUNT + " = " + KEY_DAY_UNFINISHED_COUNT + " - " + getUnfinishedString(row) + " "
+				+ "where " + KEY_DAY + " = " + day + " AND " + getNotDeletedString(row) + "; "
+				+ "delete from " + ENTRY_DAY_TOTAL_TABLE + " where " + KEY_DAY + " = " + day + " AND " + KEY_DAY_COUNT + " <= 0;";
+	}
+	
+	// 1 unless CheckEntryComplete.isEntryComplete() would say complete, attachments are taken from FILES_PRESENT.
+	// The type codes and text placeholders are written into the triggers, they are constants of the app
+	private String getUnfinishedString(String row) {
+		String camera = DatabaseUtils.sqlEscapeString(context.getString(R.string.camera));
+		String voice = DatabaseUtils.sqlEscapeString(context.getString(R.string.voice));
+		String text = DatabaseUtils.sqlEscapeString(context.getString(R.string.text));
+		String unfinishedText = DatabaseUtils.sqlEscapeString(context.getString(R.string.unfinished_textentry));
+		String finishedText = DatabaseUtils.sqlEscapeString(context.getString(R.string.finished_textentry));
+		return "(CASE WHEN " + row + KEY_AMOUNT + " IS NOT NULL AND " + row + KEY_AMOUNT + " NOT LIKE '%?%' AND ("
+				+ "(" + row + KEY_TYPE + " IN (" + camera + ", " + voice + ") AND " + row + KEY_FILES_PRESENT + ") OR "
+				+ "(" + row + KEY_TYPE + " = " + text + " AND " + row + KEY_TAG + " NOT IN ('', " + unfinishedText + ", " + finishedText + "))"
+				+ ") THEN 0 ELSE 1 END)";
+	}
+	
+	private String getDayString(String row) {
+		return "strftime('%Y-%m-%d', " + row + KEY_DATE_TIME + " / 1000, 'unixepoch', 'localtime')";
+	}
+	
+	// local midnight of day in millis
+	private String getDayStartString(String day) {
+		return "strftime('%s', " + day + ", 'utc') * 1000";
+	}
+	
+	private String getBucketString(int bucket, String column) {
+		String localTime = column + " / 1000, 'unixepoch', 'localtime'";
+		switch (bucket) {
+		case BUCKET_DAY:
+			return "strftime('%Y-%m-%d', " + localTime + ")";
+		case BUCKET_WEEK:
+			return "strftime('%Y-%m', " + localTime + ") || date(" + localTime + ", 'weekday 0', '-6 days')";
+		case BUCKET_MONTH:
+			return "strftime('%Y-%m', " + localTime + ")";
+		default:
+			return "strftime('%Y', " + localTime + ")";
+		}
+	}
+	
+	// falls back to the TEXT amount for rows migrateAmounts() has not reached yet, row is "" or a trigger's "NEW."/"OLD."
+	private String getAmountMinorString(String row) {
+		return "COALESCE(" + row + KEY_AMOUNT_MINOR + ", CAST(ROUND(" + row + KEY_AMOUNT + " * 100) AS INTEGER), 0)";
+	}
+	
+	private String getAmountUnknownString(String row) {
+		return "COALESCE(" + row + KEY_AMOUNT_UNKNOWN + ", " + row + KEY_AMOUNT + " IS NULL OR " + row + KEY_AMOUNT + " = '')";
 	}
 	
-	public Cursor getEntryTableDateDatabaseAscending(String id) {
-		if(id != null && id.length() > 1){
-			id = id.substring(0, id.length()-1);
+	private String getDateRangeString(Long fromTimeInMillis, Long toTimeInMillis, List<String> whereArgs) {
+		return getDateRangeString(KEY_DATE_TIME, fromTimeInMillis, toTimeInMillis, whereArgs);
+	}
+	
+	// DATE_TIME holds 13 digit millis as TEXT so the bounds are bound as text too (an INTEGER column like
+	// DAY_START compares them as numbers), they are added to whereArgs
+	private String getDateRangeString(String column, Long fromTimeInMillis, Long toTimeInMillis, List<String> whereArgs) {
+		String where = "";
+		if(fromTimeInMillis != null) {
+			where = where + " AND " + column + " >= ?";
+			whereArgs.add(fromTimeInMillis + "");
+		}
+		if(toTimeInMillis != null) {
+			where = where + " AND " + column + " < ?";
+			whereArgs.add(toTimeInMillis + "");
 		}
-		String where = KEY_ID+" in ("+id +") AND "+getNotDeletedString();
-		return db.query(ENTRY_TABLE, null, where, null, null, null, KEY_DATE_TIME+" asc");
+		return where;
+	}
+	
+	private String[] toArray(List<String> whereArgs) {
+		return whereArgs.isEmpty() ? null : whereArgs.toArray(new String[whereArgs.size()]);
 	}
 	
 	public String getFavoriteHashEntryTable(String id) {
-		String where = KEY_ID+" = "+id + " AND "+getNotDeletedString();
-		Cursor cr = db.query(ENTRY_TABLE,  new String[] {
-				KEY_FAVORITE}, where, null, null, null, null);
-		cr.moveToFirst();
-		String favHash = "" ;
-		if(!cr.isAfterLast()) {favHash = cr.getString(cr.getColumnIndex(KEY_FAVORITE));}
-		cr.close();
-		return favHash;
+		return getStringOrEmpty(ENTRY_TABLE, KEY_FAVORITE, WHERE_ID + " AND " + getNotDeletedString(), id);
 	}
 
 	public void editFavoriteHashEntryTable(String hash) {
 		ContentValues contentValues = new ContentValues();
 		contentValues.put(KEY_FAVORITE, "");
 		contentValues.put(KEY_SYNC_BIT, context.getString(R.string.syncbit_not_synced));
-		String where = KEY_FAVORITE+" = \""+hash+"\"";
-		db.update(ENTRY_TABLE, contentValues, where, null);
+		markDirtyFields(ENTRY_TABLE, KEY_FAVORITE, hash, DIRTY_FAVORITE);
+		db.update(ENTRY_TABLE, contentValues, KEY_FAVORITE + " = ?", new String[] {hash});
 	}
  
 	public Cursor getFavoriteTableComplete() {
 		return db.query(FAVORITE_TABLE, null, getNotDeletedString(), null, null, null, null);
 	}
 	
+	// Backfills AMOUNT_MINOR/AMOUNT_UNKNOWN for rows written before version 4, one batch per transaction
+	// so that the upgrade never holds the database for long, then builds the indexes
+	public int migrateAmounts() {
+		int migrated = migrateAmounts(ENTRY_TABLE) + migrateAmounts(FAVORITE_TABLE);
+		createIndexes(db);
+		return migrated;
+	}
+	
+	private int migrateAmounts(String table) {
+		int migrated = 0;
+		long lastId = 0;
+		SQLiteStatement statement = db.compileStatement("update " + table + " set " + KEY_AMOUNT_MINOR + " = ?, " + KEY_AMOUNT_UNKNOWN + " = ? where " + KEY_ID + " = ?");
+		try {
+			while(true) {
+				String where = KEY_ID + " > " + lastId + " AND " + KEY_AMOUNT_MINOR + " IS NULL";
+				Cursor cursor = db.query(table, new String[] {KEY_ID, KEY_AMOUNT}, where, null, null, null, KEY_ID + " asc", AMOUNT_MIGRATION_BATCH_SIZE + "");
+				if(!cursor.moveToFirst()) {
+					cursor.close();
+					break;
+				}
+				db.beginTransaction();
+				try {
+					do {
+						lastId = cursor.getLong(0);
+						Long amountMinor = getAmountMinor(cursor.getString(1));
+						statement.bindLong(1, amountMinor == null ? 0 : amountMinor);
+						statement.bindLong(2, amountMinor == null ? 1 : 0);
+						statement.bindLong(3, lastId);
+						statement.execute();
+						migrated++;
+					} while (cursor.moveToNext());
+					db.setTransactionSuccessful();
+				} finally {
+					db.endTransaction();
+					cursor.close();
+				}
+			}
+		} catch (SQLiteException e) {
+			e.printStackTrace();
+		} finally {
+			statement.close();
+		}
+		return migrated;
+	}
+	
+	private void createIndexes(SQLiteDatabase database) {
+		database.execSQL(ENTRY_DATE_INDEX_CREATE);
+		database.execSQL(ENTRY_HASH_INDEX_CREATE);
+		database.execSQL(ENTRY_SYNC_INDEX_CREATE);
+		database.execSQL(FAVORITE_HASH_INDEX_CREATE);
+		database.execSQL(FAVORITE_SYNC_INDEX_CREATE);
+		database.execSQL(ATTACHMENT_HASH_INDEX_CREATE);
+	}
+	
 	private String getNotDeletedString() {
-		return "(NOT "+KEY_DELETE_BIT+" OR "+KEY_DELETE_BIT+" IS NULL)";
+		return getNotDeletedString("");
+	}
+	
+	private String getNotDeletedString(String row) {
+		return "(NOT "+row+KEY_DELETE_BIT+" OR "+row+KEY_DELETE_BIT+" IS NULL)";
 	}
 	
 	private String getDeletedString() {
 		return KEY_DELETE_BIT;
 	}
 	
+	// Prepares the statements for applying a sync payload, see SyncBatch
+	public SyncBatch beginSyncBatch() {
+		return new SyncBatch();
+	}
+	
+	// hash -> {_id, FILE_UPLOADED_AT} for every row of the table, read in one query
+	private Map<String, String[]> getHashMap(String table) {
+		Map<String, String[]> hashMap = new HashMap<String, String[]>();
+		Cursor cursor = db.query(table, new String[] {KEY_MY_HASH, KEY_ID, KEY_FILE_UPDATED_AT}, KEY_MY_HASH + " IS NOT NULL", null, null, null, null);
+		if(cursor.moveToFirst()) {
+			do {
+				hashMap.put(cursor.getString(0), new String[] {cursor.getString(1), cursor.getString(2)});
+			} while (cursor.moveToNext());
+		}
+		cursor.close();
+		return hashMap;
+	}
+	
+	/**
+	 * Writes a batch of synced rows with compiled statements, in a transaction begun by the first row written
+	 * and ended by commit() or close(), so none is held while the payload is still on its way.
+	 * One batch serves a whole pull or push run. Hash lookups are answered from maps preloaded
+	 * once per table and kept current as rows are inserted, a hash missing from them is looked
+	 * up by the MY_HASH index in case the row was written since. Updates only overwrite the fields that are not empty,
+	 * same as editExpenseEntryById()/editExpenseEntryByHash(), and clear DIRTY_FIELDS
+	 * as the row now matches the server.
+	 */
+	public class SyncBatch {
+		
+		private final Map<String, String[]> entryHashMap;
+		private final Map<String, String[]> favoriteHashMap;
+		private final SQLiteStatement insertEntry;
+		private final SQLiteStatement updateEntryById;
+		private final SQLiteStatement updateEntryByHash;
+		private final SQLiteStatement insertFavorite;
+		private final SQLiteStatement updateFavoriteByHash;
+		private int rowsApplied = 0;
+		private boolean isInTransaction = false;
+		
+		private SyncBatch() {
+			entryHashMap = getHashMap(ENTRY_TABLE);
+			favoriteHashMap = getHashMap(FAVORITE_TABLE);
+			String insertColumns = KEY_TAG + ", " + KEY_AMOUNT + ", " + KEY_AMOUNT_MINOR + ", " + KEY_AMOUNT_UNKNOWN + ", " + KEY_TYPE + ", " + KEY_LOCATION + ", " + KEY_ID_FROM_SERVER + ", " + KEY_SYNC_BIT + ", " + KEY_UPDATED_AT + ", " + KEY_FILE_UPLOADED + ", " + KEY_FILE_TO_DOWNLOAD + ", " + KEY_DELETE_BIT + ", " + KEY_FILE_UPDATED_AT + ", " + KEY_MY_HASH;
+			String updateColumns = getCoalesceString(KEY_TAG) + ", " + getCoalesceString(KEY_AMOUNT) + ", " + getCoalesceString(KEY_AMOUNT_MINOR) + ", " + getCoalesceString(KEY_AMOUNT_UNKNOWN) + ", " + getCoalesceString(KEY_TYPE) + ", " + getCoalesceString(KEY_LOCATION) + ", " + getCoalesceString(KEY_ID_FROM_SERVER) + ", " + getCoalesceString(KEY_SYNC_BIT) + ", " + getCoalesceString(KEY_UPDATED_AT) + ", " + KEY_FILE_UPLOADED + " = ?, " + KEY_FILE_TO_DOWNLOAD + " = ?, " + KEY_DELETE_BIT + " = ?, " + getCoalesceString(KEY_FILE_UPDATED_AT) + ", " + KEY_DIRTY_FIELDS + " = 0";
+			insertEntry = db.compileStatement("insert into " + ENTRY_TABLE + " (" + insertColumns + ", " + KEY_DATE_TIME + ", " + KEY_FAVORITE + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+			updateEntryById = db.compileStatement("update " + ENTRY_TABLE + " set " + updateColumns + ", " + getCoalesceString(KEY_DATE_TIME) + ", " + getCoalesceString(KEY_FAVORITE) + " where " + KEY_ID + " = ?");
+			updateEntryByHash = db.compileStatement("update " + ENTRY_TABLE + " set " + updateColumns + ", " + getCoalesceString(KEY_DATE_TIME) + ", " + getCoalesceString(KEY_FAVORITE) + " where " + KEY_MY_HASH + " = ?");
+			insertFavorite = db.compileStatement("insert into " + FAVORITE_TABLE + " (" + insertColumns + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+			updateFavoriteByHash = db.compileStatement("update " + FAVORITE_TABLE + " set " + updateColumns + " where " + KEY_MY_HASH + " = ?");
+		}
+		
+		public String getEntryIdByHash(String hash) {
+			String[] row = getRow(entryHashMap, ENTRY_TABLE, hash);
+			return row == null ? "" : row[0];
+		}
+		
+		public String getEntryFileUpdatedAtByHash(String hash) {
+			String[] row = getRow(entryHashMap, ENTRY_TABLE, hash);
+			return row == null ? null : row[1];
+		}
+		
+		public String getFavIdByHash(String hash) {
+			String[] row = getRow(favoriteHashMap, FAVORITE_TABLE, hash);
+			return row == null ? "" : row[0];
+		}
+		
+		public String getFavFileUpdatedAtByHash(String hash) {
+			String[] row = getRow(favoriteHashMap, FAVORITE_TABLE, hash);
+			return row == null ? null : row[1];
+		}
+		
+		// {_id, FILE_UPLOADED_AT} of the row with hash, null if there is none
+		private String[] getRow(Map<String, String[]> hashMap, String table, String hash) {
+			if(Strings.isEmpty(hash)) {
+				return null;
+			}
+			String[] row = hashMap.get(hash);
+			if(row == null) {
+				Cursor cursor = db.query(table, new String[] {KEY_ID, KEY_FILE_UPDATED_AT}, WHERE_HASH, new String[] {hash}, null, null, null, "1");
+				if(cursor.moveToFirst()) {
+					row = new String[] {cursor.getString(0), cursor.getString(1)};
+					hashMap.put(hash, row);
+				}
+				cursor.close();
+			}
+			return row;
+		}
+		
+		public Long insertToEntryTable(Entry entry) {
+			String hash = bindInsert(insertEntry, entry);
+			bindLongOrNull(insertEntry, 15, entry.timeInMillis);
+			bindStringOrNull(insertEntry, 16, entry.favorite);
+			long id = executeInsert(insertEntry);
+			if(id != -1) {
+				entryHashMap.put(hash, new String[] {id + "", entry.fileUpdatedAt});
+			}
+			return id;
+		}
+		
+		public long insertToFavoriteTable(Favorite favorite) {
+			String hash = bindInsert(insertFavorite, favorite);
+			long id = executeInsert(insertFavorite);
+			if(id != -1) {
+				favoriteHashMap.put(hash, new String[] {id + "", favorite.fileUpdatedAt});
+			}
+			return id;
+		}
+		
+		public boolean editExpenseEntryById(Entry entry) {
+			bindUpdate(updateEntryById, entry);
+			bindLongOrNull(updateEntryById, 15, entry.timeInMillis);
+			bindStringOrNull(updateEntryById, 16, entry.favorite);
+			updateEntryById.bindString(17, entry.id);
+			return execute(updateEntryById);
+		}
+		
+		public boolean editExpenseEntryByHash(Entry entry) {
+			bindUpdate(updateEntryByHash, entry);
+			bindLongOrNull(updateEntryByHash, 15, entry.timeInMillis);
+			bindStringOrNull(updateEntryByHash, 16, entry.favorite);
+			updateEntryByHash.bindString(17, entry.myHash);
+			if(execute(updateEntryByHash)) {
+				String[] row = entryHashMap.get(entry.myHash);
+				if(row != null && Strings.notEmpty(entry.fileUpdatedAt)) {
+					row[1] = entry.fileUpdatedAt;
+				}
+				return true;
+			}
+			return false;
+		}
+		
+		public boolean editFavoriteEntryByHash(Favorite favorite) {
+			bindUpdate(updateFavoriteByHash, favorite);
+			updateFavoriteByHash.bindString(15, favorite.myHash);
+			if(execute(updateFavoriteByHash)) {
+				String[] row = favoriteHashMap.get(favorite.myHash);
+				if(row != null && Strings.notEmpty(favorite.fileUpdatedAt)) {
+					row[1] = favorite.fileUpdatedAt;
+				}
+				return true;
+			}
+			return false;
+		}
+		
+		public int getRowsApplied() {
+			return rowsApplied;
+		}
+		
+		// Commits the rows written so far, the next row written begins a new transaction with the same maps and statements
+		public void commit() {
+			if(isInTransaction) {
+				db.setTransactionSuccessful();
+				db.endTransaction();
+				isInTransaction = false;
+			}
+		}
+		
+		// Rolls back the rows written since the last commit(), e.g. of a page cut short
+		public void close() {
+			insertEntry.close();
+			updateEntryById.close();
+			updateEntryByHash.close();
+			insertFavorite.close();
+			updateFavoriteByHash.close();
+			if(isInTransaction) {
+				db.endTransaction();
+				isInTransaction = false;
+			}
+		}
+		
+		private void begin() {
+			if(!isInTransaction) {
+				db.beginTransaction();
+				isInTransaction = true;
+			}
+		}
+		
+		private long executeInsert(SQLiteStatement statement) {
+			begin();
+			try {
+				long id = statement.executeInsert();
+				rowsApplied++;
+				return id;
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+			return -1;
+		}
+		
+		private boolean execute(SQLiteStatement statement) {
+			begin();
+			try {
+				statement.execute();
+				rowsApplied++;
+				return true;
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+			return false;
+		}
+		
+		// same columns and rules as getInsertContentValues(), returns the hash written
+		private String bindInsert(SQLiteStatement statement, Favorite object) {
+			statement.clearBindings();
+			bindStringOrNull(statement, 1, object.description);
+			if(Strings.notEmpty(object.amount)) {
+				Long amountMinor = getAmountMinor(object.amount);
+				statement.bindString(2, object.amount);
+				statement.bindLong(3, amountMinor == null ? 0 : amountMinor);
+				statement.bindLong(4, amountMinor == null ? 1 : 0);
+			} else {
+				statement.bindLong(3, 0);
+				statement.bindLong(4, 1);
+			}
+			bindCommon(statement, object);
+			String hash = Strings.isEmpty(object.myHash) ? Utils.getMD5() : object.myHash;
+			statement.bindString(14, hash);
+			return hash;
+		}
+		
+		// same columns and rules as getEditContentValues(), empty values keep the stored ones
+		private void bindUpdate(SQLiteStatement statement, Favorite object) {
+			statement.clearBindings();
+			bindStringOrNull(statement, 1, object.description);
+			if(Strings.notEmpty(object.amount)) {
+				Long amountMinor = getAmountMinor(object.amount);
+				statement.bindString(2, object.amount);
+				statement.bindLong(3, amountMinor == null ? 0 : amountMinor);
+				statement.bindLong(4, amountMinor == null ? 1 : 0);
+			}
+			bindCommon(statement, object);
+		}
+		
+		private void bindCommon(SQLiteStatement statement, Favorite object) {
+			bindStringOrNull(statement, 5, object.type);
+			bindStringOrNull(statement, 6, object.location);
+			bindStringOrNull(statement, 7, object.idFromServer);
+			bindStringOrNull(statement, 8, object.syncBit);
+			bindStringOrNull(statement, 9, object.updatedAt);
+			bindBooleanOrNull(statement, 10, object.fileUploaded);
+			bindBooleanOrNull(statement, 11, object.fileToDownload);
+			bindBooleanOrNull(statement, 12, object.deleted);
+			bindStringOrNull(statement, 13, object.fileUpdatedAt);
+		}
+		
+		private void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+			if(Strings.notEmpty(value)) {
+				statement.bindString(index, value);
+			} else {
+				statement.bindNull(index);
+			}
+		}
+		
+		private void bindLongOrNull(SQLiteStatement statement, int index, Long value) {
+			if(value != null) {
+				statement.bindLong(index, value);
+			} else {
+				statement.bindNull(index);
+			}
+		}
+		
+		private void bindBooleanOrNull(SQLiteStatement statement, int index, Boolean value) {
+			if(value != null) {
+				statement.bindLong(index, value ? 1 : 0);
+			} else {
+				statement.bindNull(index);
+			}
+		}
+		
+	}
+	
+	private String getCoalesceString(String column) {
+		return column + " = COALESCE(?, " + column + ")";
+	}
+	
 	private class MyCreateOpenHelper extends SQLiteOpenHelper {
 
-		public MyCreateOpenHelper(Context context) {
-			super(context, DATABASE_NAME, null, DB_VERSION);
+		public MyCreateOpenHelper(Context context, SQLiteDatabase.CursorFactory cursorFactory) {
+			super(context, DATABASE_NAME, cursorFactory, DB_VERSION);
 		}
 
 		@Override
 		public void onCreate(SQLiteDatabase database) {
 			database.execSQL(ENTRY_TABLE_CREATE);
 			database.execSQL(FAVORITE_TABLE_CREATE);
+			database.execSQL(ENTRY_DAY_TOTAL_TABLE_CREATE);
+			database.execSQL(ATTACHMENT_TABLE_CREATE);
+			createEntryTotalTriggers(database);
+			createEntryChangeTriggers(database);
+			createIndexes(database);
 		}
 
 		@Override
@@ -612,23 +1300,60 @@ public class DatabaseAdapter {
 			if(prevVersion == 2) {
 				db.execSQL("ALTER TABLE " + FAVORITE_TABLE +" ADD "+KEY_LOCATION+" TEXT");
 			}
-			if(prevVersion == 3) {
-				db.execSQL("ALTER TABLE " + ENTRY_TABLE +" ADD ("+KEY_ID_FROM_SERVER+" INTEGER UNIQUE," +
-						  KEY_UPDATED_AT+" STRING," +
-						  KEY_MY_HASH+" TEXT," +
-						  KEY_DELETE_BIT+" BOOLEAN DEFAULT 'FALSE'," +
-						  KEY_SYNC_BIT+" INTEGER," +
-						  KEY_FILE_UPLOADED +" BOOLEAN DEFAULT 'FALSE'," +
-						  KEY_FILE_TO_DOWNLOAD +" BOOLEAN DEFAULT 'FALSE', " +
-						  KEY_FILE_UPDATED_AT +" STRING);");
-				db.execSQL("ALTER TABLE " + FAVORITE_TABLE +" ADD ("+KEY_ID_FROM_SERVER+" INTEGER UNIQUE," +
-						  KEY_UPDATED_AT+" STRING," +
-						  KEY_MY_HASH+" TEXT," +
-						  KEY_DELETE_BIT+" BOOLEAN DEFAULT 'FALSE'," +
-						  KEY_SYNC_BIT+" INTEGER," +
-						  KEY_FILE_UPLOADED +" BOOLEAN DEFAULT 'FALSE'," +
-						  KEY_FILE_TO_DOWNLOAD +" BOOLEAN DEFULT 'FALSE', " +
-						  KEY_FILE_UPDATED_AT +" STRING);");
+			if(prevVersion <= 3) {
+				// version 3 tables created by onCreate already have the sync columns, older ones may not.
+				// Only the schema is changed here, amounts are backfilled later by migrateAmounts()
+				db.execSQL(FAVORITE_TABLE_CREATE);
+				String[] tables = {ENTRY_TABLE, FAVORITE_TABLE};
+				for(String table : tables) {
+					addColumnIfMissing(db, table, KEY_ID_FROM_SERVER, "INTEGER");
+					addColumnIfMissing(db, table, KEY_UPDATED_AT, "STRING");
+					addColumnIfMissing(db, table, KEY_MY_HASH, "TEXT");
+					addColumnIfMissing(db, table, KEY_DELETE_BIT, "BOOLEAN DEFAULT 'FALSE'");
+					addColumnIfMissing(db, table, KEY_SYNC_BIT, "INTEGER");
+					addColumnIfMissing(db, table, KEY_FILE_UPLOADED, "BOOLEAN DEFAULT 'FALSE'");
+					addColumnIfMissing(db, table, KEY_FILE_TO_DOWNLOAD, "BOOLEAN DEFAULT 'FALSE'");
+					addColumnIfMissing(db, table, KEY_FILE_UPDATED_AT, "STRING");
+					addColumnIfMissing(db, table, KEY_AMOUNT_MINOR, "INTEGER");
+					addColumnIfMissing(db, table, KEY_AMOUNT_UNKNOWN, "BOOLEAN");
+				}
+			}
+			if(prevVersion <= 4) {
+				addColumnIfMissing(db, ENTRY_TABLE, KEY_DIRTY_FIELDS, "INTEGER DEFAULT 0");
+				addColumnIfMissing(db, FAVORITE_TABLE, KEY_DIRTY_FIELDS, "INTEGER DEFAULT 0");
+			}
+			if(prevVersion <= 6) {
+				// only the schema is changed here, a scan of EntryTable would hold up getWritableDatabase() on the
+				// UI thread. DatabaseMigration fills the totals and backfills FILES_PRESENT of existing entries later,
+				// from there on the triggers keep the totals current
+				addColumnIfMissing(db, ENTRY_TABLE, KEY_FILES_PRESENT, "BOOLEAN");
+				db.execSQL(ENTRY_DAY_TOTAL_TABLE_CREATE);
+				addColumnIfMissing(db, ENTRY_DAY_TOTAL_TABLE, KEY_DAY_UNFINISHED_COUNT, "INTEGER NOT NULL DEFAULT 0");
+				dropEntryTotalTriggers(db);
+				createEntryTotalTriggers(db);
+			}
+			if(prevVersion <= 7) {
+				// files of existing entries and favorites stay where they are until shared
+				db.execSQL(ATTACHMENT_TABLE_CREATE);
+				db.execSQL(ATTACHMENT_HASH_INDEX_CREATE);
+			}
+			if(prevVersion <= 8) {
+				createEntryChangeTriggers(db);
+			}
+		}
+		
+		private void addColumnIfMissing(SQLiteDatabase db, String table, String column, String definition) {
+			Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+			boolean isPresent = false;
+			while(cursor.moveToNext()) {
+				if(column.equalsIgnoreCase(cursor.getString(cursor.getColumnIndex("name")))) {
+					isPresent = true;
+					break;
+				}
+			}
+			cursor.close();
+			if(!isPresent) {
+				db.execSQL("ALTER TABLE " + table + " ADD " + column + " " + definition);
 			}
 		}
 		
@@ -0,0 +1,336 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.helpers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteQuery;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+
+import com.vinsol.expensetracker.utils.Log;
+
+/**
+ * Holds the one database connection of the process. DatabaseAdapter.open()/close() only take and
+ * give back a reference, the connection itself stays open so the per call open/close of the call
+ * sites costs nothing. SQLiteDatabase serializes access from the UI, sync and graph threads.
+ * Compiled statements are cached per thread, a statement is never shared between threads so
+ * using one needs no lock of its own while another thread holds a transaction. The caches of
+ * threads that ended, e.g. of a finished FileTransferScheduler pool, are closed by the next open().
+ */
+public class DatabaseManager {
+
+	public static final int STATEMENT_CACHE_SIZE = 32;
+
+	private static DatabaseManager instance;
+
+	private final SQLiteOpenHelper openHelper;
+	private volatile SQLiteDatabase database;
+	private int openCount = 0;
+	private final ThreadLocal<Map<String, SQLiteStatement>> statementCache;
+	// every thread's statement cache, guarded by this
+	private final Map<Thread, Map<String, SQLiteStatement>> statementCaches = new HashMap<Thread, Map<String, SQLiteStatement>>();
+	private volatile Instrumentation instrumentation;
+	// call sites of the adapters open on this thread, innermost last, only tracked while instrumented
+	private final ThreadLocal<List<String>> callSites = new ThreadLocal<List<String>>() {
+		@Override
+		protected List<String> initialValue() {
+			return new ArrayList<String>();
+		}
+	};
+
+	// Receives database usage per call site, see Counters for one that sums it up
+	public interface Instrumentation {
+		void onOpen(String callSite, int openCount);
+		void onClose(String callSite, long heldMillis);
+		void onStatement(String callSite, String sql, long millis);
+	}
+
+	public static synchronized DatabaseManager getInstance(Context context) {
+		if(instance == null) {
+			Context applicationContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+			instance = new DatabaseManager(applicationContext);
+		}
+		return instance;
+	}
+
+	@SuppressWarnings("serial")
+	private DatabaseManager(Context context) {
+		openHelper = DatabaseAdapter.getOpenHelper(context, new SQLiteDatabase.CursorFactory() {
+			@SuppressWarnings("deprecation")
+			@Override
+			public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable, SQLiteQuery query) {
+				if(instrumentation != null) {
+					return new TimedCursor(db, masterQuery, editTable, query, getCallSite(), query.toString());
+				}
+				return new SQLiteCursor(db, masterQuery, editTable, query);
+			}
+		});
+		statementCache = new ThreadLocal<Map<String, SQLiteStatement>>() {
+			@Override
+			protected Map<String, SQLiteStatement> initialValue() {
+				Map<String, SQLiteStatement> statements = new LinkedHashMap<String, SQLiteStatement>(STATEMENT_CACHE_SIZE + 1, 0.75f, true) {
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+						if(size() > STATEMENT_CACHE_SIZE) {
+							eldest.getValue().close();
+							return true;
+						}
+						return false;
+					}
+				};
+				synchronized (DatabaseManager.this) {
+					statementCaches.put(Thread.currentThread(), statements);
+				}
+				return statements;
+			}
+		};
+	}
+
+	// Takes a reference on the shared connection, opening it the first time
+	public synchronized SQLiteDatabase open(String callSite) {
+		if(database == null || !database.isOpen()) {
+			database = openHelper.getWritableDatabase();
+			if(Build.VERSION.SDK_INT >= 11) {
+				// readers no longer wait for the sync writing a batch
+				database.enableWriteAheadLogging();
+			}
+		}
+		openCount++;
+		closeEndedThreadStatements();
+		Instrumentation current = instrumentation;
+		if(current != null) {
+			callSites.get().add(callSite);
+			current.onOpen(callSite, openCount);
+		}
+		return database;
+	}
+
+	// statements of a thread that ended are not used again, its cache is only reachable from here
+	private void closeEndedThreadStatements() {
+		Iterator<Map.Entry<Thread, Map<String, SQLiteStatement>>> iterator = statementCaches.entrySet().iterator();
+		while(iterator.hasNext()) {
+			Map.Entry<Thread, Map<String, SQLiteStatement>> entry = iterator.next();
+			if(!entry.getKey().isAlive()) {
+				for(SQLiteStatement statement : entry.getValue().values()) {
+					statement.close();
+				}
+				iterator.remove();
+			}
+		}
+	}
+
+	// Gives a reference back, the connection is kept open for the next caller
+	public synchronized void close(String callSite, long heldMillis) {
+		if(openCount > 0) {
+			openCount--;
+		}
+		Instrumentation current = instrumentation;
+		if(current != null) {
+			// a nested adapter closes before the one that opened first
+			List<String> openCallSites = callSites.get();
+			int index = openCallSites.lastIndexOf(callSite);
+			if(index != -1) {
+				openCallSites.remove(index);
+			}
+			current.onClose(callSite, heldMillis);
+		}
+	}
+
+	public synchronized int getOpenCount() {
+		return openCount;
+	}
+
+	public void setInstrumentation(Instrumentation instrumentation) {
+		this.instrumentation = instrumentation;
+	}
+
+	public boolean isInstrumented() {
+		return instrumentation != null;
+	}
+
+	// Runs sql with bindArgs through a compiled statement cached for the calling thread, call between open() and close()
+	public void execute(String sql, Object... bindArgs) {
+		long start = System.currentTimeMillis();
+		SQLiteStatement statement = getStatement(sql, bindArgs);
+		statement.execute();
+		onStatement(sql, start);
+	}
+
+	public long executeInsert(String sql, Object... bindArgs) {
+		long start = System.currentTimeMillis();
+		SQLiteStatement statement = getStatement(sql, bindArgs);
+		long id = statement.executeInsert();
+		onStatement(sql, start);
+		return id;
+	}
+
+	public long simpleQueryForLong(String sql, Object... bindArgs) {
+		long start = System.currentTimeMillis();
+		SQLiteStatement statement = getStatement(sql, bindArgs);
+		long value = statement.simpleQueryForLong();
+		onStatement(sql, start);
+		return value;
+	}
+
+	// null when the query returns no row
+	public String simpleQueryForString(String sql, Object... bindArgs) {
+		long start = System.currentTimeMillis();
+		SQLiteStatement statement = getStatement(sql, bindArgs);
+		try {
+			return statement.simpleQueryForString();
+		} catch (SQLiteDoneException e) {
+			return null;
+		} finally {
+			onStatement(sql, start);
+		}
+	}
+
+	private SQLiteStatement getStatement(String sql, Object[] bindArgs) {
+		Map<String, SQLiteStatement> statements = statementCache.get();
+		SQLiteStatement statement = statements.get(sql);
+		if(statement == null) {
+			statement = database.compileStatement(sql);
+			statements.put(sql, statement);
+		}
+		statement.clearBindings();
+		for(int i = 0; i < bindArgs.length; i++) {
+			bind(statement, i + 1, bindArgs[i]);
+		}
+		return statement;
+	}
+
+	private void bind(SQLiteStatement statement, int index, Object value) {
+		if(value == null) {
+			statement.bindNull(index);
+		} else if(value instanceof Boolean) {
+			statement.bindLong(index, ((Boolean) value) ? 1 : 0);
+		} else if(value instanceof Long || value instanceof Integer) {
+			statement.bindLong(index, ((Number) value).longValue());
+		} else if(value instanceof Double || value instanceof Float) {
+			statement.bindDouble(index, ((Number) value).doubleValue());
+		} else {
+			statement.bindString(index, value.toString());
+		}
+	}
+
+	private void onStatement(String sql, long start) {
+		Instrumentation current = instrumentation;
+		if(current != null) {
+			current.onStatement(getCallSite(), sql, System.currentTimeMillis() - start);
+		}
+	}
+
+	// innermost adapter open on this thread, null outside of one
+	private String getCallSite() {
+		List<String> openCallSites = callSites.get();
+		return openCallSites.isEmpty() ? null : openCallSites.get(openCallSites.size() - 1);
+	}
+
+	/**
+	 * Cursor of an instrumented query. The query runs when the cursor first fills its window, in getCount()
+	 * or a move, the time spent there is reported once the cursor is closed.
+	 */
+	private class TimedCursor extends SQLiteCursor {
+
+		private final String mCallSite;
+		private final String mSql;
+		private long mMillis = 0;
+		private boolean isReported = false;
+
+		@SuppressWarnings("deprecation")
+		TimedCursor(SQLiteDatabase db, SQLiteCursorDriver driver, String editTable, SQLiteQuery query, String callSite, String sql) {
+			super(db, driver, editTable, query);
+			mCallSite = callSite;
+			mSql = sql;
+		}
+
+		@Override
+		public int getCount() {
+			long start = System.currentTimeMillis();
+			int count = super.getCount();
+			mMillis += System.currentTimeMillis() - start;
+			return count;
+		}
+
+		@Override
+		public boolean onMove(int oldPosition, int newPosition) {
+			long start = System.currentTimeMillis();
+			boolean isMoved = super.onMove(oldPosition, newPosition);
+			mMillis += System.currentTimeMillis() - start;
+			return isMoved;
+		}
+
+		@Override
+		public void close() {
+			super.close();
+			Instrumentation current = instrumentation;
+			if(current != null && !isReported) {
+				isReported = true;
+				current.onStatement(mCallSite, mSql, mMillis);
+			}
+		}
+
+	}
+
+	/**
+	 * Sums opens, statements and time held per call site, log() prints them.
+	 */
+	public static class Counters implements Instrumentation {
+
+		// call site -> {opens, statements, millis held, millis in statements}
+		private final Map<String, long[]> counters = new HashMap<String, long[]>();
+
+		@Override
+		public synchronized void onOpen(String callSite, int openCount) {
+			get(callSite)[0]++;
+		}
+
+		@Override
+		public synchronized void onClose(String callSite, long heldMillis) {
+			get(callSite)[2] += heldMillis;
+		}
+
+		@Override
+		public synchronized void onStatement(String callSite, String sql, long millis) {
+			long[] counter = get(callSite);
+			counter[1]++;
+			counter[3] += millis;
+		}
+
+		public synchronized void log() {
+			for(Map.Entry<String, long[]> entry : counters.entrySet()) {
+				long[] counter = entry.getValue();
+				Log.d("****** " + entry.getKey() + " opens " + counter[0] + " statements " + counter[1] + " held " + counter[2] + " ms in statements " + counter[3] + " ms ******");
+			}
+		}
+
+		private long[] get(String callSite) {
+			String key = callSite == null ? "unknown" : callSite;
+			long[] counter = counters.get(key);
+			if(counter == null) {
+				counter = new long[4];
+				counters.put(key, counter);
+			}
+			return counter;
+		}
+
+	}
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.helpers;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import android.content.Context;
+import android.os.AsyncTask;
+
+import com.vinsol.expensetracker.R;
+import com.vinsol.expensetracker.utils.Log;
+
+public class DatabaseMigration extends AsyncTask<Void, Void, Integer> {
+
+	// Told on the UI thread once EntryDayTotalTable was rebuilt, totals read from it before are out of date.
+	// An upgrade to version 6 leaves the table empty until then
+	public interface OnTotalsRebuiltListener {
+		void onTotalsRebuilt();
+	}
+	
+	private static final List<OnTotalsRebuiltListener> listeners = new ArrayList<OnTotalsRebuiltListener>();
+	
+	private Context context;
+	private boolean isToRebuildTotals;
+	private boolean isTotalsRebuilt = false;
+	private long startTimeInMillis;
+	
+	// call on the UI thread, e.g. from onResume(), and remove it again in onPause()
+	public static void addOnTotalsRebuiltListener(OnTotalsRebuiltListener listener) {
+		if(!listeners.contains(listener)) {
+			listeners.add(listener);
+		}
+	}
+	
+	public static void removeOnTotalsRebuiltListener(OnTotalsRebuiltListener listener) {
+		listeners.remove(listener);
+	}
+	
+	public DatabaseMigration(Context context) {
+		this(context, false);
+	}
+	
+	// isToRebuildTotals rebuilds EntryDayTotalTable even if the time zone did not change, e.g. when the user asks
+	public DatabaseMigration(Context context, boolean isToRebuildTotals) {
+		this.context = context;
+		this.isToRebuildTotals = isToRebuildTotals;
+	}
+	
+	@Override
+	protected Integer doInBackground(Void... params) {
+		startTimeInMillis = Calendar.getInstance().getTimeInMillis();
+		DatabaseAdapter adapter = new DatabaseAdapter(context);
+		adapter.open();
+		// before the slower steps, listings read attachment paths from this map while they bind
+		AttachmentStore.getInstance().load(adapter);
+		int migrated = adapter.migrateAmounts();
+		int checked = new CheckEntryComplete().updateFilesPresentUnchecked(context);
+		if(checked > 0) {
+			Log.d("*********************** Attachments checked for "+checked+" entries ***********************");
+		}
+		// the triggers keep the totals current, days are only bucketed anew in another time zone
+		String timeZone = getTimeZone();
+		if(isToRebuildTotals || !timeZone.equals(SharedPreferencesHelper.getSharedPreferences().getString(context.getString(R.string.pref_key_entry_totals_time_zone), null))) {
+			Log.d("*********************** Entry totals built in another time zone, rebuilding for "+timeZone+" ***********************");
+			adapter.rebuildEntryTotals();
+			SharedPreferencesHelper.setEntryTotalsTimeZone(timeZone);
+			isTotalsRebuilt = true;
+		}
+		AttachmentStore.getInstance().collectGarbage(adapter);
+		adapter.close();
+		return migrated;
+	}
+	
+	// id, standard offset and daylight saving of the time zone SQLite's localtime buckets days in
+	private String getTimeZone() {
+		TimeZone timeZone = TimeZone.getDefault();
+		return timeZone.getID() + "," + timeZone.getRawOffset() + "," + timeZone.getDSTSavings() + "," + timeZone.useDaylightTime();
+	}
+	
+	@Override
+	protected void onPostExecute(Integer migrated) {
+		Log.d("*********************** Amounts Migrated "+migrated+" in "+(Calendar.getInstance().getTimeInMillis() - startTimeInMillis)+" ms ***********************");
+		if(isTotalsRebuilt) {
+			for(OnTotalsRebuiltListener listener : new ArrayList<OnTotalsRebuiltListener>(listeners)) {
+				listener.onTotalsRebuilt();
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.helpers;
+
+import java.util.TimeZone;
+
+/**
+ * Maps epoch millis to int keys of the day, week, month and year holding them in the default time
+ * zone, with the same bounds as DisplayDate: weeks start on monday but never before the 1st of
+ * the month. Two times are in the same bucket when their keys are equal, so listings group rows
+ * without a Calendar or a formatted String per row. Offsets of the time zone are looked up once per
+ * day and kept in a table, days with a DST change ask the TimeZone. Nothing is allocated per call
+ * once the table covers the dates asked for.
+ */
+public class DateBucketer {
+
+	public static final long DAY_IN_MILLIS = 24L * 60 * 60 * 1000;
+
+	// the default time zone is checked again after this long
+	private static final long TIME_ZONE_CHECK_MILLIS = 1000;
+	// days added on either side when the offset table grows
+	private static final int TABLE_MARGIN_DAYS = 366;
+	private static final int OFFSET_CHANGES = Integer.MIN_VALUE;
+
+	private static DateBucketer instance;
+	private static long timeZoneCheckedAt;
+
+	private final TimeZone timeZone;
+	private volatile OffsetTable table = new OffsetTable(0, new int[0]);
+
+	// offset at UTC day firstDay + i, OFFSET_CHANGES when it changes during that day
+	private static class OffsetTable {
+		final long firstDay;
+		final int[] offsets;
+
+		OffsetTable(long firstDay, int[] offsets) {
+			this.firstDay = firstDay;
+			this.offsets = offsets;
+		}
+	}
+
+	// Bucketer of the default time zone, hold on to it in loops
+	public static synchronized DateBucketer getInstance() {
+		long now = System.currentTimeMillis();
+		if(instance == null || now - timeZoneCheckedAt > TIME_ZONE_CHECK_MILLIS || now < timeZoneCheckedAt) {
+			TimeZone current = TimeZone.getDefault();
+			if(instance == null || !instance.timeZone.getID().equals(current.getID()) || instance.timeZone.getRawOffset() != current.getRawOffset()) {
+				instance = new DateBucketer(current);
+			}
+			timeZoneCheckedAt = now;
+		}
+		return instance;
+	}
+
+	public DateBucketer(TimeZone timeZone) {
+		this.timeZone = timeZone;
+	}
+
+	// Key of the DatabaseAdapter.BUCKET_* holding timeInMillis
+	public int getKey(int bucket, long timeInMillis) {
+		int day = getDayKey(timeInMillis);
+		switch (bucket) {
+		case DatabaseAdapter.BUCKET_DAY:
+			return day;
+		case DatabaseAdapter.BUCKET_WEEK:
+			return getWeekKey(day);
+		case DatabaseAdapter.BUCKET_MONTH:
+			return getMonthKey(day);
+		default:
+			return getYear(day);
+		}
+	}
+
+	public boolean isSameBucket(int bucket, long timeInMillis, long otherTimeInMillis) {
+		return getKey(bucket, timeInMillis) == getKey(bucket, otherTimeInMillis);
+	}
+
+	// Days since 1970-01-01 in the local time zone
+	public int getDayKey(long timeInMillis) {
+		return (int) floorDiv(timeInMillis + getOffset(timeInMillis), DAY_IN_MILLIS);
+	}
+
+	// Day key of the first day of the week holding day
+	public int getWeekKey(int day) {
+		return day - Math.min(getDayOfWeek(day), getDayOfMonth(day) - 1);
+	}
+
+	// year * 12 + month, month counted from 0 as by Calendar
+	public int getMonthKey(int day) {
+		int date = getDate(day);
+		return (date >> 9) * 12 + ((date >> 5) & 15);
+	}
+
+	public int getYear(int day) {
+		return getDate(day) >> 9;
+	}
+
+	// 0 for january as Calendar.MONTH
+	public int getMonth(int day) {
+		return (getDate(day) >> 5) & 15;
+	}
+
+	public int getDayOfMonth(int day) {
+		return getDate(day) & 31;
+	}
+
+	// 0 for monday
+	public int getDayOfWeek(int day) {
+		return (int) floorMod(day + 3, 7);
+	}
+
+	// Day key of year, month (from 0) and dayOfMonth
+	public static int getDay(int year, int month, int dayOfMonth) {
+		int y = month < 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month < 2 ? month + 10 : month - 2) + 2) / 5 + dayOfMonth - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	// Epoch millis of the local midnight starting day
+	public long getStartInMillis(int day) {
+		long local = day * DAY_IN_MILLIS;
+		long start = local - getOffset(local - getOffset(local));
+		if(getDayKey(start) != day) {
+			// midnight skipped by a DST change, the day starts at the change as with Calendar
+			start = local - getOffset(start);
+		}
+		return start;
+	}
+
+	public long getStartOfWeekInMillis(int day) {
+		return getStartInMillis(getWeekKey(day));
+	}
+
+	// next monday, but never after the 1st of next month
+	public long getStartOfNextWeekInMillis(int day) {
+		int nextMonday = day + 7 - getDayOfWeek(day);
+		return getStartInMillis(Math.min(nextMonday, getStartOfNextMonth(day)));
+	}
+
+	public long getStartOfMonthInMillis(int day) {
+		return getStartInMillis(day - getDayOfMonth(day) + 1);
+	}
+
+	public long getStartOfNextMonthInMillis(int day) {
+		return getStartInMillis(getStartOfNextMonth(day));
+	}
+
+	public long getStartOfYearInMillis(int day) {
+		return getStartInMillis(getDay(getYear(day), 0, 1));
+	}
+
+	public long getStartOfNextYearInMillis(int day) {
+		return getStartInMillis(getDay(getYear(day) + 1, 0, 1));
+	}
+
+	private int getStartOfNextMonth(int day) {
+		int date = getDate(day);
+		int month = (date >> 5) & 15;
+		return month == 11 ? getDay((date >> 9) + 1, 0, 1) : getDay(date >> 9, month + 1, 1);
+	}
+
+	// year << 9 | month << 5 | dayOfMonth of the civil date of day
+	private static int getDate(int day) {
+		int z = day + 719468;
+		int era = (z >= 0 ? z : z - 146096) / 146097;
+		int dayOfEra = z - era * 146097;
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int shiftedMonth = (5 * dayOfYear + 2) / 153;
+		int dayOfMonth = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+		int month = shiftedMonth < 10 ? shiftedMonth + 2 : shiftedMonth - 10;
+		int year = yearOfEra + era * 400 + (month < 2 ? 1 : 0);
+		return (year << 9) | (month << 5) | dayOfMonth;
+	}
+
+	private int getOffset(long timeInMillis) {
+		long day = floorDiv(timeInMillis, DAY_IN_MILLIS);
+		OffsetTable current = table;
+		if(day < current.firstDay || day >= current.firstDay + current.offsets.length) {
+			current = grow(day);
+		}
+		int offset = current.offsets[(int) (day - current.firstDay)];
+		return offset == OFFSET_CHANGES ? timeZone.getOffset(timeInMillis) : offset;
+	}
+
+	private synchronized OffsetTable grow(long day) {
+		OffsetTable current = table;
+		long end = current.firstDay + current.offsets.length;
+		if(day >= current.firstDay && day < end) {
+			return current;
+		}
+		long firstDay = current.offsets.length == 0 ? day - TABLE_MARGIN_DAYS : Math.min(current.firstDay, day - TABLE_MARGIN_DAYS);
+		long newEnd = current.offsets.length == 0 ? day + TABLE_MARGIN_DAYS : Math.max(end, day + TABLE_MARGIN_DAYS);
+		int[] offsets = new int[(int) (newEnd - firstDay)];
+		for(int i = 0; i < offsets.length; i++) {
+			long utcDay = firstDay + i;
+			if(current.offsets.length > 0 && utcDay >= current.firstDay && utcDay < end) {
+				offsets[i] = current.offsets[(int) (utcDay - current.firstDay)];
+				continue;
+			}
+			int startOffset = timeZone.getOffset(utcDay * DAY_IN_MILLIS);
+			int endOffset = timeZone.getOffset(utcDay * DAY_IN_MILLIS + DAY_IN_MILLIS - 1);
+			offsets[i] = startOffset == endOffset ? startOffset : OFFSET_CHANGES;
+		}
+		table = new OffsetTable(firstDay, offsets);
+		return table;
+	}
+
+	private static long floorDiv(long x, long y) {
+		long q = x / y;
+		return (x % y != 0 && ((x < 0) != (y < 0))) ? q - 1 : q;
+	}
+
+	private static long floorMod(long x, long y) {
+		return x - floorDiv(x, y) * y;
+	}
+
+}
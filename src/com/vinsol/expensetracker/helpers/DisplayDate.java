@@ -13,7 +13,10 @@ import com.vinsol.expensetracker.R;
 public class DisplayDate {
 
 	// /////// ******* Class to pass Calender and get date in display format ******* ////////
+	// Only formatting needs mCalendar, it is created on first use when constructed from millis.
+	// Comparisons and bounds go through DateBucketer
 	private Calendar mCalendar;
+	private long mTimeInMillis;
 
 	public DisplayDate() {}
 
@@ -23,17 +26,34 @@ public class DisplayDate {
 	}
 	
 	public DisplayDate(Long timeInMillis) {
-		mCalendar = Calendar.getInstance();
-		mCalendar.setTimeInMillis(timeInMillis);
-		mCalendar.setFirstDayOfWeek(Calendar.MONDAY);
+		mTimeInMillis = timeInMillis;
 	}
 	
 	public Calendar getCalendar() {
+		if(mCalendar == null) {
+			mCalendar = Calendar.getInstance();
+			mCalendar.setTimeInMillis(mTimeInMillis);
+			mCalendar.setFirstDayOfWeek(Calendar.MONDAY);
+		}
 		return mCalendar;
 	}
+	
+	public long getTimeInMillis() {
+		// a calendar passed in may have been moved by the caller since
+		return mCalendar != null ? mCalendar.getTimeInMillis() : mTimeInMillis;
+	}
+	
+	// The current time of day on this date, for entries added to a listed day
+	public long getNowOnThisDayInMillis() {
+		Calendar dayCalendar = getCalendar();
+		Calendar calendar = Calendar.getInstance();
+		calendar.set(dayCalendar.get(Calendar.YEAR), dayCalendar.get(Calendar.MONTH), dayCalendar.get(Calendar.DAY_OF_MONTH));
+		return calendar.getTimeInMillis();
+	}
 
 	// ////// ******** Function to get date in proper format to display in various activities ****** ///////
 	public String getDisplayDate() {
+		Calendar mCalendar = getCalendar();
 		String month;
 		int day, year;
 		mCalendar.set(mCalendar.get(Calendar.YEAR), mCalendar.get(Calendar.MONTH), mCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
@@ -80,6 +100,7 @@ public class DisplayDate {
 
 	// //////******** Function to get date in proper format to display in various activities ****** ///////
 	public String getHeaderFooterListDisplayDate(int type) {
+		Calendar mCalendar = getCalendar();
 		String month, day, year;
 		mCalendar.set(mCalendar.get(Calendar.YEAR), mCalendar.get(Calendar.MONTH), mCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
 		mCalendar.setFirstDayOfWeek(Calendar.MONDAY);
@@ -111,6 +132,7 @@ public class DisplayDate {
 	}
 	
 	public String getDisplayDateGraph() {
+		Calendar mCalendar = getCalendar();
 		String month, year;
 		mCalendar.set(mCalendar.get(Calendar.YEAR), mCalendar.get(Calendar.MONTH), mCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
 		mCalendar.setFirstDayOfWeek(Calendar.MONDAY);
@@ -128,6 +150,7 @@ public class DisplayDate {
 	}
 	
 	public String getDisplayDateHeaderGraph() {
+		Calendar mCalendar = getCalendar();
 		String month, year;
 		mCalendar.set(mCalendar.get(Calendar.YEAR), mCalendar.get(Calendar.MONTH), mCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
 		mCalendar.setFirstDayOfWeek(Calendar.MONDAY);
@@ -144,66 +167,100 @@ public class DisplayDate {
 		return year;
 	}
 
-	public boolean isPrevYears() {
-		Calendar mTempCalendar = Calendar.getInstance();
-		mTempCalendar.set(mTempCalendar.get(Calendar.YEAR), mTempCalendar.get(Calendar.MONTH), mTempCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
-		mTempCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-		mCalendar.set(mCalendar.get(Calendar.YEAR), mCalendar.get(Calendar.MONTH), mCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
-		mCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-		if (mTempCalendar.get(Calendar.YEAR) > mCalendar.get(Calendar.YEAR)) {
-			return true;
+	//////// ******** Start of the day, week (monday, but never before the 1st of month), month and year ****** ///////
+	public long getStartOfWeekInMillis() {
+		return getDateBucketer().getStartOfWeekInMillis(getDayKey());
+	}
+	
+	// next monday, but never after the 1st of next month
+	public long getStartOfNextWeekInMillis() {
+		return getDateBucketer().getStartOfNextWeekInMillis(getDayKey());
+	}
+	
+	public long getStartOfDayInMillis() {
+		return getDateBucketer().getStartInMillis(getDayKey());
+	}
+	
+	public long getStartOfNextDayInMillis() {
+		return getDateBucketer().getStartInMillis(getDayKey() + 1);
+	}
+	
+	public long getStartOfMonthInMillis() {
+		return getDateBucketer().getStartOfMonthInMillis(getDayKey());
+	}
+	
+	public long getStartOfNextMonthInMillis() {
+		return getDateBucketer().getStartOfNextMonthInMillis(getDayKey());
+	}
+	
+	public long getStartOfYearInMillis() {
+		return getDateBucketer().getStartOfYearInMillis(getDayKey());
+	}
+	
+	public long getStartOfNextYearInMillis() {
+		return getDateBucketer().getStartOfNextYearInMillis(getDayKey());
+	}
+	
+	// [start, start of next) of the DatabaseAdapter.BUCKET_* holding this date, same bounds as the grouping of getEntryBucketTotals()
+	public long getStartOfBucketInMillis(int bucket) {
+		switch (bucket) {
+		case DatabaseAdapter.BUCKET_DAY:
+			return getStartOfDayInMillis();
+		case DatabaseAdapter.BUCKET_WEEK:
+			return getStartOfWeekInMillis();
+		case DatabaseAdapter.BUCKET_MONTH:
+			return getStartOfMonthInMillis();
+		default:
+			return getStartOfYearInMillis();
 		}
-		return false;
+	}
+	
+	public long getStartOfNextBucketInMillis(int bucket) {
+		switch (bucket) {
+		case DatabaseAdapter.BUCKET_DAY:
+			return getStartOfNextDayInMillis();
+		case DatabaseAdapter.BUCKET_WEEK:
+			return getStartOfNextWeekInMillis();
+		case DatabaseAdapter.BUCKET_MONTH:
+			return getStartOfNextMonthInMillis();
+		default:
+			return getStartOfNextYearInMillis();
+		}
+	}
+	
+	private DateBucketer getDateBucketer() {
+		return DateBucketer.getInstance();
+	}
+	
+	private int getDayKey() {
+		return getDateBucketer().getDayKey(getTimeInMillis());
+	}
+	
+	private int getCurrentKey(int bucket) {
+		return getDateBucketer().getKey(bucket, System.currentTimeMillis());
+	}
+
+	public boolean isPrevYears() {
+		return getCurrentKey(DatabaseAdapter.BUCKET_YEAR) > getDateBucketer().getKey(DatabaseAdapter.BUCKET_YEAR, getTimeInMillis());
 	}
 
 	public boolean isNotCurrentMonthAndCurrentYear() {
-		Calendar mTempCalender = Calendar.getInstance();
-		mTempCalender.set(mTempCalender.get(Calendar.YEAR), mTempCalender.get(Calendar.MONTH), mTempCalender.get(Calendar.DAY_OF_MONTH),0,0,0);
-		mTempCalender.setFirstDayOfWeek(Calendar.MONDAY);
-		mCalendar.set(mCalendar.get(Calendar.YEAR), mCalendar.get(Calendar.MONTH), mCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
-		mCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-		if ((mTempCalender.get(Calendar.MONTH) > mCalendar.get(Calendar.MONTH)) && (mTempCalender.get(Calendar.YEAR) == mCalendar.get(Calendar.YEAR))) {
-			return true;
-		}
-		return false;
+		DateBucketer mDateBucketer = getDateBucketer();
+		long timeInMillis = getTimeInMillis();
+		return getCurrentKey(DatabaseAdapter.BUCKET_MONTH) > mDateBucketer.getKey(DatabaseAdapter.BUCKET_MONTH, timeInMillis)
+				&& getCurrentKey(DatabaseAdapter.BUCKET_YEAR) == mDateBucketer.getKey(DatabaseAdapter.BUCKET_YEAR, timeInMillis);
 	}
 
 	public boolean isCurrentYear() {
-		Calendar mTempCalender = Calendar.getInstance();
-		mTempCalender.set(mTempCalender.get(Calendar.YEAR), mTempCalender.get(Calendar.MONTH), mTempCalender.get(Calendar.DAY_OF_MONTH),0,0,0);
-		mTempCalender.setFirstDayOfWeek(Calendar.MONDAY);
-		mCalendar.set(mCalendar.get(Calendar.YEAR), mCalendar.get(Calendar.MONTH), mCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
-		mCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-		if (mTempCalender.get(Calendar.YEAR) == mCalendar.get(Calendar.YEAR)) {
-			return true;
-		}
-		return false;
+		return getCurrentKey(DatabaseAdapter.BUCKET_YEAR) == getDateBucketer().getKey(DatabaseAdapter.BUCKET_YEAR, getTimeInMillis());
 	}
 	
 	public boolean isCurrentMonth() {
-		Calendar mTempCalendar = Calendar.getInstance();
-		mTempCalendar.set(mTempCalendar.get(Calendar.YEAR), mTempCalendar.get(Calendar.MONTH), mTempCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
-		mTempCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-		mCalendar.set(mCalendar.get(Calendar.YEAR), mCalendar.get(Calendar.MONTH), mCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
-		mCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-		if ((mTempCalendar.get(Calendar.MONTH) == mCalendar.get(Calendar.MONTH)) && (mTempCalendar.get(Calendar.YEAR) == mCalendar.get(Calendar.YEAR))) {
-			return true;
-		}
-		return false;
+		return getCurrentKey(DatabaseAdapter.BUCKET_MONTH) == getDateBucketer().getKey(DatabaseAdapter.BUCKET_MONTH, getTimeInMillis());
 	}
 
 	public boolean isCurrentWeek() {
-		Calendar mTempCalendar = Calendar.getInstance();
-		mTempCalendar.set(mTempCalendar.get(Calendar.YEAR), mTempCalendar.get(Calendar.MONTH), mTempCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
-		mTempCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-		mCalendar.set(mCalendar.get(Calendar.YEAR), mCalendar.get(Calendar.MONTH), mCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
-		mCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-		if ((mTempCalendar.get(Calendar.WEEK_OF_MONTH) == mCalendar.get(Calendar.WEEK_OF_MONTH))
-				&& (mTempCalendar.get(Calendar.MONTH) == mCalendar.get(Calendar.MONTH))
-				&& (mTempCalendar.get(Calendar.YEAR) == mCalendar.get(Calendar.YEAR))) {
-			return true;
-		}
-		return false;
+		return getCurrentKey(DatabaseAdapter.BUCKET_WEEK) == getDateBucketer().getKey(DatabaseAdapter.BUCKET_WEEK, getTimeInMillis());
 	}
 
 	//////// ******* Function which returns month as string ********///////////
@@ -238,6 +295,7 @@ public class DisplayDate {
 	}
 
 	public String getSubListTag(int type) {
+		Calendar mCalendar = getCalendar();
 		mCalendar.set(mCalendar.get(Calendar.YEAR), mCalendar.get(Calendar.MONTH), mCalendar.get(Calendar.DAY_OF_MONTH),0,0,0);
 		mCalendar.setFirstDayOfWeek(Calendar.MONDAY);
 		switch (type) {
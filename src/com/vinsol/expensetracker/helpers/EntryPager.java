@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.helpers;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.vinsol.expensetracker.models.Entry;
+import com.vinsol.expensetracker.utils.Log;
+
+/**
+ * Loads listing entries lazily in pages of (DATE_TIME, _id) keyset windows.
+ * At most pageBudget pages are held in memory across all sections, the
+ * least recently used page is dropped first and read again when needed.
+ */
+public class EntryPager {
+
+	public static final int DEFAULT_PAGE_SIZE = 50;
+	public static final int DEFAULT_PAGE_BUDGET = 6;
+
+	private static final String[] KEY_COLUMNS = {DatabaseAdapter.KEY_DATE_TIME, DatabaseAdapter.KEY_ID};
+
+	private Context mContext;
+	private int mPageSize;
+	private int mPageBudget;
+	private int mSectionCount = 0;
+	private final Map<String, List<Entry>> mPages;
+
+	public EntryPager(Context context) {
+		this(context, DEFAULT_PAGE_SIZE, DEFAULT_PAGE_BUDGET);
+	}
+
+	@SuppressWarnings("serial")
+	public EntryPager(Context context, int pageSize, int pageBudget) {
+		mContext = context;
+		mPageSize = pageSize;
+		mPageBudget = pageBudget;
+		mPages = new LinkedHashMap<String, List<Entry>>(pageBudget + 1, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, List<Entry>> eldest) {
+				return size() > mPageBudget;
+			}
+		};
+	}
+
+	// Entries within [fromTimeInMillis, toTimeInMillis), count as reported by getEntryBucketTotals()
+	public Section getSection(Long fromTimeInMillis, Long toTimeInMillis, int count) {
+		return new Section(mSectionCount++, fromTimeInMillis, toTimeInMillis, count);
+	}
+
+	// Hook to turn a database row into the entry shown in the list
+	protected Entry getDisplayEntry(Entry entry) {
+		return entry;
+	}
+
+	// Hook called once the section is found to hold fewer rows than its count, e.g. totals not rebuilt yet
+	// after a time zone change. Reload the section, the next setCount() is clamped to the rows read
+	protected void onSectionShort(Long fromTimeInMillis, Long toTimeInMillis) {
+	}
+
+	public void clear() {
+		mPages.clear();
+	}
+
+	public class Section {
+
+		private int mSection;
+		private Long mFromTimeInMillis;
+		private Long mToTimeInMillis;
+		private int mCount;
+		// count last given to setCount(), and the rows read when fewer than it, -1 while not known
+		private int mTotalCount;
+		private int mRowCount = -1;
+		// (DATE_TIME, _id) of the last row of every page walked so far
+		private List<Long[]> mPageEndKeys = new ArrayList<Long[]>();
+
+		private Section(int section, Long fromTimeInMillis, Long toTimeInMillis, int count) {
+			mSection = section;
+			mFromTimeInMillis = fromTimeInMillis;
+			mToTimeInMillis = toTimeInMillis;
+			mCount = count;
+			mTotalCount = count;
+		}
+
+		public int getCount() {
+			return mCount;
+		}
+
+		// Rows read past the end are not shown from here on unless count changed. Call it only before the list is
+		// notified, the count the list holds must not change while it lays out
+		public void setCount(int count) {
+			if(count != mTotalCount) {
+				mTotalCount = count;
+				mRowCount = -1;
+			}
+			mCount = mRowCount == -1 ? count : Math.min(count, mRowCount);
+		}
+
+		// null past the rows actually read, the count may be ahead of them
+		public Entry get(int position) {
+			if(position < 0 || position >= mCount) {
+				return null;
+			}
+			List<Entry> page = getPage(position / mPageSize);
+			int index = position % mPageSize;
+			if(index < page.size()) {
+				return page.get(index);
+			}
+			return null;
+		}
+
+		// Rows of this section changed in the database, read them again on next access
+		public void invalidate() {
+			Iterator<String> iterator = mPages.keySet().iterator();
+			String prefix = mSection + ":";
+			while(iterator.hasNext()) {
+				if(iterator.next().startsWith(prefix)) {
+					iterator.remove();
+				}
+			}
+			mPageEndKeys.clear();
+		}
+
+		private List<Entry> getPage(int pageNumber) {
+			String key = mSection + ":" + pageNumber;
+			List<Entry> page = mPages.get(key);
+			if(page != null) {
+				return page;
+			}
+			Long[] afterKey = getPageStartKey(pageNumber);
+			if(afterKey == null) {
+				// the last page there is ends the section
+				getPage(mPageEndKeys.size());
+				return new ArrayList<Entry>();
+			}
+			List<Entry> entries = new ConvertCursorToListString(mContext).getEntryPage(mFromTimeInMillis, mToTimeInMillis, afterKey[0], afterKey[1], mPageSize);
+			page = new ArrayList<Entry>(entries.size());
+			for(Entry entry : entries) {
+				page.add(getDisplayEntry(entry));
+			}
+			if(page.size() > 0 && mPageEndKeys.size() == pageNumber) {
+				Entry last = page.get(page.size() - 1);
+				mPageEndKeys.add(new Long[] {last.timeInMillis, Long.parseLong(last.id)});
+			}
+			Log.d("****** EntryPager loaded section " + mSection + " page " + pageNumber + " with " + page.size() + " rows ******");
+			mPages.put(key, page);
+			if(page.size() < mPageSize) {
+				setRowCount(pageNumber * mPageSize + page.size());
+			}
+			return page;
+		}
+
+		private void setRowCount(int rowCount) {
+			if(rowCount >= mCount || (mRowCount != -1 && rowCount >= mRowCount)) {
+				return;
+			}
+			mRowCount = rowCount;
+			Log.d("****** EntryPager section " + mSection + " holds " + rowCount + " of " + mCount + " rows ******");
+			onSectionShort(mFromTimeInMillis, mToTimeInMillis);
+		}
+
+		// Walks only the keys of pages not read yet so that jumping deep into a section stays on the index
+		private Long[] getPageStartKey(int pageNumber) {
+			if(pageNumber == 0) {
+				return new Long[] {null, null};
+			}
+			if(mPageEndKeys.size() >= pageNumber) {
+				return mPageEndKeys.get(pageNumber - 1);
+			}
+			DatabaseAdapter adapter = new DatabaseAdapter(mContext);
+			adapter.open();
+			while(mPageEndKeys.size() < pageNumber) {
+				Long[] afterKey = mPageEndKeys.isEmpty() ? new Long[] {null, null} : mPageEndKeys.get(mPageEndKeys.size() - 1);
+				Cursor cursor = adapter.getEntryPage(KEY_COLUMNS, mFromTimeInMillis, mToTimeInMillis, afterKey[0], afterKey[1], mPageSize - 1, 1);
+				if(!cursor.moveToFirst()) {
+					cursor.close();
+					break;
+				}
+				mPageEndKeys.add(new Long[] {cursor.getLong(0), cursor.getLong(1)});
+				cursor.close();
+			}
+			adapter.close();
+			// fewer rows than the section count, the page lies past the end
+			if(mPageEndKeys.size() < pageNumber) {
+				return null;
+			}
+			return mPageEndKeys.get(pageNumber - 1);
+		}
+
+	}
+
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.helpers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.vinsol.expensetracker.R;
+import com.vinsol.expensetracker.models.Amount;
+
+/**
+ * Read only copy of the not deleted entries for screens that scan all of them, one array per column
+ * in DATE_TIME ascending order instead of an Entry with its boxed and String fields per row: times and
+ * amounts as long[], types as byte[], flags as bits and locations and descriptions as indexes into one
+ * array of the distinct strings. About 25 bytes per entry, a multi year history scans through a few
+ * contiguous arrays. get() builds it once and hands the same snapshot to every caller until something
+ * is written to the database, never modify what it returns.
+ */
+public class EntrySnapshot {
+
+	public static final byte TYPE_UNKNOWN = 0;
+	public static final byte TYPE_TEXT = 1;
+	public static final byte TYPE_CAMERA = 2;
+	public static final byte TYPE_VOICE = 3;
+
+	private static final int FLAG_AMOUNT_UNKNOWN = 0;
+	private static final int FLAG_UNFINISHED = 1;
+	private static final int FLAG_FAVORITE = 2;
+	private static final int FLAG_COUNT = 3;
+	private static final int NO_STRING = -1;
+
+	private static EntrySnapshot current;
+	private static long currentChangeCount;
+
+	public final int size;
+	private final long[] timeInMillis;
+	private final long[] amountMinor;
+	private final byte[] types;
+	// FLAG_COUNT bits per entry, bit i * FLAG_COUNT + FLAG_*
+	private final long[] flags;
+	private final int[] locations;
+	private final int[] descriptions;
+	private final String[] strings;
+
+	// Snapshot of the database as it is now, the one built before if nothing was written since
+	public static synchronized EntrySnapshot get(Context context) {
+		DatabaseAdapter adapter = new DatabaseAdapter(context);
+		adapter.open();
+		try {
+			long changeCount = adapter.getChangeCount();
+			if(current == null || changeCount != currentChangeCount) {
+				Cursor cursor = adapter.getEntrySnapshot();
+				try {
+					current = new EntrySnapshot(context, cursor);
+				} finally {
+					cursor.close();
+				}
+				currentChangeCount = changeCount;
+			}
+			return current;
+		} finally {
+			adapter.close();
+		}
+	}
+
+	// cursor with the columns of DatabaseAdapter.getEntrySnapshot()
+	private EntrySnapshot(Context context, Cursor cursor) {
+		size = cursor.getCount();
+		timeInMillis = new long[size];
+		amountMinor = new long[size];
+		types = new byte[size];
+		flags = new long[(size * FLAG_COUNT + 63) / 64];
+		locations = new int[size];
+		descriptions = new int[size];
+		Map<String, Byte> typeCodes = getTypeCodes(context);
+		Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+		List<String> stringList = new ArrayList<String>();
+		for(int i = 0; i < size && cursor.moveToNext(); i++) {
+			timeInMillis[i] = cursor.getLong(0);
+			amountMinor[i] = cursor.getLong(1);
+			setFlag(i, FLAG_AMOUNT_UNKNOWN, cursor.getInt(2) != 0);
+			Byte type = typeCodes.get(cursor.getString(3));
+			types[i] = type == null ? TYPE_UNKNOWN : type;
+			locations[i] = getStringIndex(cursor.getString(4), stringIndexes, stringList);
+			descriptions[i] = getStringIndex(cursor.getString(5), stringIndexes, stringList);
+			setFlag(i, FLAG_FAVORITE, !cursor.isNull(6) && cursor.getString(6).length() > 0);
+			setFlag(i, FLAG_UNFINISHED, cursor.getInt(7) != 0);
+		}
+		strings = stringList.toArray(new String[stringList.size()]);
+	}
+
+	private static Map<String, Byte> getTypeCodes(Context context) {
+		Map<String, Byte> typeCodes = new HashMap<String, Byte>();
+		typeCodes.put(context.getString(R.string.text), TYPE_TEXT);
+		typeCodes.put(context.getString(R.string.camera), TYPE_CAMERA);
+		typeCodes.put(context.getString(R.string.voice), TYPE_VOICE);
+		return typeCodes;
+	}
+
+	private static int getStringIndex(String value, Map<String, Integer> stringIndexes, List<String> stringList) {
+		if(value == null || value.length() == 0) {
+			return NO_STRING;
+		}
+		Integer index = stringIndexes.get(value);
+		if(index == null) {
+			index = stringList.size();
+			stringIndexes.put(value, index);
+			stringList.add(value);
+		}
+		return index;
+	}
+
+	private void setFlag(int i, int flag, boolean isSet) {
+		if(isSet) {
+			int bit = i * FLAG_COUNT + flag;
+			flags[bit >>> 6] |= 1L << (bit & 63);
+		}
+	}
+
+	private boolean isFlagSet(int i, int flag) {
+		int bit = i * FLAG_COUNT + flag;
+		return (flags[bit >>> 6] & (1L << (bit & 63))) != 0;
+	}
+
+	public long getTimeInMillis(int i) {
+		return timeInMillis[i];
+	}
+
+	public long getAmountMinor(int i) {
+		return amountMinor[i];
+	}
+
+	public Amount getAmount(int i) {
+		return new Amount(amountMinor[i], isAmountUnknown(i));
+	}
+
+	// one of TYPE_*
+	public byte getType(int i) {
+		return types[i];
+	}
+
+	public boolean isAmountUnknown(int i) {
+		return isFlagSet(i, FLAG_AMOUNT_UNKNOWN);
+	}
+
+	public boolean isUnfinished(int i) {
+		return isFlagSet(i, FLAG_UNFINISHED);
+	}
+
+	public boolean isFavorite(int i) {
+		return isFlagSet(i, FLAG_FAVORITE);
+	}
+
+	// null when the entry has none
+	public String getLocation(int i) {
+		return locations[i] == NO_STRING ? null : strings[locations[i]];
+	}
+
+	// null when the entry has none
+	public String getDescription(int i) {
+		return descriptions[i] == NO_STRING ? null : strings[descriptions[i]];
+	}
+
+	// Index of the first entry at or after timeInMillis, size if there is none
+	public int indexOf(long timeInMillis) {
+		int low = 0;
+		int high = size;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(this.timeInMillis[middle] < timeInMillis) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+}
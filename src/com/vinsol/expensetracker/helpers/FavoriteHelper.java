@@ -22,7 +22,7 @@ import android.widget.ToggleButton;
 import com.flurry.android.FlurryAgent;
 import com.vinsol.expensetracker.R;
 import com.vinsol.expensetracker.models.Entry;
-import com.vinsol.expensetracker.sync.SyncHelper;
+import com.vinsol.expensetracker.sync.SyncScheduler;
 import com.vinsol.expensetracker.utils.Strings;
 
 public class FavoriteHelper implements OnClickListener {
@@ -162,7 +162,7 @@ public class FavoriteHelper implements OnClickListener {
 				toCheck = !showAddFavorite.isChecked();
 			}
 			onClickFavorite(toCheck);
-			SyncHelper.startSync();
+			SyncScheduler.requestSync();
 			break;
 
 		default:
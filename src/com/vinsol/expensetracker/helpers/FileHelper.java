@@ -7,10 +7,6 @@
 package com.vinsol.expensetracker.helpers;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.io.OutputStream;
 
 import android.os.Environment;
 
@@ -25,93 +21,95 @@ public class FileHelper {
 		}
 	}
 	
+	// the new entry points at the files of the favorite, see AttachmentStore
 	public void copyAllFromFavorite(String _id,String targetId) {
 		if (android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED)) {
-			copy(getCameraFileLargeFavorite(_id),getCameraFileLargeEntry(targetId));
-			copy(getCameraFileSmallFavorite(_id),getCameraFileSmallEntry(targetId));
-			copy(getCameraFileThumbnailFavorite(_id),getCameraFileThumbnailEntry(targetId));
-			copy(getAudioFileFavorite(_id),getAudioFileEntry(targetId));
+			for(String variant : AttachmentStore.VARIANTS) {
+				AttachmentStore.getInstance().share(DatabaseAdapter.OWNER_FAVORITE, _id, DatabaseAdapter.OWNER_ENTRY, targetId, variant);
+			}
 		}
+		new CheckEntryComplete().updateFilesPresent(ExpenseTrackerApplication.getContext(), targetId);
 	}
 	
 	public void copyAllToFavorite(String _id,String targetId) {
 		if (android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED)) {
-			copy(getCameraFileLargeEntry(_id),getCameraFileLargeFavorite(targetId));
-			copy(getCameraFileSmallEntry(_id),getCameraFileSmallFavorite(targetId));
-			copy(getCameraFileThumbnailEntry(_id),getCameraFileThumbnailFavorite(targetId));
-			copy(getAudioFileEntry(_id),getAudioFileFavorite(targetId));
+			for(String variant : AttachmentStore.VARIANTS) {
+				AttachmentStore.getInstance().share(DatabaseAdapter.OWNER_ENTRY, _id, DatabaseAdapter.OWNER_FAVORITE, targetId, variant);
+			}
 		}
 	}
 	
 	public void deleteAllEntryFiles(String _id) {
 		if (android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED)) {
-			delete(getCameraFileLargeEntry(_id));
-			delete(getCameraFileSmallEntry(_id));
-			delete(getCameraFileThumbnailEntry(_id));
-			delete(getAudioFileEntry(_id));
+			deleteAll(DatabaseAdapter.OWNER_ENTRY, _id);
 		}
+		new CheckEntryComplete().updateFilesPresent(ExpenseTrackerApplication.getContext(), _id);
 	}
 	
 	public void deleteAllFavoriteFiles(String _id) {
 		if (android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED)) {
-			delete(getCameraFileLargeFavorite(_id));
-			delete(getCameraFileSmallFavorite(_id));
-			delete(getCameraFileThumbnailFavorite(_id));
-			delete(getAudioFileFavorite(_id));
+			deleteAll(DatabaseAdapter.OWNER_FAVORITE, _id);
 		}
 	}
 	
+	// Gives the entry its own files back before any of them is written, a shared blob is never written to
+	public void detachAllEntryFiles(String _id) {
+		detachAll(DatabaseAdapter.OWNER_ENTRY, _id);
+	}
+	
+	public void detachAllFavoriteFiles(String _id) {
+		detachAll(DatabaseAdapter.OWNER_FAVORITE, _id);
+	}
+	
 	public File getAudioFileFavorite(String _id) {
-		return new File(Constants.DIRECTORY + Constants.DIRECTORY_FAVORITE + Constants.DIRECTORY_AUDIO + _id + Constants.AUDIO_FILE_SUFFIX);
+		return AttachmentStore.getInstance().getFile(DatabaseAdapter.OWNER_FAVORITE, _id, Constants.AUDIO_FILE_SUFFIX);
 	}
 	
 	public File getAudioFileEntry(String _id) {
-		return new File(Constants.DIRECTORY + Constants.DIRECTORY_AUDIO + _id + Constants.AUDIO_FILE_SUFFIX);
+		return AttachmentStore.getInstance().getFile(DatabaseAdapter.OWNER_ENTRY, _id, Constants.AUDIO_FILE_SUFFIX);
 	}
 	
 	public File getCameraFileLargeFavorite(String _id) {
-		return new File(Constants.DIRECTORY + Constants.DIRECTORY_FAVORITE + _id + Constants.IMAGE_LARGE_SUFFIX);
+		return AttachmentStore.getInstance().getFile(DatabaseAdapter.OWNER_FAVORITE, _id, Constants.IMAGE_LARGE_SUFFIX);
 	}
 
 	public File getCameraFileLargeEntry(String _id) {
-		return new File(Constants.DIRECTORY + _id + Constants.IMAGE_LARGE_SUFFIX);
+		return AttachmentStore.getInstance().getFile(DatabaseAdapter.OWNER_ENTRY, _id, Constants.IMAGE_LARGE_SUFFIX);
 	}
 	
 	public File getCameraFileSmallFavorite(String _id) {
-		return new File(Constants.DIRECTORY + Constants.DIRECTORY_FAVORITE + _id + Constants.IMAGE_SMALL_SUFFIX);
+		return AttachmentStore.getInstance().getFile(DatabaseAdapter.OWNER_FAVORITE, _id, Constants.IMAGE_SMALL_SUFFIX);
 	}
 
 	public File getCameraFileSmallEntry(String _id) {
-		return new File(Constants.DIRECTORY + _id + Constants.IMAGE_SMALL_SUFFIX);
+		return AttachmentStore.getInstance().getFile(DatabaseAdapter.OWNER_ENTRY, _id, Constants.IMAGE_SMALL_SUFFIX);
 	}
 	
 	public File getCameraFileThumbnailFavorite(String _id) {
-		return new File(Constants.DIRECTORY + Constants.DIRECTORY_FAVORITE + _id + Constants.IMAGE_THUMBNAIL_SUFFIX);
+		return AttachmentStore.getInstance().getFile(DatabaseAdapter.OWNER_FAVORITE, _id, Constants.IMAGE_THUMBNAIL_SUFFIX);
 	}
 
 	public File getCameraFileThumbnailEntry(String _id) {
-		return new File(Constants.DIRECTORY + _id + Constants.IMAGE_THUMBNAIL_SUFFIX);
+		return AttachmentStore.getInstance().getFile(DatabaseAdapter.OWNER_ENTRY, _id, Constants.IMAGE_THUMBNAIL_SUFFIX);
 	}
 
-	private void copy(File source,File target) {
-		try {
-			InputStream in = new FileInputStream(source);
-			OutputStream out = new FileOutputStream(target);
-			byte[] buf = new byte[1024];
-			int len;
-			while ((len = in.read(buf)) > 0) {
-				out.write(buf, 0, len);
+	private void deleteAll(int owner, String _id) {
+		for(String variant : AttachmentStore.VARIANTS) {
+			AttachmentStore.getInstance().release(owner, _id, variant);
+			delete(AttachmentStore.getOwnFile(owner, _id, variant));
+		}
+	}
+	
+	private void detachAll(int owner, String _id) {
+		if (android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED)) {
+			for(String variant : AttachmentStore.VARIANTS) {
+				AttachmentStore.getInstance().detach(owner, _id, variant);
 			}
-			out.flush();
-			in.close();
-			out.close();
-		} catch (Exception e) {
-			//Do Nothing
-			e.printStackTrace();
 		}
 	}
 
 	public void delete(File file) {
+		ThumbnailCache.getInstance().remove(file);
 		try {
 			file.delete();
 		} catch (Exception e) {
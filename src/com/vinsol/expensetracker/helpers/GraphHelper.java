@@ -32,7 +32,7 @@ import android.widget.TextView;
 import com.flurry.android.FlurryAgent;
 import com.vinsol.android.graph.BarGraph;
 import com.vinsol.expensetracker.R;
-import com.vinsol.expensetracker.models.Entry;
+import com.vinsol.expensetracker.models.Amount;
 import com.vinsol.expensetracker.models.GraphDataList;
 import com.vinsol.expensetracker.models.ListDatetimeAmount;
 
@@ -40,8 +40,8 @@ public class GraphHelper extends AsyncTask<Void, Void, Void> implements OnClickL
 
 	private List<ListDatetimeAmount> mDataDateListGraph;
 	private ConvertCursorToListString mConvertCursorToListString;
-	private List<Entry> mSubList;
-	private ArrayList<ArrayList<ArrayList<String>>> mGraphList;
+	private List<GraphDataList> mGraphDataList;
+	private ArrayList<GraphPage> mGraphList;
 	private Calendar lastDateCalendar;
 	private Activity activity;
 	private LinearLayout mainGraph;
@@ -72,10 +72,10 @@ public class GraphHelper extends AsyncTask<Void, Void, Void> implements OnClickL
 	@Override
 	protected Void doInBackground(Void... arg0) {
 		mConvertCursorToListString = new ConvertCursorToListString(activity);
-		mDataDateListGraph = mConvertCursorToListString.getDateListString(false, true,"",R.string.sublist_thisweek);
-		mSubList = mConvertCursorToListString.getEntryList(false,"");
-		if (mDataDateListGraph.size() >= 1) {
-			lastDateCalendar.setTimeInMillis(mSubList.get(mSubList.size()-1).timeInMillis);
+		mDataDateListGraph = mConvertCursorToListString.getDateListString(false, true, R.string.sublist_thisweek);
+		mGraphDataList = mConvertCursorToListString.getGraphDataList();
+		if (mDataDateListGraph.size() >= 1 && mGraphDataList.size() >= 1) {
+			lastDateCalendar.setTimeInMillis(mGraphDataList.get(mGraphDataList.size()-1).timeInMillis);
 			lastDateCalendar.setFirstDayOfWeek(Calendar.MONDAY);
 			mGraphList = getGraphList();
 		}
@@ -127,51 +127,42 @@ public class GraphHelper extends AsyncTask<Void, Void, Void> implements OnClickL
 		return graphNoItem;
 	}
 	
-	private ArrayList<ArrayList<ArrayList<String>>> getGraphList() {
+	private ArrayList<GraphPage> getGraphList() {
 		DisplayDate lastDateDisplayDate = new DisplayDate(lastDateCalendar);
-		ArrayList<ArrayList<ArrayList<String>>> graphList = new ArrayList<ArrayList<ArrayList<String>>>();
+		ArrayList<GraphPage> graphList = new ArrayList<GraphPage>();
 		Calendar mTempCalender = Calendar.getInstance();
 		mTempCalender.set(mTempCalender.get(Calendar.YEAR), mTempCalender.get(Calendar.MONTH), mTempCalender.get(Calendar.DAY_OF_MONTH),0,0,0);
 		mTempCalender.setFirstDayOfWeek(Calendar.MONDAY);
 		
 		int j = 0;
-		ArrayList<ArrayList<String>> subGraphList = new ArrayList<ArrayList<String>>();
-		ArrayList<String> mArrayIDList = new ArrayList<String>();
-		ArrayList<String> mArrayValues = new ArrayList<String>();
+		ArrayList<String> mArrayCountList = new ArrayList<String>();
+		ArrayList<Amount> mArrayValues = new ArrayList<Amount>();
 		ArrayList<String> mArrayHorLabels = new ArrayList<String>();
-		List<GraphDataList> mList = getDateIDList();
+		List<GraphDataList> mList = mGraphDataList;
 		while(lastDateCalendar.before(mTempCalender) || lastDateDisplayDate.getDisplayDateGraph().equals(new DisplayDate(mTempCalender).getDisplayDateGraph())) {
 			DisplayDate mDisplayDate = new DisplayDate(mTempCalender);
 			while(mDisplayDate.isCurrentWeek()) {
-				String toCheckGraphDate = mDisplayDate.getDisplayDateHeaderGraph();
 				if(j < mList.size() && mList.get(j).dateTime.equals(mDisplayDate.getDisplayDateGraph())) {
-					mArrayIDList.add(mList.get(j).idList);
+					mArrayCountList.add(mList.get(j).count + "");
 					mArrayValues.add(mList.get(j).amount);
 					mArrayHorLabels.add(getWeekDay(mTempCalender.get(Calendar.DAY_OF_WEEK)));
 					j++;
 				} else {
-					mArrayIDList.add(null);
+					mArrayCountList.add(null);
 					mArrayValues.add(null);
 					mArrayHorLabels.add(getWeekDay(mTempCalender.get(Calendar.DAY_OF_WEEK)));
 				}
 				mTempCalender.add(Calendar.DATE, -1);
 				mDisplayDate = new DisplayDate(mTempCalender);
 				if(!mDisplayDate.isCurrentWeek()) {
-					if(mArrayIDList.size() >= 1) {
-						Collections.reverse(mArrayIDList);
+					if(mArrayCountList.size() >= 1) {
+						Collections.reverse(mArrayCountList);
 						Collections.reverse(mArrayValues);
 						Collections.reverse(mArrayHorLabels);
-						subGraphList.add(mArrayIDList);
-						subGraphList.add(mArrayValues);
-						subGraphList.add(mArrayHorLabels);
-						ArrayList<String> displayDate = new ArrayList<String>();
-						displayDate.add(toCheckGraphDate);
-						subGraphList.add(displayDate);
-						graphList.add(subGraphList);
-						mArrayIDList = new ArrayList<String>();
-						mArrayValues = new ArrayList<String>();
+						graphList.add(new GraphPage(mArrayCountList, mArrayValues, mArrayHorLabels));
+						mArrayCountList = new ArrayList<String>();
+						mArrayValues = new ArrayList<Amount>();
 						mArrayHorLabels = new ArrayList<String>();
-						subGraphList = new ArrayList<ArrayList<String>>();
 					}
 				}
 			} 
@@ -181,39 +172,32 @@ public class GraphHelper extends AsyncTask<Void, Void, Void> implements OnClickL
 				while(mDisplayDate.getDisplayDateHeaderGraph().equals(toCheckGraphDate)) {
 					if(j < mList.size()) {
 						if(mList.get(j).dateTime.equals(mDisplayDate.getDisplayDateGraph())) {
-							mArrayIDList.add(mList.get(j).idList);
+							mArrayCountList.add(mList.get(j).count + "");
 							mArrayValues.add(mList.get(j).amount);
 							mArrayHorLabels.add(getWeekDay(mTempCalender.get(Calendar.DAY_OF_WEEK)));
 							j++;
 						} else {
-							mArrayIDList.add(null);
+							mArrayCountList.add(null);
 							mArrayValues.add(null);
 							mArrayHorLabels.add(getWeekDay(mTempCalender.get(Calendar.DAY_OF_WEEK)));
 						}
 					} else {
-						mArrayIDList.add(null);
+						mArrayCountList.add(null);
 						mArrayValues.add(null);
 						mArrayHorLabels.add(getWeekDay(mTempCalender.get(Calendar.DAY_OF_WEEK)));
 					}
 					mTempCalender.add(Calendar.DATE, -1);
 					mDisplayDate = new DisplayDate(mTempCalender);
 					if(!mDisplayDate.getDisplayDateHeaderGraph().equals(toCheckGraphDate)) {
-						if(mArrayIDList.size() >= 1) {
-							Collections.reverse(mArrayIDList);
+						if(mArrayCountList.size() >= 1) {
+							Collections.reverse(mArrayCountList);
 							Collections.reverse(mArrayValues);
 							Collections.reverse(mArrayHorLabels);
-							subGraphList.add(mArrayIDList);
-							subGraphList.add(mArrayValues);
-							subGraphList.add(mArrayHorLabels);
-							ArrayList<String> displayDate = new ArrayList<String>();
-							displayDate.add(toCheckGraphDate);
-							subGraphList.add(displayDate);
-							if(isNotNullAll(mArrayIDList))
-								graphList.add(subGraphList);
-							mArrayIDList = new ArrayList<String>();
-							mArrayValues = new ArrayList<String>();
+							if(isNotNullAll(mArrayCountList))
+								graphList.add(new GraphPage(mArrayCountList, mArrayValues, mArrayHorLabels));
+							mArrayCountList = new ArrayList<String>();
+							mArrayValues = new ArrayList<Amount>();
 							mArrayHorLabels = new ArrayList<String>();
-							subGraphList = new ArrayList<ArrayList<String>>();
 						}
 					}
 				}
@@ -226,12 +210,12 @@ public class GraphHelper extends AsyncTask<Void, Void, Void> implements OnClickL
 				String toCheckGraphDate = mDisplayDate.getDisplayDateHeaderGraph();
 				while(mDisplayDate.getDisplayDateHeaderGraph().equals(toCheckGraphDate)) {
 					if(j < mList.size() && mList.get(j).dateTime.equals(mDisplayDate.getDisplayDateGraph())) {
-						mArrayIDList.add(mList.get(j).idList);
+						mArrayCountList.add(mList.get(j).count + "");
 						mArrayValues.add(mList.get(j).amount);
 						mArrayHorLabels.add("W "+mTempCalender.get(Calendar.WEEK_OF_MONTH));
 						j++;
 					} else {
-						mArrayIDList.add(null);
+						mArrayCountList.add(null);
 						mArrayValues.add(null);
 						mArrayHorLabels.add("W "+mTempCalender.get(Calendar.WEEK_OF_MONTH));
 					}
@@ -240,22 +224,15 @@ public class GraphHelper extends AsyncTask<Void, Void, Void> implements OnClickL
 					mTempCalender.setFirstDayOfWeek(Calendar.MONDAY);
 					mDisplayDate = new DisplayDate(mTempCalender);
 					if(!mDisplayDate.getDisplayDateHeaderGraph().equals(toCheckGraphDate)) {
-						if(mArrayIDList.size() >= 1) {
-							Collections.reverse(mArrayIDList);
+						if(mArrayCountList.size() >= 1) {
+							Collections.reverse(mArrayCountList);
 							Collections.reverse(mArrayValues);
 							Collections.reverse(mArrayHorLabels);
-							subGraphList.add(mArrayIDList);
-							subGraphList.add(mArrayValues);
-							subGraphList.add(mArrayHorLabels);
-							ArrayList<String> displayDate = new ArrayList<String>();
-							displayDate.add(toCheckGraphDate);
-							subGraphList.add(displayDate);
-							if(isNotNullAll(mArrayIDList))
-								graphList.add(subGraphList);
-							mArrayIDList = new ArrayList<String>();
-							mArrayValues = new ArrayList<String>();
+							if(isNotNullAll(mArrayCountList))
+								graphList.add(new GraphPage(mArrayCountList, mArrayValues, mArrayHorLabels));
+							mArrayCountList = new ArrayList<String>();
+							mArrayValues = new ArrayList<Amount>();
 							mArrayHorLabels = new ArrayList<String>();
-							subGraphList = new ArrayList<ArrayList<String>>();
 						}
 					}
 				}
@@ -265,65 +242,15 @@ public class GraphHelper extends AsyncTask<Void, Void, Void> implements OnClickL
 		return graphList;
 	}
 
-	private boolean isNotNullAll(ArrayList<String> mArrayIDList) {
-		for(int i = 0;i<mArrayIDList.size();i++) {
-			if(mArrayIDList.get(i) != null) {
+	private boolean isNotNullAll(ArrayList<String> mArrayCountList) {
+		for(int i = 0;i<mArrayCountList.size();i++) {
+			if(mArrayCountList.get(i) != null) {
 				return true;
 			}
 		}
 		return false;
 	}
 
-	private List<GraphDataList> getDateIDList() {
-		List<GraphDataList> listString = new ArrayList<GraphDataList>();
-		for(int i = 0 ;i < mSubList.size(); ) {
-			GraphDataList mList = new GraphDataList();
-			Long tempDisplayDate = mSubList.get(i).timeInMillis;
-			Calendar mTCalendar = Calendar.getInstance();
-			mTCalendar.setTimeInMillis(tempDisplayDate);
-			mTCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-			String tempDisplayDateGraph = new DisplayDate(mTCalendar).getDisplayDateGraph();
-			String idList = "";
-			Double temptotalAmount = 0.0;
-			String totalAmountString = null;
-			boolean isTempAmountNull = false;
-			while(new DisplayDate(mTCalendar).getDisplayDateGraph().equals(tempDisplayDateGraph)) {
-				String tempAmount = mSubList.get(i).amount;
-				if (tempAmount != null && !tempAmount.equals("")) {
-					try {
-						temptotalAmount += Double.parseDouble(tempAmount);
-					} catch (NumberFormatException e) {
-					}
-				} else {
-					isTempAmountNull = true;
-				}
-				idList = idList+mSubList.get(i).id+",";
-				i++;
-				
-				if (i < mSubList.size()) {
-					mTCalendar.setTimeInMillis(mSubList.get(i).timeInMillis);
-					mTCalendar.setFirstDayOfWeek(Calendar.MONDAY);
-				} else {
-					break;
-				}
-			}
-			if (isTempAmountNull) {
-				if (temptotalAmount != 0) {
-					totalAmountString = temptotalAmount + " ?";
-				} else {
-					totalAmountString = "?";
-				}
-			} else {
-				totalAmountString = temptotalAmount + "";
-			}
-			mList.idList = idList;
-			mList.amount = totalAmountString;
-			mList.dateTime = tempDisplayDateGraph;
-			listString.add(mList);
-		}
-		return listString;
-	}
-
 	private String getWeekDay(int i) {
 		switch(i){
 		case Calendar.MONDAY:
@@ -385,8 +312,8 @@ public class GraphHelper extends AsyncTask<Void, Void, Void> implements OnClickL
 	    	int j;
 	    	if(mGraphList != null && mGraphList.size() > 0) {
 	    		j = mDataDateListGraph.size() - position - 1;
-			    graphViewHolder.barGraph = new BarGraph(activity, mGraphList.get(j).get(1), mGraphList.get(j).get(2));
-			    if(j == 0 && !isNotNullAll(mGraphList.get(j).get(0))) {
+			    graphViewHolder.barGraph = new BarGraph(activity, mGraphList.get(j).values, mGraphList.get(j).horLabels);
+			    if(j == 0 && !isNotNullAll(mGraphList.get(j).counts)) {
 			    	graphViewHolder.graphMainView.addView(graphNoItem());
 				} else {
 					graphViewHolder.graphMainView.addView(graphViewHolder.barGraph);
@@ -400,6 +327,19 @@ public class GraphHelper extends AsyncTask<Void, Void, Void> implements OnClickL
 	    
 	}
 	
+	// bars of one gallery page, null entries for days or weeks without entries
+	private static class GraphPage {
+		ArrayList<String> counts;
+		ArrayList<Amount> values;
+		ArrayList<String> horLabels;
+		
+		GraphPage(ArrayList<String> counts, ArrayList<Amount> values, ArrayList<String> horLabels) {
+			this.counts = counts;
+			this.values = values;
+			this.horLabels = horLabels;
+		}
+	}
+	
 	private class GraphViewHolder {
 		BarGraph barGraph;
 		LinearLayout graphMainView;
@@ -60,4 +60,29 @@ public class SharedPreferencesHelper {
 		prefEditor.commit();	
 	}
 	
+	// time zone EntryDayTotalTable was built in, see DatabaseMigration, null to rebuild it on the next start
+	public static void setEntryTotalsTimeZone(String timeZone) {
+		SharedPreferences sharedPreferences = getSharedPreferences();
+		Editor prefEditor = sharedPreferences.edit();
+		if(timeZone == null) {
+			prefEditor.remove(context.getString(R.string.pref_key_entry_totals_time_zone));
+		} else {
+			prefEditor.putString(context.getString(R.string.pref_key_entry_totals_time_zone), timeZone);
+		}
+		prefEditor.commit();	
+	}
+	
+	// timestamp and page cursor of the sync pull written together, null cursor once the pull is complete
+	public static void setSyncCheckpoint(String timestamp, String cursor) {
+		SharedPreferences sharedPreferences = getSharedPreferences();
+		Editor prefEditor = sharedPreferences.edit();
+		prefEditor.putString(context.getString(R.string.pref_key_sync_timestamp), timestamp);
+		if(cursor == null) {
+			prefEditor.remove(context.getString(R.string.pref_key_sync_cursor));
+		} else {
+			prefEditor.putString(context.getString(R.string.pref_key_sync_cursor), cursor);
+		}
+		prefEditor.commit();	
+	}
+	
 }
@@ -6,53 +6,17 @@
 
 package com.vinsol.expensetracker.helpers;
 
+import com.vinsol.expensetracker.models.Amount;
 
 public class StringProcessing {
+	
+	// amount or total as shown in listings: "12.50", "12.50 ?" or "?", see Amount
 	public String getStringDoubleDecimal(String totalAmountString) {
-		if(totalAmountString == null || totalAmountString.equals("")) {
-			return "?";
-		}
-		if (totalAmountString.contains("?")&& totalAmountString.length() > 1) {
-			String temp = totalAmountString.substring(0,totalAmountString.length() - 2);
-			Double mAmount = Double.parseDouble(temp);
-			mAmount = (double) ((int) ((mAmount + 0.005) * 100.0) / 100.0);
-			if (mAmount.toString().contains(".")) {
-				if (mAmount.toString().charAt(mAmount.toString().length() - 3) == '.') {
-					totalAmountString = mAmount.toString() + " ?";
-				} else if (mAmount.toString().charAt(mAmount.toString().length() - 2) == '.') {
-					totalAmountString = mAmount.toString() + "0 ?";
-				}
-
-			} else {
-				totalAmountString = mAmount.toString() + ".00 ?";
-			}
-		} else if (!totalAmountString.contains("?")) {
-			String temp = totalAmountString.substring(0,totalAmountString.length());
-			Double mAmount = Double.parseDouble(temp);
-			mAmount = (double) ((int) ((mAmount + 0.005) * 100.0) / 100.0);
-
-			if (mAmount.toString().contains(".")) {
-				if (mAmount.toString().charAt(mAmount.toString().length() - 3) == '.') {
-					totalAmountString = mAmount.toString() + "";
-				} else if (mAmount.toString().charAt(mAmount.toString().length() - 2) == '.') {
-					totalAmountString = mAmount.toString() + "0";
-				}
-
-			} else {
-				totalAmountString = mAmount.toString() + ".00";
-			}
-		}
-		
-		return totalAmountString;
+		return Amount.parse(totalAmountString).toString();
 	}
 	
-	public Double getAmount(String amount) {
-		if(amount.contains("?")) {
-			amount = (String) amount.subSequence(0, amount.length()-1);
-			if(amount.trim().length() < 1) {
-				return 0.0;
-			}
-		}
-		return Double.parseDouble(amount);
+	// total in minor units as shown in listings: "12.50", "12.50 ?" or "?"
+	public String getStringDoubleDecimal(long amountMinor, boolean isAmountUnknown) {
+		return new Amount(amountMinor, isAmountUnknown).toString();
 	}
 }
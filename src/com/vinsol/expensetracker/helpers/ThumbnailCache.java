@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.helpers;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.widget.ImageView;
+import android.widget.ImageView.ScaleType;
+
+import com.vinsol.expensetracker.utils.Log;
+
+/**
+ * Decoded camera images shown in list rows, shared by all lists. Bitmaps are keyed by their file, which
+ * names the entry or favorite id and the variant (thumbnail, small or large), and the least recently used
+ * are dropped once together they take more than a sixteenth of the heap. Files not in memory are decoded on
+ * DECODE_THREADS background threads, a row recycled for another entry before its decode is done drops it.
+ * Bitmaps handed out here stay shared, views showing them must never recycle() them.
+ */
+public class ThumbnailCache {
+
+	private static final int DECODE_THREADS = 2;
+	private static final int MIN_MAX_SIZE = 512 * 1024;
+
+	private static ThumbnailCache instance;
+
+	private final int mMaxSize;
+	private int mSize = 0;
+	private final LinkedHashMap<String, Bitmap> mBitmaps = new LinkedHashMap<String, Bitmap>(16, 0.75f, true);
+	// decode each view waits for, touched on the UI thread only
+	private final Map<ImageView, Request> mRequests = new WeakHashMap<ImageView, Request>();
+	private final ExecutorService mExecutor;
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	private int mHitCount = 0;
+	private int mMissCount = 0;
+	private int mEvictionCount = 0;
+	private int mCancelCount = 0;
+
+	public static synchronized ThumbnailCache getInstance() {
+		if(instance == null) {
+			instance = new ThumbnailCache((int) Math.max(Runtime.getRuntime().maxMemory() / 16, MIN_MAX_SIZE));
+		}
+		return instance;
+	}
+
+	private ThumbnailCache(int maxSize) {
+		mMaxSize = maxSize;
+		mExecutor = Executors.newFixedThreadPool(DECODE_THREADS, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+						runnable.run();
+					}
+				}, "ThumbnailCache");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Shows the image in file on view, right away if it is in memory and once decoded otherwise, and
+	 * fallbackResId if it cannot be read. Call it on the UI thread for every bind, it drops the decode
+	 * the view waited for before
+	 */
+	public void load(ImageView view, File file, int fallbackResId) {
+		cancel(view);
+		Bitmap bitmap = get(file.getPath());
+		if(bitmap != null) {
+			setBitmap(view, bitmap);
+			return;
+		}
+		view.setImageDrawable(null);
+		Request request = new Request(view, file, fallbackResId);
+		mRequests.put(view, request);
+		request.future = mExecutor.submit(request);
+	}
+
+	// Drops the decode view waits for, binds that show something else in view must call it
+	public void cancel(ImageView view) {
+		Request request = mRequests.remove(view);
+		if(request != null) {
+			request.isCancelled = true;
+			request.future.cancel(false);
+			synchronized (this) {
+				mCancelCount++;
+			}
+		}
+	}
+
+	// file was written or deleted, the next load reads it again
+	public synchronized void remove(File file) {
+		Bitmap bitmap = mBitmaps.remove(file.getPath());
+		if(bitmap != null) {
+			mSize -= getSize(bitmap);
+		}
+	}
+
+	public synchronized void clear() {
+		mEvictionCount += mBitmaps.size();
+		mBitmaps.clear();
+		mSize = 0;
+	}
+
+	public synchronized int getHitCount() {
+		return mHitCount;
+	}
+
+	public synchronized int getMissCount() {
+		return mMissCount;
+	}
+
+	public synchronized int getEvictionCount() {
+		return mEvictionCount;
+	}
+
+	public synchronized int getCancelCount() {
+		return mCancelCount;
+	}
+
+	// bytes of the bitmaps held
+	public synchronized int getSize() {
+		return mSize;
+	}
+
+	public int getMaxSize() {
+		return mMaxSize;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ThumbnailCache " + mBitmaps.size() + " bitmaps, " + mSize + "/" + mMaxSize + " bytes, hits " + mHitCount + ", misses " + mMissCount + ", evictions " + mEvictionCount + ", cancelled " + mCancelCount;
+	}
+
+	private synchronized Bitmap get(String key) {
+		Bitmap bitmap = mBitmaps.get(key);
+		if(bitmap != null) {
+			mHitCount++;
+		} else {
+			mMissCount++;
+		}
+		return bitmap;
+	}
+
+	private synchronized void put(String key, Bitmap bitmap) {
+		Bitmap previous = mBitmaps.put(key, bitmap);
+		if(previous != null) {
+			mSize -= getSize(previous);
+		}
+		mSize += getSize(bitmap);
+		Iterator<Bitmap> eldest = mBitmaps.values().iterator();
+		while(mSize > mMaxSize && eldest.hasNext()) {
+			Bitmap evicted = eldest.next();
+			if(evicted == bitmap) {
+				break;
+			}
+			eldest.remove();
+			mSize -= getSize(evicted);
+			mEvictionCount++;
+		}
+	}
+
+	private static int getSize(Bitmap bitmap) {
+		return bitmap.getRowBytes() * bitmap.getHeight();
+	}
+
+	private static void setBitmap(ImageView view, Bitmap bitmap) {
+		view.setScaleType(ScaleType.FIT_CENTER);
+		view.setImageBitmap(bitmap);
+	}
+
+	private class Request implements Runnable {
+
+		private final ImageView mView;
+		private final File mFile;
+		private final int mFallbackResId;
+		private Future<?> future;
+		// set on the UI thread, checked on both
+		private volatile boolean isCancelled = false;
+
+		private Request(ImageView view, File file, int fallbackResId) {
+			mView = view;
+			mFile = file;
+			mFallbackResId = fallbackResId;
+		}
+
+		@Override
+		public void run() {
+			if(isCancelled) {
+				return;
+			}
+			Bitmap decoded = null;
+			try {
+				if(mFile.canRead()) {
+					BitmapFactory.Options options = new BitmapFactory.Options();
+					options.inPurgeable = true;
+					// camera files are JPEGs, no alpha to keep
+					options.inPreferredConfig = Bitmap.Config.RGB_565;
+					decoded = BitmapFactory.decodeFile(mFile.getPath(), options);
+				}
+			} catch (OutOfMemoryError e) {
+				Log.d("****** ThumbnailCache out of memory, " + ThumbnailCache.this + " ******");
+				clear();
+			}
+			if(decoded != null) {
+				put(mFile.getPath(), decoded);
+			}
+			final Bitmap bitmap = decoded;
+			mHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					if(isCancelled || mRequests.get(mView) != Request.this) {
+						return;
+					}
+					mRequests.remove(mView);
+					if(bitmap != null) {
+						setBitmap(mView, bitmap);
+					} else {
+						mView.setScaleType(ScaleType.CENTER_INSIDE);
+						mView.setImageResource(mFallbackResId);
+					}
+				}
+			});
+		}
+	}
+
+}
@@ -6,10 +6,9 @@
 
 package com.vinsol.expensetracker.helpers;
 
-import java.util.List;
+import java.util.Calendar;
 
 import com.vinsol.expensetracker.ExpenseTrackerApplication;
-import com.vinsol.expensetracker.models.Entry;
 import com.vinsol.expensetracker.utils.Log;
 
 import android.os.AsyncTask;
@@ -18,7 +17,6 @@ import android.widget.TextView;
 
 public class UnfinishedEntryCount extends AsyncTask<Void, Void, Void>{
 
-	private List<Entry> entries;
 	int countAll = 0;
 	int countThisWeek = 0;
 	int countThisMonth = 0;
@@ -27,34 +25,25 @@ public class UnfinishedEntryCount extends AsyncTask<Void, Void, Void>{
 	private TextView textViewThisMonth;
 	private TextView textViewThisYear;
 	private TextView textViewAll;
-	private DisplayDate displayDate;
 	
-	public UnfinishedEntryCount(List<Entry> entries, TextView textViewThisWeek, TextView textViewThisMonth, TextView textViewThisYear, TextView textViewAll) {
-		this.entries = entries;
+	public UnfinishedEntryCount(TextView textViewThisWeek, TextView textViewThisMonth, TextView textViewThisYear, TextView textViewAll) {
 		this.textViewThisWeek = textViewThisWeek;
 		this.textViewThisMonth = textViewThisMonth;
 		this.textViewThisYear = textViewThisYear;
 		this.textViewAll = textViewAll;
 	}
 
+	// one query per period on the per day totals, completeness is kept in the database (FILES_PRESENT)
 	@Override
 	protected Void doInBackground(Void... params) {
-		CheckEntryComplete checkEntryComplete = new CheckEntryComplete();
-		for(Entry entry : entries) {
-			displayDate = new DisplayDate(entry.timeInMillis);
-			if(!checkEntryComplete.isEntryComplete(entry, ExpenseTrackerApplication.getContext())) {
-				countAll++;
-				if(displayDate.isCurrentWeek()) {
-					countThisWeek++;
-				}
-				if(displayDate.isCurrentMonth()) {
-					countThisMonth++;
-				}
-				if(displayDate.isCurrentYear()) {
-					countThisYear++;
-				}
-			}
-		}
+		DisplayDate displayDate = new DisplayDate(Calendar.getInstance());
+		DatabaseAdapter adapter = new DatabaseAdapter(ExpenseTrackerApplication.getContext());
+		adapter.open();
+		countAll = adapter.getEntryUnfinishedCount(null, null);
+		countThisWeek = adapter.getEntryUnfinishedCount(displayDate.getStartOfWeekInMillis(), displayDate.getStartOfNextWeekInMillis());
+		countThisMonth = adapter.getEntryUnfinishedCount(displayDate.getStartOfMonthInMillis(), displayDate.getStartOfNextMonthInMillis());
+		countThisYear = adapter.getEntryUnfinishedCount(displayDate.getStartOfYearInMillis(), displayDate.getStartOfNextYearInMillis());
+		adapter.close();
 		return null;
 	}
 	
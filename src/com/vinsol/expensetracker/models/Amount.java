@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An amount in minor units (paise/cents) with a flag set when some part of it is unknown, as
+ * AMOUNT_MINOR/AMOUNT_UNKNOWN store it. Totals are summed exactly in minor units, toString()
+ * formats for display only: "12.50", "12.50 ?" or "?".
+ */
+public final class Amount {
+
+	public static final Amount ZERO = new Amount(0, false);
+	public static final Amount UNKNOWN = new Amount(0, true);
+
+	public final long minor;
+	public final boolean isUnknown;
+
+	public Amount(long minor, boolean isUnknown) {
+		this.minor = minor;
+		this.isUnknown = isUnknown;
+	}
+
+	// "12.5", "12.50 ?" (a total with unknown parts), "?", "" or null, rounded half up to minor units
+	public static Amount parse(String amount) {
+		if(amount == null) {
+			return UNKNOWN;
+		}
+		boolean isUnknown = amount.indexOf('?') != -1;
+		String value = isUnknown ? amount.replace("?", "").trim() : amount.trim();
+		if(value.length() == 0 || value.equals(".")) {
+			return UNKNOWN;
+		}
+		try {
+			return new Amount(new BigDecimal(value).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue(), isUnknown);
+		} catch (NumberFormatException e) {
+			return UNKNOWN;
+		}
+	}
+
+	public Amount plus(Amount other) {
+		return new Amount(minor + other.minor, isUnknown || other.isUnknown);
+	}
+
+	// other taken out of a total, the total stays unknown if it was
+	public Amount minus(Amount other) {
+		return new Amount(minor - other.minor, isUnknown);
+	}
+
+	public boolean isZero() {
+		return minor == 0;
+	}
+
+	public double doubleValue() {
+		return minor / 100.0;
+	}
+
+	@Override
+	public String toString() {
+		if(isUnknown && minor == 0) {
+			return "?";
+		}
+		long absoluteAmount = Math.abs(minor);
+		long fraction = absoluteAmount % 100;
+		String amountString = (minor < 0 ? "-" : "") + (absoluteAmount / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+		if(isUnknown) {
+			amountString = amountString + " ?";
+		}
+		return amountString;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(!(o instanceof Amount)) {
+			return false;
+		}
+		Amount other = (Amount) o;
+		return minor == other.minor && isUnknown == other.isUnknown;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (minor ^ (minor >>> 32)) * 31 + (isUnknown ? 1 : 0);
+	}
+
+}
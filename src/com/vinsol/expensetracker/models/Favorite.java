@@ -24,6 +24,10 @@ public class Favorite implements Parcelable {
 	public Boolean fileUploaded;
 	public Boolean fileToDownload;
 	public String fileUpdatedAt;
+	// DatabaseAdapter.DIRTY_* bits, not sent as is and not parcelled
+	public Integer dirtyFields;
+	// amount as read from AMOUNT_MINOR/AMOUNT_UNKNOWN, null when only amount is set. Not sent and not parcelled
+	public Amount amountValue;
 	
 	public static final Parcelable.Creator<Favorite> CREATOR = new Parcelable.Creator<Favorite>() {
     	public Favorite createFromParcel(Parcel in) {
@@ -70,6 +74,11 @@ public class Favorite implements Parcelable {
 		dest.writeString(fileUpdatedAt);
 	}
 
+	// amount in minor units, parsed from amount when the row was not read with it
+	public Amount getAmount() {
+		return amountValue != null ? amountValue : Amount.parse(amount);
+	}
+	
 	@Override
 	public int describeContents() {
 		return 0;
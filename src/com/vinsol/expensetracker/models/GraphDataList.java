@@ -8,6 +8,4 @@ package com.vinsol.expensetracker.models;
 
 public class GraphDataList extends ListDatetimeAmount {
 	
-	public String idList;
-	
 }
@@ -9,6 +9,10 @@ package com.vinsol.expensetracker.models;
 public class ListDatetimeAmount {
 	
 	public String dateTime;
-	public String amount;
+	public Amount amount;
+	public Long timeInMillis;
+	public int count;
+	// DatabaseAdapter.BUCKET_* the header stands for
+	public int bucket;
 	
 }
@@ -6,5 +6,6 @@ public class Sync {
 	public Data update;
 	public Data delete;
 	public String timestamp;
+	public String cursor;
 	
 }
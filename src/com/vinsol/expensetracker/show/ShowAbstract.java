@@ -30,7 +30,7 @@ import com.vinsol.expensetracker.helpers.FavoriteHelper;
 import com.vinsol.expensetracker.helpers.FileHelper;
 import com.vinsol.expensetracker.helpers.SharedPreferencesHelper;
 import com.vinsol.expensetracker.models.Entry;
-import com.vinsol.expensetracker.sync.SyncHelper;
+import com.vinsol.expensetracker.sync.SyncScheduler;
 import com.vinsol.expensetracker.utils.Log;
 
 abstract class ShowAbstract extends BaseActivity implements OnClickListener {
@@ -196,7 +196,7 @@ abstract class ShowAbstract extends BaseActivity implements OnClickListener {
 				mDatabaseAdapter.deleteExpenseEntryByID(mShowList.id);
 //			}
 			mDatabaseAdapter.close();
-			SyncHelper.startSync();
+			SyncScheduler.requestSync();
 			Toast.makeText(this, "Deleted", Toast.LENGTH_SHORT).show();
 			if(intentExtras.containsKey(Constants.KEY_POSITION)) {
 				intentExtras.putBoolean(Constants.KEY_DATA_CHANGED, true);
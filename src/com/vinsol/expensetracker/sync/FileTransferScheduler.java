@@ -0,0 +1,141 @@
+package com.vinsol.expensetracker.sync;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.vinsol.confconnect.http.HTTP;
+import com.vinsol.expensetracker.utils.Log;
+
+/**
+ * Runs attachment uploads and downloads on a bounded pool so that several transfers are in
+ * flight at once. A transfer failing with an IOException is retried with exponential backoff.
+ * Downloads that need decoding (camera thumbnails) are handed to a separate single thread so
+ * the transfer threads go straight on to the next file. onComplete() of every successful
+ * transfer runs on the thread calling awaitAll(), which keeps database writes on one thread. A transfer
+ * or process() throwing counts as failed, so awaitAll() never waits for a result that will not come.
+ */
+class FileTransferScheduler {
+
+	// one transfer per pooled connection
+	public static final int MAX_CONCURRENT_TRANSFERS = HTTP.MAX_CONNECTIONS_PER_HOST;
+	public static final int MAX_ATTEMPTS = 3;
+	public static final long INITIAL_BACKOFF_MILLIS = 1000;
+
+	private final ExecutorService transferExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_TRANSFERS);
+	private final ExecutorService processExecutor = Executors.newSingleThreadExecutor();
+	private final BlockingQueue<Result> results = new LinkedBlockingQueue<Result>();
+	private int submitted = 0;
+
+	public static abstract class Transfer {
+
+		// runs on a transfer thread, true once the file is transferred
+		protected abstract boolean transfer() throws IOException;
+
+		protected boolean isToProcess() {
+			return false;
+		}
+
+		// runs on the process thread after a successful transfer when isToProcess()
+		protected void process() {}
+
+		// runs on the thread calling awaitAll()
+		protected abstract void onComplete();
+
+	}
+
+	private static class Result {
+		Transfer transfer;
+		boolean isSuccessful;
+
+		Result(Transfer transfer, boolean isSuccessful) {
+			this.transfer = transfer;
+			this.isSuccessful = isSuccessful;
+		}
+	}
+
+	// Exactly one Result is queued per transfer, whatever transfer(), isToProcess() or process() throw
+	public void submit(final Transfer transfer) {
+		submitted++;
+		transferExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				boolean isTransferred = false;
+				boolean isHandedOver = false;
+				try {
+					isTransferred = transferWithRetry(transfer);
+					if(isTransferred && transfer.isToProcess()) {
+						processExecutor.execute(new Runnable() {
+							@Override
+							public void run() {
+								boolean isProcessed = false;
+								try {
+									transfer.process();
+									isProcessed = true;
+								} catch (RuntimeException e) {
+									e.printStackTrace();
+								} finally {
+									results.add(new Result(transfer, isProcessed));
+								}
+							}
+						});
+						isHandedOver = true;
+					}
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+					isTransferred = false;
+				} finally {
+					if(!isHandedOver) {
+						results.add(new Result(transfer, isTransferred));
+					}
+				}
+			}
+		});
+	}
+
+	// Blocks until every submitted transfer finished or gave up, returns the number that succeeded
+	public int awaitAll() {
+		int successful = 0;
+		long startTimeInMillis = System.currentTimeMillis();
+		try {
+			for(int i = 0; i < submitted; i++) {
+				Result result = results.take();
+				if(result.isSuccessful) {
+					result.transfer.onComplete();
+					successful++;
+				}
+			}
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		} finally {
+			transferExecutor.shutdown();
+			processExecutor.shutdown();
+		}
+		Log.d("****** Transferred " + successful + " of " + submitted + " files in " + (System.currentTimeMillis() - startTimeInMillis) + " ms ******");
+		return successful;
+	}
+
+	private boolean transferWithRetry(Transfer transfer) {
+		long backoff = INITIAL_BACKOFF_MILLIS;
+		for(int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+			try {
+				// a refused transfer (non 200) is not retried, only network failures are
+				return transfer.transfer();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			if(attempt < MAX_ATTEMPTS) {
+				try {
+					Thread.sleep(backoff);
+				} catch (InterruptedException e) {
+					return false;
+				}
+				backoff *= 2;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.vinsol.expensetracker.sync;
+
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.vinsol.expensetracker.helpers.DatabaseAdapter;
+import com.vinsol.expensetracker.models.Favorite;
+
+/**
+ * Builds the update payload from rows edited locally. Each record carries the keys the server
+ * matches on and only the fields marked in dirtyFields. Rows without dirty bits (edited before
+ * DIRTY_FIELDS existed) are sent in full as before.
+ */
+class SyncDelta {
+
+	// names as given by ExpenseTrackerFieldNamingPolicy
+	private static final String[] KEYS = {"id", "my_hash", "updated_at"};
+	private static final int[] BITS = {
+		DatabaseAdapter.DIRTY_DESCRIPTION,
+		DatabaseAdapter.DIRTY_AMOUNT,
+		DatabaseAdapter.DIRTY_TYPE,
+		DatabaseAdapter.DIRTY_LOCATION,
+		DatabaseAdapter.DIRTY_DATE_TIME,
+		DatabaseAdapter.DIRTY_FAVORITE,
+		DatabaseAdapter.DIRTY_FILE
+	};
+	private static final String[][] FIELDS = {
+		{"description"},
+		{"amount"},
+		{"expense_type"},
+		{"location"},
+		{"time_milis_utc"},
+		{"favorite"},
+		{"file_uploaded", "file_to_download", "file_updated_at"}
+	};
+
+	public static String toJson(Gson gson, List<? extends Favorite> records) {
+		JsonArray array = new JsonArray();
+		for(Favorite record : records) {
+			JsonObject full = gson.toJsonTree(record).getAsJsonObject();
+			if(record.dirtyFields == null || record.dirtyFields == 0) {
+				array.add(full);
+				continue;
+			}
+			JsonObject delta = new JsonObject();
+			for(String key : KEYS) {
+				copy(full, delta, key);
+			}
+			for(int i = 0; i < BITS.length; i++) {
+				if((record.dirtyFields & BITS[i]) != 0) {
+					for(String field : FIELDS[i]) {
+						copy(full, delta, field);
+					}
+				}
+			}
+			array.add(delta);
+		}
+		return gson.toJson(array);
+	}
+
+	private static void copy(JsonObject from, JsonObject to, String name) {
+		JsonElement element = from.get(name);
+		if(element != null) {
+			to.add(name, element);
+		}
+	}
+
+}
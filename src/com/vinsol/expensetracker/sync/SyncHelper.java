@@ -1,6 +1,8 @@
 package com.vinsol.expensetracker.sync;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
@@ -11,9 +13,9 @@ import android.os.AsyncTask;
 import com.google.gson.Gson;
 import com.vinsol.confconnect.gson.MyGson;
 import com.vinsol.confconnect.http.HTTP;
-import com.vinsol.expensetracker.ExpenseTrackerApplication;
 import com.vinsol.expensetracker.R;
 import com.vinsol.expensetracker.helpers.CameraFileSave;
+import com.vinsol.expensetracker.helpers.CheckEntryComplete;
 import com.vinsol.expensetracker.helpers.ConvertCursorToListString;
 import com.vinsol.expensetracker.helpers.DatabaseAdapter;
 import com.vinsol.expensetracker.helpers.FileHelper;
@@ -21,7 +23,6 @@ import com.vinsol.expensetracker.helpers.SharedPreferencesHelper;
 import com.vinsol.expensetracker.models.Data;
 import com.vinsol.expensetracker.models.Entry;
 import com.vinsol.expensetracker.models.Favorite;
-import com.vinsol.expensetracker.models.Sync;
 import com.vinsol.expensetracker.utils.Log;
 import com.vinsol.expensetracker.utils.Strings;
 
@@ -33,14 +34,19 @@ public class SyncHelper extends AsyncTask<Void, Void, Void>{
 	private ConvertCursorToListString convertCursorToListString;
 	private Gson gson;
 	private FileHelper fileHelper;
-	public static AsyncTask<Void, Void, Void> syncHelper;
-	public static boolean toConinue = false;
+	// records sent per add/update/delete request
+	public static final int PUSH_BATCH_SIZE = 50;
 	
 	public SyncHelper(Context context) {
+		this(context, new HTTP(context));
+	}
+	
+	// http can point at another server, e.g. a local stub with HTTP(context, baseUrl)
+	public SyncHelper(Context context, HTTP http) {
 		SyncHelper.context = context;
 		convertCursorToListString = new ConvertCursorToListString(context);
 		adapter = new DatabaseAdapter(context);
-		http = new HTTP(context);
+		this.http = http;
 		gson = new MyGson().get();
 		fileHelper = new FileHelper();
 	}
@@ -63,86 +69,181 @@ public class SyncHelper extends AsyncTask<Void, Void, Void>{
 		pullFiles();
 	}
 
+	// Pulls page after page, the checkpoint is saved after each page so an interrupted pull resumes from there.
+	// One SyncBatch, with its hash maps and statements, applies every page
 	private void pullData() throws IOException {
 		Log.d("*********************** Getting SyncData **********************************");
-		String fetchedSyncResponse = http.getSyncData(); 
-		Log.d(" *************  "+ fetchedSyncResponse);
-		Sync sync = gson.fromJson(fetchedSyncResponse, Sync.class);
-		if(sync != null) {
-			SharedPreferencesHelper.setSyncTimeStamp(sync.timestamp);
-			Log.d(" ******************** Started Adding Expenses To DB ****************************** ");
-			Long startTimeInMilis = Calendar.getInstance().getTimeInMillis();
-			addExpenses(sync.add.expenses,true);
-			addFavorites(sync.add.favorites,true);
-			updateExpenses(sync.update.expenses);
-			updateFavorites(sync.update.favorites);
-			deleteExpenses(sync.delete.expenses);
-			deleteFavorites(sync.delete.favorites);
-			Log.d(" ******************** Total Time Taken ****************************** "+(Calendar.getInstance().getTimeInMillis() - startTimeInMilis));
-			Log.d(" ******************** Finished Adding Expenses To DB ****************************** ");
+		DatabaseAdapter batchAdapter = new DatabaseAdapter(context);
+		batchAdapter.open();
+		DatabaseAdapter.SyncBatch syncBatch = batchAdapter.beginSyncBatch();
+		try {
+			pullPages(syncBatch);
+		} finally {
+			syncBatch.close();
+			batchAdapter.close();
 		}
 	}
 	
+	private void pullPages(DatabaseAdapter.SyncBatch syncBatch) throws IOException {
+		String previousCursor = null;
+		while(true) {
+			SyncPullReader syncPullReader = pullPage(syncBatch);
+			if(syncPullReader == null) {
+				break;
+			}
+			if(Strings.isEmpty(syncPullReader.getCursor())) {
+				// last page, the whole change set up to the new timestamp is applied
+				if(syncPullReader.getTimestamp() != null) {
+					SharedPreferencesHelper.setSyncCheckpoint(syncPullReader.getTimestamp(), null);
+				}
+				break;
+			}
+			if(Strings.equal(syncPullReader.getCursor(), previousCursor)) {
+				Log.d(" ******************** Cursor did not advance, stopping pull ****************************** ");
+				break;
+			}
+			SharedPreferencesHelper.setSyncCheckpoint(SharedPreferencesHelper.getSharedPreferences().getString(context.getString(R.string.pref_key_sync_timestamp), ""), syncPullReader.getCursor());
+			previousCursor = syncPullReader.getCursor();
+		}
+	}
+	
+	// null if nothing was pulled
+	private SyncPullReader pullPage(final DatabaseAdapter.SyncBatch syncBatch) throws IOException {
+		Log.d(" ******************** Started Adding Expenses To DB ****************************** ");
+		Long startTimeInMilis = Calendar.getInstance().getTimeInMillis();
+		int rowsAppliedBefore = syncBatch.getRowsApplied();
+		final SyncPullReader syncPullReader = new SyncPullReader(gson, new SyncPullReader.Listener() {
+			
+			@Override
+			public void onExpenses(String section, List<Entry> entries) {
+				if(section.equals(SyncPullReader.SECTION_ADD)) {
+					addExpenses(syncBatch, entries);
+				} else if(section.equals(SyncPullReader.SECTION_UPDATE)) {
+					updateExpenses(syncBatch, entries);
+				} else {
+					deleteExpenses(syncBatch, entries);
+				}
+				syncBatch.commit();
+			}
+			
+			@Override
+			public void onFavorites(String section, List<Favorite> favorites) {
+				if(section.equals(SyncPullReader.SECTION_ADD)) {
+					addFavorites(syncBatch, favorites);
+				} else if(section.equals(SyncPullReader.SECTION_UPDATE)) {
+					updateFavorites(syncBatch, favorites);
+				} else {
+					deleteFavorites(syncBatch, favorites);
+				}
+				syncBatch.commit();
+			}
+		});
+		boolean isPulled = http.getSyncData(new HTTP.ResponseStreamHandler() {
+			@Override
+			public void onResponse(InputStream inputStream) throws IOException {
+				syncPullReader.read(inputStream);
+			}
+		});
+		syncBatch.commit();
+		Log.d(" ******************** Read " + syncPullReader.getRecordsRead() + " records ****************************** ");
+		logRowsApplied(syncBatch.getRowsApplied() - rowsAppliedBefore, startTimeInMilis);
+		Log.d(" ******************** Finished Adding Expenses To DB ****************************** ");
+		return isPulled ? syncPullReader : null;
+	}
+	
+	private <T> List<List<T>> getBatches(List<T> list) {
+		List<List<T>> batches = new ArrayList<List<T>>();
+		for(int i = 0; i < list.size(); i += PUSH_BATCH_SIZE) {
+			batches.add(list.subList(i, Math.min(i + PUSH_BATCH_SIZE, list.size())));
+		}
+		return batches;
+	}
+	
+	private void logRowsApplied(int rowsApplied, long startTimeInMilis) {
+		long timeTaken = Calendar.getInstance().getTimeInMillis() - startTimeInMilis;
+		Log.d(" ******************** Applied " + rowsApplied + " rows in " + timeTaken + " ms, " + (rowsApplied * 1000 / Math.max(timeTaken, 1)) + " rows/sec ****************************** ");
+	}
+	
+	// Downloads run MAX_CONCURRENT_TRANSFERS at a time, camera thumbnails are made on the scheduler's process thread
 	private void pullFiles() {
 		Log.d("*********************** Pulling Files **********************************");
+		FileTransferScheduler scheduler = new FileTransferScheduler();
+		// process() runs on the scheduler's one process thread, every camera file of the pull shares its buffers
+		final CameraFileSave cameraFileSave = new CameraFileSave(context);
 		
 		List<Entry> entries = convertCursorToListString.getEntryListFilesToDownload();
-		for(Entry entry : entries) {
+		for(final Entry entry : entries) {
 			Log.d("***** entry id "+entry.id+"  "+entry.idFromServer);
+			final boolean isAudio;
 			if(Strings.equal(entry.type, context.getString(R.string.voice))) {
-				Log.d("***** entry id "+entry.id+"  "+entry.idFromServer);
-				try {
-					if(http.downloadExpenseFile(entry.id, entry.idFromServer, true)) {
-						entry.fileToDownload = false;
-						entry.fileUploaded = true;
-						updateEntry(entry);
-					}
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
+				isAudio = true;
+			} else if(Strings.equal(entry.type, context.getString(R.string.camera))) {
+				isAudio = false;
+			} else {
+				continue;
 			}
-			
-			if(Strings.equal(entry.type, context.getString(R.string.camera))) {
-				try {
-					if(http.downloadExpenseFile(entry.id, entry.idFromServer, false)) {
-						new CameraFileSave(context).resizeImageAndSaveThumbnails(entry.id, false);
-						entry.fileToDownload = false;
-						entry.fileUploaded = true;
-						updateEntry(entry);
-					}
-				} catch (IOException e) {
-					e.printStackTrace();
+			scheduler.submit(new FileTransferScheduler.Transfer() {
+				@Override
+				protected boolean transfer() throws IOException {
+					return http.downloadExpenseFile(entry.id, entry.idFromServer, isAudio);
 				}
-			}
+				
+				@Override
+				protected boolean isToProcess() {
+					return !isAudio;
+				}
+				
+				@Override
+				protected void process() {
+					cameraFileSave.resizeImageAndSaveThumbnails(entry.id, false);
+				}
+				
+				@Override
+				protected void onComplete() {
+					entry.fileToDownload = false;
+					entry.fileUploaded = true;
+					updateEntry(entry);
+					new CheckEntryComplete().updateFilesPresent(context, entry.id);
+				}
+			});
 		}
 		
 		List<Favorite> favorites = convertCursorToListString.getFavoriteListFilesToDownload();
-		for(Favorite favorite : favorites) {
+		for(final Favorite favorite : favorites) {
+			final boolean isAudio;
 			if(Strings.equal(favorite.type, context.getString(R.string.voice))) {
-				try {
-					if(http.downloadFavoriteFile(favorite.id, favorite.idFromServer, true)) {
-						favorite.fileToDownload = false;
-						favorite.fileUploaded = true;
-						updateFavorite(favorite);
-					}
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
+				isAudio = true;
+			} else if(Strings.equal(favorite.type, context.getString(R.string.camera))) {
+				isAudio = false;
+			} else {
+				continue;
 			}
-			
-			if(Strings.equal(favorite.type, context.getString(R.string.camera))) {
-				try {
-					if(http.downloadFavoriteFile(favorite.id, favorite.idFromServer, false)) {
-						new CameraFileSave(context).resizeImageAndSaveThumbnails(favorite.id, true);
-						favorite.fileToDownload = false;
-						favorite.fileUploaded = true;
-						updateFavorite(favorite);
-					}
-				} catch (IOException e) {
-					e.printStackTrace();
+			scheduler.submit(new FileTransferScheduler.Transfer() {
+				@Override
+				protected boolean transfer() throws IOException {
+					return http.downloadFavoriteFile(favorite.id, favorite.idFromServer, isAudio);
 				}
-			}
+				
+				@Override
+				protected boolean isToProcess() {
+					return !isAudio;
+				}
+				
+				@Override
+				protected void process() {
+					cameraFileSave.resizeImageAndSaveThumbnails(favorite.id, true);
+				}
+				
+				@Override
+				protected void onComplete() {
+					favorite.fileToDownload = false;
+					favorite.fileUploaded = true;
+					updateFavorite(favorite);
+				}
+			});
 		}
+		scheduler.awaitAll();
+		Log.d("****** Saved thumbnails of " + cameraFileSave.getSavedCount() + " camera files in " + cameraFileSave.getTimeTakenInMillis() + " ms ******");
 		Log.d("*********************** Pulling Files **********************************");
 	}
 	
@@ -158,41 +259,53 @@ public class SyncHelper extends AsyncTask<Void, Void, Void>{
 		adapter.close();
 	}
 	
+	// One SyncBatch, with its hash maps and statements, applies every response of the push, committed after each
 	private void push() throws IOException {
-		pushData();
-		pushFiles();
+		Long startTimeInMilis = Calendar.getInstance().getTimeInMillis();
+		DatabaseAdapter batchAdapter = new DatabaseAdapter(context);
+		batchAdapter.open();
+		DatabaseAdapter.SyncBatch syncBatch = batchAdapter.beginSyncBatch();
+		try {
+			pushData(syncBatch);
+			pushFiles(syncBatch);
+		} finally {
+			syncBatch.close();
+			batchAdapter.close();
+		}
+		logRowsApplied(syncBatch.getRowsApplied(), startTimeInMilis);
 	}
 
-	private void pushData() throws IOException {
+	private void pushData(DatabaseAdapter.SyncBatch syncBatch) throws IOException {
 		Log.d("****************** Pushing Data ****************");
-		create();
-		update();
+		create(syncBatch);
+		update(syncBatch);
 		delete();
 		Log.d("****************** Data Pushed ****************");
 	}
 
-	private void create() {
-		createEntry();
-		createFavorites();
+	private void create(DatabaseAdapter.SyncBatch syncBatch) {
+		createEntry(syncBatch);
+		createFavorites(syncBatch);
 	}
 	
 	//Push request to update records
-	private void update() {
-		updateEntry();
-		updateFavorites();
+	private void update(DatabaseAdapter.SyncBatch syncBatch) {
+		updateEntry(syncBatch);
+		updateFavorites(syncBatch);
 	}
 	
-	private void updateEntry() {
+	private void updateEntry(DatabaseAdapter.SyncBatch syncBatch) {
 		List<Entry> entries = convertCursorToListString.getEntryListNotSyncedAndUpdated();
-		if(entries.size() > 0) {
-			String data = gson.toJson(entries);
-			Log.d(data +" size "+convertCursorToListString.getEntryListNotSyncedAndUpdated().size());
+		for(List<Entry> batch : getBatches(entries)) {
+			String data = SyncDelta.toJson(gson, batch);
+			Log.d(data +" size "+batch.size());
 			if(data != null) {
 				try {
 					String fetchedData = http.updateMultipleExpenses(data);
 					if(fetchedData != null) {
 						Data response = gson.fromJson(fetchedData,Data.class);
-						updateExpenses(response.expenses);
+						updateExpenses(syncBatch, response.expenses);
+						syncBatch.commit();
 						Log.d(fetchedData + " en ");
 					}
 				} catch (IOException e) {
@@ -202,17 +315,18 @@ public class SyncHelper extends AsyncTask<Void, Void, Void>{
 		}
 	}
 	
-	private void updateFavorites() {
+	private void updateFavorites(DatabaseAdapter.SyncBatch syncBatch) {
 		List<Favorite> favorites = convertCursorToListString.getFavoriteListNotSyncedAndUpdated();
-		if(favorites.size() > 0) {
-			String data = gson.toJson(favorites);
-			Log.d(data +" size "+convertCursorToListString.getFavoriteListNotSyncedAndUpdated().size());
+		for(List<Favorite> batch : getBatches(favorites)) {
+			String data = SyncDelta.toJson(gson, batch);
+			Log.d(data +" size "+batch.size());
 			if(data != null) {
 				try {
 					String fetchedData = http.updateMultipleFavorites(data);
 					if(fetchedData != null) {
 						Data response = gson.fromJson(fetchedData,Data.class);
-						updateFavorites(response.favorites);
+						updateFavorites(syncBatch, response.favorites);
+						syncBatch.commit();
 						Log.d(fetchedData + " en ");
 					}
 				} catch (IOException e) {
@@ -233,9 +347,9 @@ public class SyncHelper extends AsyncTask<Void, Void, Void>{
 		
 		Log.d("************************* Deleting ***************************");
 		
-		if(entries.size() > 0) {
-			String data = gson.toJson(entries);
-			Log.d(data +" size "+convertCursorToListString.getEntryListNotSyncedAndDeleted().size());
+		for(List<Entry> batch : getBatches(entries)) {
+			String data = gson.toJson(batch);
+			Log.d(data +" size "+batch.size());
 			if(data != null) {
 				try {
 					String fetchedData = http.deleteMultipleExpenses(data);
@@ -253,9 +367,9 @@ public class SyncHelper extends AsyncTask<Void, Void, Void>{
 	
 	private void deleteFavorites() {
 		List<Favorite> favorites = convertCursorToListString.getFavoriteListNotSyncedAndDeleted();
-		if(favorites.size() > 0) {
-			String data = gson.toJson(favorites);
-			Log.d(data +" size "+convertCursorToListString.getFavoriteListNotSyncedAndDeleted().size());
+		for(List<Favorite> batch : getBatches(favorites)) {
+			String data = gson.toJson(batch);
+			Log.d(data +" size "+batch.size());
 			if(data != null) {
 				try {
 					String fetchedData = http.deleteMultipleFavorites(data);
@@ -272,17 +386,18 @@ public class SyncHelper extends AsyncTask<Void, Void, Void>{
 	}
 	
 	//Push Request to create new records which are not synced
-	private void createEntry() {
+	private void createEntry(DatabaseAdapter.SyncBatch syncBatch) {
 		List<Entry> entries = convertCursorToListString.getEntryListNotSyncedAndCreated();
-		if(entries.size() > 0) {
-			String data = gson.toJson(entries);
-			Log.d(data +" size "+convertCursorToListString.getEntryListNotSyncedAndCreated().size());
+		for(List<Entry> batch : getBatches(entries)) {
+			String data = gson.toJson(batch);
+			Log.d(data +" size "+batch.size());
 			if(data != null) {
 				try {
 					String fetchedData = http.addMultipleExpenses(data);
 					if(fetchedData != null) {
 						Data response = gson.fromJson(fetchedData,Data.class);
-						updateExpenses(response.expenses);
+						updateExpenses(syncBatch, response.expenses);
+						syncBatch.commit();
 						Log.d(fetchedData + " en ");
 					}
 				} catch (IOException e) {
@@ -292,18 +407,18 @@ public class SyncHelper extends AsyncTask<Void, Void, Void>{
 		}
 	}
 
-	private void createFavorites() {
+	private void createFavorites(DatabaseAdapter.SyncBatch syncBatch) {
 		List<Favorite> favorites = convertCursorToListString.getFavoriteListNotSyncedAndCreated();
-		if(favorites.size() > 0) {
-			String data = gson.toJson(favorites);
-			Log.d(data +" size "+convertCursorToListString.getFavoriteListNotSyncedAndCreated().size());
+		for(List<Favorite> batch : getBatches(favorites)) {
+			String data = gson.toJson(batch);
+			Log.d(data +" size "+batch.size());
 			if(data != null) {
 				try {
 					String fetchedData = http.addMultipleFavorites(data);
-					Log.d(fetchedData + " en ");
 					if(fetchedData != null) {
 						Data response = gson.fromJson(fetchedData,Data.class);
-						updateFavorites(response.favorites);
+						updateFavorites(syncBatch, response.favorites);
+						syncBatch.commit();
 						Log.d(fetchedData + " en ");
 					}
 				} catch (IOException e) {
@@ -313,174 +428,175 @@ public class SyncHelper extends AsyncTask<Void, Void, Void>{
 		}
 	}
 	
-	private void pushFiles() {
-		uploadExpenseFiles();
-		uploadFavoriteFiles();
+	private void pushFiles(DatabaseAdapter.SyncBatch syncBatch) {
+		uploadExpenseFiles(syncBatch);
+		uploadFavoriteFiles(syncBatch);
 	}
 
-	private void uploadExpenseFiles() {
+	// Uploads run MAX_CONCURRENT_TRANSFERS at a time, the responses are applied together once all are done
+	private void uploadExpenseFiles(DatabaseAdapter.SyncBatch syncBatch) {
 		List<Entry> entries = convertCursorToListString.getEntryListFileNotUploaded();
-		List<Entry> entriesToUpdate = new ArrayList<Entry>();
+		final List<Entry> entriesToUpdate = new ArrayList<Entry>();
 		boolean toUpdate = false;
-		for(Entry entry : entries) {
+		FileTransferScheduler scheduler = new FileTransferScheduler();
+		for(final Entry entry : entries) {
 			if(!Strings.equal(entry.syncBit, context.getString(R.string.syncbit_synced))) { continue; }
 			toUpdate = true;
-			boolean isAudio;
+			final File file;
+			final boolean isAudio;
 			if(Strings.equal(entry.type, context.getString(R.string.voice))) {
-				isAudio = true; 
+				isAudio = true;
+				file = fileHelper.getAudioFileEntry(entry.id);
 			} else if(Strings.equal(entry.type, context.getString(R.string.camera))) {
 				isAudio = false;
+				file = fileHelper.getCameraFileLargeEntry(entry.id);
 			} else {
 				continue;
 			}
-			String response;
-			try {
-				if(!isAudio) {
-					response = http.uploadExpenseFile(fileHelper.getCameraFileLargeEntry(entry.id), entry.idFromServer, isAudio);
-				} else {
-					response = http.uploadExpenseFile(fileHelper.getAudioFileEntry(entry.id), entry.idFromServer, isAudio);
+			scheduler.submit(new FileTransferScheduler.Transfer() {
+				private String response;
+				
+				@Override
+				protected boolean transfer() throws IOException {
+					response = http.uploadExpenseFile(file, entry.idFromServer, isAudio);
+					return response != null;
 				}
-				Log.d("******************* Getting Response *******************");
-				if(response != null) {
+				
+				@Override
+				protected void onComplete() {
+					Log.d("******************* Getting Response *******************");
 					Log.d(response);
-					Entry responseEntry = gson.fromJson(response, Entry.class);
-					entriesToUpdate.add(responseEntry);
+					entriesToUpdate.add(gson.fromJson(response, Entry.class));
 				}
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			});
+		}
+		scheduler.awaitAll();
+		if(toUpdate) {
+			updateExpenses(syncBatch, entriesToUpdate);
+			syncBatch.commit();
 		}
-		if(toUpdate) updateExpenses(entriesToUpdate);
 	}
 
-	private void uploadFavoriteFiles() {
+	private void uploadFavoriteFiles(DatabaseAdapter.SyncBatch syncBatch) {
 		List<Favorite> favorites = convertCursorToListString.getFavoriteListFileNotUploaded();
-		List<Favorite> favoritesToUpdate = new ArrayList<Favorite>();
+		final List<Favorite> favoritesToUpdate = new ArrayList<Favorite>();
 		boolean toUpdate = false;
-		for(Favorite favorite : favorites) {
+		FileTransferScheduler scheduler = new FileTransferScheduler();
+		for(final Favorite favorite : favorites) {
 			if(!Strings.equal(favorite.syncBit, context.getString(R.string.syncbit_synced))) { continue; }
 			toUpdate = true;
-			boolean isAudio;
+			final File file;
+			final boolean isAudio;
 			if(Strings.equal(favorite.type, context.getString(R.string.voice))) {
-				isAudio = true; 
+				isAudio = true;
+				file = fileHelper.getAudioFileFavorite(favorite.id);
 			} else if(Strings.equal(favorite.type, context.getString(R.string.camera))) {
 				isAudio = false;
+				file = fileHelper.getCameraFileLargeFavorite(favorite.id);
 			} else {
 				continue;
 			}
-			String response;
-			try {
-				if(!isAudio) {
-					response = http.uploadFavoriteFile(fileHelper.getCameraFileLargeFavorite(favorite.id), favorite.idFromServer, isAudio);
-				} else {
-					response = http.uploadFavoriteFile(fileHelper.getAudioFileFavorite(favorite.id), favorite.idFromServer, isAudio);
+			scheduler.submit(new FileTransferScheduler.Transfer() {
+				private String response;
+				
+				@Override
+				protected boolean transfer() throws IOException {
+					response = http.uploadFavoriteFile(file, favorite.idFromServer, isAudio);
+					return response != null;
 				}
-				Log.d("******************* Getting Response *******************");
-				if(response != null) {
+				
+				@Override
+				protected void onComplete() {
+					Log.d("******************* Getting Response *******************");
 					Log.d(response);
-					Favorite responseFavorite = gson.fromJson(response, Favorite.class);
-					favoritesToUpdate.add(responseFavorite);
+					favoritesToUpdate.add(gson.fromJson(response, Favorite.class));
 				}
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			});
+		}
+		scheduler.awaitAll();
+		if(toUpdate) {
+			updateFavorites(syncBatch, favoritesToUpdate);
+			syncBatch.commit();
 		}
-		if(toUpdate) updateFavorites(favoritesToUpdate);
 	}
 
 	@Override
 	protected void onPostExecute(Void result) {
 		Log.d("************************** Finishing Sync **********************************");
 		super.onPostExecute(result);
-		if(toConinue) {
-			toConinue = false;
-			SyncHelper.syncHelper = new SyncHelper(context).execute();
-		}
+		SyncScheduler.onSyncFinished();
 	}
 	
-	private void addExpenses(List<Entry> entries,boolean isPull) {
-		adapter.open();
+	@Override
+	protected void onCancelled() {
+		super.onCancelled();
+		SyncScheduler.onSyncFinished();
+	}
+	
+	private void addExpenses(DatabaseAdapter.SyncBatch syncBatch, List<Entry> entries) {
 		for(Entry entry : entries) {
-//			if(isPull) {
-//				setSyncBitAndFileDownloaded(entry);
-//			} else {
-//				setSyncBit(entry);
-//			}
 			setSyncBit(entry);
-			Log.d("*************************"+"fileToDOwnload "+entry.fileToDownload);
-			
-			String tempId = adapter.getEntryIdByHash(entry.myHash);
+			String tempId = syncBatch.getEntryIdByHash(entry.myHash);
 			if(Strings.isEmpty(tempId)) {
-				adapter.insertToEntryTable(entry);
+				syncBatch.insertToEntryTable(entry);
 			} else {
 				entry.id = tempId;
-				adapter.editExpenseEntryById(entry);
+				syncBatch.editExpenseEntryById(entry);
 			}
 		}
-		adapter.close();
 	}
 	
-	private void addFavorites(List<Favorite> favorites, boolean isPull) {
-		adapter.open();
+	private void addFavorites(DatabaseAdapter.SyncBatch syncBatch, List<Favorite> favorites) {
 		for(Favorite favorite : favorites) {
-//			if(isPull) {
-//				setSyncBitAndFileDownloaded(favorite);
-//			} else {
-//				setSyncBit(favorite);
-//			}
 			setSyncBit(favorite);
-			String tempId = adapter.getFavIdByHash(favorite.myHash);
+			String tempId = syncBatch.getFavIdByHash(favorite.myHash);
 			if(Strings.isEmpty(tempId)) {
-				adapter.insertToFavoriteTable(favorite);
+				syncBatch.insertToFavoriteTable(favorite);
 			} else {
 				favorite.id = tempId;
-				adapter.editFavoriteEntryByHash(favorite);
+				syncBatch.editFavoriteEntryByHash(favorite);
 			}
 		}
-		adapter.close();
 	}
 	
-	private void updateExpenses(List<Entry> entries) {
-		adapter.open();
+	private void updateExpenses(DatabaseAdapter.SyncBatch syncBatch, List<Entry> entries) {
 		for(Entry entry : entries) {
-			Entry tempEntry = convertCursorToListString.getSingleEntryByHash(entry.myHash);
-			boolean toFetchFile = true;
-			if(tempEntry != null && Strings.equal(entry.fileUpdatedAt, tempEntry.fileUpdatedAt)) {
-				toFetchFile = false;
-			}
-			if(toFetchFile) {
-				setSyncBitAndFileDownloaded(entry);
-			} else {
+			String tempId = syncBatch.getEntryIdByHash(entry.myHash);
+			if(Strings.notEmpty(tempId) && Strings.equal(entry.fileUpdatedAt, syncBatch.getEntryFileUpdatedAtByHash(entry.myHash))) {
 				setSyncBit(entry);
+			} else {
+				setSyncBitAndFileDownloaded(entry);
 			}
-			setSyncBit(entry);
-			entry.id = tempEntry.id;
-			entry.favorite = adapter.getFavIdByHash(entry.favorite);
-			adapter.editExpenseEntryByHash(entry);
+			entry.id = tempId;
+			entry.favorite = syncBatch.getFavIdByHash(entry.favorite);
+			syncBatch.editExpenseEntryByHash(entry);
 		}
-		adapter.close();
 	}
 	
-	private void updateFavorites(List<Favorite> favorites) {
-		Log.d("*****************  Check ");
-		Log.d("favorite "+adapter+"  "+favorites);
-		adapter.open();
+	private void updateFavorites(DatabaseAdapter.SyncBatch syncBatch, List<Favorite> favorites) {
 		for(Favorite favorite : favorites) {
-			Favorite tempFavorite = convertCursorToListString.getSingleFavoriteByHash(favorite.myHash);
-			boolean toFetchFile = true;
-			if(tempFavorite != null && Strings.equal(favorite.fileUpdatedAt, tempFavorite.fileUpdatedAt)) {
-				toFetchFile = false;
-			}
-			if(toFetchFile) {
-				setSyncBitAndFileDownloaded(favorite);
-			} else {
+			String tempId = syncBatch.getFavIdByHash(favorite.myHash);
+			if(Strings.notEmpty(tempId) && Strings.equal(favorite.fileUpdatedAt, syncBatch.getFavFileUpdatedAtByHash(favorite.myHash))) {
 				setSyncBit(favorite);
+			} else {
+				setSyncBitAndFileDownloaded(favorite);
 			}
+			favorite.id = tempId;
+			syncBatch.editFavoriteEntryByHash(favorite);
+		}
+	}
+	
+	// same as deleteExpenses(List) and deleteFavorites(List) without reopening the adapter held by the batch
+	private void deleteExpenses(DatabaseAdapter.SyncBatch syncBatch, List<Entry> entries) {
+		for(Entry entry : entries) {
+			setSyncBit(entry);
+		}
+	}
+	
+	private void deleteFavorites(DatabaseAdapter.SyncBatch syncBatch, List<Favorite> favorites) {
+		for(Favorite favorite : favorites) {
 			setSyncBit(favorite);
-			favorite.id = tempFavorite.id;
-			adapter.editFavoriteEntryByHash(favorite);
 		}
-		adapter.close();
 	}
 	
 	private void deleteFavorites(List<Favorite> favorites) {
@@ -545,15 +661,4 @@ public class SyncHelper extends AsyncTask<Void, Void, Void>{
 		favorite.syncBit = context.getString(R.string.syncbit_synced);
 	}
 	
-	public static void startSync() {
-		if(ExpenseTrackerApplication.toSync) {
-			if(SyncHelper.syncHelper.getStatus().equals(AsyncTask.Status.RUNNING)) {
-				toConinue = true;
-			} else {
-				toConinue = false;
-				SyncHelper.syncHelper = new SyncHelper(context).execute();
-			}
-		}
-	}
-	
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+package com.vinsol.expensetracker.sync;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.vinsol.expensetracker.models.Entry;
+import com.vinsol.expensetracker.models.Favorite;
+
+/**
+ * Reads a sync pull response ({@link com.vinsol.expensetracker.models.Sync}) record by record
+ * with a JsonReader and hands expenses and favorites to the listener in chunks of at most
+ * CHUNK_SIZE, in the order they appear in the response.
+ */
+class SyncPullReader {
+
+	public static final int CHUNK_SIZE = 100;
+
+	public static final String SECTION_ADD = "add";
+	public static final String SECTION_UPDATE = "update";
+	public static final String SECTION_DELETE = "delete";
+
+	private static final String KEY_EXPENSES = "expenses";
+	private static final String KEY_FAVORITES = "favorites";
+	private static final String KEY_TIMESTAMP = "timestamp";
+	private static final String KEY_CURSOR = "cursor";
+
+	private Gson gson;
+	private Listener listener;
+	private String timestamp;
+	private String cursor;
+	private int recordsRead = 0;
+
+	public interface Listener {
+		void onExpenses(String section, List<Entry> entries) throws IOException;
+		void onFavorites(String section, List<Favorite> favorites) throws IOException;
+	}
+
+	public SyncPullReader(Gson gson, Listener listener) {
+		this.gson = gson;
+		this.listener = listener;
+	}
+
+	public void read(InputStream inputStream) throws IOException {
+		JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(inputStream, "UTF-8")));
+		try {
+			if(reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				return;
+			}
+			reader.beginObject();
+			while(reader.hasNext()) {
+				String name = reader.nextName();
+				if(name.equals(KEY_TIMESTAMP) && reader.peek() != JsonToken.NULL) {
+					timestamp = reader.nextString();
+				} else if(name.equals(KEY_CURSOR) && reader.peek() != JsonToken.NULL) {
+					cursor = reader.nextString();
+				} else if((name.equals(SECTION_ADD) || name.equals(SECTION_UPDATE) || name.equals(SECTION_DELETE)) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+					readSection(reader, name);
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		} finally {
+			reader.close();
+		}
+	}
+
+	// timestamp of the response, null until read() has seen it
+	public String getTimestamp() {
+		return timestamp;
+	}
+
+	// cursor of the next page, null on the last page
+	public String getCursor() {
+		return cursor;
+	}
+
+	public int getRecordsRead() {
+		return recordsRead;
+	}
+
+	private void readSection(JsonReader reader, String section) throws IOException {
+		reader.beginObject();
+		while(reader.hasNext()) {
+			String name = reader.nextName();
+			if(name.equals(KEY_EXPENSES) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+				List<Entry> entries = new ArrayList<Entry>(CHUNK_SIZE);
+				reader.beginArray();
+				while(reader.hasNext()) {
+					Entry entry = gson.fromJson(reader, Entry.class);
+					if(entry != null) {
+						entries.add(entry);
+						recordsRead++;
+					}
+					if(entries.size() == CHUNK_SIZE) {
+						listener.onExpenses(section, entries);
+						entries = new ArrayList<Entry>(CHUNK_SIZE);
+					}
+				}
+				reader.endArray();
+				if(entries.size() > 0) {
+					listener.onExpenses(section, entries);
+				}
+			} else if(name.equals(KEY_FAVORITES) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+				List<Favorite> favorites = new ArrayList<Favorite>(CHUNK_SIZE);
+				reader.beginArray();
+				while(reader.hasNext()) {
+					Favorite favorite = gson.fromJson(reader, Favorite.class);
+					if(favorite != null) {
+						favorites.add(favorite);
+						recordsRead++;
+					}
+					if(favorites.size() == CHUNK_SIZE) {
+						listener.onFavorites(section, favorites);
+						favorites = new ArrayList<Favorite>(CHUNK_SIZE);
+					}
+				}
+				reader.endArray();
+				if(favorites.size() > 0) {
+					listener.onFavorites(section, favorites);
+				}
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+}
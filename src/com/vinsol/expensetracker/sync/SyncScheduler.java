@@ -0,0 +1,165 @@
+package com.vinsol.expensetracker.sync;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.vinsol.expensetracker.ExpenseTrackerApplication;
+import com.vinsol.expensetracker.utils.Log;
+import com.vinsol.expensetracker.utils.Utils;
+
+/**
+ * Runs at most one SyncHelper at a time. Requests made while a sync is pending or running are
+ * coalesced into the next run, requests are debounced by debounceMillis but a waiting request
+ * never waits longer than maxDelayMillis. While offline the run is retried with exponential backoff,
+ * new requests do not bring the retry forward.
+ * All state is touched on the main thread only.
+ */
+public class SyncScheduler {
+
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 3 * 1000;
+	public static final long DEFAULT_MAX_DELAY_MILLIS = 30 * 1000;
+	public static final long INITIAL_OFFLINE_BACKOFF_MILLIS = 30 * 1000;
+	public static final long MAX_OFFLINE_BACKOFF_MILLIS = 15 * 60 * 1000;
+
+	private static final Handler handler = new Handler(Looper.getMainLooper());
+	private static long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+	private static long maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+
+	private static boolean isRunning = false;
+	// a request came in that the running or scheduled sync does not cover yet
+	private static boolean isPending = false;
+	// uptime of the oldest request waiting for a run, 0 if none
+	private static long firstRequestAt = 0;
+	private static long offlineBackoffMillis = INITIAL_OFFLINE_BACKOFF_MILLIS;
+	// uptime of the retry after a run found no network, 0 while online
+	private static long offlineRetryAt = 0;
+
+	// counters since process start
+	private static int requestCount = 0;
+	private static int runCount = 0;
+	private static int coalescedCount = 0;
+	private static int offlineCount = 0;
+
+	private static final Runnable runSync = new Runnable() {
+		@Override
+		public void run() {
+			startRun();
+		}
+	};
+
+	private SyncScheduler() {}
+
+	// Called after every local change, the sync starts once changes stop for debounceMillis
+	public static void requestSync() {
+		post(new Runnable() {
+			@Override
+			public void run() {
+				schedule(debounceMillis);
+			}
+		});
+	}
+
+	// Sync as soon as possible, e.g. on app start or right after sign in
+	public static void syncNow() {
+		post(new Runnable() {
+			@Override
+			public void run() {
+				schedule(0);
+			}
+		});
+	}
+
+	public static void setDebounceMillis(long millis) {
+		debounceMillis = millis;
+	}
+
+	public static void setMaxDelayMillis(long millis) {
+		maxDelayMillis = millis;
+	}
+
+	public static int getRequestCount() {
+		return requestCount;
+	}
+
+	public static int getRunCount() {
+		return runCount;
+	}
+
+	public static int getCoalescedCount() {
+		return coalescedCount;
+	}
+
+	public static int getOfflineCount() {
+		return offlineCount;
+	}
+
+	// Called by SyncHelper on the main thread when its run is over
+	static void onSyncFinished() {
+		isRunning = false;
+		logCounters();
+		if(isPending) {
+			// changes made during the run, sync them with the usual debounce
+			isPending = false;
+			schedule(debounceMillis);
+		}
+	}
+
+	private static void post(Runnable runnable) {
+		if(Looper.myLooper() == Looper.getMainLooper()) {
+			runnable.run();
+		} else {
+			handler.post(runnable);
+		}
+	}
+
+	private static void schedule(long delayMillis) {
+		if(!ExpenseTrackerApplication.toSync) {return;}
+		requestCount++;
+		long now = SystemClock.uptimeMillis();
+		if(isRunning) {
+			coalescedCount++;
+			isPending = true;
+			return;
+		}
+		if(firstRequestAt == 0) {
+			firstRequestAt = now;
+		} else {
+			coalescedCount++;
+		}
+		long runAt = Math.min(now + delayMillis, firstRequestAt + maxDelayMillis);
+		if(offlineRetryAt != 0) {
+			runAt = Math.max(runAt, offlineRetryAt);
+		}
+		handler.removeCallbacks(runSync);
+		handler.postAtTime(runSync, Math.max(runAt, now));
+	}
+
+	private static void startRun() {
+		if(!ExpenseTrackerApplication.toSync) {
+			firstRequestAt = 0;
+			offlineRetryAt = 0;
+			return;
+		}
+		if(!Utils.isOnline(ExpenseTrackerApplication.getContext())) {
+			offlineCount++;
+			Log.d("****** Offline, sync retried in " + offlineBackoffMillis + " ms ******");
+			offlineRetryAt = SystemClock.uptimeMillis() + offlineBackoffMillis;
+			handler.removeCallbacks(runSync);
+			handler.postAtTime(runSync, offlineRetryAt);
+			offlineBackoffMillis = Math.min(offlineBackoffMillis * 2, MAX_OFFLINE_BACKOFF_MILLIS);
+			return;
+		}
+		offlineBackoffMillis = INITIAL_OFFLINE_BACKOFF_MILLIS;
+		offlineRetryAt = 0;
+		firstRequestAt = 0;
+		isRunning = true;
+		runCount++;
+		new SyncHelper(ExpenseTrackerApplication.getContext()).execute();
+	}
+
+	private static void logCounters() {
+		Log.d("****** Sync requests " + requestCount + ", runs " + runCount + ", coalesced " + coalescedCount + ", offline " + offlineCount + " ******");
+	}
+
+}
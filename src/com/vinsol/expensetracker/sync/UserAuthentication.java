@@ -177,10 +177,7 @@ public class UserAuthentication extends BaseActivity implements OnClickListener
 
 	private void startPrefActivity() {
 		ExpenseTrackerApplication.setSyncPrefs();
-		if(ExpenseTrackerApplication.toSync) {
-			SyncHelper.syncHelper = new SyncHelper(this);
-        	SyncHelper.syncHelper.execute();
-		}
+		SyncScheduler.syncNow();
 		progressDialog.dismiss();
 		Intent intent = new Intent(this, Preferences.class);
 		intent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
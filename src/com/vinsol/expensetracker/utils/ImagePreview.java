@@ -10,11 +10,16 @@ import java.io.File;
 
 import android.app.Activity;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.graphics.Rect;
 import android.os.AsyncTask;
 import android.os.AsyncTask.Status;
 import android.os.Bundle;
 import android.os.Environment;
+import android.util.DisplayMetrics;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.View.OnTouchListener;
 import android.view.Window;
 import android.widget.Toast;
 
@@ -22,34 +27,43 @@ import com.flurry.android.FlurryAgent;
 import com.vinsol.expensetracker.Constants;
 import com.vinsol.expensetracker.ExpenseTrackerApplication;
 import com.vinsol.expensetracker.R;
+import com.vinsol.expensetracker.helpers.FileHelper;
+import com.vinsol.expensetracker.helpers.ThumbnailCache;
 
+// Shows the small image at once, then the large one decoded at display size. A tap zooms in on the part
+// tapped, decoded at display size as well, another tap goes back to the whole picture
 public class ImagePreview extends Activity {
 
+	// part of the picture, each way, shown when zoomed in
+	private static final int ZOOM = 3;
+
 	private String id = null;
 	private android.widget.ImageView mImageView;
 	private String path;
 	private String smallPath;
-	private AsyncTask<Void, Void, Void> imageViewAsyncTask;
+	private PreviewDecoder mPreviewDecoder;
+	private AsyncTask<Void, Void, Bitmap> imageViewAsyncTask;
+	private AsyncTask<Rect, Void, Bitmap> zoomAsyncTask;
 	private Bitmap largeFileBitmap;
-	private Bitmap smallFileBitmap;
+	private Bitmap zoomBitmap;
 
 	@Override
 	protected void onStart() {
 		super.onStart();
 		FlurryAgent.onStartSession(this, getString(R.string.flurry_key));
 	}
-	
+
 	@Override
 	protected void onStop() {
 		super.onStop();
 		FlurryAgent.onEndSession(this);
 	}
-	
+
 	@Override
 	public void onCreate(Bundle savedInstanceState) {
-		super.onCreate(savedInstanceState);		
+		super.onCreate(savedInstanceState);
 		requestWindowFeature(Window.FEATURE_NO_TITLE);
-		
+
 		setContentView(R.layout.image_view_full_screen);
 
 		//Extras
@@ -58,13 +72,18 @@ public class ImagePreview extends Activity {
 		if(Environment.getExternalStorageState().equals(Environment.MEDIA_MOUNTED)) {
 			if(!ExpenseTrackerApplication.isInitialized){ExpenseTrackerApplication.Initialize();}
 		}
-		path = Constants.DIRECTORY + (isFavorite ? "Favorite/" : "") + id + Constants.IMAGE_LARGE_SUFFIX;
-		smallPath = Constants.DIRECTORY + (isFavorite ? "Favorite/" : "") + id + Constants.IMAGE_SMALL_SUFFIX;
+		FileHelper fileHelper = new FileHelper();
+		path = (isFavorite ? fileHelper.getCameraFileLargeFavorite(id) : fileHelper.getCameraFileLargeEntry(id)).getPath();
+		smallPath = (isFavorite ? fileHelper.getCameraFileSmallFavorite(id) : fileHelper.getCameraFileSmallEntry(id)).getPath();
 		mImageView = (android.widget.ImageView) findViewById(R.id.image_view_full_screen_id);
 
 		if (android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED)) {
 			try {
 				if(new File(path).canRead() && new File(smallPath).canRead()) {
+					ThumbnailCache.getInstance().load(mImageView, new File(smallPath), R.drawable.no_image_small);
+					DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
+					// a whole picture and a zoomed in part of it are held at once
+					mPreviewDecoder = new PreviewDecoder(path, displayMetrics.widthPixels, displayMetrics.heightPixels, Runtime.getRuntime().maxMemory() / 8);
 					imageViewAsyncTask = new ImageViewAsyncTask().execute();
 				} else {
 					Toast.makeText(this, "File Not Found", Toast.LENGTH_LONG).show();
@@ -76,40 +95,100 @@ public class ImagePreview extends Activity {
 		}
 	}
 
-	private class ImageViewAsyncTask extends AsyncTask<Void, Void, Void> {
+	private class ImageViewAsyncTask extends AsyncTask<Void, Void, Bitmap> {
 
 		@Override
-		protected void onPreExecute() {
-			super.onPreExecute();
-			smallFileBitmap = BitmapFactory.decodeFile(smallPath);
-			if(!smallFileBitmap.isRecycled()) {mImageView.setImageBitmap(smallFileBitmap);}
+		protected Bitmap doInBackground(Void... params) {
+			if(!mPreviewDecoder.decodeBounds()) {
+				return null;
+			}
+			return mPreviewDecoder.decode();
 		}
 
 		@Override
-		protected Void doInBackground(Void... params) {
-			largeFileBitmap = BitmapFactory.decodeFile(path);
-			return null;
+		protected void onPostExecute(Bitmap result) {
+			super.onPostExecute(result);
+			if(result == null) {
+				return;
+			}
+			// the small image must not land over the large one
+			ThumbnailCache.getInstance().cancel(mImageView);
+			largeFileBitmap = result;
+			mImageView.setImageBitmap(largeFileBitmap);
+			mImageView.setOnTouchListener(new ZoomListener());
+		}
+	}
+
+	private class ZoomAsyncTask extends AsyncTask<Rect, Void, Bitmap> {
+
+		@Override
+		protected Bitmap doInBackground(Rect... params) {
+			return mPreviewDecoder.decodeRegion(params[0]);
 		}
 
 		@Override
-		protected void onPostExecute(Void result) {
+		protected void onPostExecute(Bitmap result) {
 			super.onPostExecute(result);
-			smallFileBitmap.recycle();
-			if(!largeFileBitmap.isRecycled()) {mImageView.setImageBitmap(largeFileBitmap);}
+			if(result != null) {
+				zoomBitmap = result;
+				mImageView.setImageBitmap(zoomBitmap);
+			}
 		}
 	}
-	
+
+	private class ZoomListener implements OnTouchListener {
+
+		@Override
+		public boolean onTouch(View v, MotionEvent event) {
+			if(event.getAction() != MotionEvent.ACTION_UP || isRunning(zoomAsyncTask)) {
+				return true;
+			}
+			if(zoomBitmap != null) {
+				mImageView.setImageBitmap(largeFileBitmap);
+				zoomBitmap.recycle();
+				zoomBitmap = null;
+				return true;
+			}
+			// tapped point on largeFileBitmap, then in pixels of the picture
+			float[] point = {event.getX() - mImageView.getPaddingLeft(), event.getY() - mImageView.getPaddingTop()};
+			Matrix inverse = new Matrix();
+			if(!mImageView.getImageMatrix().invert(inverse)) {
+				return true;
+			}
+			inverse.mapPoints(point);
+			float scale = (float) mPreviewDecoder.getWidth() / largeFileBitmap.getWidth();
+			int regionWidth = mPreviewDecoder.getWidth() / ZOOM;
+			int regionHeight = mPreviewDecoder.getHeight() / ZOOM;
+			int left = Math.min(Math.max((int) (point[0] * scale) - regionWidth / 2, 0), mPreviewDecoder.getWidth() - regionWidth);
+			int top = Math.min(Math.max((int) (point[1] * scale) - regionHeight / 2, 0), mPreviewDecoder.getHeight() - regionHeight);
+			zoomAsyncTask = new ZoomAsyncTask().execute(new Rect(left, top, left + regionWidth, top + regionHeight));
+			return true;
+		}
+	}
+
+	private boolean isRunning(AsyncTask<?, ?, ?> task) {
+		return task != null && (task.getStatus().equals(Status.PENDING) || task.getStatus().equals(Status.RUNNING));
+	}
+
 	@Override
-	public void onBackPressed() {
-		if(imageViewAsyncTask != null && (imageViewAsyncTask.getStatus().equals(Status.PENDING) || imageViewAsyncTask.getStatus().equals(Status.RUNNING))) {
+	protected void onDestroy() {
+		if(isRunning(imageViewAsyncTask)) {
 			imageViewAsyncTask.cancel(true);
 		}
-		if(largeFileBitmap != null && !largeFileBitmap.isRecycled()) {
-			largeFileBitmap.recycle();
+		if(isRunning(zoomAsyncTask)) {
+			zoomAsyncTask.cancel(true);
+		}
+		ThumbnailCache.getInstance().cancel(mImageView);
+		mImageView.setImageDrawable(null);
+		PreviewDecoder.release(largeFileBitmap);
+		largeFileBitmap = null;
+		if(zoomBitmap != null) {
+			zoomBitmap.recycle();
+			zoomBitmap = null;
 		}
-		if(smallFileBitmap != null && !smallFileBitmap.isRecycled()) {
-			smallFileBitmap.recycle();
+		if(mPreviewDecoder != null) {
+			mPreviewDecoder.close();
 		}
-		super.onBackPressed();
+		super.onDestroy();
 	}
 }
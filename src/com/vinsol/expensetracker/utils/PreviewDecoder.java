@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.utils;
+
+import java.io.IOException;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.os.Build;
+
+/**
+ * Decodes a camera picture for ImagePreview without ever holding it at full resolution. decode() samples
+ * the whole picture down to the display and decodeRegion() a part of it, for zooming in, with
+ * BitmapRegionDecoder from API 10. Any bitmap it returns takes at most maxBytes, however large the picture.
+ * Give the whole picture back with release() when done, the next preview decodes into it from API 19.
+ */
+public class PreviewDecoder {
+
+	private static final int BYTES_PER_PIXEL = 4;
+
+	// bitmap of the last preview closed
+	private static Bitmap reusable;
+
+	private final String mPath;
+	private final int mTargetWidth;
+	private final int mTargetHeight;
+	private final long mMaxBytes;
+	private int mWidth = -1;
+	private int mHeight = -1;
+	private RegionDecoder mRegionDecoder;
+
+	public PreviewDecoder(String path, int targetWidth, int targetHeight, long maxBytes) {
+		mPath = path;
+		mTargetWidth = Math.max(targetWidth, 1);
+		mTargetHeight = Math.max(targetHeight, 1);
+		mMaxBytes = maxBytes;
+	}
+
+	// Reads the size of the picture, false if it cannot be decoded
+	public boolean decodeBounds() {
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeFile(mPath, options);
+		mWidth = options.outWidth;
+		mHeight = options.outHeight;
+		return mWidth > 0 && mHeight > 0;
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	// The whole picture at the smallest size still covering the display, null if it cannot be decoded
+	public Bitmap decode() {
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inSampleSize = getSampleSize(mWidth, mHeight);
+		if(Build.VERSION.SDK_INT >= 19) {
+			// mutable so that release() can keep it for the next preview to decode into
+			options.inMutable = true;
+		}
+		Bitmap reused = takeReusable();
+		if(reused != null) {
+			options.inBitmap = reused;
+		}
+		try {
+			try {
+				return BitmapFactory.decodeFile(mPath, options);
+			} catch (IllegalArgumentException e) {
+				if(reused == null) {
+					// not caused by inBitmap, a second try would fail the same way
+					Log.d(e);
+					return null;
+				}
+				// the picture does not fit in the bitmap given back last
+				reused.recycle();
+				options.inBitmap = null;
+				return BitmapFactory.decodeFile(mPath, options);
+			}
+		} catch (OutOfMemoryError e) {
+			Log.d(e);
+			return null;
+		}
+	}
+
+	// region of the picture, in its own pixels, at the smallest size still covering the display
+	public synchronized Bitmap decodeRegion(Rect region) {
+		int sampleSize = getSampleSize(region.width(), region.height());
+		try {
+			if(Build.VERSION.SDK_INT >= 10) {
+				if(mRegionDecoder == null) {
+					mRegionDecoder = RegionDecoder.newInstance(mPath);
+				}
+				if(mRegionDecoder != null) {
+					return mRegionDecoder.decode(region, sampleSize);
+				}
+			}
+			// no region decoder, the whole picture sampled down until it fits maxBytes and cropped
+			while(getByteCount(mWidth, mHeight, sampleSize) > mMaxBytes) {
+				sampleSize *= 2;
+			}
+			BitmapFactory.Options options = new BitmapFactory.Options();
+			options.inSampleSize = sampleSize;
+			Bitmap whole = BitmapFactory.decodeFile(mPath, options);
+			if(whole == null) {
+				return null;
+			}
+			Rect sampled = new Rect(region.left / sampleSize, region.top / sampleSize, region.right / sampleSize, region.bottom / sampleSize);
+			sampled.intersect(0, 0, whole.getWidth(), whole.getHeight());
+			if(sampled.isEmpty()) {
+				whole.recycle();
+				return null;
+			}
+			Bitmap cropped = Bitmap.createBitmap(whole, sampled.left, sampled.top, sampled.width(), sampled.height());
+			if(cropped != whole) {
+				whole.recycle();
+			}
+			return cropped;
+		} catch (OutOfMemoryError e) {
+			Log.d(e);
+			return null;
+		}
+	}
+
+	// waits for a decodeRegion() still running
+	public synchronized void close() {
+		if(mRegionDecoder != null) {
+			mRegionDecoder.recycle();
+			mRegionDecoder = null;
+		}
+	}
+
+	// Hands back a bitmap decode() returned, kept for the next preview where bitmaps can be decoded into
+	public static synchronized void release(Bitmap bitmap) {
+		if(bitmap == null || bitmap.isRecycled()) {
+			return;
+		}
+		if(Build.VERSION.SDK_INT >= 19 && bitmap.isMutable()) {
+			if(reusable != null && reusable != bitmap) {
+				reusable.recycle();
+			}
+			reusable = bitmap;
+		} else {
+			bitmap.recycle();
+		}
+	}
+
+	// before API 19 only bitmaps of the very same size, decoded without sampling, can be decoded into
+	private static synchronized Bitmap takeReusable() {
+		if(Build.VERSION.SDK_INT < 19) {
+			return null;
+		}
+		Bitmap taken = reusable;
+		reusable = null;
+		return taken;
+	}
+
+	// largest power of two keeping width x height at least the display, raised until it fits maxBytes
+	private int getSampleSize(int width, int height) {
+		int sampleSize = 1;
+		while(width / (sampleSize * 2) >= mTargetWidth && height / (sampleSize * 2) >= mTargetHeight) {
+			sampleSize *= 2;
+		}
+		while(getByteCount(width, height, sampleSize) > mMaxBytes) {
+			sampleSize *= 2;
+		}
+		return sampleSize;
+	}
+
+	private static long getByteCount(int width, int height, int sampleSize) {
+		return (long) (width / sampleSize) * (height / sampleSize) * BYTES_PER_PIXEL;
+	}
+
+	// BitmapRegionDecoder is only loaded from API 10
+	private static class RegionDecoder {
+
+		private final BitmapRegionDecoder mDecoder;
+
+		private RegionDecoder(BitmapRegionDecoder decoder) {
+			mDecoder = decoder;
+		}
+
+		private static RegionDecoder newInstance(String path) {
+			try {
+				return new RegionDecoder(BitmapRegionDecoder.newInstance(path, false));
+			} catch (IOException e) {
+				Log.d(e);
+				return null;
+			}
+		}
+
+		private Bitmap decode(Rect region, int sampleSize) {
+			BitmapFactory.Options options = new BitmapFactory.Options();
+			options.inSampleSize = sampleSize;
+			return mDecoder.decodeRegion(region, options);
+		}
+
+		private void recycle() {
+			mDecoder.recycle();
+		}
+	}
+
+}
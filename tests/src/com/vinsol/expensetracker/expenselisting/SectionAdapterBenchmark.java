@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.expenselisting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+
+import com.vinsol.expensetracker.helpers.DatabaseAdapter;
+import com.vinsol.expensetracker.helpers.DateBucketer;
+import com.vinsol.expensetracker.models.Amount;
+import com.vinsol.expensetracker.models.Entry;
+import com.vinsol.expensetracker.models.ListDatetimeAmount;
+import com.vinsol.expensetracker.utils.Log;
+
+/**
+ * Cost per row bound of mapping a list position to its section in SeparatedListAdapter, by walking the
+ * sections as the adapter did before mSectionStarts against the binary search, for every count in
+ * SECTION_COUNTS of day sections holding ROWS_PER_SECTION rows. A bind is what getView() asks besides
+ * inflating: getItemViewType(), getItem() and the section of the row, for every position top to bottom as
+ * scrolling through the list does. The walk grows with the number of sections above the row, so the gap
+ * widens with the longer histories.
+ */
+public class SectionAdapterBenchmark extends AndroidTestCase {
+
+	public static final int[] SECTION_COUNTS = {365, 1825, 3650};
+	public static final int ROWS_PER_SECTION = 3;
+	public static final int WARMUP_ITERATIONS = 2;
+	public static final int MEASURED_ITERATIONS = 5;
+
+	// results are summed into sink so the loops are not optimized away
+	private static long sink;
+
+	public void testBinds() {
+		run(getContext());
+	}
+
+	// Logs and returns nano seconds per bind for every section count
+	public static String run(Context context) {
+		StringBuilder result = new StringBuilder();
+		for(int sectionCount : SECTION_COUNTS) {
+			SeparatedListAdapter adapter = getAdapter(context, sectionCount);
+			result.append(sectionCount).append(" sections, ").append(adapter.getCount()).append(" positions: walked ");
+			result.append(measure(adapter, false)).append(" ns, searched ").append(measure(adapter, true)).append(" ns\n");
+		}
+		Log.d("****** SectionAdapterBenchmark ******\n" + result + sink);
+		return result.toString();
+	}
+
+	private static SeparatedListAdapter getAdapter(Context context, int sectionCount) {
+		DateBucketer mDateBucketer = DateBucketer.getInstance();
+		int today = mDateBucketer.getDayKey(System.currentTimeMillis());
+		List<ListingSection> sections = new ArrayList<ListingSection>(sectionCount);
+		for(int i = 0; i < sectionCount; i++) {
+			long timeInMillis = mDateBucketer.getStartInMillis(today - i);
+			ListDatetimeAmount header = new ListDatetimeAmount();
+			header.timeInMillis = timeInMillis;
+			header.dateTime = "";
+			header.amount = Amount.ZERO;
+			header.count = ROWS_PER_SECTION;
+			header.bucket = DatabaseAdapter.BUCKET_DAY;
+			List<Entry> rows = new ArrayList<Entry>(ROWS_PER_SECTION);
+			for(int j = 0; j < ROWS_PER_SECTION; j++) {
+				Entry entry = new Entry();
+				entry.timeInMillis = timeInMillis;
+				rows.add(entry);
+			}
+			sections.add(ListingSection.getSubTotal(header, today - i, rows));
+		}
+		SeparatedListAdapter adapter = new SeparatedListAdapter(context, null, null);
+		adapter.apply(new SectionDiff(new ArrayList<ListingSection>(), sections, null, 0));
+		return adapter;
+	}
+
+	private static long measure(SeparatedListAdapter adapter, boolean isSearched) {
+		int count = adapter.getCount();
+		long best = Long.MAX_VALUE;
+		for(int i = 0; i < WARMUP_ITERATIONS + MEASURED_ITERATIONS; i++) {
+			long start = System.nanoTime();
+			for(int position = 0; position < count; position++) {
+				sink += isSearched ? searched(adapter, position) : walked(adapter, position);
+			}
+			long elapsed = System.nanoTime() - start;
+			if(i >= WARMUP_ITERATIONS) {
+				best = Math.min(best, elapsed);
+			}
+		}
+		return best / count;
+	}
+
+	private static int searched(SeparatedListAdapter adapter, int position) {
+		int type = adapter.getItemViewType(position);
+		Object item = adapter.getItem(position);
+		return type + adapter.getSectionIndex(position) + (item == null ? 0 : 1);
+	}
+
+	// as getItemViewType(), getItem() and getView() found the section before, one walk each
+	private static int walked(SeparatedListAdapter adapter, int position) {
+		List<ListingSection> sections = adapter.getSections();
+		int type = -1;
+		int remaining = position;
+		for(ListingSection section : sections) {
+			int size = section.getCount() + 2;
+			if(remaining < size) {
+				type = remaining == 0 || remaining == size - 1 ? SeparatedListAdapter.TYPE_SECTION_HEADER : SeparatedListAdapter.TYPE_SECTION_ROW;
+				break;
+			}
+			remaining -= size;
+		}
+		Object item = null;
+		remaining = position;
+		for(ListingSection section : sections) {
+			int size = section.getCount() + 2;
+			if(remaining < size) {
+				item = remaining == 0 || remaining == size - 1 ? section : section.rows.get(remaining - 1);
+				break;
+			}
+			remaining -= size;
+		}
+		int sectionIndex = 0;
+		remaining = position;
+		for(ListingSection section : sections) {
+			int size = section.getCount() + 2;
+			if(remaining < size) {
+				break;
+			}
+			sectionIndex++;
+			remaining -= size;
+		}
+		return type + sectionIndex + (item == null ? 0 : 1);
+	}
+
+}
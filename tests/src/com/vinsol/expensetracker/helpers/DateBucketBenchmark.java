@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.helpers;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import android.test.AndroidTestCase;
+
+import com.vinsol.expensetracker.R;
+import com.vinsol.expensetracker.utils.Log;
+
+/**
+ * Cost per timestamp of grouping TIMESTAMP_COUNT entry times under listing headers the old way
+ * (a Calendar and a formatted header String per row, compared with equals()) against DateBucketer
+ * keys, formatting only the header of each new group. Each variant gets WARMUP_ITERATIONS untimed
+ * runs before MEASURED_ITERATIONS timed ones, the best run is reported. Both ways must find the same
+ * number of groups for every listing, a mismatch fails the test. The keys themselves are checked
+ * against a Calendar around DST changes and for weeks that cross a month.
+ */
+public class DateBucketBenchmark extends AndroidTestCase {
+
+	public static final int TIMESTAMP_COUNT = 1000000;
+	public static final int WARMUP_ITERATIONS = 2;
+	public static final int MEASURED_ITERATIONS = 5;
+
+	// five years of entries, newest first as the listings read them
+	private static final long SPAN_IN_MILLIS = 5 * 365 * DateBucketer.DAY_IN_MILLIS;
+	private static final int[] TYPES = {R.string.sublist_thisweek, R.string.sublist_thismonth, R.string.sublist_thisyear, R.string.sublist_all, 0};
+
+	// results are summed into sink so the loops are not optimized away
+	private static long sink;
+
+	public void testBuckets() {
+		run();
+	}
+
+	// Logs and returns nano seconds per timestamp for every variant
+	public static String run() {
+		long[] times = getTimes(System.currentTimeMillis());
+		StringBuilder result = new StringBuilder();
+		for(int type : TYPES) {
+			int bucket = ConvertCursorToListString.getHeaderBucket(type);
+			long oldGroups = formatted(times, type);
+			long newGroups = keyed(times, type, bucket);
+			assertEquals("groups of bucket " + bucket, oldGroups, newGroups);
+			result.append("bucket ").append(bucket).append(" formatted ").append(measure(times, type, bucket, false)).append(" ns");
+			result.append(", keyed ").append(measure(times, type, bucket, true)).append(" ns\n");
+		}
+		Log.d("****** DateBucketBenchmark " + TIMESTAMP_COUNT + " timestamps ******\n" + result + sink);
+		return result.toString();
+	}
+
+	// every quarter hour of the days around the changes, one zone with midnight skipped by its change
+	public void testKeysAroundDstChanges() {
+		TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+		DateBucketer dateBucketer = new DateBucketer(berlin);
+		assertKeysAround(dateBucketer, berlin, getTime(berlin, 2012, Calendar.MARCH, 25, 2, 30));
+		assertKeysAround(dateBucketer, berlin, getTime(berlin, 2012, Calendar.OCTOBER, 28, 2, 30));
+		// 2012-10-28 23:59 and 2012-10-29 00:00 local are a day and a week apart on the first day of normal time
+		assertEquals(DateBucketer.getDay(2012, Calendar.OCTOBER, 22), dateBucketer.getKey(DatabaseAdapter.BUCKET_WEEK, getTime(berlin, 2012, Calendar.OCTOBER, 28, 23, 59)));
+		assertEquals(DateBucketer.getDay(2012, Calendar.OCTOBER, 29), dateBucketer.getKey(DatabaseAdapter.BUCKET_WEEK, getTime(berlin, 2012, Calendar.OCTOBER, 29, 0, 0)));
+
+		TimeZone saoPaulo = TimeZone.getTimeZone("America/Sao_Paulo");
+		dateBucketer = new DateBucketer(saoPaulo);
+		assertKeysAround(dateBucketer, saoPaulo, getTime(saoPaulo, 2012, Calendar.OCTOBER, 21, 1, 30));
+		assertKeysAround(dateBucketer, saoPaulo, getTime(saoPaulo, 2013, Calendar.FEBRUARY, 16, 23, 30));
+		int day = DateBucketer.getDay(2012, Calendar.OCTOBER, 21);
+		assertEquals(getTime(saoPaulo, 2012, Calendar.OCTOBER, 21, 0, 0), dateBucketer.getStartInMillis(day));
+		assertEquals(day, dateBucketer.getDayKey(dateBucketer.getStartInMillis(day)));
+		assertEquals(day - 1, dateBucketer.getDayKey(dateBucketer.getStartInMillis(day) - 1));
+	}
+
+	// weeks start on monday but never before the 1st of the month
+	public void testKeysOfWeeksCrossingMonths() {
+		TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+		DateBucketer dateBucketer = new DateBucketer(berlin);
+		// thursday 2012-11-01
+		assertWeekAndMonth(dateBucketer, getTime(berlin, 2012, Calendar.OCTOBER, 31, 23, 59), DateBucketer.getDay(2012, Calendar.OCTOBER, 29), 2012 * 12 + Calendar.OCTOBER);
+		assertWeekAndMonth(dateBucketer, getTime(berlin, 2012, Calendar.NOVEMBER, 1, 0, 0), DateBucketer.getDay(2012, Calendar.NOVEMBER, 1), 2012 * 12 + Calendar.NOVEMBER);
+		assertWeekAndMonth(dateBucketer, getTime(berlin, 2012, Calendar.NOVEMBER, 4, 23, 59), DateBucketer.getDay(2012, Calendar.NOVEMBER, 1), 2012 * 12 + Calendar.NOVEMBER);
+		assertWeekAndMonth(dateBucketer, getTime(berlin, 2012, Calendar.NOVEMBER, 5, 0, 0), DateBucketer.getDay(2012, Calendar.NOVEMBER, 5), 2012 * 12 + Calendar.NOVEMBER);
+		// monday 2012-12-31 and tuesday 2013-01-01 cross the year as well
+		assertWeekAndMonth(dateBucketer, getTime(berlin, 2012, Calendar.DECEMBER, 31, 23, 59), DateBucketer.getDay(2012, Calendar.DECEMBER, 31), 2012 * 12 + Calendar.DECEMBER);
+		assertWeekAndMonth(dateBucketer, getTime(berlin, 2013, Calendar.JANUARY, 1, 0, 0), DateBucketer.getDay(2013, Calendar.JANUARY, 1), 2013 * 12 + Calendar.JANUARY);
+		assertEquals(2013, dateBucketer.getKey(DatabaseAdapter.BUCKET_YEAR, getTime(berlin, 2013, Calendar.JANUARY, 1, 0, 0)));
+		// a week starting on sunday the 1st, 2012-07-01, holds only that day
+		assertWeekAndMonth(dateBucketer, getTime(berlin, 2012, Calendar.JULY, 1, 12, 0), DateBucketer.getDay(2012, Calendar.JULY, 1), 2012 * 12 + Calendar.JULY);
+		assertWeekAndMonth(dateBucketer, getTime(berlin, 2012, Calendar.JULY, 2, 0, 0), DateBucketer.getDay(2012, Calendar.JULY, 2), 2012 * 12 + Calendar.JULY);
+		for(long time = getTime(berlin, 2012, Calendar.JANUARY, 1, 0, 0); time < getTime(berlin, 2013, Calendar.JANUARY, 1, 0, 0); time += 6 * 60 * 60 * 1000) {
+			assertKeys(dateBucketer, berlin, time);
+		}
+	}
+
+	private static void assertWeekAndMonth(DateBucketer dateBucketer, long time, int weekKey, int monthKey) {
+		assertEquals(weekKey, dateBucketer.getKey(DatabaseAdapter.BUCKET_WEEK, time));
+		assertEquals(monthKey, dateBucketer.getKey(DatabaseAdapter.BUCKET_MONTH, time));
+	}
+
+	private static void assertKeysAround(DateBucketer dateBucketer, TimeZone timeZone, long change) {
+		for(long time = change - 2 * DateBucketer.DAY_IN_MILLIS; time < change + 2 * DateBucketer.DAY_IN_MILLIS; time += 15 * 60 * 1000) {
+			assertKeys(dateBucketer, timeZone, time);
+		}
+	}
+
+	// every key of time as the fields of a Calendar in timeZone give it
+	private static void assertKeys(DateBucketer dateBucketer, TimeZone timeZone, long time) {
+		Calendar calendar = Calendar.getInstance(timeZone);
+		calendar.setTimeInMillis(time);
+		int day = DateBucketer.getDay(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH), calendar.get(Calendar.DAY_OF_MONTH));
+		int dayOfWeek = (calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+		String message = "keys of " + time + " in " + timeZone.getID();
+		assertEquals(message, day, dateBucketer.getKey(DatabaseAdapter.BUCKET_DAY, time));
+		assertEquals(message, day - Math.min(dayOfWeek, calendar.get(Calendar.DAY_OF_MONTH) - 1), dateBucketer.getKey(DatabaseAdapter.BUCKET_WEEK, time));
+		assertEquals(message, calendar.get(Calendar.YEAR) * 12 + calendar.get(Calendar.MONTH), dateBucketer.getKey(DatabaseAdapter.BUCKET_MONTH, time));
+		assertEquals(message, calendar.get(Calendar.YEAR), dateBucketer.getKey(DatabaseAdapter.BUCKET_YEAR, time));
+	}
+
+	// local time in timeZone, a time skipped by a DST change moves forward as Calendar does
+	private static long getTime(TimeZone timeZone, int year, int month, int dayOfMonth, int hour, int minute) {
+		Calendar calendar = Calendar.getInstance(timeZone);
+		calendar.clear();
+		calendar.set(year, month, dayOfMonth, hour, minute);
+		return calendar.getTimeInMillis();
+	}
+
+	private static long[] getTimes(long now) {
+		long[] times = new long[TIMESTAMP_COUNT];
+		long step = SPAN_IN_MILLIS / TIMESTAMP_COUNT;
+		long seed = 7919;
+		for(int i = 0; i < TIMESTAMP_COUNT; i++) {
+			seed = (seed * 1103515245 + 12345) & 0x7fffffff;
+			times[i] = now - i * step - seed % step;
+		}
+		return times;
+	}
+
+	private static long measure(long[] times, int type, int bucket, boolean isKeyed) {
+		long best = Long.MAX_VALUE;
+		for(int i = 0; i < WARMUP_ITERATIONS + MEASURED_ITERATIONS; i++) {
+			long start = System.nanoTime();
+			sink += isKeyed ? keyed(times, type, bucket) : formatted(times, type);
+			long elapsed = System.nanoTime() - start;
+			if(i >= WARMUP_ITERATIONS) {
+				best = Math.min(best, elapsed);
+			}
+		}
+		return best / times.length;
+	}
+
+	// as ListingAbstract.addSections() grouped subtotal rows before DateBucketer
+	private static long formatted(long[] times, int type) {
+		long groups = 0;
+		String previous = null;
+		for(long time : times) {
+			Calendar calendar = Calendar.getInstance();
+			calendar.setTimeInMillis(time);
+			String header = new DisplayDate(calendar).getHeaderFooterListDisplayDate(type);
+			if(!header.equals(previous)) {
+				groups++;
+				previous = header;
+			}
+		}
+		return groups;
+	}
+
+	private static long keyed(long[] times, int type, int bucket) {
+		DateBucketer mDateBucketer = DateBucketer.getInstance();
+		long groups = 0;
+		int previousKey = 0;
+		for(int i = 0; i < times.length; i++) {
+			int key = mDateBucketer.getKey(bucket, times[i]);
+			if(i == 0 || key != previousKey) {
+				groups++;
+				previousKey = key;
+				// only a new group shows a header
+				sink += new DisplayDate(times[i]).getHeaderFooterListDisplayDate(type).length();
+			}
+		}
+		return groups;
+	}
+
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.helpers;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+import android.test.AndroidTestCase;
+
+import com.vinsol.expensetracker.utils.Log;
+
+/**
+ * Per call cost of the lookups by hash and by date range written the old way (values concatenated
+ * into the SQL) against bound parameters and a reused compiled statement, on a scratch database
+ * of ROW_COUNT rows shaped like EntryTable. The times are logged, compare them run to run on one device.
+ */
+public class QueryBenchmark extends AndroidTestCase {
+
+	public static final int ROW_COUNT = 50000;
+	public static final int LOOKUP_COUNT = 2000;
+
+	private static final String DATABASE_NAME = "QueryBenchmarkDB";
+	private static final String TABLE = "BenchmarkTable";
+	private static final long START_TIME_IN_MILLIS = 1325376000000L;
+	private static final long STEP_IN_MILLIS = 10 * 60 * 1000;
+
+	public void testLookups() {
+		run(getContext());
+	}
+
+	// Logs and returns micro seconds per call for every variant
+	public static String run(Context context) {
+		context.deleteDatabase(DATABASE_NAME);
+		SQLiteDatabase db = context.openOrCreateDatabase(DATABASE_NAME, Context.MODE_PRIVATE, null);
+		StringBuilder result = new StringBuilder();
+		try {
+			fill(db);
+			result.append("hash concatenated ").append(hashConcatenated(db)).append(" us\n");
+			result.append("hash bound ").append(hashBound(db)).append(" us\n");
+			result.append("hash compiled ").append(hashCompiled(db)).append(" us\n");
+			result.append("range concatenated ").append(rangeConcatenated(db)).append(" us\n");
+			result.append("range bound ").append(rangeBound(db)).append(" us\n");
+		} finally {
+			db.close();
+			context.deleteDatabase(DATABASE_NAME);
+		}
+		Log.d("****** QueryBenchmark " + ROW_COUNT + " rows, " + LOOKUP_COUNT + " lookups ******\n" + result);
+		return result.toString();
+	}
+
+	private static void fill(SQLiteDatabase db) {
+		db.execSQL("create table " + TABLE + "(" + DatabaseAdapter.KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+				+ DatabaseAdapter.KEY_TAG + " TEXT, " + DatabaseAdapter.KEY_AMOUNT_MINOR + " INTEGER, "
+				+ DatabaseAdapter.KEY_DATE_TIME + " TEXT NOT NULL, " + DatabaseAdapter.KEY_MY_HASH + " TEXT, "
+				+ DatabaseAdapter.KEY_DELETE_BIT + " BOOLEAN DEFAULT 'FALSE')");
+		db.execSQL("create index BenchmarkHashIndex on " + TABLE + "(" + DatabaseAdapter.KEY_MY_HASH + ")");
+		db.execSQL("create index BenchmarkDateIndex on " + TABLE + "(" + DatabaseAdapter.KEY_DATE_TIME + ", " + DatabaseAdapter.KEY_DELETE_BIT + ")");
+		SQLiteStatement insert = db.compileStatement("insert into " + TABLE + " (" + DatabaseAdapter.KEY_TAG + ", " + DatabaseAdapter.KEY_AMOUNT_MINOR + ", "
+				+ DatabaseAdapter.KEY_DATE_TIME + ", " + DatabaseAdapter.KEY_MY_HASH + ", " + DatabaseAdapter.KEY_DELETE_BIT + ") values (?, ?, ?, ?, 0)");
+		db.beginTransaction();
+		try {
+			for(int i = 0; i < ROW_COUNT; i++) {
+				insert.bindString(1, "entry " + i);
+				insert.bindLong(2, (i % 1000) * 100);
+				insert.bindString(3, (START_TIME_IN_MILLIS + i * STEP_IN_MILLIS) + "");
+				insert.bindString(4, getHash(i));
+				insert.executeInsert();
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			insert.close();
+		}
+	}
+
+	private static String getHash(int i) {
+		return "hash" + (i * 7919 % ROW_COUNT);
+	}
+
+	private static long hashConcatenated(SQLiteDatabase db) {
+		long start = System.nanoTime();
+		for(int i = 0; i < LOOKUP_COUNT; i++) {
+			Cursor cursor = db.query(TABLE, new String[] {DatabaseAdapter.KEY_ID}, DatabaseAdapter.KEY_MY_HASH + "=\"" + getHash(i * 13) + "\"", null, null, null, null);
+			cursor.moveToFirst();
+			cursor.close();
+		}
+		return (System.nanoTime() - start) / 1000 / LOOKUP_COUNT;
+	}
+
+	private static long hashBound(SQLiteDatabase db) {
+		long start = System.nanoTime();
+		for(int i = 0; i < LOOKUP_COUNT; i++) {
+			Cursor cursor = db.query(TABLE, new String[] {DatabaseAdapter.KEY_ID}, DatabaseAdapter.KEY_MY_HASH + " = ?", new String[] {getHash(i * 13)}, null, null, null);
+			cursor.moveToFirst();
+			cursor.close();
+		}
+		return (System.nanoTime() - start) / 1000 / LOOKUP_COUNT;
+	}
+
+	// same path as DatabaseAdapter.getEntryIdByHash() through DatabaseManager
+	private static long hashCompiled(SQLiteDatabase db) {
+		SQLiteStatement statement = db.compileStatement("select " + DatabaseAdapter.KEY_ID + " from " + TABLE + " where " + DatabaseAdapter.KEY_MY_HASH + " = ? limit 1");
+		long start = System.nanoTime();
+		for(int i = 0; i < LOOKUP_COUNT; i++) {
+			statement.bindString(1, getHash(i * 13));
+			try {
+				statement.simpleQueryForString();
+			} catch (SQLiteDoneException e) {
+				// not found is a valid outcome
+			}
+		}
+		long perCall = (System.nanoTime() - start) / 1000 / LOOKUP_COUNT;
+		statement.close();
+		return perCall;
+	}
+
+	// a day of entries, as the day listing asks for
+	private static long rangeConcatenated(SQLiteDatabase db) {
+		long start = System.nanoTime();
+		for(int i = 0; i < LOOKUP_COUNT; i++) {
+			long from = getRangeStart(i);
+			String where = "(NOT " + DatabaseAdapter.KEY_DELETE_BIT + " OR " + DatabaseAdapter.KEY_DELETE_BIT + " IS NULL) AND " + DatabaseAdapter.KEY_DATE_TIME + " >= '" + from + "' AND " + DatabaseAdapter.KEY_DATE_TIME + " < '" + (from + 24 * 60 * 60 * 1000) + "'";
+			Cursor cursor = db.query(TABLE, new String[] {"SUM(" + DatabaseAdapter.KEY_AMOUNT_MINOR + ")"}, where, null, null, null, null);
+			cursor.moveToFirst();
+			cursor.close();
+		}
+		return (System.nanoTime() - start) / 1000 / LOOKUP_COUNT;
+	}
+
+	private static long rangeBound(SQLiteDatabase db) {
+		String where = "(NOT " + DatabaseAdapter.KEY_DELETE_BIT + " OR " + DatabaseAdapter.KEY_DELETE_BIT + " IS NULL) AND " + DatabaseAdapter.KEY_DATE_TIME + " >= ? AND " + DatabaseAdapter.KEY_DATE_TIME + " < ?";
+		long start = System.nanoTime();
+		for(int i = 0; i < LOOKUP_COUNT; i++) {
+			long from = getRangeStart(i);
+			Cursor cursor = db.query(TABLE, new String[] {"SUM(" + DatabaseAdapter.KEY_AMOUNT_MINOR + ")"}, where, new String[] {from + "", (from + 24 * 60 * 60 * 1000) + ""}, null, null, null);
+			cursor.moveToFirst();
+			cursor.close();
+		}
+		return (System.nanoTime() - start) / 1000 / LOOKUP_COUNT;
+	}
+
+	private static long getRangeStart(int i) {
+		return START_TIME_IN_MILLIS + (i * 7919L % ROW_COUNT) * STEP_IN_MILLIS;
+	}
+
+}
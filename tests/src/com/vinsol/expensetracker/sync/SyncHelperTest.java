@@ -0,0 +1,217 @@
+/**
+ * Copyright (c) 2012 Vinayak Solutions Private Limited 
+ * See the file license.txt for copying permission.
+*/     
+
+
+package com.vinsol.expensetracker.sync;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.content.SharedPreferences;
+import android.content.SharedPreferences.Editor;
+import android.test.AndroidTestCase;
+
+import com.vinsol.confconnect.http.HTTP;
+import com.vinsol.expensetracker.R;
+import com.vinsol.expensetracker.helpers.DatabaseAdapter;
+import com.vinsol.expensetracker.helpers.SharedPreferencesHelper;
+import com.vinsol.expensetracker.utils.Strings;
+import com.vinsol.expensetracker.utils.Utils;
+
+/**
+ * Pulls a two page change set from a local stub server, the connection drops in the middle of
+ * page 2 and the next pull has to resume at page 2 from the saved checkpoint without asking for
+ * page 1 again. The test runs against the app's own database and preferences, both are put back in tearDown().
+ */
+public class SyncHelperTest extends AndroidTestCase {
+
+	private static final String HASH_PAGE_1 = "SyncHelperTestPage1";
+	private static final String HASH_PAGE_2 = "SyncHelperTestPage2";
+	private static final String CURSOR_PAGE_2 = "page2";
+	private static final String TIMESTAMP = "2012-10-01T00:00:00Z";
+
+	private static final String PAGE_1 = "{\"timestamp\":\"" + TIMESTAMP + "\",\"cursor\":\"" + CURSOR_PAGE_2 + "\",\"add\":{\"expenses\":[" + getEntryJson(HASH_PAGE_1, 9001) + "]}}";
+	private static final String PAGE_2 = "{\"timestamp\":\"" + TIMESTAMP + "\",\"add\":{\"expenses\":[" + getEntryJson(HASH_PAGE_2, 9002) + "]}}";
+
+	private StubServer server;
+	private int[] prefKeys = {R.string.pref_key_sync_timestamp, R.string.pref_key_sync_cursor, R.string.pref_key_sync_user_id, R.string.pref_key_token};
+	private String[] savedPrefs = new String[prefKeys.length];
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		SharedPreferences sharedPreferences = SharedPreferencesHelper.getSharedPreferences();
+		for(int i = 0; i < prefKeys.length; i++) {
+			savedPrefs[i] = sharedPreferences.getString(getContext().getString(prefKeys[i]), null);
+		}
+		Editor prefEditor = sharedPreferences.edit();
+		prefEditor.putString(getContext().getString(R.string.pref_key_sync_user_id), "1");
+		prefEditor.putString(getContext().getString(R.string.pref_key_token), "token");
+		prefEditor.commit();
+		SharedPreferencesHelper.setSyncCheckpoint("", null);
+		deleteEntries();
+		server = new StubServer();
+		server.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.close();
+		deleteEntries();
+		Editor prefEditor = SharedPreferencesHelper.getSharedPreferences().edit();
+		for(int i = 0; i < prefKeys.length; i++) {
+			if(savedPrefs[i] == null) {
+				prefEditor.remove(getContext().getString(prefKeys[i]));
+			} else {
+				prefEditor.putString(getContext().getString(prefKeys[i]), savedPrefs[i]);
+			}
+		}
+		prefEditor.commit();
+		super.tearDown();
+	}
+
+	public void testResumesAtSavedPage() {
+		assertTrue("the pull needs an active network, the stub server itself is local", Utils.isOnline(getContext()));
+
+		// first pull, page 1 is applied and the connection drops while page 2 is read
+		server.isToInterrupt = true;
+		pull();
+		List<String> requests = server.getSyncRequests();
+		assertEquals(2, requests.size());
+		assertFalse(requests.get(0).contains("cursor="));
+		assertTrue(requests.get(1).contains("cursor=" + CURSOR_PAGE_2));
+		assertEquals(CURSOR_PAGE_2, getPref(R.string.pref_key_sync_cursor));
+		assertTrue(Strings.notEmpty(getEntryIdByHash(HASH_PAGE_1)));
+		assertTrue(Strings.isEmpty(getEntryIdByHash(HASH_PAGE_2)));
+
+		// page 1 would add this entry back if it was pulled again
+		deleteEntries();
+
+		// second pull asks for page 2 only and completes the checkpoint
+		server.isToInterrupt = false;
+		pull();
+		requests = server.getSyncRequests();
+		assertEquals(3, requests.size());
+		assertTrue(requests.get(2).contains("cursor=" + CURSOR_PAGE_2));
+		assertTrue(Strings.isEmpty(getEntryIdByHash(HASH_PAGE_1)));
+		assertTrue(Strings.notEmpty(getEntryIdByHash(HASH_PAGE_2)));
+		assertNull(getPref(R.string.pref_key_sync_cursor));
+		assertEquals(TIMESTAMP, getPref(R.string.pref_key_sync_timestamp));
+	}
+
+	private void pull() {
+		HTTP http = new HTTP(getContext(), "http://127.0.0.1:" + server.getPort() + "/");
+		new SyncHelper(getContext(), http).doInBackground();
+	}
+
+	private String getPref(int keyId) {
+		return SharedPreferencesHelper.getSharedPreferences().getString(getContext().getString(keyId), null);
+	}
+
+	private String getEntryIdByHash(String hash) {
+		DatabaseAdapter adapter = new DatabaseAdapter(getContext());
+		adapter.open();
+		try {
+			return adapter.getEntryIdByHash(hash);
+		} finally {
+			adapter.close();
+		}
+	}
+
+	private void deleteEntries() {
+		DatabaseAdapter adapter = new DatabaseAdapter(getContext());
+		adapter.open();
+		adapter.permanentDeleteExpenseEntryByHash(HASH_PAGE_1);
+		adapter.permanentDeleteExpenseEntryByHash(HASH_PAGE_2);
+		adapter.close();
+	}
+
+	// a synced text entry as the server sends it
+	private static String getEntryJson(String hash, int idFromServer) {
+		return "{\"id\":\"" + idFromServer + "\",\"my_hash\":\"" + hash + "\",\"time_milis_utc\":1349049600000,\"expense_type\":\"1\",\"amount\":\"10\","
+				+ "\"description\":\"" + hash + "\",\"delete_bit\":false,\"file_to_download\":false,\"file_uploaded\":true}";
+	}
+
+	/**
+	 * Answers sync pulls with PAGE_1, or PAGE_2 when asked for its cursor, one request per connection.
+	 * Every other request gets a 404, which SyncHelper skips.
+	 */
+	private static class StubServer extends Thread {
+
+		private final ServerSocket serverSocket;
+		private final List<String> syncRequests = new ArrayList<String>();
+		// PAGE_2 is cut off after its timestamp and the connection closed
+		volatile boolean isToInterrupt = false;
+
+		StubServer() throws IOException {
+			serverSocket = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+		}
+
+		int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		synchronized List<String> getSyncRequests() {
+			return new ArrayList<String>(syncRequests);
+		}
+
+		void close() throws IOException {
+			serverSocket.close();
+		}
+
+		@Override
+		public void run() {
+			while(!serverSocket.isClosed()) {
+				try {
+					Socket socket = serverSocket.accept();
+					try {
+						respond(socket);
+					} finally {
+						socket.close();
+					}
+				} catch (IOException e) {
+					// closed by tearDown()
+				}
+			}
+		}
+
+		private void respond(Socket socket) throws IOException {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+			String requestLine = reader.readLine();
+			String line;
+			while((line = reader.readLine()) != null && line.length() > 0) {
+				// headers are not needed
+			}
+			String path = requestLine == null ? "" : requestLine.split(" ")[1];
+			OutputStream outputStream = socket.getOutputStream();
+			if(!path.contains("/sync.json")) {
+				outputStream.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes("ISO-8859-1"));
+				outputStream.flush();
+				return;
+			}
+			synchronized (this) {
+				syncRequests.add(path);
+			}
+			byte[] body = (path.contains("cursor=" + CURSOR_PAGE_2) ? PAGE_2 : PAGE_1).getBytes("UTF-8");
+			outputStream.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: " + body.length + "\r\nConnection: close\r\n\r\n").getBytes("ISO-8859-1"));
+			if(isToInterrupt && path.contains("cursor=" + CURSOR_PAGE_2)) {
+				// cut before the first record so nothing of page 2 is applied
+				outputStream.write(body, 0, PAGE_2.indexOf("\"add\""));
+			} else {
+				outputStream.write(body);
+			}
+			outputStream.flush();
+		}
+
+	}
+
+}